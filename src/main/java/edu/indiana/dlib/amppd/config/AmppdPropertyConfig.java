@@ -1,6 +1,9 @@
 package edu.indiana.dlib.amppd.config;
 
 
+import java.util.HashMap;
+import java.util.Map;
+
 import javax.validation.constraints.NotNull;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -32,5 +35,43 @@ public class AmppdPropertyConfig {
     @NotNull private int passwordResetTokenExpiration;
     @NotNull private int accountActivationTokenExpiration;
     @NotNull private Boolean auth;
+    @NotNull private int jobSubmissionThreads = 4;
+    @NotNull private int historyPoolLowWaterMark = 10;
+    @NotNull private int workflowCacheMaxItems = 500;
+    @NotNull private long workflowCacheSeconds = 3600;
+    @NotNull private long workflowListCacheSeconds = 300;
+    @NotNull private long toolCacheSeconds = 86400;
+    @NotNull private int galaxyUploadBatchSize = 50;
+    @NotNull private Boolean preregisterPrimaryfiles = false;
+    @NotNull private int inputCsvChunkSize = 1000;
+    @NotNull private int jobIdempotencyMinutes = 5;
+    @NotNull private Boolean jobSkipCompleted = false;
+    @NotNull private Boolean jobReuseResults = false;
+    @NotNull private int maxInFlightJobs = 0;
+    @NotNull private Boolean admissionCountGalaxyQueue = false;
+    @NotNull private String jobSchedulingPolicy = "fifo";
+    @NotNull private Map<String, Integer> unitWeights = new HashMap<String, Integer>();
+    @NotNull private Integer galaxyRetryMaxAttempts = 3;
+    @NotNull private Map<String, Integer> galaxyRetryAttempts = new HashMap<String, Integer>();
+    @NotNull private Long galaxyRetryInitialInterval = 500L;
+    @NotNull private Double galaxyRetryMultiplier = 2.0;
+    @NotNull private Long galaxyRetryMaxInterval = 10000L;
+    @NotNull private Integer galaxyCircuitFailureThreshold = 5;
+    @NotNull private Long galaxyCircuitResetTimeout = 30000L;
+    @NotNull private Long galaxyCacheMaxBytes = 67108864L;
+    @NotNull private String galaxyCacheDir = "";
+    @NotNull private Long galaxyCacheMaxDiskBytes = 268435456L;
+    @NotNull private int batchIngestThreads = 4;
+    @NotNull private int batchManifestChunkSize = 1000;
+    @NotNull private Boolean dropboxWatch = false;
+    @NotNull private long batchIngestBytesPerSecond = 52428800L;
+    @NotNull private int batchProgressMinutes = 60;
+    @NotNull private int fileCopyThreads = 2;
+    @NotNull private int uploadSessionHours = 24;
+    @NotNull private Boolean fixityAudit = false;
+    @NotNull private int fixityAuditThreads = 2;
+    @NotNull private long fixityAuditBytesPerSecond = 52428800L;
+    @NotNull private int fixityAuditMaxAssets = 1000;
+    @NotNull private Boolean dedupContent = false;
     
 }
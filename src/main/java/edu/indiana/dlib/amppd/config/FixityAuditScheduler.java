@@ -0,0 +1,27 @@
+package edu.indiana.dlib.amppd.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import edu.indiana.dlib.amppd.service.FixityService;
+
+@Component
+public class FixityAuditScheduler {
+
+	@Autowired
+	private AmppdPropertyConfig amppdPropertyConfig;
+
+	@Autowired
+	private FixityService fixityService;
+
+	// Verifies a round of stored media files against their SHA-256, if enabled, so that all assets are re-verified over time
+	@Scheduled(fixedDelayString = "${amppd.fixityAuditInterval}")
+	public void auditFixity() {
+		if (!amppdPropertyConfig.getFixityAudit()) {
+			return;
+		}
+		fixityService.auditFixity();
+	}
+	
+}
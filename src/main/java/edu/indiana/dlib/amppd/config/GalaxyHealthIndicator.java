@@ -0,0 +1,34 @@
+package edu.indiana.dlib.amppd.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import edu.indiana.dlib.amppd.service.GalaxyResilienceService;
+import edu.indiana.dlib.amppd.service.GalaxyResilienceService.CircuitState;
+
+/**
+ * Exposes the state of the circuit breaker around Galaxy calls as the galaxy component of actuator health,
+ * so that clients can back off while Galaxy is down. It doesn't call Galaxy itself.
+ * The component is always UP, as AMPPD keeps serving requests not involving Galaxy during a Galaxy outage,
+ * and the overall health shall not get it taken out of service or restarted; Galaxy's availability is reported in the details.
+ * @author yingfeng
+ */
+@Component
+public class GalaxyHealthIndicator implements HealthIndicator {
+
+	@Autowired
+	private GalaxyResilienceService galaxyResilienceService;
+
+	@Override
+	public Health health() {
+		CircuitState state = galaxyResilienceService.getCircuitState();
+		return Health.up()
+				.withDetail("available", state != CircuitState.OPEN)
+				.withDetail("circuitState", state)
+				.withDetail("consecutiveFailures", galaxyResilienceService.getConsecutiveFailures())
+				.build();
+	}
+	
+}
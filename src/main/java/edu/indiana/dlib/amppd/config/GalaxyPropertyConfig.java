@@ -26,6 +26,10 @@ public class GalaxyPropertyConfig {
     @NotNull private String userId;
     @NotNull private String username;
     @NotNull private String password;
+    @NotNull private Integer connectTimeout = 10000;
+    @NotNull private Integer readTimeout = 300000;
+    @NotNull private Integer maxConnections = 20;
+    @NotNull private Boolean lazyInit = false;
     
     /**
      * Get the base URL of Galaxy application.
@@ -0,0 +1,28 @@
+package edu.indiana.dlib.amppd.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import edu.indiana.dlib.amppd.service.GalaxyResilienceService;
+import edu.indiana.dlib.amppd.service.HistoryPoolService;
+
+@Component
+public class HistoryPoolScheduler {
+
+	@Autowired
+	private HistoryPoolService historyPoolService;
+
+	@Autowired
+	private GalaxyResilienceService galaxyResilienceService;
+
+	// Tops up the Galaxy history pool to the low-water mark, which also fills the pool initially after server start
+	@Scheduled(fixedDelayString = "${amppd.historyPoolRefillInterval}")
+	public void refillPool() {
+		if (!galaxyResilienceService.isAvailable()) {
+			return;
+		}
+		historyPoolService.requestRefill(0);
+	}
+	
+}
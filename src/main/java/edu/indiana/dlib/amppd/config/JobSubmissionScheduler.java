@@ -0,0 +1,28 @@
+package edu.indiana.dlib.amppd.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import edu.indiana.dlib.amppd.service.JobSubmissionService;
+import lombok.extern.slf4j.Slf4j;
+
+@Component
+@Slf4j
+public class JobSubmissionScheduler {
+
+	@Autowired
+	private JobSubmissionService jobSubmissionService;
+
+	// Picks up jobs left pending in the queue, i.e. queued before server restart, or not dispatched due to errors
+	@Scheduled(fixedDelayString = "${amppd.jobSubmissionDispatchInterval}")
+	public void dispatchJobs() {
+		try {
+			jobSubmissionService.dispatchJobs();
+		}
+		catch (Exception e) {
+			log.error("Failed to dispatch pending jobs in job submission queue", e);
+		}
+	}
+	
+}
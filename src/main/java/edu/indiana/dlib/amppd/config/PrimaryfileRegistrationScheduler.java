@@ -0,0 +1,43 @@
+package edu.indiana.dlib.amppd.config;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import edu.indiana.dlib.amppd.model.Primaryfile;
+import edu.indiana.dlib.amppd.repository.PrimaryfileRepository;
+import edu.indiana.dlib.amppd.service.GalaxyResilienceService;
+import edu.indiana.dlib.amppd.service.JobService;
+
+@Component
+public class PrimaryfileRegistrationScheduler {
+
+	@Autowired
+	private AmppdPropertyConfig amppdPropertyConfig;
+
+	@Autowired
+	private PrimaryfileRepository primaryfileRepository;
+
+	@Autowired
+	private JobService jobService;
+
+	@Autowired
+	private GalaxyResilienceService galaxyResilienceService;
+
+	// Registers newly ingested primaryfiles in Galaxy ahead of job submission, if enabled
+	@Scheduled(fixedDelayString = "${amppd.preregisterPrimaryfilesInterval}")
+	public void preregisterPrimaryfiles() {
+		if (!amppdPropertyConfig.getPreregisterPrimaryfiles() || !galaxyResilienceService.isAvailable()) {
+			return;
+		}
+		
+		// keep going as long as each round makes progress, so that a failed batch doesn't loop forever
+		List<Primaryfile> primaryfiles = primaryfileRepository.findTop500ByDatasetIdNullAndPathnameNotNullOrderById();
+		while (!primaryfiles.isEmpty() && jobService.uploadPrimaryfilesToGalaxy(primaryfiles) == primaryfiles.size()) {
+			primaryfiles = primaryfileRepository.findTop500ByDatasetIdNullAndPathnameNotNullOrderById();
+		}
+	}
+	
+}
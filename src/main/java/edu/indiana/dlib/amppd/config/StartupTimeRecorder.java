@@ -0,0 +1,47 @@
+package edu.indiana.dlib.amppd.config;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Records the time-to-ready of AMPPD, i.e. the time from JVM start until the application is ready to serve requests,
+ * and publishes it as the amppd.startup.ready metric, so that startup regressions can be tracked across deployments.
+ * @author yingfeng
+ */
+@Component
+@Slf4j
+public class StartupTimeRecorder {
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Autowired
+	private GalaxyPropertyConfig galaxyPropertyConfig;
+
+	// time-to-ready in milliseconds, 0 until the application is ready
+	private AtomicLong readyMillis = new AtomicLong(0);
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void recordReady() {
+		readyMillis.set(ManagementFactory.getRuntimeMXBean().getUptime());
+		Gauge.builder("amppd.startup.ready", readyMillis, AtomicLong::get).baseUnit("milliseconds").register(meterRegistry);
+		log.info("AMPPD is ready to serve requests in " + readyMillis.get() + "ms since JVM start, Galaxy lazy init: " + galaxyPropertyConfig.getLazyInit());
+	}
+
+	/**
+	 * Get the time-to-ready in milliseconds, or 0 if the application is not ready yet.
+	 */
+	public long getReadyMillis() {
+		return readyMillis.get();
+	}
+
+}
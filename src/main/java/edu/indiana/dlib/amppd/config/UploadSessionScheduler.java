@@ -0,0 +1,21 @@
+package edu.indiana.dlib.amppd.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import edu.indiana.dlib.amppd.service.UploadService;
+
+@Component
+public class UploadSessionScheduler {
+
+	@Autowired
+	private UploadService uploadService;
+
+	// Deletes abandoned chunked upload sessions along with their partial files, so they don't accumulate in storage
+	@Scheduled(fixedDelayString = "${amppd.uploadSessionCleanupInterval}")
+	public void cleanupSessions() {
+		uploadService.cleanupSessions();
+	}
+	
+}
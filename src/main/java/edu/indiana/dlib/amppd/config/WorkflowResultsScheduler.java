@@ -7,6 +7,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import edu.indiana.dlib.amppd.service.GalaxyResilienceService;
 import edu.indiana.dlib.amppd.service.WorkflowResultService;
 import lombok.extern.slf4j.Slf4j;
 
@@ -18,9 +19,16 @@ public class WorkflowResultsScheduler {
 	@Autowired
 	private WorkflowResultService workflowResultService;
 
+	@Autowired
+	private GalaxyResilienceService galaxyResilienceService;
+
 	// Runs every 10 minutes on the 10th minute from 6:00am through 23:59pm
 	@Scheduled(cron = "${amppd.refreshWorkflowResultsStatusCron}")
 	public void refreshStatus() {
+		if (!galaxyResilienceService.isAvailable()) {
+			log.warn("Skipping refresh status as Galaxy is unavailable.");
+			return;
+		}
 		log.info("Starting refresh status at " + sdf.format(new Date()));
 		workflowResultService.refreshIncompleteWorkflowResults();
 		log.info("Finished running refresh status at " + sdf.format(new Date()));
@@ -29,6 +37,10 @@ public class WorkflowResultsScheduler {
 	// Runs every night at 1 am
 	@Scheduled(cron = "${amppd.refreshWorkflowResultsAllCron}")
 	public void refreshAllResults() {
+		if (!galaxyResilienceService.isAvailable()) {
+			log.warn("Skipping refreshWorkflowResultsIterative as Galaxy is unavailable.");
+			return;
+		}
 		log.info("Starting refreshWorkflowResultsIterative at " + sdf.format(new Date()));
 		workflowResultService.refreshWorkflowResultsIterative();
 		log.info("Finished refreshWorkflowResultsIterative at " + sdf.format(new Date()));
@@ -5,6 +5,8 @@ import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
@@ -20,6 +22,7 @@ import edu.indiana.dlib.amppd.service.AmpUserService;
 import edu.indiana.dlib.amppd.service.BatchService;
 import edu.indiana.dlib.amppd.service.BatchValidationService;
 import edu.indiana.dlib.amppd.service.PreprocessService;
+import edu.indiana.dlib.amppd.web.BatchIngestResponse;
 import edu.indiana.dlib.amppd.web.BatchValidationResponse;
 import io.micrometer.core.instrument.util.StringUtils;
 import lombok.extern.slf4j.Slf4j;
@@ -58,6 +61,44 @@ public class BatchController {
 		return response;
 	}
 
+	/**
+	 * Validate the given batch manifest and, if valid, ingest the batch in the background.
+	 * @param file the batch manifest CSV file
+	 * @param unitName name of the unit the batch belongs to
+	 * @return BatchIngestResponse containing the batch ID, which can be used to inquire the progress of the batch, or the validation errors
+	 */
+	@PostMapping(path = "/batch/ingest", params = "async=true", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+	public @ResponseBody BatchIngestResponse batchIngestAsync(@RequestPart MultipartFile file, @RequestPart String unitName) {	
+		AmpUser ampUser = ampUserService.getCurrentUser();
+		
+		BatchValidationResponse response = batchValidationService.validateBatch(unitName, ampUser, file);
+		log.info("Batch validation success : "+response.isSuccess());
+		return batchService.processBatchAsync(response, ampUser.getUsername());
+	}
+
+	/**
+	 * Show the progress of the given batch being ingested in the background.
+	 * @param batchId ID of the given batch
+	 * @return BatchIngestResponse containing the status of the batch and the errors so far
+	 */
+	@GetMapping("/batch/ingest/{batchId}")
+	public BatchIngestResponse showBatchIngest(@PathVariable Long batchId) {
+		log.info("Showing progress of batch ingest " + batchId);		
+		return batchService.getBatchProgress(batchId);
+	}
+
+	/**
+	 * Resume ingesting the given batch in the background, from the rows not committed yet, e.g. after it was interrupted by a server restart.
+	 * @param batchId ID of the given batch
+	 * @return BatchIngestResponse containing the progress of the resumed rows
+	 */
+	@PostMapping("/batch/ingest/{batchId}/resume")
+	public BatchIngestResponse resumeBatchIngest(@PathVariable Long batchId) {
+		AmpUser ampUser = ampUserService.getCurrentUser();
+		log.info("Resuming batch ingest " + batchId);		
+		return batchService.resumeBatch(batchId, ampUser.getUsername());
+	}
+
 	/**
 	 * Run preprocessing on existing primaryfiles missing media info due to previous failures.
 	 * @param (optional) primaryfileId, if provispecifiedded, preprocess only this primaryfile, otherwise preprocess all as needed
@@ -1,18 +1,34 @@
 package edu.indiana.dlib.amppd.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.servlet.http.HttpServletRequest;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
+import edu.indiana.dlib.amppd.exception.StorageException;
+import edu.indiana.dlib.amppd.model.Asset;
 import edu.indiana.dlib.amppd.model.CollectionSupplement;
 import edu.indiana.dlib.amppd.model.ItemSupplement;
 import edu.indiana.dlib.amppd.model.Primaryfile;
 import edu.indiana.dlib.amppd.model.PrimaryfileSupplement;
 import edu.indiana.dlib.amppd.model.Supplement.SupplementType;
+import edu.indiana.dlib.amppd.model.UploadSession;
 import edu.indiana.dlib.amppd.service.FileStorageService;
+import edu.indiana.dlib.amppd.service.UploadService;
 import lombok.extern.slf4j.Slf4j;
 
 // TODO: when we add controllers for data entities, we might want to move the actions into controllers for the associated entities.
@@ -26,9 +42,15 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class FileUploadController {
 	
+	// format of the Content-Range header for uploaded chunks: bytes <first>-<last>/<total or *>
+	private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+|\\*)");
+	
 	@Autowired
     private FileStorageService fileStorageService;
 
+	@Autowired
+    private UploadService uploadService;
+
 	/**
 	 * Upload the given media file to Amppd file system for the given primaryfile.
 	 * @param id ID of the given primaryfile
@@ -77,4 +99,79 @@ public class FileUploadController {
     	return (PrimaryfileSupplement)fileStorageService.uploadAsset(id, file, SupplementType.PRIMARYFILE);
     }
 
-}
+	/**
+	 * Create a chunked upload session for the given media file of the given asset, to which the file can be uploaded 
+	 * in ranges and resumed after a disconnect, instead of being uploaded in one request.
+	 * @param assetId ID of the given asset
+	 * @param assetType SupplementType of the given asset
+	 * @param filename original filename of the media file
+	 * @param size size in bytes of the media file
+	 * @return the upload session created
+	 */
+    @PostMapping("/uploads")
+    public UploadSession createUploadSession(@RequestParam Long assetId, @RequestParam SupplementType assetType, @RequestParam String filename, @RequestParam Long size) {
+    	log.info("Creating upload session for media file " + filename + " of " + size + " bytes for " + assetType + " asset ID " + assetId);
+    	return uploadService.createSession(assetId, assetType, filename, size);
+    }
+    
+	/**
+	 * Get the given upload session, whose received bytes tell where to resume an interrupted upload.
+	 * @param id ID of the given upload session
+	 * @return the upload session found
+	 */
+    @GetMapping("/uploads/{id}")
+    public UploadSession getUploadSession(@PathVariable("id") Long id) {
+    	return uploadService.getSession(id);
+    }
+    
+	/**
+	 * Upload a chunk of the media file for the given upload session, with the byte range of the chunk specified in the Content-Range header,
+	 * and the chunk content streamed in the request body.
+	 * @param id ID of the given upload session
+	 * @param contentRange the Content-Range header
+	 * @param request the request containing the chunk content
+	 * @return the updated upload session
+	 */
+    @PutMapping("/uploads/{id}")
+    public UploadSession uploadChunk(@PathVariable("id") Long id, @RequestHeader(HttpHeaders.CONTENT_RANGE) String contentRange, HttpServletRequest request) throws IOException {
+    	Matcher matcher = CONTENT_RANGE.matcher(contentRange.trim());
+    	if (!matcher.matches()) {
+    		throw new IllegalArgumentException("Invalid Content-Range " + contentRange + " for upload session " + id);
+    	}
+    	
+    	long first = Long.parseLong(matcher.group(1));
+    	long last = Long.parseLong(matcher.group(2));
+    	if (last < first) {
+    		throw new IllegalArgumentException("Invalid Content-Range " + contentRange + " for upload session " + id);
+    	}    	
+    	if (!"*".equals(matcher.group(3)) && Long.parseLong(matcher.group(3)) != uploadService.getSession(id).getSize()) {
+    		throw new StorageException("Content-Range " + contentRange + " doesn't match the size of upload session " + id);
+    	}
+    	
+    	try (InputStream content = request.getInputStream()) {
+    		return uploadService.writeChunk(id, first, last - first + 1, content);
+    	}
+    }
+    
+	/**
+	 * Finalize the given upload session once all bytes are uploaded, which moves the media file into place for the asset and preprocesses it.
+	 * @param id ID of the given upload session
+	 * @return the asset with media uploaded
+	 */
+    @PostMapping("/uploads/{id}/finalize")
+    public Asset finalizeUploadSession(@PathVariable("id") Long id) {
+    	log.info("Finalizing upload session " + id);
+    	return uploadService.finalizeSession(id);
+    }
+    
+	/**
+	 * Cancel the given upload session and delete the partially uploaded file.
+	 * @param id ID of the given upload session
+	 */
+    @DeleteMapping("/uploads/{id}")
+    public void deleteUploadSession(@PathVariable("id") Long id) {
+    	log.info("Deleting upload session " + id);
+    	uploadService.deleteSession(id);
+    }
+
+}
\ No newline at end of file
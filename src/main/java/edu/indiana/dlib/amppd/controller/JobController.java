@@ -11,6 +11,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
@@ -22,8 +23,12 @@ import com.github.jmchilton.blend4j.galaxy.beans.InvocationDetails;
 import com.github.jmchilton.blend4j.galaxy.beans.InvocationStepDetails;
 
 import edu.indiana.dlib.amppd.config.GalaxyPropertyConfig;
+import edu.indiana.dlib.amppd.service.JobAdmissionService;
 import edu.indiana.dlib.amppd.service.JobService;
+import edu.indiana.dlib.amppd.service.JobSubmissionService;
 import edu.indiana.dlib.amppd.web.CreateJobResponse;
+import edu.indiana.dlib.amppd.web.JobAdmissionResponse;
+import edu.indiana.dlib.amppd.web.JobSubmissionResponse;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -34,6 +39,7 @@ import lombok.extern.slf4j.Slf4j;
 @RestController
 @Slf4j
 public class JobController {	
+	public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
 
 	@Autowired
 	private GalaxyPropertyConfig galaxyPropertyConfig;
@@ -41,6 +47,12 @@ public class JobController {
 	@Autowired
 	private JobService jobService;
 	
+	@Autowired
+	private JobSubmissionService jobSubmissionService;
+	
+	@Autowired
+	private JobAdmissionService jobAdmissionService;
+	
 
 	/**
 	 * Create AMP jobs by submitting to Galaxy the given workflow against the given primaryfiles, along with the given parameters.
@@ -145,6 +157,113 @@ public class JobController {
 		return jobService.createJobs(workflowId, inputCsv, parameters, includePrimaryfile);
 	}
 	
+	/**
+	 * Queue AMP jobs to be submitted to Galaxy in the background, running the given workflow against the given primaryfiles, along with the given parameters.
+	 * @param workflowId ID of the given workflow
+	 * @param primaryfileIds IDs of the given primaryfiles
+	 * @param parameters the dynamic parameters to use for the steps in the workflow as a map {stepId: {paramName; paramValue}}
+	 * @return JobSubmissionResponse containing the submission ID, which can be used to inquire the progress of the jobs
+	 */
+	@PostMapping(path = "/jobs/submitFiles", params = "async=true", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+	public JobSubmissionResponse submitJobs(			
+			@RequestParam String workflowId, 
+			@RequestParam Long[] primaryfileIds, 
+			@RequestBody(required = false) Map<String, Map<String, String>> parameters,
+			@RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {	
+		Map<String, Map<String, String>> params = parameters == null ? new HashMap<String, Map<String, String>>() : parameters;
+		log.info("Processing request to queue a workflow against primaryfiles with parameters ... ");
+		return jobSubmissionService.submitIdempotent(idempotencyKey, () -> jobSubmissionService.submitJobs(workflowId, primaryfileIds, params));
+	}
+	
+	/**
+	 * Queue a bundle of AMP jobs to be submitted to Galaxy in the background, one for each primaryfile included in the given bundle, with the given step parameters.
+	 * @param workflowId the ID of the specified workflow 
+	 * @param bundleId the ID of the specified bundle
+	 * @param parameters the dynamic parameters to use for the steps in the workflow as a map {stepId: {paramName; paramValue}}
+	 * @return JobSubmissionResponse containing the submission ID, which can be used to inquire the progress of the jobs
+	 */
+	@PostMapping(path = "/jobs/submitBundle", params = "async=true", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+	public JobSubmissionResponse submitJobBundle(
+			@RequestParam String workflowId, 
+			@RequestParam Long bundleId, 
+			@RequestBody(required = false) Map<String, Map<String, String>> parameters,
+			@RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {	
+		Map<String, Map<String, String>> params = parameters == null ? new HashMap<String, Map<String, String>>() : parameters;
+		log.info("Processing request to queue a workflow against a bundle of primaryfiles with parameters ... ");
+		return jobSubmissionService.submitIdempotent(idempotencyKey, () -> jobSubmissionService.submitJobBundle(workflowId, bundleId, params));
+	}
+
+	/**
+	 * Queue AMP jobs to be submitted to Galaxy in the background, one for each row of WorkflowResult outputs specified in the given list of arrays, 
+	 * along with the given parameters, including their associated primaryfile as the first input if the given indicator is true. 
+	 * @param workflowId ID of the given workflow
+	 * @param resultIdss list of arrays of WorkflowResult IDs of the given outputs
+	 * @param parameters the dynamic parameters to use for the steps in the workflow as a map {stepId: {paramName; paramValue}}
+	 * @param includePrimaryfile if true include the primaryfile as the first input for each job
+	 * @return JobSubmissionResponse containing the submission ID, which can be used to inquire the progress of the jobs
+	 */
+	@PostMapping(path = "/jobs/submitResults", params = "async=true", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+	public JobSubmissionResponse submitJobs(
+			@RequestParam String workflowId, 
+			@RequestParam List<Long[]> resultIdss, 
+			@RequestBody(required = false) Map<String, Map<String, String>> parameters,
+			@RequestParam(required = false) Boolean includePrimaryfile,
+			@RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+		List<Long[]> rids = resultIdss == null ? new ArrayList<Long[]>() : resultIdss;
+		if (!rids.isEmpty() && rids.get(rids.size()-1).length == 0) {
+			// see createJobs for why the last empty array needs to be removed
+			rids.remove(rids.size()-1);
+		}
+		Map<String, Map<String, String>> params = parameters == null ? new HashMap<String, Map<String, String>>() : parameters;
+		Boolean include = includePrimaryfile == null ? false : includePrimaryfile;
+		log.info("Processing request to queue a workflow against a list of arrays of workflow result outputs with parameters ... ");
+		return jobSubmissionService.submitIdempotent(idempotencyKey, () -> jobSubmissionService.submitJobs(workflowId, rids, params, include));
+	}
+
+	/**
+	 * Queue AMP jobs to be submitted to Galaxy in the background, one for each row of primaryfile and outputs specified in the given csvFile, 
+	 * along with the given parameters.
+	 * @param workflowId ID of the given workflow
+	 * @param inputCsv CSV file each row specifying the primaryfile and previous outputs to use as workflow inputs
+	 * @param includePrimaryfile if true include the primaryfile as the first input for each job; otherwise (default false) ignore the primaryfile
+	 * @param parameters the dynamic parameters to use for the steps in the workflow as a map {stepId: {paramName; paramValue}}
+	 * @return JobSubmissionResponse containing the submission ID, which can be used to inquire the progress of the jobs
+	 */
+	@PostMapping(path = "/jobs/submitCsv", params = "async=true", produces = MediaType.APPLICATION_JSON_VALUE)
+	public JobSubmissionResponse submitJobs(
+			@RequestParam String workflowId, 
+			@RequestParam MultipartFile inputCsv,
+			@RequestParam(value = "parameters", required = false) Map<String, Map<String, String>> parameters,
+			@RequestParam(required = false) Boolean includePrimaryfile,
+			@RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+		// see createJobs for why parameters uses @RequestParam
+		Map<String, Map<String, String>> params = parameters == null ? new HashMap<String, Map<String, String>>() : parameters;
+		Boolean include = includePrimaryfile == null ? false : includePrimaryfile;
+		log.info("Processing request to queue a workflow against an inputCsv file containing primaryfile IDs and workflow result IDs with parameters ... ");
+		return jobSubmissionService.submitIdempotent(idempotencyKey, () -> jobSubmissionService.submitJobs(workflowId, inputCsv, params, include));
+	}
+	
+	/**
+	 * Show the progress of the given asynchronous job submission, including the CreateJobResponse for each job processed so far.
+	 * @param submissionId ID of the given job submission
+	 * @return JobSubmissionResponse containing the status of the submission and its jobs
+	 */
+	@GetMapping("/jobs/submissions/{submissionId}")
+	public JobSubmissionResponse showJobSubmission(@PathVariable Long submissionId) {
+		log.info("Showing progress of job submission " + submissionId);		
+		return jobSubmissionService.getJobSubmission(submissionId);
+	}
+	
+	/**
+	 * Show the current status of job admission control, i.e. the jobs in flight on Galaxy and the jobs held in the submission queue.
+	 * @return JobAdmissionResponse containing the admission status
+	 */
+	@GetMapping("/jobs/admission")
+	public JobAdmissionResponse showJobAdmission() {
+		log.info("Showing status of job admission control");		
+		return jobAdmissionService.getAdmissionStatus();
+	}
+	
 	/**
 	 * List all AMP jobs with step details, i.e. all workflow invocations submitted via AMPPD UI to Galaxy.
 	 * @return a list of Invocations each containing basic information of an AMP job.
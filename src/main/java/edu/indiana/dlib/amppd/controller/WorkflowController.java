@@ -5,6 +5,7 @@ import java.util.List;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -13,6 +14,7 @@ import com.github.jmchilton.blend4j.galaxy.beans.WorkflowDetails;
 
 import edu.indiana.dlib.amppd.exception.GalaxyWorkflowException;
 import edu.indiana.dlib.amppd.service.WorkflowService;
+import edu.indiana.dlib.amppd.util.CacheHelper.CacheStats;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -80,5 +82,23 @@ public class WorkflowController {
 		return workflow;
 	}
 	
+	/**
+	 * Invalidate the cached workflow information, so that it will be retrieved from Galaxy on the next request.
+	 * @param workflowId ID of the workflow to invalidate cache for; if not provided, invalidate cache for all workflows
+	 */
+	@PostMapping("/workflows/cache/invalidate")
+	public void invalidateWorkflowCaches(@RequestParam(required = false) String workflowId) {
+		log.info("Invalidating workflow caches for workflowId: " + workflowId);
+		workflowService.invalidateWorkflowCaches(workflowId);
+	}
+	
+	/**
+	 * Show the statistics of the workflow related caches, including size and hit rate.
+	 * @return list of statistics for each cache
+	 */
+	@GetMapping("/workflows/cache/stats")
+	public List<CacheStats> showWorkflowCacheStats() {
+		return workflowService.getWorkflowCacheStats();
+	}
 	
 }
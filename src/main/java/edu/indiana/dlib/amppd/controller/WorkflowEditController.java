@@ -15,6 +15,7 @@ import org.springframework.web.client.RestTemplate;
 
 import edu.indiana.dlib.amppd.config.GalaxyPropertyConfig;
 import edu.indiana.dlib.amppd.exception.GalaxyWorkflowException;
+import edu.indiana.dlib.amppd.service.WorkflowService;
 import edu.indiana.dlib.amppd.web.GalaxyLoginRequest;
 import lombok.extern.slf4j.Slf4j;
 
@@ -29,6 +30,9 @@ public class WorkflowEditController {
 	@Autowired
 	private GalaxyPropertyConfig galaxyPropertyConfig;
 	
+	@Autowired
+	private WorkflowService workflowService;
+	
 //	@Autowired
 	private RestTemplate restTemplate = new RestTemplate();
 	private String csrfToken = null;
@@ -89,6 +93,9 @@ public class WorkflowEditController {
     	HttpEntity<String> requestUserLogout = new HttpEntity<String>(null, headers);
     	ResponseEntity<String> responseUserLogout = restTemplate.exchange(urlUserLogout, HttpMethod.GET, requestUserLogout, String.class);
     	galaxySession = responseUserLogout.getHeaders().getFirst(HttpHeaders.SET_COOKIE);
+    	
+    	// workflows might have been changed during the edit session, so the cached ones are obsolete
+    	workflowService.invalidateWorkflowCaches(null);
     	return responseUserLogout;
 	}
 	
@@ -0,0 +1,12 @@
+package edu.indiana.dlib.amppd.exception;
+
+public class GalaxyNotFoundException extends GalaxyDataException {
+
+    public GalaxyNotFoundException(String message) {
+        super(message);
+    }
+
+    public GalaxyNotFoundException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
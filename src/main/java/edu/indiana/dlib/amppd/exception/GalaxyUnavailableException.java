@@ -0,0 +1,13 @@
+package edu.indiana.dlib.amppd.exception;
+
+public class GalaxyUnavailableException extends RuntimeException {
+
+    public GalaxyUnavailableException(String message) {
+        super(message);
+    }
+
+    public GalaxyUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
@@ -1,5 +1,7 @@
 package edu.indiana.dlib.amppd.model;
 
+import java.util.Date;
+
 import javax.persistence.Column;
 import javax.persistence.MappedSuperclass;
 import javax.persistence.Transient;
@@ -32,6 +34,10 @@ public abstract class Asset extends Dataentity {
 
 	private String datasetId;			// ID of the dataset as a result of upload to Galaxy
     private String symlink;				// the symlink under the static content directory used for serving large media file
+
+    private String sha256;				// SHA-256 in hex of the file content, computed as the file is stored
+    private Date fixityChecked;			// time when the SHA-256 was computed or the file was last verified against it
+    private Boolean fixityFailed;		// whether the file was missing or didn't match the SHA-256 at the last fixity check
     
     // Note: mediaInfo must be a valid json string
     @Type(type = "jsonb")
@@ -9,11 +9,11 @@ import javax.persistence.CascadeType;
 import javax.persistence.Entity;
 import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
 
+import org.hibernate.annotations.GenericGenerator;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -31,7 +31,8 @@ import lombok.Data;
 @Data
 public class Batch {
 	@Id
-    @GeneratedValue(strategy=GenerationType.AUTO)
+    @GeneratedValue(generator="batch_id")
+    @GenericGenerator(name="batch_id", strategy="edu.indiana.dlib.amppd.util.PooledSequenceIdGenerator")
 	private Long id;
 	
 	// the following fields come from batch upload UI
@@ -7,12 +7,14 @@ import javax.jdo.annotations.Index;
 import javax.persistence.CascadeType;
 import javax.persistence.Entity;
 import javax.persistence.EntityListeners;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
 
+import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.Type;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
@@ -35,8 +37,12 @@ import lombok.Data;
 @Index(members={"externalSource","externalId"})
 @Data
 public class BatchFile {	
+	// processing state of the row during batch ingest, each one recorded as soon as reached, so that an interrupted batch can be resumed
+	public enum ProcessingState {PENDING, PREPROCESSED, MOVED, COMMITTED, FAILED}
+	
 	@Id
-    @GeneratedValue(strategy=GenerationType.AUTO)
+    @GeneratedValue(generator="batch_file_id")
+    @GenericGenerator(name="batch_file_id", strategy="edu.indiana.dlib.amppd.util.PooledSequenceIdGenerator")
 	private Long id;	
 
 	//@NotNull
@@ -78,6 +84,14 @@ public class BatchFile {
 	@Index
 	private SupplementType supplementType; 
 	
+	@Index
+	@Enumerated(EnumType.STRING)
+	private ProcessingState processingState = ProcessingState.PENDING;
+	
+	// original filename and pathname in storage of the primaryfile media once moved out of the dropbox, null if not moved yet
+	private String storedOriginalFilename;
+	private String storedPathname;
+	
 	@OneToMany(mappedBy="batchFile", cascade = CascadeType.REMOVE)
 	private List<BatchSupplementFile> batchSupplementFiles;	
 	
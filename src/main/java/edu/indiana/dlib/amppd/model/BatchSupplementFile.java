@@ -4,10 +4,10 @@ import javax.jdo.annotations.Index;
 import javax.persistence.Entity;
 import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.ManyToOne;
 
+import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.Type;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
@@ -27,7 +27,8 @@ import lombok.Data;
 public class BatchSupplementFile {
 
 	@Id
-    @GeneratedValue(strategy=GenerationType.AUTO)
+    @GeneratedValue(generator="batch_supplement_file_id")
+    @GenericGenerator(name="batch_supplement_file_id", strategy="edu.indiana.dlib.amppd.util.PooledSequenceIdGenerator")
 	private Long id;
 
 	@Index
@@ -41,6 +42,10 @@ public class BatchSupplementFile {
     
     @Type(type="text")
 	private String supplementDescription;
+    
+	// original filename and pathname in storage of the supplement media once moved out of the dropbox, null if not moved yet
+	private String storedOriginalFilename;
+	private String storedPathname;
 
 	//@NotNull
 	@Index
@@ -0,0 +1,70 @@
+package edu.indiana.dlib.amppd.model;
+
+import java.util.Date;
+
+import javax.jdo.annotations.Index;
+import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+
+import org.hibernate.annotations.Type;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import lombok.Data;
+
+/**
+ * Class containing information of a Galaxy workflow invocation created by an AMP job, along with the idempotency key 
+ * derived from the job's workflow, inputs and parameters, so that duplicate submissions of the same job can be detected,
+ * and the content key derived from the primaryfile content, so that completed outputs can be reused on identical media.
+ * @author yingfeng
+ *
+ */
+@Entity
+@EntityListeners(AuditingEntityListener.class)
+@Data
+public class JobInvocation {
+	@Id
+    @GeneratedValue(strategy=GenerationType.AUTO)
+	private Long id;
+	
+	//@NotNull
+	@Index
+	private String idempotencyKey;
+	
+	//@NotNull
+	@Index(unique="true")
+	private String invocationId;
+	
+	//@NotNull
+	private String historyId;
+	
+	//@NotNull
+	@Index
+	private String workflowId;
+	
+	// ID of the primaryfile shared by the inputs
+	@Index
+	private Long primaryfileId;
+	
+	// SHA-256 of the primaryfile content, workflow and parameters, for reusing the outputs on byte-identical primaryfiles;
+	// null if the job runs on previous results, or the primaryfile content hash is unknown
+	@Index
+	private String contentKey;
+	
+	// comma separated IDs of the WorkflowResults used as inputs, null if the job runs on primaryfile only
+	private String resultIds;
+	
+	// the normalized dynamic step parameters
+	@Type(type="text")
+	private String parameters;
+	
+	//@NotNull
+	private String submitter;
+
+	//@NotNull
+	@Index
+	private Date dateCreated;	
+	
+}
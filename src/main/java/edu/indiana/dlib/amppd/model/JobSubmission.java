@@ -0,0 +1,77 @@
+package edu.indiana.dlib.amppd.model;
+
+import java.util.Date;
+import java.util.List;
+
+import javax.jdo.annotations.Index;
+import javax.persistence.CascadeType;
+import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.OneToMany;
+
+import org.hibernate.annotations.Type;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import edu.indiana.dlib.amppd.web.JobSubmissionState;
+import lombok.Data;
+
+/**
+ * Class containing information of a batch of AMP jobs submitted asynchronously to run the same workflow with the same parameters.
+ * The batch is persisted along with all its JobSubmissionItems upon submission, and processed in the background by the job submission 
+ * workers; since the queue lives in the DB, pending jobs survive server restarts.
+ * @author yingfeng
+ *
+ */
+@Entity
+@EntityListeners(AuditingEntityListener.class)
+@Data
+public class JobSubmission {
+	@Id
+    @GeneratedValue(strategy=GenerationType.AUTO)
+	private Long id;
+	
+	//@NotNull
+	@Index
+	private String workflowId;
+	
+	// bundle ID if the batch is submitted against a bundle
+	private Long bundleId;
+	
+	// name of the input CSV file if the batch is submitted via CSV
+	@Type(type="text")
+	private String inputCsvFilename;
+	
+	// the dynamic step parameters, as the JSON string of map {stepId: {paramName; paramValue}}
+	@Type(type="text")
+	private String parameters;
+	
+	private Boolean includePrimaryfile;
+	
+	// idempotency key supplied by the client, so that retries of the same request return the same submission
+	@Index
+	private String idempotencyKey;
+	
+	//@NotNull
+	@Index
+	private String submitter;
+
+	//@NotNull
+	@Index
+	private Date dateSubmitted;	
+	
+	private Date dateCompleted;	
+	
+	//@NotNull
+	@Index
+	private JobSubmissionState status;
+		
+	@JsonIgnore
+	@OneToMany(mappedBy="submission", cascade = CascadeType.REMOVE)
+	private List<JobSubmissionItem> items;
+	
+}
@@ -0,0 +1,85 @@
+package edu.indiana.dlib.amppd.model;
+
+import java.util.Date;
+
+import javax.jdo.annotations.Index;
+import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.ManyToOne;
+
+import org.hibernate.annotations.Type;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import com.fasterxml.jackson.annotation.JsonBackReference;
+
+import edu.indiana.dlib.amppd.web.JobSubmissionState;
+import lombok.Data;
+
+/**
+ * Class containing information of a single AMP job within a JobSubmission, i.e. the workflow inputs of the job, 
+ * which is either a primaryfile or an array of previous WorkflowResults, and its submission status and outcome.
+ * @author yingfeng
+ *
+ */
+@Entity
+@EntityListeners(AuditingEntityListener.class)
+@Data
+public class JobSubmissionItem {
+	@Id
+    @GeneratedValue(strategy=GenerationType.AUTO)
+	private Long id;
+	
+	//@NotNull
+	@Index
+	@ManyToOne
+	@JsonBackReference(value="submission")
+	private JobSubmission submission;
+	
+	// the order of the job within the submission, i.e. row number in the input CSV if applicable 
+	//@NotNull
+	@Index
+	private Integer rowNum;
+	
+	@Index
+	private Long primaryfileId;
+
+	// unit and media duration (in seconds) of the primaryfile, used by the job scheduling policy
+	@Index
+	private Long unitId;
+	
+	@Index
+	private Double mediaDuration;
+
+	// comma separated IDs of the WorkflowResults used as workflow inputs, if any 
+	@Type(type="text")
+	private String resultIds;
+	
+	//@NotNull
+	@Index
+	private JobSubmissionState status;
+	
+	@Type(type="text")
+	private String error;
+
+	@Type(type="text")
+	private String collectionName;
+	
+	@Type(type="text")
+	private String itemName;
+	
+	@Type(type="text")
+	private String primaryfileName;
+	
+	@Index
+	private String invocationId;
+	
+	private String historyId;
+
+	private Date dateStarted;	
+
+	private Date dateCompleted;	
+	
+}
@@ -0,0 +1,43 @@
+package edu.indiana.dlib.amppd.model;
+
+import java.util.Date;
+
+import javax.jdo.annotations.Index;
+import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import lombok.Data;
+
+/**
+ * Class containing information of a Galaxy history created in advance for the output of AMP jobs. 
+ * A pooled history is unassigned until it's claimed by a primaryfile on its first job submission.
+ * @author yingfeng
+ *
+ */
+@Entity
+@EntityListeners(AuditingEntityListener.class)
+@Data
+public class PooledHistory {
+	@Id
+    @GeneratedValue(strategy=GenerationType.AUTO)
+	private Long id;
+	
+	//@NotNull
+	@Index(unique="true")
+	private String historyId;
+	
+	//@NotNull
+	private Date dateCreated;	
+
+	// ID of the primaryfile which claimed the history, null if unassigned
+	@Index
+	private Long primaryfileId;
+	
+	private Date dateClaimed;	
+	
+}
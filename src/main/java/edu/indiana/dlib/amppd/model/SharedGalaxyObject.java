@@ -0,0 +1,44 @@
+package edu.indiana.dlib.amppd.model;
+
+import java.util.Date;
+
+import javax.jdo.annotations.Index;
+import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import lombok.Data;
+
+/**
+ * Class containing the ID of a Galaxy object shared by all AMP users, such as the shared data library and history,
+ * so that it can be found without listing all such objects in Galaxy on startup.
+ * The record is validated against Galaxy on first use; if Galaxy no longer has the object, e.g. after its database is reset,
+ * the stale record is deleted and the object is resolved by name again.
+ * @author yingfeng
+ *
+ */
+@Entity
+@EntityListeners(AuditingEntityListener.class)
+@Data
+public class SharedGalaxyObject {
+	@Id
+    @GeneratedValue(strategy=GenerationType.AUTO)
+	private Long id;
+	
+	// name of the shared object in Galaxy
+	//@NotNull
+	@Index(unique="true")
+	private String name;
+	
+	// ID of the shared object in Galaxy
+	//@NotNull
+	private String galaxyId;
+	
+	//@NotNull
+	private Date dateCreated;	
+	
+}
@@ -0,0 +1,45 @@
+package edu.indiana.dlib.amppd.model;
+
+import java.util.Date;
+
+import javax.jdo.annotations.Index;
+import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import lombok.Data;
+
+/**
+ * Class containing information of a media file content stored once in the content-addressed store, 
+ * which is hard linked into the storage location of each asset with identical bytes. 
+ * The Galaxy dataset uploaded from the content file is shared by all primaryfiles with the content.
+ * @author yingfeng
+ *
+ */
+@Entity
+@EntityListeners(AuditingEntityListener.class)
+@Data
+public class StoredContent {
+	@Id
+    @GeneratedValue(strategy=GenerationType.AUTO)
+	private Long id;
+	
+	// SHA-256 in hex of the content
+	@Index(unique="true")
+	private String sha256;
+	
+	// pathname of the content file relative to the storage root
+	private String pathname;
+	
+	private Long size;
+	
+	// ID of the Galaxy library dataset uploaded from the content file, null if not uploaded yet
+	private String datasetId;
+	
+	private Date dateCreated;	
+
+}
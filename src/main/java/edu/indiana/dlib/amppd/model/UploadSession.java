@@ -0,0 +1,56 @@
+package edu.indiana.dlib.amppd.model;
+
+import java.util.Date;
+
+import javax.jdo.annotations.Index;
+import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import edu.indiana.dlib.amppd.model.Supplement.SupplementType;
+import lombok.Data;
+
+/**
+ * Class containing information of a chunked upload of a media file for an asset. The chunks are written in place into a 
+ * temporary file in storage as they arrive, and the bytes received so far are recorded, so that an interrupted upload 
+ * can be resumed from where it stopped. Once all bytes are received, the upload is finalized into the asset.
+ * @author yingfeng
+ *
+ */
+@Entity
+@EntityListeners(AuditingEntityListener.class)
+@Data
+public class UploadSession {
+	@Id
+    @GeneratedValue(strategy=GenerationType.AUTO)
+	private Long id;
+	
+	// ID and type of the asset the media file is uploaded for
+	private Long assetId;
+	
+	@Enumerated(EnumType.STRING)
+	private SupplementType assetType;
+	
+	private String originalFilename;
+	
+	// total size in bytes of the media file
+	private Long size;
+	
+	// number of contiguous bytes received from the start of the media file
+	private Long received;
+	
+	// pathname of the temporary file relative to the storage root
+	private String pathname;
+	
+	private Date dateCreated;	
+
+	@Index
+	private Date dateUpdated;	
+	
+}
@@ -115,6 +115,9 @@ public class WorkflowResult {
 	// we don't use Galaxy downloard URL, so outputUrl can be removed
 
 	private String toolInfo;
+
+	@Index
+	private Long sourceResultId;	// ID of the result whose output dataset was copied as this one, null if produced by its own invocation
 	
 	//@NotNull
 	@Index
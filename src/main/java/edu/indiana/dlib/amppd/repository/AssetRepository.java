@@ -1,9 +1,15 @@
 package edu.indiana.dlib.amppd.repository;
 
+import java.util.Date;
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.NoRepositoryBean;
 import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RestResource;
+import org.springframework.transaction.annotation.Transactional;
 
 import edu.indiana.dlib.amppd.model.Asset;
 
@@ -15,4 +21,34 @@ public interface AssetRepository<S extends Asset> extends DataentityRepository<S
 
 	List<S> findByPathname(@Param("pathname") String pathname); // TODO: use customized impl to do match with SQL LIKE instead of =
 	
+	@RestResource(exported = false)
+	List<S> findBySha256NullAndPathnameNotNullAndFixityCheckedNull(Pageable pageable);
+	
+	@RestResource(exported = false)
+	List<S> findBySha256NullAndPathnameNotNullAndFixityCheckedNotNull(Pageable pageable);
+	
+	@RestResource(exported = false)
+	List<S> findBySha256NotNull(Pageable pageable);
+	
+	// the sha256 null condition ensures that a hash computed on ingest isn't overwritten by one computed in a fixity audit of the previous file
+	@RestResource(exported = false)
+	@Transactional
+	@Modifying
+	@Query(value = "update #{#entityName} set sha256 = :sha256, fixityChecked = :fixityChecked, fixityFailed = false where id = :id and sha256 is null")
+	int updateSha256(@Param("id") Long id, @Param("sha256") String sha256, @Param("fixityChecked") Date fixityChecked);
+	
+	// the sha256 null condition ensures that a missing file isn't recorded as failed if a new file has been stored since the check started
+	@RestResource(exported = false)
+	@Transactional
+	@Modifying
+	@Query(value = "update #{#entityName} set fixityChecked = :fixityChecked, fixityFailed = true where id = :id and sha256 is null")
+	int updateFixityMissing(@Param("id") Long id, @Param("fixityChecked") Date fixityChecked);
+	
+	// the sha256 condition ensures that the result of a fixity check isn't recorded if a new file has been stored since the check started
+	@RestResource(exported = false)
+	@Transactional
+	@Modifying
+	@Query(value = "update #{#entityName} set fixityChecked = :fixityChecked, fixityFailed = :fixityFailed where id = :id and sha256 = :sha256")
+	int updateFixity(@Param("id") Long id, @Param("sha256") String sha256, @Param("fixityChecked") Date fixityChecked, @Param("fixityFailed") Boolean fixityFailed);
+	
 }
@@ -1,12 +1,30 @@
 package edu.indiana.dlib.amppd.repository;
 
+import java.util.List;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 
 import edu.indiana.dlib.amppd.model.BatchFile;
+import edu.indiana.dlib.amppd.model.BatchFile.ProcessingState;
 
 
 @RepositoryRestResource(exported = false)
 public interface BatchFileRepository extends CrudRepository<BatchFile, Long>{
 	
+	// batch files of the given batch in manifest order, with their supplements fetched along
+	@Query(value = "select distinct f from BatchFile f left join fetch f.batchSupplementFiles where f.batch.id = :batchId order by f.rowNum")
+	List<BatchFile> findByBatchIdFetchSupplements(@Param("batchId") Long batchId);
+	
+	@Modifying
+	@Query(value = "update BatchFile set processingState = :processingState where id = :id")
+	int updateProcessingState(@Param("id") Long id, @Param("processingState") ProcessingState processingState);
+	
+	@Modifying
+	@Query(value = "update BatchFile set processingState = :processingState, storedOriginalFilename = :storedOriginalFilename, storedPathname = :storedPathname where id = :id")
+	int updateStoredFile(@Param("id") Long id, @Param("processingState") ProcessingState processingState, @Param("storedOriginalFilename") String storedOriginalFilename, @Param("storedPathname") String storedPathname);
+	
 }
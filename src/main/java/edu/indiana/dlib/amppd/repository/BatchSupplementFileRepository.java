@@ -1,6 +1,9 @@
 package edu.indiana.dlib.amppd.repository;
 
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 
 import edu.indiana.dlib.amppd.model.BatchSupplementFile;
@@ -9,4 +12,8 @@ import edu.indiana.dlib.amppd.model.BatchSupplementFile;
 @RepositoryRestResource(exported = false)
 public interface BatchSupplementFileRepository extends CrudRepository<BatchSupplementFile, Long>{
 	
+	@Modifying
+	@Query(value = "update BatchSupplementFile set storedOriginalFilename = :storedOriginalFilename, storedPathname = :storedPathname where id = :id")
+	int updateStoredFile(@Param("id") Long id, @Param("storedOriginalFilename") String storedOriginalFilename, @Param("storedPathname") String storedPathname);
+	
 }
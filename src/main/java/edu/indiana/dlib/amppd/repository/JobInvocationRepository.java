@@ -0,0 +1,19 @@
+package edu.indiana.dlib.amppd.repository;
+
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+
+import edu.indiana.dlib.amppd.model.JobInvocation;
+
+
+@RepositoryRestResource(exported = false)
+public interface JobInvocationRepository extends CrudRepository<JobInvocation, Long>{
+
+	List<JobInvocation> findByIdempotencyKeyAndDateCreatedAfterOrderByDateCreatedDesc(String idempotencyKey, Date dateCreated);
+	List<JobInvocation> findByIdempotencyKeyOrderByDateCreatedDesc(String idempotencyKey);
+	List<JobInvocation> findByContentKeyOrderByDateCreatedDesc(String contentKey);
+	
+}
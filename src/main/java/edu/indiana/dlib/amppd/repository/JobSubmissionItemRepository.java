@@ -0,0 +1,40 @@
+package edu.indiana.dlib.amppd.repository;
+
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.indiana.dlib.amppd.model.JobSubmissionItem;
+import edu.indiana.dlib.amppd.web.JobSubmissionState;
+
+
+@RepositoryRestResource(exported = false)
+public interface JobSubmissionItemRepository extends CrudRepository<JobSubmissionItem, Long>{
+
+	List<JobSubmissionItem> findBySubmissionIdOrderByRowNum(Long submissionId);
+	List<JobSubmissionItem> findByStatusOrderBySubmissionIdAscRowNumAsc(JobSubmissionState status, Pageable pageable);
+	List<JobSubmissionItem> findByStatusAndUnitIdOrderBySubmissionIdAscRowNumAsc(JobSubmissionState status, Long unitId, Pageable pageable);
+	List<JobSubmissionItem> findByStatusOrderByMediaDurationAscSubmissionIdAscRowNumAsc(JobSubmissionState status, Pageable pageable);
+	int countByStatus(JobSubmissionState status);
+	int countBySubmissionIdAndStatus(Long submissionId, JobSubmissionState status);
+	
+	@Query(value = "select i.unitId, count(i) from JobSubmissionItem i where i.status = :status group by i.unitId")
+	List<Object[]> countByStatusGroupByUnitId(@Param("status") JobSubmissionState status);
+	
+	@Transactional
+	@Modifying
+	@Query(value = "update JobSubmissionItem set status = :toStatus, error = :error where status = :fromStatus")
+	int updateStatus(@Param("fromStatus") JobSubmissionState fromStatus, @Param("toStatus") JobSubmissionState toStatus, @Param("error") String error);
+
+	@Transactional
+	@Modifying
+	@Query(value = "update JobSubmissionItem set status = :toStatus, error = :error where submission.id = :submissionId and status = :fromStatus")
+	int updateSubmissionStatus(@Param("submissionId") Long submissionId, @Param("fromStatus") JobSubmissionState fromStatus, @Param("toStatus") JobSubmissionState toStatus, @Param("error") String error);
+
+}
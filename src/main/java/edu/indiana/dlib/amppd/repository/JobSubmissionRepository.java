@@ -0,0 +1,19 @@
+package edu.indiana.dlib.amppd.repository;
+
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+
+import edu.indiana.dlib.amppd.model.JobSubmission;
+import edu.indiana.dlib.amppd.web.JobSubmissionState;
+
+
+@RepositoryRestResource(exported = false)
+public interface JobSubmissionRepository extends CrudRepository<JobSubmission, Long>{
+
+	List<JobSubmission> findByStatusIn(List<JobSubmissionState> statuses);
+	JobSubmission findFirstByIdempotencyKeyAndSubmitterAndDateSubmittedAfterOrderByDateSubmittedDesc(String idempotencyKey, String submitter, Date dateSubmitted);
+	
+}
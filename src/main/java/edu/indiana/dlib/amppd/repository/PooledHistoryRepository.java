@@ -0,0 +1,34 @@
+package edu.indiana.dlib.amppd.repository;
+
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.indiana.dlib.amppd.model.PooledHistory;
+
+
+@RepositoryRestResource(exported = false)
+public interface PooledHistoryRepository extends CrudRepository<PooledHistory, Long>{
+
+	int countByPrimaryfileIdNull();
+	List<PooledHistory> findTop10ByPrimaryfileIdNullOrderById();
+	
+	// the primaryfileId null condition ensures that a history can only be claimed once even if multiple threads compete for it
+	@Transactional
+	@Modifying
+	@Query(value = "update PooledHistory set primaryfileId = :primaryfileId, dateClaimed = :dateClaimed where id = :id and primaryfileId is null")
+	int claim(@Param("id") Long id, @Param("primaryfileId") Long primaryfileId, @Param("dateClaimed") Date dateClaimed);
+	
+	// the primaryfileId condition ensures that only the claim made by the given primaryfile is released
+	@Transactional
+	@Modifying
+	@Query(value = "update PooledHistory set primaryfileId = null, dateClaimed = null where id = :id and primaryfileId = :primaryfileId")
+	int release(@Param("id") Long id, @Param("primaryfileId") Long primaryfileId);
+	
+}
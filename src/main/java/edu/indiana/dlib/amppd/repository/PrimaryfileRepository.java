@@ -17,9 +17,14 @@ public interface PrimaryfileRepository extends AssetRepository<Primaryfile> {
 	List<Primaryfile> findByItemCollectionActiveTrueAndHistoryIdNotNull();	
 	List<Primaryfile> findByHistoryIdNotNull();	
 	List<Primaryfile> findByHistoryId(String historyId); 
+	int countByIdInAndHistoryIdNull(List<Long> ids);
+	List<Primaryfile> findTop500ByDatasetIdNullAndPathnameNotNullOrderById();
 	
 	List<Primaryfile> findByMediaInfoNull(); 
 
+	@Query(value = "select p.name from Primaryfile p where p.item.collection.id = :collectionId")
+	List<String> findNamesByCollectionId(@Param("collectionId") Long collectionId);
+
 	@Query(value = "select p from Primaryfile p where lower(p.name) like lower(concat('%', :keyword,'%')) or lower(p.description) like lower(concat('%', :keyword,'%'))")
 	List<Primaryfile> findByKeyword(@Param("keyword") String keyword); 
 		
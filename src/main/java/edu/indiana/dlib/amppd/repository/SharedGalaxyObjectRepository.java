@@ -0,0 +1,14 @@
+package edu.indiana.dlib.amppd.repository;
+
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+
+import edu.indiana.dlib.amppd.model.SharedGalaxyObject;
+
+
+@RepositoryRestResource(exported = false)
+public interface SharedGalaxyObjectRepository extends CrudRepository<SharedGalaxyObject, Long>{
+
+	SharedGalaxyObject findFirstByName(String name);
+	
+}
@@ -0,0 +1,24 @@
+package edu.indiana.dlib.amppd.repository;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.indiana.dlib.amppd.model.StoredContent;
+
+
+@RepositoryRestResource(exported = false)
+public interface StoredContentRepository extends CrudRepository<StoredContent, Long>{
+
+	StoredContent findFirstBySha256(String sha256);
+	
+	// the datasetId null condition ensures that only one Galaxy dataset is kept for the content even if multiple threads upload it at once
+	@Transactional
+	@Modifying
+	@Query(value = "update StoredContent set datasetId = :datasetId where id = :id and datasetId is null")
+	int updateDatasetId(@Param("id") Long id, @Param("datasetId") String datasetId);
+	
+}
@@ -0,0 +1,27 @@
+package edu.indiana.dlib.amppd.repository;
+
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.indiana.dlib.amppd.model.UploadSession;
+
+
+@RepositoryRestResource(exported = false)
+public interface UploadSessionRepository extends CrudRepository<UploadSession, Long>{
+
+	List<UploadSession> findByDateUpdatedBefore(Date dateUpdated);
+	
+	// the received conditions ensure that the received bytes only grow contiguously even if chunks are retried or sent concurrently
+	@Transactional
+	@Modifying
+	@Query(value = "update UploadSession set received = :end, dateUpdated = :dateUpdated where id = :id and received >= :start and received < :end")
+	int updateReceived(@Param("id") Long id, @Param("start") Long start, @Param("end") Long end, @Param("dateUpdated") Date dateUpdated);
+	
+}
@@ -4,17 +4,21 @@ import java.util.Date;
 import java.util.List;
 import java.util.Set;
 
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import edu.indiana.dlib.amppd.model.WorkflowResult;
+import edu.indiana.dlib.amppd.web.GalaxyJobState;
 
 public interface WorkflowResultRepository extends PagingAndSortingRepository<WorkflowResult, Long>, WorkflowResultRepositoryCustom {	
 		
 	List<WorkflowResult> findByPrimaryfileId(Long primaryfileId);
 	List<WorkflowResult> findByPrimaryfileIdAndIsFinalTrue(Long primaryfileId);
 	List<WorkflowResult> findByOutputId(String outputId);
+	List<WorkflowResult> findByInvocationIdAndPrimaryfileId(String invocationId, Long primaryfileId);
 	
 	Set<WorkflowResult> findByWorkflowStepAndOutputName(String workflowStep, String outputName);
 	Set<WorkflowResult> findByWorkflowStepIn(List<String> workflowSteps);
@@ -35,6 +39,16 @@ public interface WorkflowResultRepository extends PagingAndSortingRepository<Wor
 
 	List<WorkflowResult> deleteByCollectionId(Long id);
 	
+	int countByInvocationId(String invocationId);
+	
+	@Query(value = "select count(distinct r.invocationId) from WorkflowResult r where r.status in :statuses")
+	int countInvocationsByStatusIn(@Param("statuses") List<GalaxyJobState> statuses);
+	
+	@Query(value = "select r.unitId, count(distinct r.invocationId) from WorkflowResult r where r.status in :statuses group by r.unitId")
+	List<Object[]> countInvocationsByStatusInGroupByUnitId(@Param("statuses") List<GalaxyJobState> statuses);
+	int countByInvocationIdAndStatusNot(String invocationId, GalaxyJobState status);
+	int countByInvocationIdAndStatusIn(String invocationId, List<GalaxyJobState> statuses);
+
 	@Query(value = "select case when count(*)>0 then true else false end from WorkflowResult i where i.invocationId = :invocationId")
 	boolean invocationExists(@Param("invocationId") String invocationId);
 	
@@ -44,4 +58,11 @@ public interface WorkflowResultRepository extends PagingAndSortingRepository<Wor
 	@Query(value = "select d from WorkflowResult d where d.dateRefreshed < :dateObsolete")
 	List<WorkflowResult> findObsolete(Date dateObsolete);
 	
+	// results copied from other primaryfiles' outputs aren't found among the invocations in the primaryfile's history, 
+	// so they are marked refreshed along with the primaryfile, rather than left to be deleted as obsolete
+	@Transactional
+	@Modifying
+	@Query(value = "update WorkflowResult set dateRefreshed = :dateRefreshed where primaryfileId = :primaryfileId and sourceResultId is not null")
+	int updateDateRefreshedOfCopies(@Param("primaryfileId") Long primaryfileId, @Param("dateRefreshed") Date dateRefreshed);
+	
 }
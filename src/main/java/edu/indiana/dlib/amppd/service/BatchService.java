@@ -1,22 +1,49 @@
 package edu.indiana.dlib.amppd.service;
 
-import java.util.List;
-
+import edu.indiana.dlib.amppd.web.BatchIngestResponse;
 import edu.indiana.dlib.amppd.web.BatchValidationResponse;
 /**
  * Handles the processing of a Batch once it has been validated.  Processing includes creating all database
- * objects and moving files to the destination directory
+ * objects and moving files to the destination directory.
+ * Rows are processed in parallel by a bounded pool of workers, except that rows sharing an item are processed in manifest order;
+ * each row is committed on its own, so that a failed row doesn't roll back the others. The processing state of each row is recorded 
+ * as it progresses, so that an interrupted batch can be resumed without probing or moving again the files already moved.
  * @author dan
  *
  */
 public interface BatchService {
 	/**
 	 * Takes in the result of a batch validation to create primary files, supplements, and also move files 
-	 * to their destination directory
+	 * to their destination directory, and waits until all rows are processed.
 	 * 
 	 * @param batchValidation
 	 * @param username
 	 * @return
 	 */
 	BatchValidationResponse processBatch(BatchValidationResponse batchValidation, String username);
+
+	/**
+	 * Takes in the result of a batch validation and processes the batch in the background.
+	 * If validation failed, nothing is processed, and the response status is FAILED.
+	 * @param batchValidation the result of the batch validation
+	 * @param username the user submitting the batch 
+	 * @return BatchIngestResponse containing the batch ID, which can be used to inquire the progress of the batch 
+	 */
+	BatchIngestResponse processBatchAsync(BatchValidationResponse batchValidation, String username);
+	
+	/**
+	 * Get the progress of the given batch processed in the background; the progress is kept for batchProgressMinutes after the batch completes.
+	 * @param batchId ID of the given batch
+	 * @return BatchIngestResponse containing the progress of the batch
+	 */
+	BatchIngestResponse getBatchProgress(Long batchId);
+	
+	/**
+	 * Resume processing the given batch in the background, e.g. after it was interrupted by a server restart: 
+	 * only the rows not committed yet, including those failed, are processed, and files already moved into storage are reused as they are.
+	 * @param batchId ID of the given batch
+	 * @param username the user resuming the batch
+	 * @return BatchIngestResponse containing the progress of the resumed rows
+	 */
+	BatchIngestResponse resumeBatch(Long batchId, String username);
 }
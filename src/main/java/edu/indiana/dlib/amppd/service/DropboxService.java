@@ -4,6 +4,7 @@ import java.nio.file.Path;
 
 import edu.indiana.dlib.amppd.model.Collection;
 import edu.indiana.dlib.amppd.model.Unit;
+import edu.indiana.dlib.amppd.util.DropboxSnapshot;
 
 /**
  * Service for operations related to dropbox, including creating, updating, deleting dropbox sub-directories.
@@ -98,5 +99,14 @@ public interface DropboxService {
 	 */
 	public void createCollectionSubdirs();
 	
+	/**
+	 * Get the snapshot of all files under the dropbox sub-directory for the given unit and collection names, listed in one pass.
+	 * If the dropbox is watched, the snapshot is reused until the sub-directory changes.
+	 * @param unitName name of the unit
+	 * @param collectionName name of the collection
+	 * @return the snapshot of the dropbox sub-directory, not present if the sub-directory doesn't exist
+	 */
+	public DropboxSnapshot getSnapshot(String unitName, String collectionName);
+	
 	// TODO more methods can be added to handle update/delete dropbox subdirs as needed later.
 }
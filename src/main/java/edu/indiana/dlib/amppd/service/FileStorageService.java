@@ -1,12 +1,14 @@
 package edu.indiana.dlib.amppd.service;
 
 import java.nio.file.Path;
+import java.security.MessageDigest;
 
 import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
 
 import edu.indiana.dlib.amppd.model.Asset;
 import edu.indiana.dlib.amppd.model.Dataentity;
+import edu.indiana.dlib.amppd.model.StoredContent;
 import edu.indiana.dlib.amppd.model.Supplement.SupplementType;
 
 /**
@@ -46,6 +48,16 @@ public interface FileStorageService {
 	 */
 	public Asset uploadAsset(Asset asset, MultipartFile file);
 	
+	/**
+	 * Upload the given media file already in storage, such as one assembled from uploaded chunks, for the given asset, 
+	 * by moving it into place without copying; and persist the updated asset to DB.
+	 * @param asset the given asset
+	 * @param file path of the media file to be uploaded
+	 * @param originalFilename original filename of the media file
+	 * @return the asset with media file uploaded
+	 */
+	public Asset uploadAsset(Asset asset, Path file, String originalFilename);
+	
 	/**
 	 * Move the media sub-directory (if exists) of the given dataentity, and update its parent to the given parent, in case they are different.
 	 * @param dataentity the given dataentity
@@ -108,13 +120,56 @@ public interface FileStorageService {
 	public Path delete(String pathname);
 	
 	/**
-	 * Link a file from the source to the destination by creating a hard link and then deleting the original file.  
+	 * Move a file from the source to the destination by creating a hard link and then deleting the original file;
+	 * if hard link is not possible, by renaming the file; and if the source and destination are on different file systems, 
+	 * by copying the file in the bounded copy pool and then deleting the original file.
 	 * @param sourcePath Source file path
 	 * @param targetPath Destination file path
 	 * @return the destination file path
 	 */
 	public Path linkFile(Path sourcePath, Path targetPath);
 	
+	/**
+	 * Same as linkFile(Path, Path), except that the content of the file is also fed to the given digest as it's moved:
+	 * while being copied if it's copied, otherwise read once from the destination after it's linked or renamed.
+	 * @param sourcePath Source file path
+	 * @param targetPath Destination file path
+	 * @param digest the given digest, or null if the file needs not be hashed
+	 * @return the destination file path
+	 */
+	public Path linkFile(Path sourcePath, Path targetPath, MessageDigest digest);
+	
+	/**
+	 * Copy a file from the source to the destination, possibly on a different file system, without passing the content through user space;
+	 * the copy is synced to disk and verified before it appears at the destination, and the original file is kept.
+	 * @param sourcePath Source file path
+	 * @param targetPath Destination file path
+	 * @return the destination file path
+	 */
+	public Path copyFile(Path sourcePath, Path targetPath);
+	
+	/**
+	 * Compute the SHA-256 of the content of the given file.
+	 * @param path path of the given file
+	 * @return the SHA-256 in hex
+	 */
+	public String hashFile(Path path);
+	
+	/**
+	 * If content deduplication is enabled, store the media file of the given asset, with its SHA-256 populated, once in the content-addressed store:
+	 * if identical content has been stored before, replace the file with a hard link to the stored content; otherwise add the file to the store.
+	 * @param asset the given asset
+	 * @return the stored content of the asset, or null if deduplication is disabled or not possible
+	 */
+	public StoredContent linkContent(Asset asset);
+	
+	/**
+	 * Get the content stored in the content-addressed store for the media file of the given asset, if content deduplication is enabled.
+	 * @param asset the given asset
+	 * @return the stored content of the asset, or null if deduplication is disabled or the content is not stored
+	 */
+	public StoredContent getStoredContent(Asset asset);
+	
 	/**
 	 * Read all content from the given text file to a string using UTF-8 encoding.
 	 * @param pathame pathname of the given file relative to amppd root
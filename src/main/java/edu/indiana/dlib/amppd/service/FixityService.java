@@ -0,0 +1,28 @@
+package edu.indiana.dlib.amppd.service;
+
+import edu.indiana.dlib.amppd.model.Asset;
+
+/**
+ * Service to audit the fixity of the media files of assets in storage, by re-hashing them and comparing against the SHA-256 
+ * recorded when they were stored, in order to detect bit rot, truncated copies or missing files.
+ * @author yingfeng
+ *
+ */
+public interface FixityService {
+
+	/**
+	 * Verify the media file of the given asset against its recorded SHA-256 and record the result; 
+	 * or if the asset has no SHA-256 yet, i.e. it was stored before hashing was introduced, record the computed one as its baseline.
+	 * @param asset the given asset
+	 * @return false if the file is missing or doesn't match the recorded SHA-256, true otherwise
+	 */
+	public boolean verifyFixity(Asset asset);
+	
+	/**
+	 * Audit a round of assets in parallel with bounded I/O bandwidth: the assets without a SHA-256 first, 
+	 * then those least recently verified, up to the configured max number of assets per round.
+	 * @return the number of assets which failed the fixity check
+	 */
+	public int auditFixity();
+	
+}
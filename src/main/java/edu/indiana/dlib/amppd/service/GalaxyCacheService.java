@@ -0,0 +1,38 @@
+package edu.indiana.dlib.amppd.service;
+
+/**
+ * Service providing a read-through cache for Galaxy objects that never change once they reach a terminal state,
+ * i.e. datasets in ok, error or deleted state, and invocations with all outputs in such states.
+ * @author yingfeng
+ *
+ */
+public interface GalaxyCacheService {
+
+	/**
+	 * Wrap the given Galaxy client so that lookups of immutable objects are served from the cache;
+	 * currently WorkflowsClient.showInvocation and HistoriesClient.showDataset are cached, while HistoriesClient.updateDataset
+	 * evicts the updated dataset; all other calls are passed through to the given client.
+	 * @param client the given Galaxy client
+	 * @param type the interface of the client
+	 * @return the wrapped client
+	 */
+	public <T> T wrapClient(T client, Class<T> type);
+	
+	/**
+	 * Evict the given dataset from the cache.
+	 * @param datasetId ID of the given dataset
+	 */
+	public void evictDataset(String datasetId);
+
+	/**
+	 * Evict the given invocation from the cache.
+	 * @param invocationId ID of the given invocation
+	 */
+	public void evictInvocation(String invocationId);
+
+	/**
+	 * Clear all cached objects, in memory and on disk.
+	 */
+	public void clear();
+
+}
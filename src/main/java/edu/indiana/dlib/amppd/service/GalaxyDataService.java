@@ -1,5 +1,7 @@
 package edu.indiana.dlib.amppd.service;
 
+import java.util.List;
+
 import com.github.jmchilton.blend4j.galaxy.HistoriesClient;
 import com.github.jmchilton.blend4j.galaxy.LibrariesClient;
 import com.github.jmchilton.blend4j.galaxy.beans.GalaxyObject;
@@ -45,6 +47,24 @@ public interface GalaxyDataService {
 	 */
 	public History getHistory(String name);
 
+	/**
+	 * Rename the given history in Galaxy to the given name.
+	 * @param historyId ID of the given history
+	 * @param name the new name for the history
+	 * @throws GalaxyNotFoundException if the history doesn't exist in Galaxy
+	 * @throws GalaxyDataException if the history can't be renamed for any other reason
+	 */
+	public void renameHistory(String historyId, String name);
+	
+	/**
+	 * Copy the given history dataset into the given history without copying the physical file, which results in a new dataset 
+	 * in the target history sharing the same file as the source.
+	 * @param datasetId ID of the given source dataset
+	 * @param historyId ID of the given target history
+	 * @return ID of the new dataset created in the target history
+	 */
+	public String copyDatasetToHistory(String datasetId, String historyId);
+	
 //	/**
 //	 * Create output history for the given primaryfile, if not existing yet.
 //	 * @param ID of the the given primaryfile.
@@ -67,4 +87,19 @@ public interface GalaxyDataService {
 	 */
 	public GalaxyObject uploadFileToGalaxy(String filePath);
 	
+	/**
+	 * Upload multiple files from AMP file system to a Galaxy data library in one request without copying the physical files. 
+	 * @param filePaths the paths of the source files to be uploaded
+	 * @param libraryName the name of the target library to upload files to  
+	 * @return list of GalaxyObjects containing the ID and URL of the datasets created for the uploaded files, in the same order as the given paths
+	 */
+	public List<GalaxyObject> uploadFilesToGalaxy(List<String> filePaths, String libraryName);
+	
+	/**
+	 * Upload multiple files from AMP file system to the shared amppd Galaxy data library in one request without copying the physical files. 
+	 * @param filePaths the paths of the source files to be uploaded
+	 * @return list of GalaxyObjects containing the ID and URL of the datasets created for the uploaded files, in the same order as the given paths
+	 */
+	public List<GalaxyObject> uploadFilesToGalaxy(List<String> filePaths);
+	
 }
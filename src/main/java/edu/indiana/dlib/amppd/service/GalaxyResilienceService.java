@@ -0,0 +1,59 @@
+package edu.indiana.dlib.amppd.service;
+
+import java.util.function.Supplier;
+
+/**
+ * Service providing the resilience layer for all calls to Galaxy: idempotent reads are retried with exponential backoff and jitter,
+ * and a circuit breaker fails all calls fast with GalaxyUnavailableException while Galaxy is down.
+ * @author yingfeng
+ *
+ */
+public interface GalaxyResilienceService {
+
+	/**
+	 * States of the circuit breaker around Galaxy calls.
+	 */
+	public enum CircuitState {
+		CLOSED,
+		OPEN,
+		HALF_OPEN,
+	}
+
+	/**
+	 * Execute the given call to Galaxy through the circuit breaker; if the call is idempotent, retry it upon connection failures
+	 * according to the retry policy of the given operation.
+	 * @param operation name of the operation, in the form of client.method, i.e. WorkflowsClient.showInvocation
+	 * @param idempotent whether the call can be safely retried
+	 * @param call the given call
+	 * @return the result of the call
+	 */
+	public <T> T execute(String operation, boolean idempotent, Supplier<T> call);
+
+	/**
+	 * Wrap the given Galaxy client so that all its calls go through the resilience layer;
+	 * calls with names starting with get, show, index, search or download are considered idempotent reads.
+	 * @param client the given Galaxy client
+	 * @param type the interface of the client
+	 * @return the wrapped client
+	 */
+	public <T> T wrapClient(T client, Class<T> type);
+
+	/**
+	 * Check whether Galaxy is considered available, i.e. the circuit breaker is not open.
+	 * @return true if calls to Galaxy are allowed
+	 */
+	public boolean isAvailable();
+
+	/**
+	 * Get the current state of the circuit breaker.
+	 * @return the circuit state
+	 */
+	public CircuitState getCircuitState();
+
+	/**
+	 * Get the number of consecutive connection failures to Galaxy since the last successful call.
+	 * @return the number of failures
+	 */
+	public int getConsecutiveFailures();
+
+}
@@ -0,0 +1,36 @@
+package edu.indiana.dlib.amppd.service;
+
+import edu.indiana.dlib.amppd.model.Primaryfile;
+
+/**
+ * Service to maintain a pool of Galaxy histories created in advance, so that the output history for a primaryfile 
+ * can be assigned on its first AMP job submission without the overhead of creating a new history in Galaxy.
+ * @author yingfeng
+ *
+ */
+public interface HistoryPoolService {
+
+	/**
+	 * Claim an unassigned history from the pool for the given primaryfile, and rename it after the primaryfile. 
+	 * The pool will be refilled in the background if it drops below the low-water mark as a result.
+	 * @param primaryfile the given primaryfile
+	 * @return ID of the claimed history, or null if the pool is empty
+	 */
+	public String claimHistory(Primaryfile primaryfile);
+	
+	/**
+	 * Request the pool to be refilled in the background, so that it has enough unassigned histories for the given number 
+	 * of upcoming primaryfiles, in addition to the low-water mark. 
+	 * @param demand the number of histories expected to be claimed soon
+	 */
+	public void requestRefill(int demand);
+	
+	/**
+	 * Create new histories in Galaxy and add them to the pool, until the number of unassigned histories 
+	 * reaches the low-water mark plus the given demand.
+	 * @param demand the number of histories expected to be claimed soon
+	 * @return the number of histories created
+	 */
+	public int refillPool(int demand);
+	
+}
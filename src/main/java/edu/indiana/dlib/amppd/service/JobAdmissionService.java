@@ -0,0 +1,32 @@
+package edu.indiana.dlib.amppd.service;
+
+import edu.indiana.dlib.amppd.web.JobAdmissionResponse;
+
+/**
+ * Service for admission control of AMP jobs: it keeps the amount of work in flight on Galaxy under a configurable ceiling,
+ * so that queued jobs are only released to Galaxy as capacity frees up, instead of flooding Galaxy all at once.
+ * @author yingfeng
+ *
+ */
+public interface JobAdmissionService {
+
+	/**
+	 * Get the number of AMP jobs currently in flight, i.e. invocations with outputs scheduled or in progress,
+	 * plus the number of jobs queued in Galaxy if so configured.
+	 * @return the number of jobs in flight
+	 */
+	public int getInFlightJobs();
+	
+	/**
+	 * Get the number of new AMP jobs that can be admitted without exceeding the in-flight ceiling.
+	 * @return the number of jobs that can be admitted, Integer.MAX_VALUE if admission control is disabled
+	 */
+	public int getAvailableCapacity();
+	
+	/**
+	 * Get the current admission status, including the ceiling, the jobs in flight, and the jobs held in the queue.
+	 * @return JobAdmissionResponse containing the admission status
+	 */
+	public JobAdmissionResponse getAdmissionStatus();
+	
+}
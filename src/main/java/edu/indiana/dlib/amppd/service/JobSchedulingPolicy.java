@@ -0,0 +1,28 @@
+package edu.indiana.dlib.amppd.service;
+
+import java.util.List;
+
+import edu.indiana.dlib.amppd.model.JobSubmissionItem;
+
+/**
+ * Policy deciding the order in which pending AMP jobs in the job submission queue are dispatched to Galaxy.
+ * The policy in use is chosen by name via the amppd.jobSchedulingPolicy property.
+ * @author yingfeng
+ *
+ */
+public interface JobSchedulingPolicy {
+
+	/**
+	 * Get the name of the policy.
+	 * @return the policy name
+	 */
+	public String getName();
+	
+	/**
+	 * Select the next pending jobs to dispatch from the job submission queue, up to the given count.
+	 * @param count max number of jobs to select
+	 * @return the selected jobs in dispatch order
+	 */
+	public List<JobSubmissionItem> selectPendingJobs(int count);
+	
+}
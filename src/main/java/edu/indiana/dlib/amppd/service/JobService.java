@@ -2,6 +2,7 @@ package edu.indiana.dlib.amppd.service;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import org.springframework.web.multipart.MultipartFile;
 
@@ -13,6 +14,7 @@ import com.github.jmchilton.blend4j.galaxy.beans.WorkflowDetails;
 
 import edu.indiana.dlib.amppd.model.Primaryfile;
 import edu.indiana.dlib.amppd.web.CreateJobResponse;
+import edu.indiana.dlib.amppd.web.InputCsvRow;
 
 
 /**
@@ -33,6 +35,15 @@ public interface JobService {
 	 */
 	public HistoriesClient getHistoriesClient();
 	
+	/**
+	 * Register the media files of the given primaryfiles in the shared Galaxy data library, in batches of the configured size, 
+	 * skipping those already registered, and save the resulting dataset IDs into the primaryfiles. 
+	 * Failure on a batch is logged without exception, as the primaryfiles in it will be registered individually upon job submission.
+	 * @param primaryfiles the given primaryfiles
+	 * @return the number of primaryfiles successfully registered
+	 */
+	public int uploadPrimaryfilesToGalaxy(List<Primaryfile> primaryfiles);
+	
 	/**
 	 * Get needed job context for HMGMs when running the given workflow against the given primaryfile.
 	 * @param workflowDetails the given workflow
@@ -56,6 +67,16 @@ public interface JobService {
 	 */
 	public List<Long[]> parseInputCsv(MultipartFile inputCsv);		
 	
+	/**
+	 * Parse the given input CSV file row by row without loading the whole file into memory, and feed the parsed rows 
+	 * to the given consumer in chunks of the given size; invalid rows are fed along with their errors instead of failing the whole file.
+	 * @param inputCsv the given input CSV file
+	 * @param chunkSize max number of rows in each chunk
+	 * @param consumer the given consumer of the row chunks
+	 * @return the total number of rows parsed, excluding the header
+	 */
+	public int parseInputCsv(MultipartFile inputCsv, int chunkSize, Consumer<List<InputCsvRow>> consumer);
+	
 	/**
 	 * Create an AMP job to invoke the given workflow in Galaxy on the given primaryfile, along with the given parameters.
 	 * @param workflowId ID of the given workflow
@@ -0,0 +1,84 @@
+package edu.indiana.dlib.amppd.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import edu.indiana.dlib.amppd.web.JobSubmissionResponse;
+
+
+/**
+ * Service for submitting AMP jobs asynchronously: a batch of jobs is persisted into the job submission queue
+ * and its ID returned immediately; the jobs are then submitted to Galaxy in the background by a pool of workers,
+ * and the progress of the batch can be inquired at any time with the submission ID.
+ * @author yingfeng
+ *
+ */
+public interface JobSubmissionService {
+
+	/**
+	 * Queue AMP jobs to invoke the given workflow in Galaxy on the given primaryfiles, along with the given parameters.
+	 * @param workflowId ID of the given workflow
+	 * @param primaryfileIds IDs of the given primaryfiles
+	 * @param parameters the dynamic parameters to use for the steps in the workflow as a map {stepId: {paramName; paramValue}}
+	 * @return JobSubmissionResponse containing the submission ID and initial status of the queued jobs
+	 */
+	public JobSubmissionResponse submitJobs(String workflowId, Long[] primaryfileIds, Map<String, Map<String, String>> parameters);
+	
+	/**
+	 * Queue a bundle of AMP jobs, one for each primaryfile included in the given bundle, to invoke the given workflow in Galaxy, with the given step parameters.
+	 * @param workflowId the ID of the specified workflow 
+	 * @param bundleId the ID of the specified bundle
+	 * @param parameters the dynamic parameters to use for the steps in the workflow as a map {stepId: {paramName; paramValue}}
+	 * @return JobSubmissionResponse containing the submission ID and initial status of the queued jobs
+	 */
+	public JobSubmissionResponse submitJobBundle(String workflowId, Long bundleId, Map<String, Map<String, String>> parameters);
+	
+	/**
+	 * Queue AMP jobs, one for each row of WorkflowResult outputs specified in the given list of arrays, to invoke the given workflow in
+	 * Galaxy along with the given parameters, including their associated primaryfile as the first input if the given indicator is true. 
+	 * @param workflowId ID of the given workflow
+	 * @param resultIdss list of arrays of WorkflowResult IDs of the given outputs
+	 * @param parameters the dynamic parameters to use for the steps in the workflow as a map {stepId: {paramName; paramValue}}
+	 * @param includePrimaryfile if true include the primaryfile as the first input for each job
+	 * @return JobSubmissionResponse containing the submission ID and initial status of the queued jobs
+	 */
+	public JobSubmissionResponse submitJobs(String workflowId, List<Long[]> resultIdss, Map<String, Map<String, String>> parameters, Boolean includePrimaryfile);
+
+	/**
+	 * Queue AMP jobs, one for each row of primaryfile and outputs specified in the given inputCsv, to invoke the given workflow in
+	 * Galaxy along with the given parameters, including their associated primaryfile as the first input if the given indicator is true. 
+	 * The CSV is streamed into the queue in chunks; invalid rows are queued as failed jobs with their parsing errors.
+	 * @param workflowId ID of the given workflow
+	 * @param inputCsv CSV file each row specifying the primaryfile and previous outputs to use as workflow inputs
+	 * @param parameters the dynamic parameters to use for the steps in the workflow as a map {stepId: {paramName; paramValue}}
+	 * @param includePrimaryfile if true include the primaryfile as the first input for each job
+	 * @return JobSubmissionResponse containing the submission ID and initial status of the queued jobs
+	 */
+	public JobSubmissionResponse submitJobs(String workflowId, MultipartFile inputCsv, Map<String, Map<String, String>> parameters, Boolean includePrimaryfile);
+	
+	/**
+	 * Run the given submission unless the current user has made a submission with the same client supplied idempotency key 
+	 * within the configured idempotency window, in which case the existing submission is returned instead.
+	 * @param idempotencyKey the given idempotency key, if empty the submission always runs
+	 * @param submit the given submission
+	 * @return JobSubmissionResponse of the new or existing submission
+	 */
+	public JobSubmissionResponse submitIdempotent(String idempotencyKey, Supplier<JobSubmissionResponse> submit);
+	
+	/**
+	 * Get the progress of the given job submission, including the CreateJobResponse of each job processed so far.
+	 * @param submissionId ID of the given job submission
+	 * @return JobSubmissionResponse containing the status of the submission and its jobs
+	 */
+	public JobSubmissionResponse getJobSubmission(Long submissionId);
+	
+	/**
+	 * Hand pending jobs in the queue, in the order of submission, to the job submission workers, up to the number of idle workers.
+	 * @return the number of jobs dispatched 
+	 */
+	public int dispatchJobs();
+	
+}
@@ -117,4 +117,11 @@ public interface MediaService {
 	 */
 	public ItemSearchResponse findItemOrFile(String keyword, String mediaType);
 	
+	/**
+	 * Get the media duration of the given asset in seconds, from its mediaInfo.
+	 * @param asset the given asset
+	 * @return the media duration, or null if not available in mediaInfo
+	 */
+	public Double getMediaDuration(Asset asset);
+	
 }
@@ -0,0 +1,67 @@
+package edu.indiana.dlib.amppd.service;
+
+import java.io.InputStream;
+
+import edu.indiana.dlib.amppd.model.Asset;
+import edu.indiana.dlib.amppd.model.Supplement.SupplementType;
+import edu.indiana.dlib.amppd.model.UploadSession;
+
+/**
+ * Service for chunked, resumable upload of media files for assets: the client creates an upload session, sends the file 
+ * in byte ranges, which are written in place into storage as they arrive, and finalizes the session once all bytes are received. 
+ * An interrupted upload can be resumed by querying the session for the bytes received and sending the rest.
+ * @author yingfeng
+ *
+ */
+public interface UploadService {
+
+	/**
+	 * Create an upload session for the given media file of the given asset.
+	 * @param assetId ID of the given asset
+	 * @param assetType SupplementType of the given asset
+	 * @param originalFilename original filename of the media file
+	 * @param size size in bytes of the media file
+	 * @return the upload session created
+	 */
+	public UploadSession createSession(Long assetId, SupplementType assetType, String originalFilename, Long size);
+	
+	/**
+	 * Get the upload session with the given ID.
+	 * @param id ID of the given upload session
+	 * @return the upload session found
+	 */
+	public UploadSession getSession(Long id);
+	
+	/**
+	 * Write the given chunk of the media file for the given upload session at the given start position. 
+	 * The chunk may overlap with the bytes already received, but must not leave a gap after them.
+	 * If the chunk is interrupted, the bytes written so far are still counted as received. 
+	 * @param id ID of the given upload session
+	 * @param start position of the first byte of the chunk in the media file
+	 * @param length number of bytes in the chunk
+	 * @param content stream of the chunk content
+	 * @return the updated upload session
+	 */
+	public UploadSession writeChunk(Long id, Long start, Long length, InputStream content);
+	
+	/**
+	 * Finalize the given upload session once all bytes of the media file are received: move the uploaded file into place 
+	 * for the asset, preprocess the asset, and delete the session.
+	 * @param id ID of the given upload session
+	 * @return the asset with media file uploaded
+	 */
+	public Asset finalizeSession(Long id);
+	
+	/**
+	 * Delete the given upload session along with its uploaded file.
+	 * @param id ID of the given upload session
+	 */
+	public void deleteSession(Long id);
+	
+	/**
+	 * Delete the upload sessions which haven't received any chunk for longer than the configured expiration time.
+	 * @return the number of upload sessions deleted
+	 */
+	public int cleanupSessions();
+	
+}
@@ -6,6 +6,8 @@ import com.github.jmchilton.blend4j.galaxy.WorkflowsClient;
 import com.github.jmchilton.blend4j.galaxy.beans.Workflow;
 import com.github.jmchilton.blend4j.galaxy.beans.WorkflowDetails;
 
+import edu.indiana.dlib.amppd.util.CacheHelper.CacheStats;
+
 /**
  * Service for workflow related functionalities.
  * @author yingfeng
@@ -79,4 +81,16 @@ public interface WorkflowService {
 	 */
 	public Integer workflowNamesCacheSize();
 	
+	/**
+	 * Invalidate the cached workflow names, details and lists for the given workflow, or for all workflows if workflowId is null, 
+	 * so that the next request will retrieve them from Galaxy; cached tool names are also invalidated in the latter case.
+	 * @param workflowId ID of the given workflow, or null for all workflows
+	 */
+	public void invalidateWorkflowCaches(String workflowId);
+	
+	/**
+	 * Returns the statistics of the workflow related caches, including size and hit rate. 
+	 */
+	public List<CacheStats> getWorkflowCacheStats();
+	
 }
@@ -4,19 +4,37 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import edu.indiana.dlib.amppd.config.AmppdPropertyConfig;
+import edu.indiana.dlib.amppd.exception.StorageException;
+import edu.indiana.dlib.amppd.model.Asset;
 import edu.indiana.dlib.amppd.model.Batch;
 import edu.indiana.dlib.amppd.model.BatchFile;
+import edu.indiana.dlib.amppd.model.BatchFile.ProcessingState;
 import edu.indiana.dlib.amppd.model.BatchSupplementFile;
 import edu.indiana.dlib.amppd.model.Collection;
 import edu.indiana.dlib.amppd.model.CollectionSupplement;
@@ -26,6 +44,9 @@ import edu.indiana.dlib.amppd.model.Primaryfile;
 import edu.indiana.dlib.amppd.model.PrimaryfileSupplement;
 import edu.indiana.dlib.amppd.model.Supplement.SupplementType;
 import edu.indiana.dlib.amppd.model.Unit;
+import edu.indiana.dlib.amppd.repository.BatchFileRepository;
+import edu.indiana.dlib.amppd.repository.BatchRepository;
+import edu.indiana.dlib.amppd.repository.BatchSupplementFileRepository;
 import edu.indiana.dlib.amppd.repository.CollectionRepository;
 import edu.indiana.dlib.amppd.repository.CollectionSupplementRepository;
 import edu.indiana.dlib.amppd.repository.ItemRepository;
@@ -36,6 +57,9 @@ import edu.indiana.dlib.amppd.service.BatchService;
 import edu.indiana.dlib.amppd.service.DropboxService;
 import edu.indiana.dlib.amppd.service.FileStorageService;
 import edu.indiana.dlib.amppd.service.PreprocessService;
+import edu.indiana.dlib.amppd.util.ContentHash;
+import edu.indiana.dlib.amppd.web.BatchIngestResponse;
+import edu.indiana.dlib.amppd.web.BatchIngestState;
 import edu.indiana.dlib.amppd.web.BatchValidationResponse;
 import lombok.extern.slf4j.Slf4j;
 
@@ -48,6 +72,12 @@ public class BatchServiceImpl implements BatchService {
 	@Autowired
 	private AmppdPropertyConfig propertyConfig;
 	
+	@Autowired
+	private BatchRepository batchRepository;
+	@Autowired
+	private BatchFileRepository batchFileRepository;
+	@Autowired
+	private BatchSupplementFileRepository batchSupplementFileRepository;
 	@Autowired
 	private ItemRepository itemRepository;
 	@Autowired
@@ -67,32 +97,318 @@ public class BatchServiceImpl implements BatchService {
 	@Autowired
 	private PreprocessService preprocessService;
 	
-	int currRow;
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+	
+	// pool of workers processing batch rows, shared by all batches
+	private ThreadPoolTaskExecutor executor;
+	
+	// each row is processed in its own transaction
+	private TransactionTemplate transactionTemplate;
+	
+	// progress of batches processed in the background by batch ID, completed ones are evicted after batchProgressMinutes
+	private Map<Long, BatchIngestResponse> progresses = new ConcurrentHashMap<Long, BatchIngestResponse>();
+	
+	/**
+	 * Initialize the BatchServiceImpl bean: start the batch ingest workers.
+	 */
+	@PostConstruct
+	public void init() {
+		executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(propertyConfig.getBatchIngestThreads());
+		executor.setMaxPoolSize(propertyConfig.getBatchIngestThreads());
+		executor.setThreadNamePrefix("batch-ingest-");
+		executor.initialize();
+		
+		transactionTemplate = new TransactionTemplate(transactionManager);
+		transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		
+		log.info("Initialized batch ingest workers with pool size " + propertyConfig.getBatchIngestThreads());
+	}
+	
+	/**
+	 * Shut down the batch ingest workers.
+	 */
+	@PreDestroy
+	public void destroy() {
+		executor.shutdown();
+	}
 	
-	@Transactional	
+	/**
+	 * @see edu.indiana.dlib.amppd.service.BatchService.processBatch(BatchValidationResponse, String)
+	 */
 	public BatchValidationResponse processBatch(BatchValidationResponse batchValidation, String username) {
-		List<String> errors = new ArrayList<String>();
 		Batch batch = batchValidation.getBatch();
-
-		for(BatchFile batchFile : batch.getBatchFiles()) {
-			errors = new ArrayList<String>();
-			currRow = batchFile.getRowNum();
+		BatchIngestResponse progress = createProgress(batchValidation);
+		
+		for (Future<?> future : submitBatch(batch, username, progress)) {
 			try {
-				createItem(batch.getUnit(), batchFile, username, errors);
-				if(errors.size()>0) {
-					batchValidation.addProcessingErrors(errors);
-				}
+				future.get();
 			}
-			catch(Exception ex) {
-				log.error("BATCH PROCESSING : Batch processing exception: " + ex);
-				batchValidation.addProcessingError("Error processing file #" + batchFile.getRowNum() + ". " + ex.toString());
+			catch (ExecutionException | InterruptedException e) {
+				log.error("BATCH PROCESSING : Batch processing exception: " + e);
+				batchValidation.addProcessingError("Error processing batch " + batch.getId() + ". " + e.toString());
 			}
 		}	
 		
 		log.info("BATCH PROCESSING : Check if there were processing errors");	
+		batchValidation.addProcessingErrors(progress.getProcessingErrors());
 		return batchValidation;
 	}
 	
+	/**
+	 * @see edu.indiana.dlib.amppd.service.BatchService.processBatchAsync(BatchValidationResponse, String)
+	 */
+	public BatchIngestResponse processBatchAsync(BatchValidationResponse batchValidation, String username) {
+		BatchIngestResponse progress = createProgress(batchValidation);
+		
+		// nothing to process if validation failed, in which case the batch is not saved either
+		if (!batchValidation.isSuccess() || batchValidation.getBatch() == null || batchValidation.getBatch().getId() == null) {
+			progress.setStatus(BatchIngestState.FAILED);
+			progress.setDateCompleted(new Date());
+			return progress;
+		}
+		
+		// register the progress unless the batch is still being processed, atomically so that concurrent resumes can't both process its rows
+		evictProgresses();
+		BatchIngestResponse registered = progresses.compute(progress.getBatchId(), (batchId, previous) -> isActive(previous) ? previous : progress);
+		if (registered != progress) {
+			throw new StorageException("Batch <" + progress.getBatchId() + "> is still being processed!");
+		}
+		submitBatch(batchValidation.getBatch(), username, progress);
+		log.info("BATCH PROCESSING : Queued batch " + progress.getBatchId() + " with " + progress.getTotal() + " rows for processing in the background");
+		return getBatchProgress(progress.getBatchId());
+	}
+	
+	/**
+	 * @see edu.indiana.dlib.amppd.service.BatchService.getBatchProgress(Long)
+	 */
+	public BatchIngestResponse getBatchProgress(Long batchId) {
+		evictProgresses();
+		BatchIngestResponse progress = progresses.get(batchId);
+		if (progress == null) {
+			throw new StorageException("Batch <" + batchId + "> is not being processed in the background!");
+		}
+		synchronized (progress) {
+			return progress.copy();
+		}
+	}
+	
+	/**
+	 * @see edu.indiana.dlib.amppd.service.BatchService.resumeBatch(Long, String)
+	 */
+	public BatchIngestResponse resumeBatch(Long batchId, String username) {
+		Batch batch = batchRepository.findById(batchId).orElseThrow(() -> new StorageException("Batch <" + batchId + "> does not exist!"));
+		
+		// continue with the rows not committed yet, in manifest order;
+		// the batch can't be resumed while its rows are still being processed, which is checked when its progress is registered
+		List<BatchFile> batchFiles = new ArrayList<BatchFile>();
+		for (BatchFile batchFile : batchFileRepository.findByBatchIdFetchSupplements(batchId)) {
+			if (batchFile.getProcessingState() != ProcessingState.COMMITTED) {
+				batchFiles.add(batchFile);
+			}
+		}
+		batch.setBatchFiles(batchFiles);
+		
+		BatchValidationResponse batchValidation = new BatchValidationResponse();
+		batchValidation.setBatch(batch);
+		batchValidation.setSuccess(true);
+		log.info("BATCH PROCESSING : Resuming batch " + batchId + " from " + batchFiles.size() + " rows not committed yet");
+		return processBatchAsync(batchValidation, username);
+	}
+	
+	/*
+	 * Check whether the given batch progress, if not null, is pending or being processed.
+	 */
+	private boolean isActive(BatchIngestResponse progress) {
+		if (progress == null) {
+			return false;
+		}
+		synchronized (progress) {
+			return progress.getStatus() == BatchIngestState.PENDING || progress.getStatus() == BatchIngestState.PROCESSING;
+		}
+	}
+	
+	/*
+	 * Evict the progresses of the batches completed more than batchProgressMinutes ago, so they don't accumulate in memory.
+	 */
+	private void evictProgresses() {
+		long expiry = System.currentTimeMillis() - propertyConfig.getBatchProgressMinutes() * 60000L;
+		progresses.values().removeIf(progress -> {
+			synchronized (progress) {
+				return progress.getDateCompleted() != null && progress.getDateCompleted().getTime() < expiry;
+			}
+		});
+	}
+	
+	/*
+	 * Create the progress tracker for the given batch validation result.
+	 */
+	private BatchIngestResponse createProgress(BatchValidationResponse batchValidation) {
+		BatchIngestResponse progress = new BatchIngestResponse();
+		Batch batch = batchValidation.getBatch();
+		if (batch != null) {
+			progress.setBatchId(batch.getId());
+			progress.setManifestFilename(batch.getManifestFilename());
+			progress.setTotal(getBatchFiles(batch).size());
+		}
+		progress.setStatus(BatchIngestState.PENDING);
+		progress.setDateSubmitted(new Date());
+		progress.setValidationErrors(new ArrayList<String>(batchValidation.getValidationErrors()));
+		return progress;
+	}
+	
+	/*
+	 * Get the rows of the given batch; large manifests are saved in chunks during validation without keeping their rows in the batch,
+	 * in which case the rows are loaded from the DB.
+	 */
+	private List<BatchFile> getBatchFiles(Batch batch) {
+		if (batch.getBatchFiles() == null) {
+			batch.setBatchFiles(batch.getId() == null ? new ArrayList<BatchFile>() : batchFileRepository.findByBatchIdFetchSupplements(batch.getId()));
+		}
+		return batch.getBatchFiles();
+	}
+	
+	/*
+	 * Submit the rows of the given batch to the workers, one task per lane of rows sharing an item, and return the futures of the tasks.
+	 */
+	private List<Future<?>> submitBatch(Batch batch, String username, BatchIngestResponse progress) {
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		List<List<BatchFile>> lanes = getLanes(getBatchFiles(batch));
+		AtomicInteger remaining = new AtomicInteger(lanes.size());
+		
+		if (lanes.isEmpty()) {
+			completeProgress(progress);
+		}
+		
+		for (List<BatchFile> lane : lanes) {
+			futures.add(executor.submit(() -> {
+				try {
+					for (BatchFile batchFile : lane) {
+						processRow(batch.getUnit(), batchFile, username, progress);
+					}
+				}
+				finally {
+					if (remaining.decrementAndGet() == 0) {
+						completeProgress(progress);
+					}
+				}
+			}));
+		}
+		
+		return futures;
+	}
+	
+	/*
+	 * Split the given rows into lanes, each containing the rows, in manifest order, that may create or update the same item, 
+	 * i.e. with the same item name or the same external ID in the same collection; rows in different lanes can be processed in parallel.
+	 * Collection supplement rows all have a blank item name, so those of the same collection are in the same lane.
+	 */
+	private List<List<BatchFile>> getLanes(List<BatchFile> batchFiles) {
+		if (batchFiles == null) {
+			return new ArrayList<List<BatchFile>>();
+		}
+		
+		// union rows sharing any item key, where each key maps to the first row having it
+		int[] parents = new int[batchFiles.size()];
+		Map<String, Integer> keyRows = new HashMap<String, Integer>();
+		for (int i = 0; i < batchFiles.size(); i++) {
+			parents[i] = i;
+			BatchFile batchFile = batchFiles.get(i);
+			String collectionKey = batchFile.getCollection() == null ? batchFile.getCollectionName() : batchFile.getCollection().getId().toString();
+			List<String> keys = new ArrayList<String>();
+			keys.add(collectionKey + ":name:" + batchFile.getItemName());
+			if (StringUtils.isNotBlank(batchFile.getExternalId())) {
+				keys.add(collectionKey + ":external:" + batchFile.getExternalId());
+			}
+			for (String key : keys) {
+				Integer row = keyRows.putIfAbsent(key, i);
+				if (row != null) {
+					parents[findRoot(parents, i)] = findRoot(parents, row);
+				}
+			}
+		}
+		
+		// group rows by root in manifest order
+		Map<Integer, List<BatchFile>> lanes = new LinkedHashMap<Integer, List<BatchFile>>();
+		for (int i = 0; i < batchFiles.size(); i++) {
+			lanes.computeIfAbsent(findRoot(parents, i), k -> new ArrayList<BatchFile>()).add(batchFiles.get(i));
+		}
+		return new ArrayList<List<BatchFile>>(lanes.values());
+	}
+	
+	/*
+	 * Find the root of the given row among the unioned rows.
+	 */
+	private int findRoot(int[] parents, int i) {
+		while (parents[i] != i) {
+			parents[i] = parents[parents[i]];
+			i = parents[i];
+		}
+		return i;
+	}
+	
+	/*
+	 * Process the given row in its own transaction and record the outcome in the given progress.
+	 */
+	private void processRow(Unit unit, BatchFile batchFile, String username, BatchIngestResponse progress) {
+		synchronized (progress) {
+			progress.setStatus(BatchIngestState.PROCESSING);
+		}
+		
+		List<String> errors = new ArrayList<String>();
+		try {
+			transactionTemplate.execute(status -> {
+				try {
+					createItem(unit, batchFile, username, errors);
+					
+					// the row is recorded as committed along with the objects created for it
+					if (errors.isEmpty()) {
+						batchFileRepository.updateProcessingState(batchFile.getId(), ProcessingState.COMMITTED);
+					}
+				}
+				catch(Exception ex) {
+					// roll back only this row, the rest of the batch continues
+					status.setRollbackOnly();
+					log.error("BATCH PROCESSING : Batch processing exception: " + ex);
+					errors.add("Error processing file #" + batchFile.getRowNum() + ". " + ex.toString());
+				}
+				return null;
+			});
+		}
+		catch(Exception ex) {
+			// failure to commit the row
+			log.error("BATCH PROCESSING : Batch processing exception: " + ex);
+			errors.add("Error processing file #" + batchFile.getRowNum() + ". " + ex.toString());
+		}
+		
+		if (!errors.isEmpty()) {
+			saveProcessingState(batchFile, ProcessingState.FAILED);
+		}
+		
+		synchronized (progress) {
+			progress.setProcessed(progress.getProcessed() + 1);
+			if (errors.isEmpty()) {
+				progress.setSucceeded(progress.getSucceeded() + 1);
+			}
+			else {
+				progress.setFailed(progress.getFailed() + 1);
+				progress.getProcessingErrors().addAll(errors);
+			}
+		}
+	}
+	
+	/*
+	 * Mark the given batch progress as complete.
+	 */
+	private void completeProgress(BatchIngestResponse progress) {
+		synchronized (progress) {
+			progress.setStatus(BatchIngestState.COMPLETE);
+			progress.setDateCompleted(new Date());
+			log.info("BATCH PROCESSING : Completed batch " + progress.getBatchId() + ": " + progress.getSucceeded() + " rows succeeded, " + progress.getFailed() + " rows failed");
+		}
+	}
+	
 	/*
 	 * Create an item with the appropriate primaryfiles, supplemental files, etc.
 	 */
@@ -163,24 +479,10 @@ public class BatchServiceImpl implements BatchService {
 				primaryfilesSet.add(primaryfile);
 				item.setPrimaryfiles(primaryfilesSet);
 				
-				// set primaryfile pathname to the absolute pathname of the file to be ingested,
-				// so that pre-process can resolve the path correctly without using media's root dir 
-				Path existingFile = Paths.get(sourceDir, batchFile.getPrimaryfileFilename());	
-				primaryfile.setPathname(existingFile.toString());
-				
-				// preprocess (and save if success) the primaryfile before moving files, i.e. while it's still in dropbox, 
-				// so that in case preprocess fails, no primaryfile will be created with empty media info
-				preprocessService.preprocess(primaryfile, true);
-				
+				// preprocess the primaryfile and move it from the dropbox to amppd file storage
 				log.debug("BATCH PROCESSING : Move the primaryfile from the dropbox to amppd file storage");
 				String targetDir = fileStorageService.getDirPathname(item);	
-		    	primaryfile.setPathname(fileStorageService.getFilePathname(primaryfile));		    	
-				
-				// Move the file from the dropbox to amppd file storage:
-				// need to use originalFilename instead of batchFile.getPrimaryfileFilename() for source filename,
-				// as the latter might have been converted from flac to wav during preprocess,
-				// while the former would have been updated to the generated wav file in this case
-				Path targetPath = moveFile(sourceDir, targetDir, primaryfile.getOriginalFilename(), primaryfile.getPathname());
+				Path targetPath = ingestFile(primaryfile, batchFile, null, sourceDir, targetDir, batchFile.getPrimaryfileFilename());
 				
 				// save primaryfile after files are moved
 		    	primaryfile = primaryfileRepository.save(primaryfile);
@@ -204,21 +506,8 @@ public class BatchServiceImpl implements BatchService {
 			PrimaryfileSupplement supplement = createPrimaryfileSupplement(primaryfile, batchSupplementFile, username, errors);
 			
 			if(errors.size()==0 && supplement != null) {
-				// set supplement pathname to the absolute pathname of the file to be ingested,
-				// so that pre-process can resolve the path correctly without using media's root dir 
-				Path existingFile = Paths.get(sourceDir, batchSupplementFile.getSupplementFilename());	
-				supplement.setPathname(existingFile.toString());
-				
-				// preprocess (and save if success) the supplement before moving files, i.e. while it's still in dropbox
-				// so that in case preprocess fails, no supplement will be created with empty media info
-				preprocessService.preprocess(supplement, true);
-				
-				// Move the file from the dropbox to amppd file storage:
-				// need to use originalFilename instead of batchFile.getPrimaryfileFilename() for source filename,
-				// as the latter might have been converted from flac to wav during preprocess,
-				// while the former would have been updated to the generated wav file in this case
-				supplement.setPathname(fileStorageService.getFilePathname(supplement));				
-				Path targetSuppPath = moveFile(sourceDir, targetDir, supplement.getOriginalFilename(), supplement.getPathname());
+				// preprocess the supplement and move it from the dropbox to amppd file storage
+				Path targetSuppPath = ingestFile(supplement, batchSupplementFile.getBatchFile(), batchSupplementFile, sourceDir, targetDir, batchSupplementFile.getSupplementFilename());
 
 				// save supplement after files are moved
 				primaryfileSupplementRepository.save(supplement);
@@ -242,21 +531,8 @@ public class BatchServiceImpl implements BatchService {
 			CollectionSupplement supplement = getCollectionSupplement(collection, batchSupplementFile, username, errors);
 			
 			if(supplement != null && errors.size()==0) {
-				// set supplement pathname to the absolute pathname of the file to be ingested,
-				// so that pre-process can resolve the path correctly without using media's root dir 
-				Path existingFile = Paths.get(sourceDir, batchSupplementFile.getSupplementFilename());	
-				supplement.setPathname(existingFile.toString());
-				
-				// preprocess (and save if success) the supplement before moving files, i.e. while it's still in dropbox
-				// so that in case preprocess fails, no supplement will be created with empty media info
-				preprocessService.preprocess(supplement, true);
-				
-				// Move the file from the dropbox to amppd file storage:
-				// need to use originalFilename instead of batchFile.getPrimaryfileFilename() for source filename,
-				// as the latter might have been converted from flac to wav during preprocess,
-				// while the former would have been updated to the generated wav file in this case
-				supplement.setPathname(fileStorageService.getFilePathname(supplement));				
-				Path targetSuppPath = moveFile(sourceDir, targetDir, supplement.getOriginalFilename(), supplement.getPathname());
+				// preprocess the supplement and move it from the dropbox to amppd file storage
+				Path targetSuppPath = ingestFile(supplement, batchSupplementFile.getBatchFile(), batchSupplementFile, sourceDir, targetDir, batchSupplementFile.getSupplementFilename());
 
 				// save supplement after files are moved
 				collectionSupplementRepository.save(supplement);
@@ -279,21 +555,8 @@ public class BatchServiceImpl implements BatchService {
 			ItemSupplement supplement = getItemSupplement(item, batchSupplementFile, username, errors);
 			
 			if(supplement != null && errors.size()==0) {
-				// set supplement pathname to the absolute pathname of the file to be ingested,
-				// so that pre-process can resolve the path correctly without using media's root dir 
-				Path existingFile = Paths.get(sourceDir, batchSupplementFile.getSupplementFilename());	
-				supplement.setPathname(existingFile.toString());
-				
-				// preprocess (and save if success) the supplement before moving files, i.e. while it's still in dropbox
-				// so that in case preprocess fails, no supplement will be created with empty media info
-				preprocessService.preprocess(supplement, true);
-				
-				// Move the file from the dropbox to amppd file storage:
-				// need to use originalFilename instead of batchFile.getPrimaryfileFilename() for source filename,
-				// as the latter might have been converted from flac to wav during preprocess,
-				// while the former would have been updated to the generated wav file in this case
-				supplement.setPathname(fileStorageService.getFilePathname(supplement));				
-				Path targetSuppPath = moveFile(sourceDir, targetDir, supplement.getOriginalFilename(), supplement.getPathname());
+				// preprocess the supplement and move it from the dropbox to amppd file storage
+				Path targetSuppPath = ingestFile(supplement, batchSupplementFile.getBatchFile(), batchSupplementFile, sourceDir, targetDir, batchSupplementFile.getSupplementFilename());
 
 				// save supplement after files are moved
 				itemSupplementRepository.save(supplement);
@@ -317,7 +580,7 @@ public class BatchServiceImpl implements BatchService {
 			for(ItemSupplement is : item.getSupplements()) {
 				if(is.getName() != null && is.getName().contentEquals(batchSupplementFile.getSupplementName())) {
 					log.error("BATCH PROCESSING : item supplement name already exists");
-					errors.add("ERROR: In row "+currRow+" item supplement name already exists");
+					errors.add("ERROR: In row "+batchSupplementFile.getBatchFile().getRowNum()+" item supplement name already exists");
 					itemSupplement = is;
 					break;
 				}
@@ -351,7 +614,7 @@ public class BatchServiceImpl implements BatchService {
 			for(CollectionSupplement cs : collection.getSupplements()) {
 				if(cs.getName() != null && cs.getName().contentEquals(batchSupplementFile.getSupplementName())) {
 					log.error("BATCH PROCESSING : collection supplement name already exists");
-					errors.add("ERROR: In row "+ currRow +" collection supplement name already exists"); 
+					errors.add("ERROR: In row "+ batchSupplementFile.getBatchFile().getRowNum() +" collection supplement name already exists"); 
 					collectionSupplement = cs;
 					break;
 				}
@@ -386,7 +649,7 @@ public class BatchServiceImpl implements BatchService {
 			for(PrimaryfileSupplement ps : primaryfile.getSupplements()) {
 				if(ps.getName() != null && ps.getName().contentEquals(batchSupplementFile.getSupplementFilename())) {
 					log.error("BATCH PROCESSING : primaryfile supplement name already exists");
-					errors.add("ERROR: In row "+currRow+" primaryfile supplement name already exists");
+					errors.add("ERROR: In row "+batchSupplementFile.getBatchFile().getRowNum()+" primaryfile supplement name already exists");
 					primaryfileSupplement = ps;
 					break;
 				}
@@ -425,7 +688,7 @@ public class BatchServiceImpl implements BatchService {
 					// report duplicate error only if ingesting primaryfile, but not if only ingesting a supplement for it
 					if (!batchFile.getPrimaryfileFilename().isBlank()) {
 						log.error("BATCH PROCESSING : primaryfile name already exists");
-						errors.add("ERROR: In row "+currRow+" primaryfile name already exists");
+						errors.add("ERROR: In row "+batchFile.getRowNum()+" primaryfile name already exists");
 					}		
 					found = true;
 					primaryfile = p;
@@ -439,7 +702,7 @@ public class BatchServiceImpl implements BatchService {
 			// if this is ingesting primaryfile supplment only, we need an existing primaryfile
 			if (batchFile.getSupplementType()==SupplementType.PRIMARYFILE && batchFile.getPrimaryfileFilename().isBlank()) {
 				log.error("BATCH PROCESSING : primaryfile does't exist for ingesting primaryfile supplment only");
-				errors.add("ERROR: In row "+currRow+" primaryfile does't exist for ingesting primaryfile supplment only");				
+				errors.add("ERROR: In row "+batchFile.getRowNum()+" primaryfile does't exist for ingesting primaryfile supplment only");				
 			}
 			// otherwise create a new Primaryfile	
 			else {					
@@ -517,9 +780,109 @@ public class BatchServiceImpl implements BatchService {
 	}
 	
 	/*
-	 * Move the file using hard links
+	 * Preprocess the media file of the given asset in the dropbox and move it to amppd file storage, recording each step in the processing state
+	 * of the given row; or if the file was already moved by a previous run of the batch, restore the asset from it without probing or moving it again.
+	 * The given batch supplement file is null if the asset is the primaryfile of the row. Return the path of the file in storage.
+	 */
+	private Path ingestFile(Asset asset, BatchFile batchFile, BatchSupplementFile batchSupplementFile, String sourceDir, String targetDir, String filename) throws IOException {
+		String storedPathname = batchSupplementFile == null ? batchFile.getStoredPathname() : batchSupplementFile.getStoredPathname();
+		String storedOriginalFilename = batchSupplementFile == null ? batchFile.getStoredOriginalFilename() : batchSupplementFile.getStoredOriginalFilename();
+		
+		if (storedPathname != null) {
+			// media info was retrieved when the file was preprocessed, and its json file has been moved along with the media file
+			asset.setOriginalFilename(storedOriginalFilename);
+			asset.setPathname(storedPathname);
+			asset.setMediaInfo(fileStorageService.readTextFile(preprocessService.getMediaInfoJsonPath(storedPathname)));
+			setHash(asset, Paths.get(propertyConfig.getFileStorageRoot(), storedPathname));
+			fileStorageService.linkContent(asset);
+			log.info("BATCH PROCESSING : Reusing file " + storedPathname + " moved to amppd file storage by a previous run of batch row " + batchFile.getRowNum());
+			return Paths.get(propertyConfig.getFileStorageRoot(), storedPathname);
+		}
+		
+		// set asset pathname to the absolute pathname of the file to be ingested,
+		// so that pre-process can resolve the path correctly without using media's root dir 
+		Path existingFile = Paths.get(sourceDir, filename);	
+		asset.setPathname(existingFile.toString());
+		
+		// preprocess (and save if success) the asset before moving files, i.e. while it's still in dropbox,
+		// so that in case preprocess fails, no asset will be created with empty media info
+		preprocessService.preprocess(asset, true);
+		saveProcessingState(batchFile, ProcessingState.PREPROCESSED);
+		
+		// Move the file from the dropbox to amppd file storage:
+		// need to use originalFilename instead of the filename in the manifest for source filename,
+		// as the latter might have been converted from flac to wav during preprocess,
+		// while the former would have been updated to the generated wav file in this case;
+		// unless already hashed during preprocess, the file is hashed as it's moved, i.e. while being copied across file systems,
+		// or read once from storage if hard linked or renamed, so that its content is never read twice
+		MessageDigest digest = asset.getSha256() == null ? ContentHash.newDigest() : null;
+		asset.setPathname(fileStorageService.getFilePathname(asset));				
+		Path targetPath = moveFile(sourceDir, targetDir, asset.getOriginalFilename(), asset.getPathname(), digest);
+		if (digest != null) {
+			setHash(asset, ContentHash.toHex(digest));
+		}
+		saveStoredFile(batchFile, batchSupplementFile, asset);
+		fileStorageService.linkContent(asset);
+		return targetPath;
+	}
+	
+	/*
+	 * Set the SHA-256 of the given file to the given asset, unless already computed when a flac file was converted during preprocess.
+	 */
+	private void setHash(Asset asset, Path path) {
+		if (asset.getSha256() == null) {
+			setHash(asset, fileStorageService.hashFile(path));
+		}
+	}
+	
+	/*
+	 * Set the given SHA-256 to the given asset as its fixity baseline.
+	 */
+	private void setHash(Asset asset, String sha256) {
+		asset.setSha256(sha256);
+		asset.setFixityChecked(new Date());
+		asset.setFixityFailed(false);
+	}
+	
+	/*
+	 * Record the given processing state of the given row in its own transaction, so that it's kept even if the row's transaction is rolled back.
+	 */
+	private void saveProcessingState(BatchFile batchFile, ProcessingState state) {
+		batchFile.setProcessingState(state);
+		transactionTemplate.execute(status -> batchFileRepository.updateProcessingState(batchFile.getId(), state));
+	}
+	
+	/*
+	 * Record in its own transaction that the media file of the given asset has been moved out of the dropbox for the given row,
+	 * so that it's reused instead of being looked up in the dropbox when the row is processed again.
+	 */
+	private void saveStoredFile(BatchFile batchFile, BatchSupplementFile batchSupplementFile, Asset asset) {
+		batchFile.setProcessingState(ProcessingState.MOVED);
+		if (batchSupplementFile == null) {
+			batchFile.setStoredOriginalFilename(asset.getOriginalFilename());
+			batchFile.setStoredPathname(asset.getPathname());
+		}
+		else {
+			batchSupplementFile.setStoredOriginalFilename(asset.getOriginalFilename());
+			batchSupplementFile.setStoredPathname(asset.getPathname());
+		}
+		
+		transactionTemplate.execute(status -> {
+			if (batchSupplementFile == null) {
+				batchFileRepository.updateStoredFile(batchFile.getId(), ProcessingState.MOVED, asset.getOriginalFilename(), asset.getPathname());
+			}
+			else {
+				batchFileRepository.updateProcessingState(batchFile.getId(), ProcessingState.MOVED);
+				batchSupplementFileRepository.updateStoredFile(batchSupplementFile.getId(), asset.getOriginalFilename(), asset.getPathname());
+			}
+			return null;
+		});
+	}
+	
+	/*
+	 * Move the file using hard links, feeding its content to the given digest if not null
 	 */
-	private Path moveFile(String sourceDir, String targetDir, String sourceFilename, String targetFilename) throws IOException {		
+	private Path moveFile(String sourceDir, String targetDir, String sourceFilename, String targetFilename, MessageDigest digest) throws IOException {		
 		// Check to see if the folder exists on the file system.  If not, create it.
 		if(!Files.exists(Paths.get(propertyConfig.getFileStorageRoot(), targetDir))){
 			Files.createDirectories(Paths.get(propertyConfig.getFileStorageRoot(), targetDir));
@@ -534,7 +897,7 @@ public class BatchServiceImpl implements BatchService {
 		
 		// Move/link the files
 		// Note: if the original file is .flac, the converted .wav file will be moved instead
-		fileStorageService.linkFile(existingFile, newLink);
+		fileStorageService.linkFile(existingFile, newLink, digest);
 		fileStorageService.linkFile(Paths.get(existingJson), Paths.get(newJson));
 		
 		return newLink;
@@ -569,7 +932,7 @@ public class BatchServiceImpl implements BatchService {
 	
 	// TODO 
 	// The duplicate name checking logic in all the get*** methods in this class should be done with DB Repository.
-	// Note that the processBatch loop check error on each row, but continue on following rows, 
+	// Note that each row is committed on its own, and processBatch continues on following rows upon errors, 
 	// which means a batch can be partially ingested.
 	
 	
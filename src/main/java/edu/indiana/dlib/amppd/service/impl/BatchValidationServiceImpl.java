@@ -2,33 +2,34 @@ package edu.indiana.dlib.amppd.service.impl;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
-import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.opencsv.CSVReader;
 
+import edu.indiana.dlib.amppd.config.AmppdPropertyConfig;
 import edu.indiana.dlib.amppd.model.AmpUser;
 import edu.indiana.dlib.amppd.model.Batch;
 import edu.indiana.dlib.amppd.model.BatchFile;
 import edu.indiana.dlib.amppd.model.BatchSupplementFile;
 import edu.indiana.dlib.amppd.model.Collection;
-import edu.indiana.dlib.amppd.model.Item;
-import edu.indiana.dlib.amppd.model.Primaryfile;
 import edu.indiana.dlib.amppd.model.Supplement;
 import edu.indiana.dlib.amppd.model.Supplement.SupplementType;
 import edu.indiana.dlib.amppd.model.Unit;
@@ -36,9 +37,11 @@ import edu.indiana.dlib.amppd.repository.BatchFileRepository;
 import edu.indiana.dlib.amppd.repository.BatchRepository;
 import edu.indiana.dlib.amppd.repository.BatchSupplementFileRepository;
 import edu.indiana.dlib.amppd.repository.CollectionRepository;
+import edu.indiana.dlib.amppd.repository.PrimaryfileRepository;
 import edu.indiana.dlib.amppd.repository.UnitRepository;
 import edu.indiana.dlib.amppd.service.BatchValidationService;
 import edu.indiana.dlib.amppd.service.DropboxService;
+import edu.indiana.dlib.amppd.util.DropboxSnapshot;
 import edu.indiana.dlib.amppd.web.BatchValidationResponse;
 
 /**
@@ -64,32 +67,225 @@ public class BatchValidationServiceImpl implements BatchValidationService {
 
 	@Autowired
 	private DropboxService dropboxService;
+	
+	@Autowired
+    private PrimaryfileRepository primaryfileRepository;
+	
+	@Autowired
+	private AmppdPropertyConfig propertyConfig;
+	
+	@Autowired
+	private EntityManager entityManager;
+	
+	/*
+	 * Lookup indexes built once per manifest, so that validation takes linear time in the number of rows,
+	 * instead of querying the DB or rescanning the whole batch for each row. 
+	 */
+	private class ManifestIndex {
+		// collections by name, null if not found
+		private Map<String, Collection> collections = new HashMap<String, Collection>();
+		
+		// names of existing primaryfiles by collection ID, loaded on first use with one projection query per collection
+		private Map<Long, Set<String>> primaryfileNames = new HashMap<Long, Set<String>>();
+		
+		// snapshots of the dropbox subdirectories by unit and collection name, each listed once
+		private Map<List<String>, DropboxSnapshot> dropboxes = new HashMap<List<String>, DropboxSnapshot>();
+		
+		// [primaryfile name, item external ID] of rows read so far, for rows with an external ID
+		private Set<List<String>> primaryfilesByExternalId = new HashSet<List<String>>();
+		
+		// [primaryfile name, item name] of rows read so far
+		private Set<List<String>> primaryfilesByItemName = new HashSet<List<String>>();
+		
+		// [primaryfile name, item name] of rows read so far, for rows without an external ID
+		private Set<List<String>> primaryfilesByItemNameOnly = new HashSet<List<String>>();
+		
+		// supplement names of rows read so far, for rows with a supplement type
+		private Set<String> supplementNames = new HashSet<String>();
+		
+		private Collection getCollection(String name) {
+			return collections.computeIfAbsent(name, k -> {
+				List<Collection> found = collectionRepository.findByName(k);
+				return found != null && found.size() > 0 ? found.get(0) : null;
+			});
+		}
+		
+		private boolean primaryfileExists(Collection collection, String name) {
+			return primaryfileNames.computeIfAbsent(collection.getId(), k -> new HashSet<String>(primaryfileRepository.findNamesByCollectionId(k))).contains(name);
+		}
+		
+		private DropboxSnapshot getDropbox(String unit, String collection) {
+			return dropboxes.computeIfAbsent(List.of(unit, collection), k -> dropboxService.getSnapshot(unit, collection));
+		}
+		
+		private boolean dropboxExists(String unit, String collection) {
+			return getDropbox(unit, collection).isPresent();
+		}
+		
+		private boolean fileExists(String unit, String collection, String filename) {
+			return getDropbox(unit, collection).exists(filename);
+		}
+		
+		private long getFileSize(String unit, String collection, String filename) {
+			return getDropbox(unit, collection).getSize(filename);
+		}
+		
+		/*
+		 * Index the given row for duplicate detection against the rows following it.
+		 */
+		private void addRow(BatchFile row) {
+			// rows too short to be parsed have no primaryfile name
+			if(row.getPrimaryfileName() != null) {
+				if(!row.getExternalId().isEmpty()) {
+					primaryfilesByExternalId.add(List.of(row.getPrimaryfileName(), row.getExternalId()));
+				}
+				else {
+					primaryfilesByItemNameOnly.add(List.of(row.getPrimaryfileName(), row.getItemName()));
+				}
+				primaryfilesByItemName.add(List.of(row.getPrimaryfileName(), row.getItemName()));
+			}
+			
+			if(row.getSupplementType() != null) {
+				for(BatchSupplementFile supplement : row.getBatchSupplementFiles()) {
+					if(supplement.getSupplementName() != null) {
+						supplementNames.add(supplement.getSupplementName());
+					}
+				}
+			}
+		}
+		
+		/*
+		 * Check whether a previous row in the batch has the same primaryfile name in the same item, where items are matched
+		 * by external ID if both rows have one, or by item name otherwise; this is the same rule as Batch.isDuplicatePrimaryfileName.
+		 */
+		private boolean isDuplicatePrimaryfileName(BatchFile batchFile) {
+			String name = batchFile.getPrimaryfileName();
+			if(batchFile.getExternalId().isEmpty()) {
+				return primaryfilesByItemName.contains(List.of(name, batchFile.getItemName()));
+			}
+			return primaryfilesByExternalId.contains(List.of(name, batchFile.getExternalId())) 
+					|| primaryfilesByItemNameOnly.contains(List.of(name, batchFile.getItemName()));
+		}
+		
+		/*
+		 * Check whether a supplement in a previous row, or a previous supplement in the same row, has the same name as the given one.
+		 */
+		private boolean isDuplicateSupplementName(BatchFile batchFile, BatchSupplementFile supplement) {
+			if(supplementNames.contains(supplement.getSupplementName())) {
+				return true;
+			}
+			if(batchFile.getSupplementType() == null) {
+				return false;
+			}
+			for(BatchSupplementFile previous : batchFile.getBatchSupplementFiles()) {
+				if(previous == supplement) {
+					break;
+				}
+				if(supplement.getSupplementName().equals(previous.getSupplementName())) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
 
 	@Transactional	
 	public BatchValidationResponse validateBatch(String unitName, AmpUser user, MultipartFile file) {
-		BatchValidationResponse response;
-		StringBuilder textBuilder = new StringBuilder();
-		try (InputStream inputStream = file.getInputStream()) {
-		    try (Reader reader = new BufferedReader(new InputStreamReader
-		      (inputStream, Charset.forName(StandardCharsets.UTF_8.name())))) {
-		        int c = 0;
-		        while ((c = reader.read()) != -1) {
-		            textBuilder.append((char) c);
-		        }
-		    }
-		   
-		} catch (IOException e) {
-			response = new BatchValidationResponse();
+		// parse rows straight from the uploaded stream, so that the manifest is never held in memory as a whole
+		try (Reader reader = new BufferedReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
+			return validate(unitName, file.getOriginalFilename(), user, reader);
+		} 
+		catch (IOException e) {
+			BatchValidationResponse response = new BatchValidationResponse();
+			response.addError("Unable to parse CSV file");
+			return response;
+		}
+	}
+	
+	/*
+	 * Validate the CSV
+	 */
+	@Transactional	
+	public BatchValidationResponse validate(String unitName, String filename, AmpUser user, String fileContent) {
+		return validate(unitName, filename, user, new StringReader(fileContent));
+	}
+	
+	/*
+	 * Validate the CSV rows as they are read from the given reader. Valid rows are saved in chunks, each followed by clearing
+	 * the persistence context, so that memory use doesn't grow with the manifest size; once any error is found, rows are no longer kept,
+	 * and the chunks already saved are rolled back at the end. If the whole manifest fits in one chunk, the batch returned contains all 
+	 * its batch files as before; otherwise its batch files are left null and shall be retrieved from the DB.
+	 */
+	private BatchValidationResponse validate(String unitName, String filename, AmpUser user, Reader reader) {
+		BatchValidationResponse response = new BatchValidationResponse();
+		ManifestIndex index = new ManifestIndex();
+		Batch batch = createBatch(unitName, filename, user);
+		List<BatchFile> chunk = new ArrayList<BatchFile>();
+		boolean spilled = false;
+		
+		try (CSVReader csvReader = new CSVReader(reader)) {
+			// skip the header, and if we have no rows, quit now
+			String[] line = csvReader.readNext() == null ? null : csvReader.readNext();
+			if(line == null) {
+				response.addError("Invalid file. No rows supplied.");
+				return response;
+			}
+			
+			// Validate supplied unit name
+			List<String> unitErrors = validateUnit(batch.getUnit());
+	    	response.addErrors(unitErrors);
+			
+	    	// If we have an invalid unit, no point on continuing with validation
+			if(unitErrors.size()>0) {
+				return response;
+			}
+			
+			for(int rowNum = 1; line != null; rowNum++, line = csvReader.readNext()) {
+				BatchFile batchFile = createBatchFile(batch, line, rowNum, index);
+				validateRow(batch, batchFile, index, response);
+				index.addRow(batchFile);
+				
+				// once there are errors the batch won't be saved, so no need to keep the rows
+				if(response.hasErrors()) {
+					continue;
+				}
+				
+				chunk.add(batchFile);
+				if(chunk.size() >= propertyConfig.getBatchManifestChunkSize()) {
+					// flush and detach the saved rows, so that the persistence context doesn't grow with the manifest size
+					saveChunk(batch, chunk);
+					entityManager.flush();
+					entityManager.clear();
+					chunk.clear();
+					spilled = true;
+				}
+			}
+		}
+		catch (IOException e) {
 			response.addError("Unable to parse CSV file");
+		}
+		
+		if(response.hasErrors()) {
+			// discard the chunks already saved
+			if(spilled) {
+				TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+			}
 			return response;
 		}
-		return validate(unitName, file.getOriginalFilename(), user, textBuilder.toString());
+		
+		// If we have no errors, save the batch and add it to the response, along with the ingest time estimated from its size
+		saveChunk(batch, chunk);
+		response.setEstimatedIngestSeconds(response.getTotalBytes() / Math.max(1, propertyConfig.getBatchIngestBytesPerSecond()));
+		batch.setBatchFiles(spilled ? null : chunk);
+    	response.setBatch(batch);        	
+    	response.setSuccess(true);
+		return response;
 	}
 	
 	/*
-	 * Create a batch object based on the parsed lines of the CSV
+	 * Create a batch object for the manifest
 	 */
-	private Batch createBatch(String unitName, String filename, AmpUser user, List<String[]> lines) {
+	private Batch createBatch(String unitName, String filename, AmpUser user) {
 		Batch batch = new Batch();
 		batch.setManifestFilename(filename);
 		batch.setSubmitUser(user);
@@ -100,175 +296,148 @@ public class BatchValidationServiceImpl implements BatchValidationService {
 		if(units!=null && units.size()>0) {
 			batch.setUnit(units.get(0));
 		}
-		
-		// For each row in the CSV
-        for(int rowNum = 1; rowNum < lines.size(); rowNum++) {
-        	
-        	// Create a new Batch File
-        	BatchFile batchFile = new BatchFile();	
-        	batchFile.setBatch(batch);
-        	batchFile.setRowNum(rowNum);
-        	batch.addBatchFile(batchFile);
-        	
-        	String[] line = lines.get(rowNum);
-        	
-        	// If we don't have enough values in this line, try the next line
-        	if(line.length < 7) continue;
-        	
-        	// Get the collection
-        	List<Collection> collections = collectionRepository.findByName(line[0]);
-        	if(collections!=null && collections.size()>0) {
-        		batchFile.setCollection(collections.get(0));
-        	}
-        	//Get the collection name
-        	if(line[0] != null)
-        		batchFile.setCollectionName(line[0]);
-        	// Get the source and item        	
-        	batchFile.setExternalSource(line[1]);
-        	batchFile.setExternalId(line[2]);
-        	batchFile.setItemName(line[3]);
-        	batchFile.setItemDescription(line[4]);
-        	        	
-        	// Get the primaryfile info
-        	batchFile.setPrimaryfileFilename(line[5]);
-        	batchFile.setPrimaryfileName(line[6]);
-        	
-        	// Description is optional.  Verify the array is long enough before continuing
-        	if(line.length>=8) {
-        		batchFile.setPrimaryfileDescription(line[7]);
-        	}
-        	else {
-        		continue;
-        	}
-        	
-        	// Process supplements
-        	SupplementType supplementType = null;
-        	
-        	// If a supplement type is supplied, get the enum value for the textual value
-        	if(line.length>8) {
-        		supplementType = Supplement.getSupplementType(line[8]);
-        	}
-        	
-        	batchFile.setSupplementType(supplementType);
-        	
-        	// Iterate through the supplements.  There can be variable number of supplements
-        	if(line.length>9) {
-        		int supplementNum = 1;
-        		for(int c = 9; c < line.length; c++) {
-        			BatchSupplementFile supplement = new BatchSupplementFile();
-        			supplement.setBatchFile(batchFile);
-        			supplement.setSupplementNum(supplementNum);
-        			supplement.setSupplementFilename(line[c]);
-        			c++;
-        			if(c < line.length) {
-        				supplement.setSupplementName(line[c]);
-        			}
-        			c++;
-        			if(c < line.length) {
-        				supplement.setSupplementDescription(line[c]);
-        			}
-        			// If the values are blank, don't add them
-        			if(supplement.getSupplementName()!=null && supplement.getSupplementName().isBlank() && supplement.getSupplementFilename().isBlank()) continue;        	
-        			batchFile.addSupplement(supplement);
-                	supplementNum++;
-        		}
-        	}
-        }
-        return batch;
+		return batch;
 	}
 	
 	/*
-	 * Validate the CSV
+	 * Create a batch file object based on the given parsed line of the CSV
 	 */
-	public BatchValidationResponse validate(String unitName, String filename, AmpUser user, String fileContent) {
-		BatchValidationResponse response = new BatchValidationResponse();
-		
-		// Turn the string into a list of string arrays representing rows
-		List<String[]> lines = parse(fileContent);
-		
-		// If we have no rows, quit now
-		if(lines.size()<=1) {
-			response.addError("Invalid file. No rows supplied.");
-			return response;
-		}
+	private BatchFile createBatchFile(Batch batch, String[] line, int rowNum, ManifestIndex index) {
+    	// Create a new Batch File
+    	BatchFile batchFile = new BatchFile();	
+    	batchFile.setBatch(batch);
+    	batchFile.setRowNum(rowNum);
+    	
+    	// If we don't have enough values in this line, try the next line
+    	if(line.length < 7) return batchFile;
+    	
+    	// Get the collection
+    	batchFile.setCollection(index.getCollection(line[0]));
+    	//Get the collection name
+    	if(line[0] != null)
+    		batchFile.setCollectionName(line[0]);
+    	// Get the source and item        	
+    	batchFile.setExternalSource(line[1]);
+    	batchFile.setExternalId(line[2]);
+    	batchFile.setItemName(line[3]);
+    	batchFile.setItemDescription(line[4]);
+    	        	
+    	// Get the primaryfile info
+    	batchFile.setPrimaryfileFilename(line[5]);
+    	batchFile.setPrimaryfileName(line[6]);
+    	
+    	// Description is optional.  Verify the array is long enough before continuing
+    	if(line.length>=8) {
+    		batchFile.setPrimaryfileDescription(line[7]);
+    	}
+    	else {
+    		return batchFile;
+    	}
+    	
+    	// Process supplements
+    	SupplementType supplementType = null;
+    	
+    	// If a supplement type is supplied, get the enum value for the textual value
+    	if(line.length>8) {
+    		supplementType = Supplement.getSupplementType(line[8]);
+    	}
+    	
+    	batchFile.setSupplementType(supplementType);
+    	
+    	// Iterate through the supplements.  There can be variable number of supplements
+    	if(line.length>9) {
+    		int supplementNum = 1;
+    		for(int c = 9; c < line.length; c++) {
+    			BatchSupplementFile supplement = new BatchSupplementFile();
+    			supplement.setBatchFile(batchFile);
+    			supplement.setSupplementNum(supplementNum);
+    			supplement.setSupplementFilename(line[c]);
+    			c++;
+    			if(c < line.length) {
+    				supplement.setSupplementName(line[c]);
+    			}
+    			c++;
+    			if(c < line.length) {
+    				supplement.setSupplementDescription(line[c]);
+    			}
+    			// If the values are blank, don't add them
+    			if(supplement.getSupplementName()!=null && supplement.getSupplementName().isBlank() && supplement.getSupplementFilename().isBlank()) continue;        	
+    			batchFile.addSupplement(supplement);
+            	supplementNum++;
+    		}
+    	}
+    	
+        return batchFile;
+	}
+	
+	/*
+	 * Validate the given row and add the errors found to the given response
+	 */
+	private void validateRow(Batch batch, BatchFile batchFile, ManifestIndex index, BatchValidationResponse response) {
+		// Validate supplied collection name
+		List<String> collectionNameErrors = validateCollection(batch.getUnit(), batchFile.getCollection(), batchFile.getRowNum(), batchFile.getCollectionName(), index);
+    	response.addErrors(collectionNameErrors);
 
-		Batch batch = createBatch(unitName, filename, user, lines);
+    	// If we have an invalid collection, no point on continuing with validation
+		if(collectionNameErrors.size()>0) {
+			return;
+		}
 		
-		// Validate supplied unit name
-		List<String> unitErrors = validateUnit(batch.getUnit());
-    	response.addErrors(unitErrors);
+		// validate item fields
+    	List<String> itemErrors = validateItem( batchFile.getItemName(), batchFile.getSupplementType(), batchFile.getRowNum());
+    	response.addErrors(itemErrors);
+    	
+    	// validate primaryfile fields
+    	List<String> primaryfileErrors = validatePrimaryfile(batch.getUnit(), batchFile.getCollection(), batchFile.getPrimaryfileFilename(), batchFile.getPrimaryfileName(), batchFile.getSupplementType(), batchFile.getRowNum(), index);
+    	response.addErrors(primaryfileErrors);
+    	
+    	// Check for duplicate primaryfiles if ingesting primaryfile
+    	SupplementType supplementType = batchFile.getSupplementType();
+    	if(supplementType == null || (supplementType==SupplementType.PRIMARYFILE && !batchFile.getPrimaryfileFilename().isBlank())) {
+        	List<String> duplicatePrimaryfileErrors = validateUniquePrimaryfile(batchFile, index);
+        	response.addErrors(duplicatePrimaryfileErrors);
+    	}
+    	
+    	// For each supplement, validate the values and make sure there are no duplicates
+		for(BatchSupplementFile supplement : batchFile.getBatchSupplementFiles()) {
+			List<String> supplementErrors = validateSupplement(batch.getUnit(), batchFile.getCollection(),  supplement.getSupplementFilename(), supplement.getSupplementName(), batchFile.getSupplementType(), batchFile.getRowNum(), index);
+			response.addErrors(supplementErrors);
+			
+			List<String> duplicateSupplementErrors = validateUniqueSupplement(batchFile, supplement, index);
+			response.addErrors(duplicateSupplementErrors);
+		}
 		
-    	// If we have an invalid unit, no point on continuing with validation
-		if(unitErrors.size()>0) {
-			return response;
+		// Add up the size of the files to ingest, as listed in the dropbox snapshot
+		String unitName = batch.getUnit().getName();
+		String collectionName = batchFile.getCollection().getName();
+		long bytes = 0;
+		if(batchFile.getPrimaryfileFilename() != null && !batchFile.getPrimaryfileFilename().isBlank()) {
+			bytes += index.getFileSize(unitName, collectionName, batchFile.getPrimaryfileFilename());
 		}
-				
-        for(BatchFile batchFile : batch.getBatchFiles()) {        	
-    		// Validate supplied collection name
-    		List<String> collectionNameErrors = validateCollection(batch.getUnit(), batchFile.getCollection(), batchFile.getRowNum(), batchFile.getCollectionName());
-        	response.addErrors(collectionNameErrors);
-
-        	// If we have an invalid collection, no point on continuing with validation
-    		if(collectionNameErrors.size()>0) {
-    			//return response;
-    			continue;
-    		}
-    		
-    		// validate item fields
-        	List<String> itemErrors = validateItem( batchFile.getItemName(), batchFile.getSupplementType(), batchFile.getRowNum());
-        	response.addErrors(itemErrors);
-        	
-        	// validate primaryfile fields
-        	List<String> primaryfileErrors = validatePrimaryfile(batch.getUnit(), batchFile.getCollection(), batchFile.getPrimaryfileFilename(), batchFile.getPrimaryfileName(), batchFile.getSupplementType(), batchFile.getRowNum());
-        	response.addErrors(primaryfileErrors);
-        	
-        	// Check for duplicate primaryfiles if ingesting primaryfile
-        	SupplementType supplementType = batchFile.getSupplementType();
-        	if(supplementType == null || (supplementType==SupplementType.PRIMARYFILE && !batchFile.getPrimaryfileFilename().isBlank())) {
-            	List<String> duplicatePrimaryfileErrors = validateUniquePrimaryfile(batch, batchFile);
-            	response.addErrors(duplicatePrimaryfileErrors);
-        	}
-        	
-        	// For each supplement, validate the values and make sure there are no duplicates
-    		for(BatchSupplementFile supplement : batchFile.getBatchSupplementFiles()) {
-    			List<String> supplementErrors = validateSupplement(batch.getUnit(), batchFile.getCollection(),  supplement.getSupplementFilename(), supplement.getSupplementName(), batchFile.getSupplementType(), batchFile.getRowNum());
-    			response.addErrors(supplementErrors);
-    			
-    			List<String> duplicateSupplementErrors = validateUniqueSupplement(batch, batchFile, supplement);
-    			response.addErrors(duplicateSupplementErrors);
-    		}
-        }
-        
-        // If we have no errors, save the batch and add it to the response
-        if(!response.hasErrors()) {
-        	batchRepository.save(batch);
-        	batchFileRepository.saveAll(batch.getBatchFiles());
-        	
-        	for(BatchFile batchFile : batch.getBatchFiles()) {
-        		batchSupplementFileRepository.saveAll(batchFile.getBatchSupplementFiles());
-        	}
-        	
-        	response.setBatch(batch);        	
-        	response.setSuccess(true);
-        }
-        
-        return response;
+		for(BatchSupplementFile supplement : batchFile.getBatchSupplementFiles()) {
+			if(supplement.getSupplementFilename() != null && !supplement.getSupplementFilename().isBlank()) {
+				bytes += index.getFileSize(unitName, collectionName, supplement.getSupplementFilename());
+			}
+		}
+		response.setTotalBytes(response.getTotalBytes() + bytes);
 	}
 	
 	/*
-	 * Turn the string into a list of arrays representing lines
+	 * Save the batch if not saved yet, and the given batch files with their supplements. 
+	 * The records get their IDs from a pooled allocator and are inserted in JDBC batches when flushed, 
+	 * so all supplements are saved together to keep the inserts for each table consecutive.
 	 */
-	private List<String[]> parse(String csvString) {
-		List<String[]> lines = new ArrayList<String[]>();
-        CSVReader reader = null;
-        try {
-            reader = new CSVReader(new StringReader(csvString));
-            lines = reader.readAll();
-            reader.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return lines;
+	private void saveChunk(Batch batch, List<BatchFile> batchFiles) {
+		if(batch.getId() == null) {
+			batchRepository.save(batch);
+		}
+    	batchFileRepository.saveAll(batchFiles);
+    	
+    	List<BatchSupplementFile> supplements = new ArrayList<BatchSupplementFile>();
+    	for(BatchFile batchFile : batchFiles) {
+    		supplements.addAll(batchFile.getBatchSupplementFiles());
+    	}
+    	batchSupplementFileRepository.saveAll(supplements);
 	}
 	
 	/*
@@ -292,7 +461,7 @@ public class BatchValidationServiceImpl implements BatchValidationService {
 	/*
 	 * Make sure primaryfiles are unique to this file
 	 */
-	private List<String> validateUniquePrimaryfile(Batch batch, BatchFile batchFile) {
+	private List<String> validateUniquePrimaryfile(BatchFile batchFile, ManifestIndex index) {
 		List<String> errors = new ArrayList<String>();
 		
 		// check duplicate only if we are ingesting primaryfile
@@ -306,7 +475,7 @@ public class BatchValidationServiceImpl implements BatchValidationService {
 //    		errors.add(String.format("Row: %s: Duplicate primaryfile filename %s", batchFile.getRowNum(), batchFile.getPrimaryfileFilename()));
 //		}
 		
-		if(batch.isDuplicatePrimaryfileName(batchFile.getPrimaryfileName(), batchFile.getExternalId(), batchFile.getItemName(), batchFile.getRowNum())) {
+		if(index.isDuplicatePrimaryfileName(batchFile)) {
     		errors.add(String.format("Row: %s: Duplicate primaryfile name %s", batchFile.getRowNum(), batchFile.getPrimaryfileName()));
 		}
 		
@@ -316,21 +485,17 @@ public class BatchValidationServiceImpl implements BatchValidationService {
 	/*
 	 * Make sure supplements are unique to this file
 	 */
-	private List<String> validateUniqueSupplement(Batch batch, BatchFile batchFile, BatchSupplementFile batchSupplementFile) {
+	private List<String> validateUniqueSupplement(BatchFile batchFile, BatchSupplementFile batchSupplementFile, ManifestIndex index) {
 		List<String> errors = new ArrayList<String>();
-		for(BatchFile testRow : batch.getBatchFiles()) {
-			if(testRow.getSupplementType() == null) continue;
-			
-			// below rule should not be used, we should allow multiple supplements share same physical filename
-			// especially, these files may even come from different collection directories
-//			if(testRow.containsSupplementFilename(batchSupplementFile.getSupplementFilename(), batchFile.getRowNum(), batchSupplementFile.getSupplementNum())){
-//	    		errors.add(String.format("Row: %s: Duplicate supplement file %s", batchFile.getRowNum(), batchSupplementFile.getSupplementFilename()));
-//			}
-			
-			if(testRow.containsSupplementName(batchSupplementFile.getSupplementName(), batchFile.getRowNum(), batchSupplementFile.getSupplementNum())){
-	    		errors.add(String.format("Row: %s: Duplicate supplement name %s", batchFile.getRowNum(), batchSupplementFile.getSupplementName()));
-			}
-			if(errors.size()>0) break;
+		
+		// below rule should not be used, we should allow multiple supplements share same physical filename
+		// especially, these files may even come from different collection directories
+//		if(testRow.containsSupplementFilename(batchSupplementFile.getSupplementFilename(), batchFile.getRowNum(), batchSupplementFile.getSupplementNum())){
+//    		errors.add(String.format("Row: %s: Duplicate supplement file %s", batchFile.getRowNum(), batchSupplementFile.getSupplementFilename()));
+//		}
+		
+		if(index.isDuplicateSupplementName(batchFile, batchSupplementFile)){
+    		errors.add(String.format("Row: %s: Duplicate supplement name %s", batchFile.getRowNum(), batchSupplementFile.getSupplementName()));
 		}
 		
     	return errors;
@@ -339,7 +504,7 @@ public class BatchValidationServiceImpl implements BatchValidationService {
 	/*
 	 * Validate the primaryfile values
 	 */
-	private List<String> validatePrimaryfile(Unit unit, Collection collection, String primaryfileFilename, String primaryfileName, SupplementType supplementType, int lineNum){
+	private List<String> validatePrimaryfile(Unit unit, Collection collection, String primaryfileFilename, String primaryfileName, SupplementType supplementType, int lineNum, ManifestIndex index){
 		List<String> errors = new ArrayList<String>();
 
 		// If no supplement is supplied, i.e. this is for primaryfile, make sure primaryfile values are supplied
@@ -349,11 +514,11 @@ public class BatchValidationServiceImpl implements BatchValidationService {
 			}
 
 			// Check to see if file exists in database
-			boolean primaryfileExists = primaryfileExistsInCollection(collection, primaryfileName);
+			boolean primaryfileExists = index.primaryfileExists(collection, primaryfileName);
 
 			// If not - new file - Make sure it exists on file system
 			if(!primaryfileExists) {
-				if(!primaryfileFilename.isBlank() && !fileExists(unit.getName(), collection.getName(), primaryfileFilename)) {
+				if(!primaryfileFilename.isBlank() && !index.fileExists(unit.getName(), collection.getName(), primaryfileFilename)) {
 					errors.add(String.format("Row: %s: Primaryfile %s does not exist in the dropbox", lineNum, primaryfileFilename));
 				}
 			}			
@@ -375,32 +540,10 @@ public class BatchValidationServiceImpl implements BatchValidationService {
 		return errors;
 	}
 	
-	/*
-	 * Check to see if this primaryfile exists in a collection already
-	 */
-	// TODO this search should be done with PrimaryfileRepository, more efficient than java code
-	private boolean primaryfileExistsInCollection(Collection collection, String name) {
-		if(collection.getItems() == null) {
-			return false;
-		}
-		
-		for(Item item : collection.getItems()) {
-			if(item.getPrimaryfiles()==null) {
-				continue;
-			}
-			for(Primaryfile primaryfile : item.getPrimaryfiles()) {
-				if(primaryfile.getName().equals(name)) {
-					return true;
-				}
-			}
-		}
-		return false;
-	}
-	
 	/*
 	 * Validate the supplement
 	 */
-	private List<String> validateSupplement(Unit unit, Collection collection, String supplementFilename, String supplementName, SupplementType supplementType, int lineNum){
+	private List<String> validateSupplement(Unit unit, Collection collection, String supplementFilename, String supplementName, SupplementType supplementType, int lineNum, ManifestIndex index){
 		List<String> errors = new ArrayList<String>();
 		if(supplementType==null && supplementFilename.isBlank() && supplementName.isBlank()) {
 			return errors;
@@ -421,17 +564,17 @@ public class BatchValidationServiceImpl implements BatchValidationService {
 				errors.add(String.format("Row: %s: Supplement filename not supplied for supplement type %s", lineNum, supplementType));
 			}
 			else if(supplementType==SupplementType.PRIMARYFILE) {
-				if(!fileExists(unit.getName(), collection.getName(), supplementFilename)) {
+				if(!index.fileExists(unit.getName(), collection.getName(), supplementFilename)) {
 		    		errors.add(String.format("Row: %s: Primaryfile Supplement file %s does not exist in the dropbox", lineNum, supplementFilename));
 				}				
 			}
 			else if(supplementType==SupplementType.ITEM){
-				if(!fileExists(unit.getName(), collection.getName(), supplementFilename)) {
+				if(!index.fileExists(unit.getName(), collection.getName(), supplementFilename)) {
 		    		errors.add(String.format("Row: %s: Item Supplement file %s does not exist in the dropbox", lineNum, supplementFilename));
 				}
 			}
 			else if(supplementType==SupplementType.COLLECTION){
-				if(!fileExists(unit.getName(), collection.getName(), supplementFilename)) {
+				if(!index.fileExists(unit.getName(), collection.getName(), supplementFilename)) {
 			    	errors.add(String.format("Row: %s: Collection Supplement file %s does not exist in the dropbox", lineNum, supplementFilename));
 				}
 			}
@@ -459,7 +602,7 @@ public class BatchValidationServiceImpl implements BatchValidationService {
 	/*
 	 * Validate the collection
 	 */
-	private List<String> validateCollection(Unit unit, Collection collection, int lineNum, String collectionNameFromManifest){
+	private List<String> validateCollection(Unit unit, Collection collection, int lineNum, String collectionNameFromManifest, ManifestIndex index){
 		List<String> errors = new ArrayList<String>();
 		String collectionName = collection!=null ? collection.getName() : "";
 		if(collectionNameFromManifest == null || collectionNameFromManifest.isBlank()) {
@@ -468,10 +611,10 @@ public class BatchValidationServiceImpl implements BatchValidationService {
 		else if((collectionName==null || collectionName.isBlank()) ) {
 			errors.add(String.format("Row %s: Collection does not exist", lineNum));
  		}
-		else if(!collectionExists(collectionName)) {
+		else if(index.getCollection(collectionName) == null) {
 			errors.add(String.format("Row %s: Invalid collection name supplied %s", lineNum, collectionNameFromManifest));
 		}
-		else if(!dropBoxExists(unit.getName(), collectionName)) {
+		else if(!index.dropboxExists(unit.getName(), collectionName)) {
 			errors.add(String.format("Row %s: Invalid drop box %s", lineNum, collection.getName()));
 		}
 		else if(!collection.getActive()) {
@@ -480,27 +623,6 @@ public class BatchValidationServiceImpl implements BatchValidationService {
 		return errors;
 	}
 
-	/*
-	 * Verify the drop box exists fot this collection
-	 */
-	private boolean dropBoxExists(String unit, String collection) {
-		Path path = getCollectionPath(unit, collection);
-		return Files.exists(path);
-	}
-	/*
-	 * Verify the file exists in the drop box
-	 */
-	private boolean fileExists(String unit, String collection, String filename) {
-		Path collectionPath = getCollectionPath(unit, collection);
-		Path path = Paths.get(collectionPath.toString(), filename);
-		return Files.exists(path);
-	}
-	/*
-	 * Get the collection path in the drop box
-	 */
-	private Path getCollectionPath(String unit, String collection) {
-		return dropboxService.getSubDirPath(unit, collection);
-	}
 	/*
 	 * Verify the unit exists in the database 
 	 */
@@ -508,12 +630,4 @@ public class BatchValidationServiceImpl implements BatchValidationService {
 		List<Unit> units = unitRepository.findByName(unitName);
 		return units!=null && units.size()>0;
 	}
-	/*
-	 * Verify the collection exists in the database
-	 */
-	private boolean collectionExists(String collectionName) {
-		List<Collection> collections = collectionRepository.findByName(collectionName);
-		return collections!=null && collections.size()>0;
-	}
-	
 }
\ No newline at end of file
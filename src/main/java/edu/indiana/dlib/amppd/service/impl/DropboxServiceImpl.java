@@ -1,13 +1,29 @@
 package edu.indiana.dlib.amppd.service.impl;
 
 import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
 import org.apache.commons.codec.binary.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -21,6 +37,7 @@ import edu.indiana.dlib.amppd.repository.CollectionRepository;
 import edu.indiana.dlib.amppd.repository.UnitRepository;
 import edu.indiana.dlib.amppd.service.DataentityService;
 import edu.indiana.dlib.amppd.service.DropboxService;
+import edu.indiana.dlib.amppd.util.DropboxSnapshot;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -46,6 +63,58 @@ public class DropboxServiceImpl implements DropboxService {
 	
 	@Autowired
 	private AmppdPropertyConfig config; 	
+	
+	// watcher of the snapshot sub-directories, null if the dropbox is not watched
+	private WatchService watchService;
+	
+	// snapshot sub-directory by key of each watched directory under it
+	private Map<WatchKey, Path> watchKeys = new ConcurrentHashMap<WatchKey, Path>();
+	
+	// snapshots by sub-directory, kept while the dropbox is watched and removed once the sub-directory changes
+	private Map<Path, DropboxSnapshot> snapshots = new ConcurrentHashMap<Path, DropboxSnapshot>();
+	
+	// time in nanoseconds of the last change detected by sub-directory
+	private Map<Path, Long> changes = new ConcurrentHashMap<Path, Long>();
+	
+	/**
+	 * Initialize the DropboxServiceImpl bean: start watching the dropbox if enabled.
+	 */
+	@PostConstruct
+	public void init() {
+		if (!config.getDropboxWatch()) {
+			return;
+		}
+		
+		try {
+			watchService = FileSystems.getDefault().newWatchService();
+		}
+		catch (IOException e) {
+			log.error("Failed to create dropbox watcher, dropbox sub-directories will be listed for each snapshot.", e);
+			return;
+		}
+		
+		Thread thread = new Thread(this::watch, "dropbox-watcher");
+		thread.setDaemon(true);
+		thread.start();
+		log.info("Started watching dropbox " + config.getDropboxRoot());
+	}
+	
+	/**
+	 * Stop watching the dropbox.
+	 */
+	@PreDestroy
+	public void destroy() {
+		if (watchService == null) {
+			return;
+		}
+		
+		try {
+			watchService.close();
+		}
+		catch (IOException e) {
+			log.warn("Failed to close dropbox watcher.", e);
+		}
+	}
 
 	/**
 	 * @see edu.indiana.dlib.amppd.service.DropboxService.encodeUri(String)
@@ -259,6 +328,108 @@ public class DropboxServiceImpl implements DropboxService {
 		}
 	}
 
+	/**
+	 * @see edu.indiana.dlib.amppd.service.DropboxService.getSnapshot(String, String)
+	 */
+	@Override
+	public DropboxSnapshot getSnapshot(String unitName, String collectionName) {
+		Path path = getSubDirPath(unitName, collectionName);
+		if (watchService == null) {
+			return listSnapshot(path, false);
+		}
+		
+		DropboxSnapshot snapshot = snapshots.get(path);
+		if (snapshot != null) {
+			return snapshot;
+		}
+		
+		// the snapshot can only be kept if no change happened since it started to be listed
+		long start = System.nanoTime();
+		snapshot = listSnapshot(path, true);
+		if (snapshot.isPresent()) {
+			snapshots.put(path, snapshot);
+			if (changes.getOrDefault(path, Long.MIN_VALUE) >= start) {
+				snapshots.remove(path);
+			}
+		}
+		return snapshot;
+	}
+	
+	/**
+	 * List all files under the given dropbox sub-directory with their sizes in one pass, 
+	 * and if specified, register the directories visited with the dropbox watcher.
+	 */
+	protected DropboxSnapshot listSnapshot(Path path, boolean watch) {
+		Map<String, Long> sizes = new HashMap<String, Long>();
+		if (!Files.isDirectory(path)) {
+			return new DropboxSnapshot(path, false, sizes);
+		}
+		
+		try {
+			// follow symbolic links, so that linked files and directories exist in the snapshot as they do when checked individually;
+			// link loops are reported as failed files, and broken links have no regular file to count
+			Files.walkFileTree(path, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+					if (watch) {
+						WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+						watchKeys.put(key, path);
+					}
+					return FileVisitResult.CONTINUE;
+				}
+				
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+					if (attrs.isRegularFile()) {
+						sizes.put(path.relativize(file).toString(), attrs.size());
+					}
+					return FileVisitResult.CONTINUE;
+				}
+				
+				@Override
+				public FileVisitResult visitFileFailed(Path file, IOException e) {
+					// a file removed while listing is simply not in the snapshot
+					log.warn("Failed to read dropbox file " + file + ": " + e);
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		}
+		catch (IOException e) {
+			throw new StorageException("Failed to list dropbox sub-directory " + path, e);
+		}
+		
+		log.debug("Listed " + sizes.size() + " files in dropbox sub-directory " + path);
+		return new DropboxSnapshot(path, true, sizes);
+	}
+	
+	/**
+	 * Remove the snapshots of the watched sub-directories upon changes, until the watcher is closed.
+	 */
+	protected void watch() {
+		try {
+			while (true) {
+				WatchKey key = watchService.take();
+				key.pollEvents();
+				Path path = watchKeys.get(key);
+				
+				// the directory is no longer watched once deleted
+				if (!key.reset()) {
+					watchKeys.remove(key);
+				}
+				
+				// the changed snapshot will be relisted, with any new directory under it registered by then
+				if (path != null) {
+					changes.put(path, System.nanoTime());
+					snapshots.remove(path);
+					log.debug("Dropbox sub-directory " + path + " changed, its snapshot is discarded.");
+				}
+			}
+		}
+		catch (InterruptedException | ClosedWatchServiceException e) {
+			log.info("Stopped watching dropbox " + config.getDropboxRoot());
+		}
+	}
+	
 	// TODO add cleanupCollectionSubdirs() do remove all unused subdirs due to inconsistent manual operations
 	
 }
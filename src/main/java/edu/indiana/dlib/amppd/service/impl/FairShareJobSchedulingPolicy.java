@@ -0,0 +1,118 @@
+package edu.indiana.dlib.amppd.service.impl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import edu.indiana.dlib.amppd.config.AmppdPropertyConfig;
+import edu.indiana.dlib.amppd.model.JobSubmissionItem;
+import edu.indiana.dlib.amppd.repository.JobSubmissionItemRepository;
+import edu.indiana.dlib.amppd.repository.WorkflowResultRepository;
+import edu.indiana.dlib.amppd.service.JobSchedulingPolicy;
+import edu.indiana.dlib.amppd.web.JobSubmissionState;
+
+/**
+ * JobSchedulingPolicy sharing Galaxy among units in proportion to their weights: each job slot goes to the unit with pending jobs
+ * that has the least work in flight (invocations running in Galaxy plus jobs being submitted) relative to its weight; 
+ * within a unit jobs are dispatched in the order of submission. This way a unit with a few jobs isn't stuck behind another unit's backlog.
+ * @author yingfeng
+ */
+@Service
+public class FairShareJobSchedulingPolicy implements JobSchedulingPolicy {
+	public static final String NAME = "fairShare";
+
+	@Autowired
+	private AmppdPropertyConfig amppdPropertyConfig;
+
+	@Autowired
+	private JobSubmissionItemRepository jobSubmissionItemRepository;
+
+	@Autowired
+	private WorkflowResultRepository workflowResultRepository;
+
+	/**
+	 * @see edu.indiana.dlib.amppd.service.JobSchedulingPolicy.getName()
+	 */
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	/**
+	 * @see edu.indiana.dlib.amppd.service.JobSchedulingPolicy.selectPendingJobs(int)
+	 */
+	@Override
+	public List<JobSubmissionItem> selectPendingJobs(int count) {
+		List<JobSubmissionItem> items = new ArrayList<JobSubmissionItem>();
+		Map<Long, Long> pending = toCountMap(jobSubmissionItemRepository.countByStatusGroupByUnitId(JobSubmissionState.PENDING));
+		if (pending.isEmpty()) {
+			return items;
+		}
+		
+		// current usage of each unit
+		Map<Long, Long> usage = toCountMap(workflowResultRepository.countInvocationsByStatusInGroupByUnitId(JobAdmissionServiceImpl.IN_FLIGHT_STATES));
+		toCountMap(jobSubmissionItemRepository.countByStatusGroupByUnitId(JobSubmissionState.PROCESSING)).forEach((unitId, n) -> usage.merge(unitId, n, Long::sum));
+		
+		// assign the slots one at a time to the unit with the lowest weighted usage, counting the slots assigned so far;
+		// note that jobs without unit, keyed by null, are treated as from a unit of their own
+		Map<Long, Integer> slots = new LinkedHashMap<Long, Integer>();
+		Comparator<Long> byId = Comparator.nullsLast(Comparator.<Long>naturalOrder());
+		for (int i = 0; i < count; i++) {
+			Long next = null;
+			double lowest = Double.MAX_VALUE;
+			boolean found = false;
+			
+			for (Map.Entry<Long, Long> entry : pending.entrySet()) {
+				Long unitId = entry.getKey();
+				int assigned = slots.getOrDefault(unitId, 0);
+				if (entry.getValue() <= assigned) {
+					continue;
+				}
+				
+				double weighted = (usage.getOrDefault(unitId, 0l) + assigned) / (double)getWeight(unitId);
+				if (!found || weighted < lowest || (weighted == lowest && byId.compare(unitId, next) < 0)) {
+					next = unitId;
+					lowest = weighted;
+					found = true;
+				}
+			}
+			
+			// all pending jobs have been assigned a slot
+			if (!found) {
+				break;
+			}
+			slots.merge(next, 1, Integer::sum);
+		}
+		
+		// retrieve the oldest pending jobs of each unit up to its assigned slots
+		slots.forEach((unitId, n) -> items.addAll(jobSubmissionItemRepository.findByStatusAndUnitIdOrderBySubmissionIdAscRowNumAsc(JobSubmissionState.PENDING, unitId, PageRequest.of(0, n))));
+		return items;
+	}
+	
+	/**
+	 * Get the weight of the given unit, which defaults to 1 if not configured.
+	 */
+	protected int getWeight(Long unitId) {
+		Integer weight = unitId == null ? null : amppdPropertyConfig.getUnitWeights().get(unitId.toString());
+		return weight == null || weight < 1 ? 1 : weight;
+	}
+	
+	/**
+	 * Convert the given rows of (unitId, count) into a map.
+	 */
+	protected Map<Long, Long> toCountMap(List<Object[]> rows) {
+		Map<Long, Long> counts = new HashMap<Long, Long>();
+		for (Object[] row : rows) {
+			counts.put((Long)row[0], ((Number)row[1]).longValue());
+		}
+		return counts;
+	}
+
+}
@@ -0,0 +1,41 @@
+package edu.indiana.dlib.amppd.service.impl;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import edu.indiana.dlib.amppd.model.JobSubmissionItem;
+import edu.indiana.dlib.amppd.repository.JobSubmissionItemRepository;
+import edu.indiana.dlib.amppd.service.JobSchedulingPolicy;
+import edu.indiana.dlib.amppd.web.JobSubmissionState;
+
+/**
+ * JobSchedulingPolicy dispatching jobs in the order of submission.
+ * @author yingfeng
+ */
+@Service
+public class FifoJobSchedulingPolicy implements JobSchedulingPolicy {
+	public static final String NAME = "fifo";
+
+	@Autowired
+	private JobSubmissionItemRepository jobSubmissionItemRepository;
+
+	/**
+	 * @see edu.indiana.dlib.amppd.service.JobSchedulingPolicy.getName()
+	 */
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	/**
+	 * @see edu.indiana.dlib.amppd.service.JobSchedulingPolicy.selectPendingJobs(int)
+	 */
+	@Override
+	public List<JobSubmissionItem> selectPendingJobs(int count) {
+		return jobSubmissionItemRepository.findByStatusOrderBySubmissionIdAscRowNumAsc(JobSubmissionState.PENDING, PageRequest.of(0, count));
+	}
+
+}
@@ -4,16 +4,33 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.FileSystemUtils;
@@ -31,12 +48,17 @@ import edu.indiana.dlib.amppd.model.Item;
 import edu.indiana.dlib.amppd.model.ItemSupplement;
 import edu.indiana.dlib.amppd.model.Primaryfile;
 import edu.indiana.dlib.amppd.model.PrimaryfileSupplement;
+import edu.indiana.dlib.amppd.model.StoredContent;
 import edu.indiana.dlib.amppd.model.Supplement.SupplementType;
 import edu.indiana.dlib.amppd.model.Unit;
+import edu.indiana.dlib.amppd.repository.StoredContentRepository;
 import edu.indiana.dlib.amppd.repository.WorkflowResultRepository;
 import edu.indiana.dlib.amppd.service.DataentityService;
 import edu.indiana.dlib.amppd.service.FileStorageService;
 import edu.indiana.dlib.amppd.service.PreprocessService;
+import edu.indiana.dlib.amppd.util.ContentHash;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -60,8 +82,26 @@ public class FileStorageServiceImpl implements FileStorageService {
 	@Autowired
 	private DataentityService dataentityService;
 	
+	@Autowired
+	private StoredContentRepository storedContentRepository;
+	
+	@Autowired
+	private MeterRegistry meterRegistry;
+	
 	private AmppdPropertyConfig config; 	
 	private Path root;
+	
+	// directory relative to the storage root for the content-addressed store
+	public static final String CONTENT_DIR = ".content";
+	
+	// size of the blocks compared to verify copied files
+	private static final int VERIFY_BLOCK_SIZE = 65536;
+	
+	// pending linking of assets to stored contents by SHA-256, so that assets with the same content are linked one at a time
+	private Map<String, CompletableFuture<Void>> contentsInLinking = new ConcurrentHashMap<String, CompletableFuture<Void>>();
+	
+	// pool of workers copying files across file systems, shared by all ingests
+	private ThreadPoolTaskExecutor copyExecutor;
 
 	@Autowired
 	public FileStorageServiceImpl(AmppdPropertyConfig amppdconfig) {
@@ -78,6 +118,28 @@ public class FileStorageServiceImpl implements FileStorageService {
 		}		
 	}
 	
+	/**
+	 * Initialize the FileStorageServiceImpl bean: start the file copy workers.
+	 */
+	@PostConstruct
+	public void init() {
+		copyExecutor = new ThreadPoolTaskExecutor();
+		copyExecutor.setCorePoolSize(config.getFileCopyThreads());
+		copyExecutor.setMaxPoolSize(config.getFileCopyThreads());
+		copyExecutor.setThreadNamePrefix("file-copy-");
+		copyExecutor.initialize();
+		Gauge.builder("amppd.storage.copy.active", copyExecutor, ThreadPoolTaskExecutor::getActiveCount).register(meterRegistry);
+		log.info("Initialized file copy workers with pool size " + config.getFileCopyThreads());
+	}
+	
+	/**
+	 * Shut down the file copy workers.
+	 */
+	@PreDestroy
+	public void destroy() {
+		copyExecutor.shutdown();
+	}
+	
 	/**
 	 * @see edu.indiana.dlib.amppd.service.FileStorageService.getDirPathname(Dataentity)
 	 */
@@ -162,35 +224,87 @@ public class FileStorageServiceImpl implements FileStorageService {
     	if (asset == null || file == null) {
     		throw new IllegalArgumentException("The given asset or file for uploading media file is null.");
     	}
-    	
-    	// for primaryfiles that have been run against workflows, do not allow uploading to replace existing media, 
-    	// as this will cause discrepancy with existing workflow outputs, which are linked to existing media 	
-    	if (asset instanceof Primaryfile ) {
-    		Primaryfile primaryfile = (Primaryfile)asset;
-    		// check if there is any workflow results associated with the primayfile
-    		// this is more accurate than checking whether the historyId/datasetId is not null,
-    		// as the primayfile could have been submitted to workflows but never succeeded with any result,
-    		// in which case it's fine (and might be desirable if due to corrupt media file) to replace the file
-//	    	if (primaryfile.getDatasetId() != null || primaryfile.getHistoryId() != null) {
-    		if (workflowResultRepository.findByPrimaryfileId(primaryfile.getId()).size() > 0) {
-	    		throw new StorageException("Uploading new media file to primaryfile " + primaryfile.getId() + " is not allowed as it has been run against a workflow." );
-	    	}
-    	}
+    	checkUploadAllowed(asset);
     		
     	// store the media file and update asset path
     	asset.setOriginalFilename(StringUtils.cleanPath(file.getOriginalFilename()));	
     	String targetPathname = getFilePathname(asset);    	    	
     	asset.setPathname(targetPathname);
-    	store(file, targetPathname);  
+    	MessageDigest digest = ContentHash.newDigest();
+    	store(file, targetPathname, digest);  
+    	setHash(asset, ContentHash.toHex(digest));
     	
-    	// preprocess asset and save to DB
+    	// preprocess asset and save to DB, then deduplicate the final media file, which might have been converted
     	asset = preprocessService.preprocess(asset, true);
+    	linkContent(asset);
     	
     	String msg = "Successfully uploaded asset " + asset.getId() + " media file " + file.getOriginalFilename() + " to " + targetPathname;
     	log.info(msg);
     	return asset;
 	}	
 
+	/**
+	 * @see edu.indiana.dlib.amppd.service.FileStorageService.uploadAsset(Asset, Path, String)
+	 */
+	@Override
+	public Asset uploadAsset(Asset asset, Path file, String originalFilename) {		
+    	if (asset == null || file == null) {
+    		throw new IllegalArgumentException("The given asset or file for uploading media file is null.");
+    	}
+    	checkUploadAllowed(asset);
+    	
+    	// move the media file into place and update asset path; 
+    	// as the file is already in storage, this is a rename on the same file system rather than a copy
+    	asset.setOriginalFilename(StringUtils.cleanPath(originalFilename));	
+    	String targetPathname = getFilePathname(asset);    	    	
+    	asset.setPathname(targetPathname);
+    	try {
+    		// the file was written in chunks in any order, so it's hashed in one pass here while likely still in page cache
+    		setHash(asset, hashFile(file));
+    		Path path = resolve(targetPathname);
+    		Files.createDirectories(path.getParent());
+    		Files.move(file, path, StandardCopyOption.REPLACE_EXISTING);
+    	}
+    	catch (IOException e) {
+    		throw new StorageException("Failed to move file " + file + " to " + targetPathname, e);
+    	}
+    	
+    	// preprocess asset and save to DB, then deduplicate the final media file, which might have been converted
+    	asset = preprocessService.preprocess(asset, true);
+    	linkContent(asset);
+    	
+    	log.info("Successfully uploaded asset " + asset.getId() + " media file " + originalFilename + " to " + targetPathname);
+    	return asset;
+	}	
+	
+	/**
+	 * Set the given SHA-256 computed as the media file is stored to the given asset, which also counts as its first fixity check.
+	 */
+	private void setHash(Asset asset, String sha256) {
+		asset.setSha256(sha256);
+		asset.setFixityChecked(new Date());
+		asset.setFixityFailed(false);
+	}
+	
+	/**
+	 * Check whether uploading a new media file to the given asset is allowed, throw StorageException if not.
+	 */
+	private void checkUploadAllowed(Asset asset) {
+		// for primaryfiles that have been run against workflows, do not allow uploading to replace existing media, 
+		// as this will cause discrepancy with existing workflow outputs, which are linked to existing media
+		if (asset instanceof Primaryfile ) {
+			Primaryfile primaryfile = (Primaryfile)asset;
+			// check if there is any workflow results associated with the primayfile
+			// this is more accurate than checking whether the historyId/datasetId is not null,
+			// as the primayfile could have been submitted to workflows but never succeeded with any result,
+			// in which case it's fine (and might be desirable if due to corrupt media file) to replace the file
+//	    	if (primaryfile.getDatasetId() != null || primaryfile.getHistoryId() != null) {
+			if (workflowResultRepository.findByPrimaryfileId(primaryfile.getId()).size() > 0) {
+				throw new StorageException("Uploading new media file to primaryfile " + primaryfile.getId() + " is not allowed as it has been run against a workflow." );
+			}
+		}
+	}
+
 	/**
 	 * @see edu.indiana.dlib.amppd.service.FileStorageService.moveEntityDir(Dataentity, Dataentity)
 	 */
@@ -341,6 +455,13 @@ public class FileStorageServiceImpl implements FileStorageService {
 	 */
 	@Override
 	public Path store(MultipartFile file, String targetPathname) {
+		return store(file, targetPathname, null);
+	}
+	
+	/**
+	 * Store the given file to the given target pathname, updating the given digest, if not null, with the content as it streams through.
+	 */
+	protected Path store(MultipartFile file, String targetPathname, MessageDigest digest) {
 		String originalFilename = file.getOriginalFilename();
 
 		if (file.isEmpty()) {
@@ -351,7 +472,7 @@ public class FileStorageServiceImpl implements FileStorageService {
 			throw new StorageException("Cannot store file " + originalFilename + " with relative path outside current directory to " + targetPathname);
 		}
 		
-		try (InputStream inputStream = file.getInputStream()) {
+		try (InputStream inputStream = digest == null ? file.getInputStream() : new DigestInputStream(file.getInputStream(), digest)) {
 			// TODO: consider FileAttributes for access control
 			Path path = resolve(targetPathname);
 
@@ -418,19 +539,348 @@ public class FileStorageServiceImpl implements FileStorageService {
 	 */
 	@Override
 	public Path linkFile(Path sourcePath, Path targetPath) {
+		return linkFile(sourcePath, targetPath, null);
+	}
+	
+	/**
+	 * @see edu.indiana.dlib.amppd.service.FileStorageService.linkFile(Path, Path, MessageDigest)
+	 */
+	@Override
+	public Path linkFile(Path sourcePath, Path targetPath, MessageDigest digest) {
+		long size;
+		try {
+			size = Files.size(sourcePath);
+		}
+		catch (IOException e) {
+			throw new StorageException("Failed to link directory/file from " + sourcePath + " to " + targetPath, e);
+		}
+		
+		// create a hard link, which fails if the source and target are on different file systems or hard links are not supported
+		boolean linked = false;
 		try {
-			// create a hard link
 			Files.createLink(targetPath, sourcePath);
-
-			// delete original file
+			linked = true;
+		}
+		catch (FileAlreadyExistsException e) {
+			throw new StorageException("Failed to link directory/file from " + sourcePath + " to " + targetPath, e);
+		}
+		catch (UnsupportedOperationException | IOException e) {
+			log.debug("Unable to link file from " + sourcePath + " to " + targetPath + ": " + e);
+		}
+		
+		try {
+			if (linked) {
+				// delete original file
+				Files.delete(sourcePath);
+				recordMove("link", size, 0);
+				updateDigest(digest, targetPath);
+				return targetPath;
+			}
+			
+			// otherwise rename the file, which fails if the source and target are on different file systems
+			boolean renamed = false;
+			try {
+				Files.move(sourcePath, targetPath, StandardCopyOption.ATOMIC_MOVE);
+				renamed = true;
+			}
+			catch (IOException e) {
+				log.debug("Unable to rename file from " + sourcePath + " to " + targetPath + ": " + e);
+			}
+			if (renamed) {
+				recordMove("rename", size, 0);
+				updateDigest(digest, targetPath);
+				return targetPath;
+			}
+			
+			// otherwise copy the file across file systems, hashing it on the way, then delete original file
+			copyFile(sourcePath, targetPath, digest);
 			Files.delete(sourcePath);
-
 			return targetPath;
 		}
 		catch (IOException e) {
 			throw new StorageException("Failed to link directory/file from " + sourcePath + " to " + targetPath, e);
 		}
 	}
+	
+	/**
+	 * @see edu.indiana.dlib.amppd.service.FileStorageService.copyFile(Path, Path)
+	 */
+	@Override
+	public Path copyFile(Path sourcePath, Path targetPath) {
+		return copyFile(sourcePath, targetPath, null);
+	}
+	
+	/**
+	 * Same as copyFile(Path, Path), except that the content is fed to the given digest while being copied, if not null.
+	 */
+	protected Path copyFile(Path sourcePath, Path targetPath, MessageDigest digest) {
+		// the number of concurrent copies is bounded, so that copying large media files doesn't saturate the disks
+		Future<?> future = copyExecutor.submit(() -> {
+			transferFile(sourcePath, targetPath, digest);
+			return null;
+		});
+		
+		try {
+			future.get();
+			return targetPath;
+		}
+		catch (ExecutionException e) {
+			throw new StorageException("Failed to copy file from " + sourcePath + " to " + targetPath, e.getCause());
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new StorageException("Interrupted copying file from " + sourcePath + " to " + targetPath, e);
+		}
+	}
+	
+	/**
+	 * Copy the source file to a temporary file next to the target with zero-copy channel transfer, sync it to disk, verify it,
+	 * then rename it to the target, so that an incomplete copy never appears at the target path.
+	 * If the given digest is not null, the content is copied through a buffer instead, so that it's hashed without reading the source again.
+	 */
+	protected void transferFile(Path sourcePath, Path targetPath, MessageDigest digest) throws IOException {
+		long start = System.nanoTime();
+		Path tempPath = targetPath.resolveSibling(targetPath.getFileName() + ".part");
+		long size;
+		
+		try (FileChannel source = FileChannel.open(sourcePath, StandardOpenOption.READ);
+				FileChannel target = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE, StandardOpenOption.READ)) {
+			size = source.size();
+			if (digest == null) {
+				long position = 0;
+				while (position < size) {
+					long transferred = source.transferTo(position, size - position, target);
+					if (transferred <= 0 && source.size() <= position) {
+						throw new IOException("Source file " + sourcePath + " was truncated while being copied");
+					}
+					position += transferred;
+				}
+			}
+			else {
+				hashTransfer(source, target, size, digest);
+			}
+			
+			// make sure the content is on disk before the original file could be deleted
+			target.force(true);
+			verifyCopy(source, target, size);
+		}
+		catch (IOException e) {
+			Files.deleteIfExists(tempPath);
+			throw e;
+		}
+		
+		Files.move(tempPath, targetPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		long nanos = System.nanoTime() - start;
+		recordMove("copy", size, nanos);
+		log.info(String.format("Copied file %s to %s: %d bytes in %d ms, %.1f MB/s", sourcePath, targetPath, size, nanos / 1000000, size * 1000.0 / Math.max(1, nanos)));
+	}
+	
+	/**
+	 * Copy the given size of content from the given source to the given target through a buffer, feeding it to the given digest on the way.
+	 */
+	private void hashTransfer(FileChannel source, FileChannel target, long size, MessageDigest digest) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(ContentHash.BUFFER_SIZE);
+		long position = 0;
+		while (position < size) {
+			buffer.clear();
+			int read = source.read(buffer, position);
+			if (read < 0) {
+				throw new IOException("Source file was truncated while being copied");
+			}
+			buffer.flip();
+			digest.update(buffer.duplicate());
+			while (buffer.hasRemaining()) {
+				target.write(buffer);
+			}
+			position += read;
+		}
+	}
+	
+	/**
+	 * Feed the content of the given file to the given digest, if not null.
+	 */
+	private void updateDigest(MessageDigest digest, Path path) throws IOException {
+		if (digest == null) {
+			return;
+		}
+		
+		ByteBuffer buffer = ByteBuffer.allocateDirect(ContentHash.BUFFER_SIZE);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			while (channel.read(buffer) >= 0) {
+				buffer.flip();
+				digest.update(buffer);
+				buffer.clear();
+			}
+		}
+	}
+	
+	/**
+	 * Verify the copy against the source by comparing their sizes and sample blocks at the start, middle and end, 
+	 * instead of reading both files through for multi-GB media.
+	 */
+	protected void verifyCopy(FileChannel source, FileChannel target, long size) throws IOException {
+		if (target.size() != size) {
+			throw new IOException("Copied file size " + target.size() + " differs from source file size " + size);
+		}
+		
+		long[] positions = {0, Math.max(0, size / 2 - VERIFY_BLOCK_SIZE / 2), Math.max(0, size - VERIFY_BLOCK_SIZE)};
+		ByteBuffer sourceBlock = ByteBuffer.allocate(VERIFY_BLOCK_SIZE);
+		ByteBuffer targetBlock = ByteBuffer.allocate(VERIFY_BLOCK_SIZE);
+		for (long position : positions) {
+			sourceBlock.clear();
+			targetBlock.clear();
+			readFully(source, sourceBlock, position);
+			readFully(target, targetBlock, position);
+			if (!sourceBlock.flip().equals(targetBlock.flip())) {
+				throw new IOException("Copied file content differs from source file at block " + position);
+			}
+		}
+	}
+	
+	/**
+	 * Read from the given channel into the given buffer from the given position, until the buffer is full or the end of channel is reached.
+	 */
+	private void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if (read < 0) {
+				break;
+			}
+			position += read;
+		}
+	}
+	
+	/**
+	 * Record the metrics of a file moved with the given method, from which move throughput can be derived.
+	 */
+	private void recordMove(String method, long bytes, long nanos) {
+		meterRegistry.counter("amppd.storage.moved.files", "method", method).increment();
+		meterRegistry.counter("amppd.storage.moved.bytes", "method", method).increment(bytes);
+		if (nanos > 0) {
+			meterRegistry.timer("amppd.storage.moved.time", "method", method).record(nanos, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * @see edu.indiana.dlib.amppd.service.FileStorageService.hashFile(Path)
+	 */
+	@Override
+	public String hashFile(Path path) {
+		try {
+			return ContentHash.sha256(path, null);
+		}
+		catch (IOException e) {
+			throw new StorageException("Failed to compute SHA-256 of file " + path, e);
+		}
+	}
+
+	/**
+	 * @see edu.indiana.dlib.amppd.service.FileStorageService.linkContent(Asset)
+	 */
+	@Override
+	public StoredContent linkContent(Asset asset) {
+		if (!config.getDedupContent() || asset.getSha256() == null || asset.getPathname() == null) {
+			return null;
+		}
+		
+		// assets with the same content are linked one at a time, while those with different content proceed in parallel
+		String sha256 = asset.getSha256();
+		CompletableFuture<Void> linking = new CompletableFuture<Void>();
+		CompletableFuture<Void> pending;
+		while ((pending = contentsInLinking.putIfAbsent(sha256, linking)) != null) {
+			pending.join();
+		}
+		
+		try {
+			return linkContentExclusively(asset);
+		}
+		finally {
+			contentsInLinking.remove(sha256, linking);
+			linking.complete(null);
+		}
+	}
+	
+	/**
+	 * Link the given asset's media file to its stored content as in linkContent(Asset), assuming no other asset with the same content is being linked.
+	 */
+	private StoredContent linkContentExclusively(Asset asset) {
+		Path path = resolve(asset.getPathname());
+		StoredContent content = storedContentRepository.findFirstBySha256(asset.getSha256());
+		try {
+			long size = Files.size(path);
+			if (content != null) {
+				Path contentPath = resolve(content.getPathname());
+				if (Files.exists(contentPath) && Files.size(contentPath) == size) {
+					linkToContent(asset, path, content.getPathname(), size);
+					return content;
+				}
+				
+				// the stored content file is lost or damaged, restore it from this file; the dataset uploaded from it can't be trusted either
+				log.warn("Stored content " + content.getPathname() + " is missing or damaged, restoring it from asset " + asset.getId() + " media file " + asset.getPathname());
+				content.setDatasetId(null);
+			}
+			else {
+				content = new StoredContent();
+				content.setSha256(asset.getSha256());
+				content.setPathname(CONTENT_DIR + "/" + asset.getSha256().substring(0, 2) + "/" + asset.getSha256());
+				content.setDateCreated(new Date());
+			}
+			
+			Path contentPath = resolve(content.getPathname());
+			if (content.getId() == null && Files.exists(contentPath) && Files.size(contentPath) == size && asset.getSha256().equals(hashFile(contentPath))) {
+				// the content file was stored by an earlier attempt whose transaction rolled back without its row, adopt it
+				log.warn("Adopting content " + content.getPathname() + " stored without a record, for asset " + asset.getId());
+				linkToContent(asset, path, content.getPathname(), size);
+			}
+			else {
+				// link to a temporary name first then rename it over any stale content file, so that a leftover file never blocks storing
+				Files.createDirectories(contentPath.getParent());
+				Path linkPath = contentPath.resolveSibling(contentPath.getFileName() + ".link");
+				Files.deleteIfExists(linkPath);
+				Files.createLink(linkPath, path);
+				Files.move(linkPath, contentPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				log.info("Stored asset " + asset.getId() + " media file " + asset.getPathname() + " as content " + content.getPathname());
+			}
+			
+			content.setSize(size);
+			return storedContentRepository.save(content);
+		}
+		catch (UnsupportedOperationException | IOException e) {
+			// the file is still stored on its own, just without deduplication
+			log.warn("Unable to deduplicate asset " + asset.getId() + " media file " + asset.getPathname() + ": " + e);
+			return null;
+		}
+	}
+	
+	/**
+	 * Replace the given asset's media file with a hard link to the given stored content, unless they are already the same file.
+	 * The link is made to a temporary name first then renamed over the file, so that the asset's file is never missing.
+	 */
+	private void linkToContent(Asset asset, Path path, String contentPathname, long size) throws IOException {
+		Path contentPath = resolve(contentPathname);
+		if (Files.isSameFile(contentPath, path)) {
+			return;
+		}
+		
+		Path linkPath = path.resolveSibling(path.getFileName() + ".link");
+		Files.deleteIfExists(linkPath);
+		Files.createLink(linkPath, contentPath);
+		Files.move(linkPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		meterRegistry.counter("amppd.storage.dedup.files").increment();
+		meterRegistry.counter("amppd.storage.dedup.bytes").increment(size);
+		log.info("Linked asset " + asset.getId() + " media file " + asset.getPathname() + " to identical content " + contentPathname + ", saving " + size + " bytes");
+	}
+	
+	/**
+	 * @see edu.indiana.dlib.amppd.service.FileStorageService.getStoredContent(Asset)
+	 */
+	@Override
+	public StoredContent getStoredContent(Asset asset) {
+		if (!config.getDedupContent() || asset.getSha256() == null) {
+			return null;
+		}
+		return storedContentRepository.findFirstBySha256(asset.getSha256());
+	}
 
 	/**
 	 * @see edu.indiana.dlib.amppd.service.FileStorageService.readTextFile(String)
@@ -0,0 +1,226 @@
+package edu.indiana.dlib.amppd.service.impl;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import edu.indiana.dlib.amppd.config.AmppdPropertyConfig;
+import edu.indiana.dlib.amppd.exception.StorageException;
+import edu.indiana.dlib.amppd.model.Asset;
+import edu.indiana.dlib.amppd.model.CollectionSupplement;
+import edu.indiana.dlib.amppd.model.ItemSupplement;
+import edu.indiana.dlib.amppd.model.Primaryfile;
+import edu.indiana.dlib.amppd.model.PrimaryfileSupplement;
+import edu.indiana.dlib.amppd.repository.AssetRepository;
+import edu.indiana.dlib.amppd.repository.CollectionSupplementRepository;
+import edu.indiana.dlib.amppd.repository.ItemSupplementRepository;
+import edu.indiana.dlib.amppd.repository.PrimaryfileRepository;
+import edu.indiana.dlib.amppd.repository.PrimaryfileSupplementRepository;
+import edu.indiana.dlib.amppd.service.FileStorageService;
+import edu.indiana.dlib.amppd.service.FixityService;
+import edu.indiana.dlib.amppd.util.BandwidthLimiter;
+import edu.indiana.dlib.amppd.util.ContentHash;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Implementation of FixityService.
+ * @author yingfeng
+ */
+@Service
+@Slf4j
+public class FixityServiceImpl implements FixityService {
+
+	@Autowired
+	private AmppdPropertyConfig amppdPropertyConfig;
+
+	@Autowired
+	private PrimaryfileRepository primaryfileRepository;
+
+	@Autowired
+	private PrimaryfileSupplementRepository primaryfileSupplementRepository;
+
+	@Autowired
+	private ItemSupplementRepository itemSupplementRepository;
+
+	@Autowired
+	private CollectionSupplementRepository collectionSupplementRepository;
+
+	@Autowired
+	private FileStorageService fileStorageService;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+	
+	// pool of workers hashing files in parallel during an audit
+	private ThreadPoolTaskExecutor executor;
+	
+	// read bandwidth shared by all workers, so that audits don't starve ingests and workflows of disk I/O
+	private BandwidthLimiter limiter;
+
+	/**
+	 * Initialize the FixityServiceImpl bean: start the fixity audit workers.
+	 */
+	@PostConstruct
+	public void init() {
+		executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(amppdPropertyConfig.getFixityAuditThreads());
+		executor.setMaxPoolSize(amppdPropertyConfig.getFixityAuditThreads());
+		executor.setThreadNamePrefix("fixity-audit-");
+		executor.initialize();
+		limiter = new BandwidthLimiter(amppdPropertyConfig.getFixityAuditBytesPerSecond());
+		Gauge.builder("amppd.fixity.audit.active", executor, ThreadPoolTaskExecutor::getActiveCount).register(meterRegistry);
+		log.info("Initialized fixity audit workers with pool size " + amppdPropertyConfig.getFixityAuditThreads() + " and bandwidth " + amppdPropertyConfig.getFixityAuditBytesPerSecond() + " bytes/sec");
+	}
+	
+	/**
+	 * Shut down the fixity audit workers.
+	 */
+	@PreDestroy
+	public void destroy() {
+		executor.shutdown();
+	}
+	
+	/**
+	 * @see edu.indiana.dlib.amppd.service.FixityService.verifyFixity(Asset)
+	 */
+	@Override
+	public boolean verifyFixity(Asset asset) {
+		AssetRepository<? extends Asset> repository = getRepository(asset);
+		Path path = fileStorageService.resolve(asset.getPathname());
+		
+		// a missing file is recorded as a fixity failure, while other errors, which might be transient, are not recorded
+		String sha256 = null;
+		try {
+			sha256 = ContentHash.sha256(path, limiter);
+			meterRegistry.counter("amppd.fixity.bytes").increment(path.toFile().length());
+		}
+		catch (NoSuchFileException e) {
+			log.error("Media file " + asset.getPathname() + " of asset " + asset.getId() + " is missing");
+		}
+		catch (IOException e) {
+			throw new StorageException("Failed to read media file " + asset.getPathname() + " of asset " + asset.getId(), e);
+		}
+		
+		Date date = new Date();
+		if (asset.getSha256() == null) {
+			// a missing file without baseline can't be verified, but is recorded as failed, so it isn't picked again ahead of other assets
+			if (sha256 == null) {
+				if (repository.updateFixityMissing(asset.getId(), date) > 0) {
+					meterRegistry.counter("amppd.fixity.checked", "result", "failed").increment();
+				}
+				return false;
+			}
+			repository.updateSha256(asset.getId(), sha256, date);
+			meterRegistry.counter("amppd.fixity.checked", "result", "baseline").increment();
+			log.info("Recorded baseline SHA-256 " + sha256 + " for asset " + asset.getId());
+			return true;
+		}
+		
+		boolean passed = asset.getSha256().equals(sha256);
+		if (repository.updateFixity(asset.getId(), asset.getSha256(), date, !passed) == 0) {
+			log.info("Discarded fixity check of asset " + asset.getId() + " as a new media file has been stored since the check started");
+			return true;
+		}
+		
+		meterRegistry.counter("amppd.fixity.checked", "result", passed ? "passed" : "failed").increment();
+		if (!passed) {
+			log.error("Fixity check failed for asset " + asset.getId() + " media file " + asset.getPathname() + ": expected SHA-256 " + asset.getSha256() + ", actual " + sha256);
+		}
+		else {
+			log.debug("Fixity check passed for asset " + asset.getId());
+		}
+		return passed;
+	}
+	
+	/**
+	 * @see edu.indiana.dlib.amppd.service.FixityService.auditFixity()
+	 */
+	@Override
+	public synchronized int auditFixity() {
+		long start = System.currentTimeMillis();
+		int max = amppdPropertyConfig.getFixityAuditMaxAssets();
+		List<AssetRepository<? extends Asset>> repositories = List.of(primaryfileRepository, primaryfileSupplementRepository, itemSupplementRepository, collectionSupplementRepository);
+		
+		// assets never checked get their baseline first
+		List<Asset> assets = new ArrayList<Asset>();
+		for (AssetRepository<? extends Asset> repository : repositories) {
+			assets.addAll(repository.findBySha256NullAndPathnameNotNullAndFixityCheckedNull(PageRequest.of(0, max, Sort.by("id"))));
+		}
+		
+		// then the assets least recently checked across all asset types, including those whose file was missing when their baseline was due
+		if (assets.size() < max) {
+			List<Asset> checked = new ArrayList<Asset>();
+			for (AssetRepository<? extends Asset> repository : repositories) {
+				checked.addAll(repository.findBySha256NullAndPathnameNotNullAndFixityCheckedNotNull(PageRequest.of(0, max, Sort.by("fixityChecked", "id"))));
+				checked.addAll(repository.findBySha256NotNull(PageRequest.of(0, max, Sort.by("fixityChecked", "id"))));
+			}
+			checked.sort(Comparator.comparing(Asset::getFixityChecked, Comparator.nullsFirst(Comparator.naturalOrder())));
+			assets.addAll(checked);
+		}
+		if (assets.size() > max) {
+			assets = assets.subList(0, max);
+		}
+		
+		List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+		for (Asset asset : assets) {
+			futures.add(executor.submit(() -> verifyFixity(asset)));
+		}
+		
+		int failed = 0;
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				if (!futures.get(i).get()) {
+					failed++;
+				}
+			}
+			catch (ExecutionException e) {
+				log.error("Failed to check fixity of asset " + assets.get(i).getId(), e.getCause());
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				log.warn("Interrupted fixity audit after " + i + " of " + futures.size() + " assets");
+				break;
+			}
+		}
+		
+		log.info("Fixity audit checked " + assets.size() + " assets in " + (System.currentTimeMillis() - start) + " ms, " + failed + " failed");
+		return failed;
+	}
+	
+	/**
+	 * Get the repository for the given asset according to its type.
+	 */
+	private AssetRepository<? extends Asset> getRepository(Asset asset) {
+		if (asset instanceof Primaryfile) {
+			return primaryfileRepository;
+		}
+		else if (asset instanceof PrimaryfileSupplement) {
+			return primaryfileSupplementRepository;
+		}
+		else if (asset instanceof ItemSupplement) {
+			return itemSupplementRepository;
+		}
+		else if (asset instanceof CollectionSupplement) {
+			return collectionSupplementRepository;
+		}
+		throw new IllegalArgumentException("The given asset " + asset.getId() + " is of invalid type.");
+	}
+	
+}
@@ -1,5 +1,12 @@
 package edu.indiana.dlib.amppd.service.impl;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -9,10 +16,18 @@ import com.github.jmchilton.blend4j.galaxy.GalaxyInstanceFactory;
 import edu.indiana.dlib.amppd.config.GalaxyPropertyConfig;
 import edu.indiana.dlib.amppd.model.galaxy.GalaxyUser;
 import edu.indiana.dlib.amppd.service.GalaxyApiService;
+import edu.indiana.dlib.amppd.service.GalaxyCacheService;
+import edu.indiana.dlib.amppd.service.GalaxyResilienceService;
+import edu.indiana.dlib.amppd.util.GalaxyWebResourceFactory;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * Implementation of GalaxyApiService.
+ * Implementation of GalaxyApiService. It serves as the connection manager to Galaxy: a single Galaxy instance is created
+ * and shared by all Galaxy clients, over a pooled HTTP transport with configurable pool size and timeouts.
  * @author yingfeng
  */
 // TODO change commented code to use galaxyRestTemplate as autowired
@@ -24,26 +39,68 @@ public class GalaxyApiServiceImpl implements GalaxyApiService {
 	@Autowired
 	private GalaxyPropertyConfig config;
 	
+	@Autowired
+	private MeterRegistry meterRegistry;
+	
+	@Autowired
+	private GalaxyResilienceService galaxyResilienceService;
+	
+	@Autowired
+	private GalaxyCacheService galaxyCacheService;
+	
+	// the Galaxy user shared by all requests, which also holds the Galaxy instance and API key once acquired
+	private GalaxyUser currentUser;
+	
+	// factory of the web resources for all Galaxy clients, over a pool of HTTP connections to Galaxy shared by them
+	@Getter
+	private GalaxyWebResourceFactory webResourceFactory;
+	
+	// number of Galaxy instances created, which should stay at 1 unless the connection is reset
+	private AtomicLong instancesCreated = new AtomicLong(0);
+	
+	/**
+	 * Initialize the pooled HTTP transport used by the Galaxy clients and register its metrics.
+	 * The pool and timeouts only apply to the Jersey client created for Galaxy, not to other HTTP connections in the JVM.
+	 */
+	@PostConstruct
+	public void init() {
+		webResourceFactory = new GalaxyWebResourceFactory(config.getBaseUrl(), config.getMaxConnections(), config.getConnectTimeout(), config.getReadTimeout());
+		
+		Gauge.builder("amppd.galaxy.connections.leased", webResourceFactory, f -> f.getPoolStats().getLeased()).register(meterRegistry);
+		Gauge.builder("amppd.galaxy.connections.available", webResourceFactory, f -> f.getPoolStats().getAvailable()).register(meterRegistry);
+		Gauge.builder("amppd.galaxy.connections.pending", webResourceFactory, f -> f.getPoolStats().getPending()).register(meterRegistry);
+		FunctionCounter.builder("amppd.galaxy.instances.created", instancesCreated, AtomicLong::get).register(meterRegistry);
+		
+		log.info("Initialized Galaxy connection pool with max connections " + config.getMaxConnections() + ", connect timeout " + config.getConnectTimeout() + "ms, read timeout " + config.getReadTimeout() + "ms.");
+	}
+	
+	/**
+	 * Close the pooled connections to Galaxy.
+	 */
+	@PreDestroy
+	public void destroy() {
+		webResourceFactory.shutdown();
+	}
+	
 	/**
 	 * @see edu.indiana.dlib.amppd.service.GalaxyApiService.getApiKey()
 	 */
-	public GalaxyUser getCurrentUser() {
+	public synchronized GalaxyUser getCurrentUser() {
 		/* TODO
-		 * Below is a stub for the real implementation: for now we will return a new instance of the amppd master user as the current user;
+		 * Below is a stub for the real implementation: for now we will return the amppd master user as the current user;
 		 * once we set up user management and access control in AMP, we shall retrieve this info from the current user session.  
 		 * Also, once we implement Amppd User, this method can be moved to UserService.
 		 */
-		GalaxyUser user = new GalaxyUser();
-		user.setUserId(config.getUserId());
-		user.setUsername(config.getUsername());
-		user.setPassword(config.getPassword());
-		return user;		
+		if (currentUser == null) {
+			currentUser = new GalaxyUser(config.getUserId(), config.getUsername(), config.getPassword());
+		}
+		return currentUser;		
 	}
 	
 	/**
 	 * @see edu.indiana.dlib.amppd.service.GalaxyApiService.getInstance()
 	 */
-	public GalaxyInstance getGalaxyInstance() {
+	public synchronized GalaxyInstance getGalaxyInstance() {
 		GalaxyUser user = getCurrentUser();
 		
 		// if the galaxy instance has already been retrieved and stored in the current user, no need to retrieve again 
@@ -54,7 +111,11 @@ public class GalaxyApiServiceImpl implements GalaxyApiService {
 		// otherwise create a new Galaxy instance using user's credentials and store it for the current user
 		GalaxyInstance instance = null;
 		try {
-			instance = GalaxyInstanceFactory.getFromCredentials(config.getBaseUrl(), user.getUsername(), user.getPassword());
+			// the instance from credentials is only used to acquire the API key, the instance in use is created over the pooled transport
+			String apiKey = galaxyResilienceService.execute("GalaxyInstanceFactory.getFromCredentials", true, 
+					() -> GalaxyInstanceFactory.getFromCredentials(config.getBaseUrl(), user.getUsername(), user.getPassword()).getApiKey());
+			webResourceFactory.setApiKey(apiKey);
+			instance = GalaxyInstanceFactory.get(webResourceFactory);
 		}
 		catch (Exception e) {
 			String msg = "Unable to acquire Galaxy instance for user " + user.getUsername() + " at " + config.getBaseUrl();
@@ -62,14 +123,42 @@ public class GalaxyApiServiceImpl implements GalaxyApiService {
 			throw new RuntimeException(msg, e);
 		}
 		
-		user.setInstance(instance);
-		return instance;
+		user.setInstance(wrapInstance(instance));
+		instancesCreated.incrementAndGet();
+		log.info("Acquired Galaxy instance for user " + user.getUsername() + " at " + config.getBaseUrl());
+		return user.getInstance();
+	}
+	
+	/**
+	 * Wrap the given Galaxy instance so that all Galaxy clients obtained from it go through the resilience layer,
+	 * with lookups of immutable objects served from the cache in front of it.
+	 * @param instance the given Galaxy instance
+	 * @return the wrapped Galaxy instance
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	protected GalaxyInstance wrapInstance(GalaxyInstance instance) {
+		return (GalaxyInstance)Proxy.newProxyInstance(GalaxyInstance.class.getClassLoader(), new Class<?>[] {GalaxyInstance.class}, (proxy, method, args) -> {
+			Object result;
+			try {
+				result = method.invoke(instance, args);
+			}
+			catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+			
+			// Galaxy clients, such as WorkflowsClient, HistoriesClient, LibrariesClient and ToolsClient, are all interfaces
+			if (result != null && method.getName().endsWith("Client") && method.getReturnType().isInterface()) {
+				Class type = method.getReturnType();
+				return galaxyCacheService.wrapClient(galaxyResilienceService.wrapClient(result, type), type);
+			}
+			return result;
+		});
 	}
 	
 	/**
 	 * @see edu.indiana.dlib.amppd.service.GalaxyApiService.getApiKey()
 	 */
-	public String getApiKey() {
+	public synchronized String getApiKey() {
 		// if the API key has already been retrieved and stored in the current user, no need to retrieve again 
 		GalaxyUser user = getCurrentUser();
 		if (user.getApiKey() != null) {
@@ -0,0 +1,443 @@
+package edu.indiana.dlib.amppd.service.impl;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.codehaus.jackson.map.DeserializationConfig;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.github.jmchilton.blend4j.galaxy.beans.Dataset;
+import com.github.jmchilton.blend4j.galaxy.beans.InvocationBriefs;
+import com.github.jmchilton.blend4j.galaxy.beans.InvocationDetails;
+
+import edu.indiana.dlib.amppd.config.AmppdPropertyConfig;
+import edu.indiana.dlib.amppd.repository.WorkflowResultRepository;
+import edu.indiana.dlib.amppd.service.GalaxyCacheService;
+import edu.indiana.dlib.amppd.web.GalaxyJobState;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Implementation of GalaxyCacheService.
+ * Objects are cached as JSON, so that the cache is bounded by its size in memory, can be persisted to disk as is,
+ * and each lookup returns a fresh copy which callers can modify without affecting the cache.
+ * The disk holds more entries than memory, bounded by its own max size, beyond which the least recently used files are deleted.
+ * An invocation is considered terminal if all of its WorkflowResults are in terminal states as of the last status refresh.
+ * @author yingfeng
+ */
+@Service
+@Slf4j
+public class GalaxyCacheServiceImpl implements GalaxyCacheService {
+	public static final Set<String> TERMINAL_DATASET_STATES = Set.of("ok", "error", "deleted", "discarded");
+	public static final List<GalaxyJobState> NON_TERMINAL_STATES = List.of(GalaxyJobState.UNKNOWN, GalaxyJobState.SCHEDULED, GalaxyJobState.IN_PROGRESS, GalaxyJobState.PAUSED);
+	public static final String SHOW_DATASET = "HistoriesClient.showDataset";
+	public static final String UPDATE_DATASET = "HistoriesClient.updateDataset";
+	public static final String SHOW_INVOCATION = "WorkflowsClient.showInvocation";
+	public static final String DATASET_KEY = "dataset:";
+	public static final String INVOCATION_KEY = "invocation:";
+	public static final String ENTRY_EXTENSION = ".json";
+
+	// classes of the objects that are cached, only these are deserialized from cached entries, as the cache directory might be tampered with
+	public static final Set<String> CACHED_TYPES = Set.of(Dataset.class.getName(), InvocationDetails.class.getName(), InvocationBriefs.class.getName());
+
+	// fraction of the max disk bytes to prune down to, so that pruning doesn't happen on every write once the disk is full
+	public static final double DISK_PRUNE_RATIO = 0.9;
+
+	@Autowired
+	private AmppdPropertyConfig amppdPropertyConfig;
+
+	@Autowired
+	private WorkflowResultRepository workflowResultRepository;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	private ObjectMapper objectMapper = new ObjectMapper();
+
+	// cached objects in access order, so the least recently used ones are evicted first when the cache is full; guarded by itself
+	private LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+
+	// total size in bytes of the objects cached in memory, guarded by entries
+	private long totalBytes = 0;
+
+	// total size in bytes of the entries persisted on disk; may overestimate it due to overwritten entries, and is recomputed when pruning
+	private AtomicLong diskBytes = new AtomicLong(0);
+
+	private AtomicLong hits = new AtomicLong(0);
+	private AtomicLong misses = new AtomicLong(0);
+
+	/**
+	 * A cached object serialized as JSON along with its class name.
+	 */
+	protected static class CacheEntry {
+		private String type;
+		private String json;
+		private CacheEntry(String type, String json) {
+			this.type = type;
+			this.json = json;
+		}
+		private long getBytes() {
+			return 2L * (type.length() + json.length());
+		}
+	}
+
+	/**
+	 * Initialize the GalaxyCacheServiceImpl bean.
+	 */
+	@PostConstruct
+	public void init() {
+		objectMapper.configure(DeserializationConfig.Feature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+		Gauge.builder("amppd.galaxy.cache.bytes", this, s -> s.getTotalBytes()).register(meterRegistry);
+		Gauge.builder("amppd.galaxy.cache.disk.bytes", diskBytes, AtomicLong::get).register(meterRegistry);
+		FunctionCounter.builder("amppd.galaxy.cache.hits", hits, AtomicLong::get).register(meterRegistry);
+		FunctionCounter.builder("amppd.galaxy.cache.misses", misses, AtomicLong::get).register(meterRegistry);
+
+		if (StringUtils.isNotEmpty(amppdPropertyConfig.getGalaxyCacheDir())) {
+			new File(amppdPropertyConfig.getGalaxyCacheDir()).mkdirs();
+			pruneDisk();
+		}
+		log.info("Initialized Galaxy object cache with max " + amppdPropertyConfig.getGalaxyCacheMaxBytes() + " bytes in memory, persisted to " +
+				(StringUtils.isEmpty(amppdPropertyConfig.getGalaxyCacheDir()) ? "none" : amppdPropertyConfig.getGalaxyCacheDir()));
+	}
+
+	/**
+	 * @see edu.indiana.dlib.amppd.service.GalaxyCacheService.wrapClient(T, Class<T>)
+	 */
+	@Override
+	public <T> T wrapClient(T client, Class<T> type) {
+		if (amppdPropertyConfig.getGalaxyCacheMaxBytes() <= 0) {
+			return client;
+		}
+
+		Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (p, method, args) -> {
+			String operation = type.getSimpleName() + "." + method.getName();
+			int argc = args == null ? 0 : args.length;
+
+			if (SHOW_DATASET.equals(operation) && argc == 2) {
+				String key = DATASET_KEY + args[1];
+				Object dataset = get(key);
+				if (dataset == null) {
+					dataset = invoke(client, method, args);
+					if (dataset instanceof Dataset && TERMINAL_DATASET_STATES.contains(((Dataset)dataset).getState())) {
+						put(key, dataset);
+					}
+				}
+				return dataset;
+			}
+
+			if (SHOW_INVOCATION.equals(operation) && argc == 3) {
+				String invocationId = (String)args[1];
+				String key = INVOCATION_KEY + invocationId + ":" + args[2];
+				Object invocation = get(key);
+				if (invocation == null) {
+					invocation = invoke(client, method, args);
+					if (invocation != null && isInvocationTerminal(invocationId)) {
+						put(key, invocation);
+					}
+				}
+				return invocation;
+			}
+
+			if (UPDATE_DATASET.equals(operation) && argc == 2 && args[1] instanceof Dataset) {
+				Object result = invoke(client, method, args);
+				evictDataset(((Dataset)args[1]).getId());
+				return result;
+			}
+
+			return invoke(client, method, args);
+		});
+		return type.cast(proxy);
+	}
+
+	/**
+	 * @see edu.indiana.dlib.amppd.service.GalaxyCacheService.evictDataset(String)
+	 */
+	@Override
+	public void evictDataset(String datasetId) {
+		remove(DATASET_KEY + datasetId);
+	}
+
+	/**
+	 * @see edu.indiana.dlib.amppd.service.GalaxyCacheService.evictInvocation(String)
+	 */
+	@Override
+	public void evictInvocation(String invocationId) {
+		remove(INVOCATION_KEY + invocationId + ":" + true);
+		remove(INVOCATION_KEY + invocationId + ":" + false);
+	}
+
+	/**
+	 * @see edu.indiana.dlib.amppd.service.GalaxyCacheService.clear()
+	 */
+	@Override
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+			totalBytes = 0;
+		}
+		diskBytes.set(0);
+
+		if (StringUtils.isNotEmpty(amppdPropertyConfig.getGalaxyCacheDir())) {
+			try {
+				FileUtils.cleanDirectory(new File(amppdPropertyConfig.getGalaxyCacheDir()));
+			}
+			catch (Exception e) {
+				log.error("Failed to clear Galaxy object cache directory " + amppdPropertyConfig.getGalaxyCacheDir(), e);
+			}
+		}
+		log.info("Cleared Galaxy object cache");
+	}
+
+	/**
+	 * Get the total size in bytes of the objects cached in memory.
+	 */
+	public long getTotalBytes() {
+		synchronized (entries) {
+			return totalBytes;
+		}
+	}
+
+	/**
+	 * Check whether the given invocation has finished with all of its outputs in terminal states.
+	 */
+	protected boolean isInvocationTerminal(String invocationId) {
+		return workflowResultRepository.countByInvocationId(invocationId) > 0 &&
+				workflowResultRepository.countByInvocationIdAndStatusIn(invocationId, NON_TERMINAL_STATES) == 0;
+	}
+
+	/**
+	 * Get a fresh copy of the object cached for the given key, looking up in memory first, then on disk; return null if not cached.
+	 */
+	protected Object get(String key) {
+		CacheEntry entry;
+		synchronized (entries) {
+			entry = entries.get(key);
+		}
+
+		if (entry == null) {
+			entry = readEntry(key);
+			if (entry != null) {
+				putEntry(key, entry);
+			}
+		}
+
+		if (entry != null && !CACHED_TYPES.contains(entry.type)) {
+			log.warn("Cached Galaxy object " + key + " has unexpected type " + entry.type + ", removing it from cache");
+			remove(key);
+			entry = null;
+		}
+
+		if (entry != null) {
+			try {
+				Object value = objectMapper.readValue(entry.json, Class.forName(entry.type));
+				hits.incrementAndGet();
+				return value;
+			}
+			catch (Exception e) {
+				log.warn("Failed to deserialize cached Galaxy object " + key + ", removing it from cache: " + e.getMessage());
+				remove(key);
+			}
+		}
+
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Cache the given object with the given key, in memory and on disk if so configured.
+	 */
+	protected void put(String key, Object value) {
+		if (!CACHED_TYPES.contains(value.getClass().getName())) {
+			log.warn("Galaxy object " + key + " has unexpected type " + value.getClass().getName() + ", skipping cache");
+			return;
+		}
+
+		CacheEntry entry;
+		try {
+			entry = new CacheEntry(value.getClass().getName(), objectMapper.writeValueAsString(value));
+		}
+		catch (Exception e) {
+			log.warn("Failed to serialize Galaxy object " + key + ", skipping cache: " + e.getMessage());
+			return;
+		}
+
+		putEntry(key, entry);
+		writeEntry(key, entry);
+	}
+
+	/**
+	 * Put the given entry in memory, evicting the least recently used entries as needed to keep within the max bytes.
+	 */
+	protected void putEntry(String key, CacheEntry entry) {
+		long maxBytes = amppdPropertyConfig.getGalaxyCacheMaxBytes();
+		if (entry.getBytes() > maxBytes) {
+			return;
+		}
+
+		synchronized (entries) {
+			CacheEntry old = entries.put(key, entry);
+			totalBytes += entry.getBytes() - (old == null ? 0 : old.getBytes());
+
+			Iterator<Map.Entry<String, CacheEntry>> iterator = entries.entrySet().iterator();
+			while (totalBytes > maxBytes && iterator.hasNext()) {
+				totalBytes -= iterator.next().getValue().getBytes();
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Remove the entry with the given key, from memory and disk.
+	 */
+	protected void remove(String key) {
+		synchronized (entries) {
+			CacheEntry old = entries.remove(key);
+			if (old != null) {
+				totalBytes -= old.getBytes();
+			}
+		}
+
+		Path path = getEntryPath(key);
+		if (path != null) {
+			try {
+				long bytes = Files.exists(path) ? Files.size(path) : 0;
+				if (Files.deleteIfExists(path)) {
+					diskBytes.addAndGet(-bytes);
+				}
+			}
+			catch (Exception e) {
+				log.error("Failed to delete cached Galaxy object " + key + " at " + path, e);
+			}
+		}
+		log.debug("Evicted " + key + " from Galaxy object cache");
+	}
+
+	/**
+	 * Get the path of the file persisting the entry with the given key, or null if the cache is not persisted.
+	 */
+	protected Path getEntryPath(String key) {
+		if (StringUtils.isEmpty(amppdPropertyConfig.getGalaxyCacheDir())) {
+			return null;
+		}
+		return Paths.get(amppdPropertyConfig.getGalaxyCacheDir(), DigestUtils.sha1Hex(key) + ENTRY_EXTENSION);
+	}
+
+	/**
+	 * Read the entry with the given key from disk; the class name is stored on the first line, followed by the JSON.
+	 */
+	protected CacheEntry readEntry(String key) {
+		Path path = getEntryPath(key);
+		if (path == null || !Files.exists(path)) {
+			return null;
+		}
+
+		try {
+			String content = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+			// the modified time serves as the last access time when pruning the disk
+			Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+			int index = content.indexOf('\n');
+			return new CacheEntry(content.substring(0, index), content.substring(index + 1));
+		}
+		catch (Exception e) {
+			log.warn("Failed to read cached Galaxy object " + key + " from " + path + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Write the given entry with the given key to disk, if the cache is persisted.
+	 */
+	protected void writeEntry(String key, CacheEntry entry) {
+		Path path = getEntryPath(key);
+		if (path == null) {
+			return;
+		}
+
+		try {
+			// write to a temp file first, so that concurrent reads never see a partially written entry
+			Path temp = Files.createTempFile(path.getParent(), "entry", ".tmp");
+			byte[] bytes = (entry.type + "\n" + entry.json).getBytes(StandardCharsets.UTF_8);
+			Files.write(temp, bytes);
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			if (diskBytes.addAndGet(bytes.length) > amppdPropertyConfig.getGalaxyCacheMaxDiskBytes()) {
+				pruneDisk();
+			}
+		}
+		catch (Exception e) {
+			log.error("Failed to persist cached Galaxy object " + key + " to " + path, e);
+		}
+	}
+
+	/**
+	 * Recompute the size of the entries persisted on disk, and if it exceeds the max disk bytes,
+	 * delete the least recently used entries till it's down to DISK_PRUNE_RATIO of the max.
+	 */
+	protected void pruneDisk() {
+		synchronized (diskBytes) {
+			File[] files = new File(amppdPropertyConfig.getGalaxyCacheDir()).listFiles((dir, name) -> name.endsWith(ENTRY_EXTENSION));
+			if (files == null) {
+				return;
+			}
+
+			long bytes = 0;
+			for (File file : files) {
+				bytes += file.length();
+			}
+
+			long maxBytes = amppdPropertyConfig.getGalaxyCacheMaxDiskBytes();
+			if (bytes > maxBytes) {
+				long targetBytes = (long)(maxBytes * DISK_PRUNE_RATIO);
+				int deleted = 0;
+				Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+				for (int i = 0; i < files.length && bytes > targetBytes; i++) {
+					long length = files[i].length();
+					if (files[i].delete()) {
+						bytes -= length;
+						deleted++;
+					}
+				}
+				log.info("Pruned " + deleted + " least recently used Galaxy objects from cache directory " + amppdPropertyConfig.getGalaxyCacheDir() + ", " + bytes + " bytes left");
+			}
+			diskBytes.set(bytes);
+		}
+	}
+
+	/**
+	 * Invoke the given method on the given client, unwrapping any exception thrown by the method.
+	 */
+	protected Object invoke(Object client, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(client, args);
+		}
+		catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+}
@@ -1,13 +1,21 @@
 package edu.indiana.dlib.amppd.service.impl;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.PostConstruct;
+import javax.ws.rs.core.MediaType;
 
+import org.apache.commons.lang3.StringUtils;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.type.TypeReference;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import com.github.jmchilton.blend4j.galaxy.GalaxyInstance;
 import com.github.jmchilton.blend4j.galaxy.HistoriesClient;
 import com.github.jmchilton.blend4j.galaxy.LibrariesClient;
 import com.github.jmchilton.blend4j.galaxy.beans.FilesystemPathsLibraryUpload;
@@ -15,10 +23,16 @@ import com.github.jmchilton.blend4j.galaxy.beans.GalaxyObject;
 import com.github.jmchilton.blend4j.galaxy.beans.History;
 import com.github.jmchilton.blend4j.galaxy.beans.Library;
 import com.github.jmchilton.blend4j.galaxy.beans.LibraryContent;
+import com.sun.jersey.api.client.ClientResponse;
 
+import edu.indiana.dlib.amppd.config.GalaxyPropertyConfig;
 import edu.indiana.dlib.amppd.exception.GalaxyDataException;
+import edu.indiana.dlib.amppd.exception.GalaxyNotFoundException;
+import edu.indiana.dlib.amppd.model.SharedGalaxyObject;
+import edu.indiana.dlib.amppd.repository.SharedGalaxyObjectRepository;
 import edu.indiana.dlib.amppd.service.GalaxyApiService;
 import edu.indiana.dlib.amppd.service.GalaxyDataService;
+import edu.indiana.dlib.amppd.service.GalaxyResilienceService;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
@@ -38,42 +52,96 @@ public class GalaxyDataServiceImpl implements GalaxyDataService {
 	@Autowired
 	private GalaxyApiService galaxyApiService;
 	
-	private GalaxyInstance galaxyInstance;
+	@Autowired
+	private GalaxyResilienceService galaxyResilienceService;
+	
+	@Autowired
+	private GalaxyPropertyConfig galaxyPropertyConfig;
+	
+	@Autowired
+	private SharedGalaxyObjectRepository sharedGalaxyObjectRepository;
 	
-	@Getter
-	private LibrariesClient librariesClient;
+	// Galaxy clients are obtained on first use, so that startup doesn't depend on Galaxy being available
+	@Getter(lazy = true)
+	private final LibrariesClient librariesClient = galaxyApiService.getGalaxyInstance().getLibrariesClient();
 	
-	@Getter
-	private HistoriesClient historiesClient;
+	@Getter(lazy = true)
+	private final HistoriesClient historiesClient = galaxyApiService.getGalaxyInstance().getHistoriesClient();
 	
-	@Getter
-	private Library sharedLibrary;
+	private volatile Library sharedLibrary;
 
-	@Getter
-	private History sharedHistory;
+	private volatile History sharedHistory;
+	
+	// root folders of data libraries by library ID; a library's root folder never changes once the library is created 
+	private Map<String, LibraryContent> rootFolders = new ConcurrentHashMap<String, LibraryContent>();
 	
 	/**
 	 *  initialize GalaxyDataService bean.
+	 *  Unless Galaxy is initialized lazily, the shared library and history are resolved here, so that startup fails if they can't be.
 	 */
 	@PostConstruct
 	public void init() {
-		galaxyInstance = galaxyApiService.getGalaxyInstance();
-		librariesClient = galaxyInstance.getLibrariesClient();
-		historiesClient = galaxyInstance.getHistoriesClient();
-
+		if (galaxyPropertyConfig.getLazyInit()) {
+			log.info("Galaxy is initialized lazily, the shared Galaxy data library and history will be resolved on first use.");
+			return;
+		}
+		
+		getSharedLibrary();
+		getSharedHistory();
+	}
+	
+	/**
+	 * @see edu.indiana.dlib.amppd.service.GalaxyDataService.getSharedLibrary()
+	 */
+	public Library getSharedLibrary() {
+		if (sharedLibrary == null) {
+			synchronized (this) {
+				if (sharedLibrary == null) {
+					sharedLibrary = resolveSharedLibrary();
+				}
+			}
+		}
+		return sharedLibrary;
+	}
+	
+	/**
+	 * @see edu.indiana.dlib.amppd.service.GalaxyDataService.getSharedHistory()
+	 */
+	public History getSharedHistory() {
+		if (sharedHistory == null) {
+			synchronized (this) {
+				if (sharedHistory == null) {
+					sharedHistory = resolveSharedHistory();
+				}
+			}
+		}
+		return sharedHistory;
+	}
+	
+	/**
+	 * Resolve the shared data library from its persisted ID if available and still valid in Galaxy; otherwise find or create it in Galaxy, and persist its ID.
+	 */
+	protected Library resolveSharedLibrary() {
+		SharedGalaxyObject shared = sharedGalaxyObjectRepository.findFirstByName(SHARED_LIBARY_NAME);
+		if (shared != null && isSharedObjectValid(shared, "libraries")) {
+			log.info("Found the ID of the shared Galaxy data library for AMPPD users: " + shared.getGalaxyId());
+			Library library = new Library(SHARED_LIBARY_NAME);
+			library.setId(shared.getGalaxyId());
+			return library;
+		}
+		
 		// if the amppd shared data library already exists, don't create another one
 		Library library = getLibrary(SHARED_LIBARY_NAME);
 		if (library != null) {
 			log.info("The shared Galaxy data library for AMPPD users already exists: " + SHARED_LIBARY_NAME);
-			sharedLibrary = library;
 		}
 		else {
 			// otherwise create a new data library shared by all Amppd users
 			library = new Library(SHARED_LIBARY_NAME);
 			library.setDescription("AMPPD Shared Library");
 			try {
-				sharedLibrary = librariesClient.createLibrary(library);
-				log.info("Initialized shared Galaxy data library for AMPPD users: " + sharedLibrary.getName());
+				library = getLibrariesClient().createLibrary(library);
+				log.info("Initialized shared Galaxy data library for AMPPD users: " + library.getName());
 			}
 			catch (Exception e) {
 				String msg = "Cannot create shared Galaxy data library for AMPPD users.";
@@ -81,20 +149,34 @@ public class GalaxyDataServiceImpl implements GalaxyDataService {
 				throw new RuntimeException(msg, e);
 			}	
 		}
-
+		
+		saveSharedObject(SHARED_LIBARY_NAME, library.getId());
+		return library;
+	}
+	
+	/**
+	 * Resolve the shared history from its persisted ID if available and still valid in Galaxy; otherwise find or create it in Galaxy, and persist its ID.
+	 */
+	protected History resolveSharedHistory() {
+		SharedGalaxyObject shared = sharedGalaxyObjectRepository.findFirstByName(SHARED_HISTORY_NAME);
+		if (shared != null && isSharedObjectValid(shared, "histories")) {
+			log.info("Found the ID of the shared Galaxy data history for AMPPD users: " + shared.getGalaxyId());
+			History history = new History(SHARED_HISTORY_NAME);
+			history.setId(shared.getGalaxyId());
+			return history;
+		}
+		
 		// if the amppd shared data history already exists, don't create another one
 		History history = getHistory(SHARED_HISTORY_NAME);
 		if (history != null) {
 			log.info("The shared Galaxy data history for AMPPD users already exists: " + SHARED_HISTORY_NAME);
-			sharedHistory = history;
-			return;
 		}
 		else {
 			// otherwise create a new data history shared by all Amppd users
 			history = new History(SHARED_HISTORY_NAME);
 			try {
-				sharedHistory = historiesClient.create(history);
-				log.info("Initialized shared Galaxy data history for AMPPD users: " + sharedHistory.getName());
+				history = getHistoriesClient().create(history);
+				log.info("Initialized shared Galaxy data history for AMPPD users: " + history.getName());
 			}
 			catch (Exception e) {
 				String msg = "Cannot create shared Galaxy data history for AMPPD users.";
@@ -102,6 +184,65 @@ public class GalaxyDataServiceImpl implements GalaxyDataService {
 				throw new RuntimeException(msg, e);
 			}		
 		}
+		
+		saveSharedObject(SHARED_HISTORY_NAME, history.getId());
+		return history;
+	}
+	
+	/**
+	 * Check whether the given persisted shared object still exists in Galaxy under the given API path;
+	 * if Galaxy reports it as not found or deleted, e.g. after the Galaxy database is reset, delete the stale record so that it's resolved by name again.
+	 */
+	protected boolean isSharedObjectValid(SharedGalaxyObject shared, String path) {
+		ClientResponse response = null;
+		String body = null;
+		String msg = "Failed to validate the ID of shared Galaxy object " + shared.getName() + ": " + shared.getGalaxyId();
+		try {
+			response = galaxyResilienceService.execute("GalaxyDataService.validateSharedObject", true, 
+					() -> galaxyApiService.getGalaxyInstance().getWebResource().path(path).path(shared.getGalaxyId()).get(ClientResponse.class));
+			body = response.getEntity(String.class);
+		}
+		catch (Exception e) {
+			log.error(msg);
+			throw new GalaxyDataException(msg, e);
+		}
+		
+		// Galaxy responds with 404 for an unknown object, and 400 for an ID it can't decode; any other failure doesn't tell whether the ID is stale
+		int status = response.getStatus();
+		boolean valid = status == 200;
+		if (valid) {
+			try {
+				valid = !new ObjectMapper().readTree(body).path("deleted").asBoolean(false);
+			}
+			catch (IOException e) {
+				msg += ", response: " + body;
+				log.error(msg);
+				throw new GalaxyDataException(msg, e);
+			}
+		}
+		else if (status != 404 && status != 400) {
+			msg += ", status: " + status + ", response: " + body;
+			log.error(msg);
+			throw new GalaxyDataException(msg);
+		}
+		
+		if (!valid) {
+			sharedGalaxyObjectRepository.delete(shared);
+			log.warn("Deleted the stale ID of shared Galaxy object " + shared.getName() + ": " + shared.getGalaxyId() + ", it will be resolved by name.");
+		}
+		return valid;
+	}
+	
+	/**
+	 * Persist the Galaxy ID of the shared object with the given name.
+	 */
+	protected void saveSharedObject(String name, String galaxyId) {
+		SharedGalaxyObject shared = new SharedGalaxyObject();
+		shared.setName(name);
+		shared.setGalaxyId(galaxyId);
+		shared.setDateCreated(new Date());
+		sharedGalaxyObjectRepository.save(shared);
+		log.info("Saved the ID of shared Galaxy object " + name + ": " + galaxyId);
 	}
 	
 	/**
@@ -109,7 +250,7 @@ public class GalaxyDataServiceImpl implements GalaxyDataService {
 	 */
 	public Library getLibrary(String name) {
 		Library matchingLibrary = null;		
-		List<Library> libraries = librariesClient.getLibraries();
+		List<Library> libraries = getLibrariesClient().getLibraries();
 
 		for(Library library : libraries) {
 			if (library.getName().equals(name)) {
@@ -126,7 +267,7 @@ public class GalaxyDataServiceImpl implements GalaxyDataService {
 	 */
 	public History getHistory(String name) {
 		History matchingHistory = null;		
-		List<History> histories = historiesClient.getHistories();
+		List<History> histories = getHistoriesClient().getHistories();
 
 		for(History history : histories) {
 			if (history.getName().equals(name)) {
@@ -138,6 +279,80 @@ public class GalaxyDataServiceImpl implements GalaxyDataService {
 		return matchingHistory;
 	}
 	
+	/**
+	 * @see edu.indiana.dlib.amppd.service.GalaxyDataService.renameHistory(String, String)
+	 */
+	public void renameHistory(String historyId, String name) {
+		// HistoriesClient doesn't provide a method to update history, so we call Galaxy history API directly
+		ClientResponse response = null;
+		String msg = "Failed to rename Galaxy history " + historyId + " to " + name;
+		try {
+			String body = new ObjectMapper().writeValueAsString(Map.of("name", name));
+			// renaming to the same name is idempotent, so it's safe to retry
+			response = galaxyResilienceService.execute("HistoriesClient.renameHistory", true, 
+					() -> galaxyApiService.getGalaxyInstance().getWebResource().path("histories").path(historyId).type(MediaType.APPLICATION_JSON).put(ClientResponse.class, body));
+		}
+		catch (Exception e) {
+			log.error(msg);
+			throw new GalaxyDataException(msg, e);
+		}
+		
+		if (response.getStatus() != 200) {
+			msg += ", status: " + response.getStatus() + ", response: " + response.getEntity(String.class);
+			log.error(msg);
+			// distinguish a history that doesn't exist from other failures, which don't tell anything about the history; 
+			// Galaxy responds with 404 for an unknown history, and 400 for an ID it can't decode 
+			int status = response.getStatus();
+			throw status == 404 || status == 400 ? new GalaxyNotFoundException(msg) : new GalaxyDataException(msg);
+		}
+		log.info("Successfully renamed Galaxy history " + historyId + " to " + name);
+	}
+	
+	/**
+	 * @see edu.indiana.dlib.amppd.service.GalaxyDataService.copyDatasetToHistory(String, String)
+	 */
+	public String copyDatasetToHistory(String datasetId, String historyId) {
+		// HistoriesClient doesn't expose copying an existing history dataset, so we call Galaxy history contents API directly
+		ClientResponse response = null;
+		String msg = "Failed to copy Galaxy dataset " + datasetId + " to history " + historyId;
+		String body = null;
+		try {
+			String request = new ObjectMapper().writeValueAsString(Map.of("source", "hda", "content", datasetId, "type", "dataset"));
+			// each copy creates a new dataset, so it's not safe to retry
+			response = galaxyResilienceService.execute("HistoriesClient.copyDataset", false, 
+					() -> galaxyApiService.getGalaxyInstance().getWebResource().path("histories").path(historyId).path("contents").type(MediaType.APPLICATION_JSON).post(ClientResponse.class, request));
+			body = response.getEntity(String.class);
+		}
+		catch (Exception e) {
+			log.error(msg);
+			throw new GalaxyDataException(msg, e);
+		}
+		
+		if (response.getStatus() != 200) {
+			msg += ", status: " + response.getStatus() + ", response: " + body;
+			log.error(msg);
+			throw new GalaxyDataException(msg);
+		}
+		
+		String copyId = null;
+		try {
+			copyId = (String)new ObjectMapper().readValue(body, new TypeReference<Map<String, Object>>() {}).get("id");
+		}
+		catch (Exception e) {
+			log.error(msg);
+			throw new GalaxyDataException(msg + ", invalid response: " + body, e);
+		}
+		
+		if (copyId == null) {
+			msg += ", no dataset ID in response: " + body;
+			log.error(msg);
+			throw new GalaxyDataException(msg);
+		}
+		
+		log.debug("Successfully copied Galaxy dataset " + datasetId + " to history " + historyId + " as " + copyId);
+		return copyId;
+	}
+	
 //	/**
 //	 * @see edu.indiana.dlib.amppd.service.GalaxyDataService.createHistory(Long)
 //	 */
@@ -155,16 +370,16 @@ public class GalaxyDataServiceImpl implements GalaxyDataService {
 		log.info(msg);
 
 		// if the target library is the shared amppd (i.e. sharedLibrary), no need to retrieve by name
-		Library matchingLibrary = SHARED_LIBARY_NAME.equals(libraryName) ? sharedLibrary : getLibrary(libraryName);
+		Library matchingLibrary = SHARED_LIBARY_NAME.equals(libraryName) ? getSharedLibrary() : getLibrary(libraryName);
 		
 		if (matchingLibrary != null) {
-			final LibraryContent rootFolder = librariesClient.getRootFolder(matchingLibrary.getId());
+			final LibraryContent rootFolder = getRootFolder(matchingLibrary.getId());
 			final FilesystemPathsLibraryUpload upload = new FilesystemPathsLibraryUpload();
 			upload.setContent(filePath);
 			upload.setLinkData(true);
 			upload.setFolderId(rootFolder.getId());
 			try {
-				uploadData = librariesClient.uploadFilesystemPaths(matchingLibrary.getId(), upload);
+				uploadData = getLibrariesClient().uploadFilesystemPaths(matchingLibrary.getId(), upload);
 				msg = "Upload completed.";
 				log.info(msg);
 			}
@@ -189,4 +404,78 @@ public class GalaxyDataServiceImpl implements GalaxyDataService {
 		return uploadFileToGalaxy(filePath, SHARED_LIBARY_NAME);
 	}
 	
+	/**
+	 * Get the root folder of the given data library, from cache if available.
+	 * @param libraryId ID of the given library
+	 * @return the root folder of the library
+	 */
+	protected LibraryContent getRootFolder(String libraryId) {
+		return rootFolders.computeIfAbsent(libraryId, id -> getLibrariesClient().getRootFolder(id));
+	}
+	
+	/**
+	 * @see edu.indiana.dlib.amppd.service.GalaxyDataService.uploadFilesToGalaxy(List<String>,String)
+	 */
+	public List<GalaxyObject> uploadFilesToGalaxy(List<String> filePaths, String libraryName) {
+		List<GalaxyObject> uploadData = new ArrayList<GalaxyObject>();
+		if (filePaths.isEmpty()) {
+			return uploadData;
+		}
+		
+		String msg = "Uploading " + filePaths.size() + " files from Amppd file system to Galaxy data library " + libraryName;
+		log.info(msg);
+
+		// if the target library is the shared amppd (i.e. sharedLibrary), no need to retrieve by name
+		Library matchingLibrary = SHARED_LIBARY_NAME.equals(libraryName) ? getSharedLibrary() : getLibrary(libraryName);
+		if (matchingLibrary == null) {
+			msg = "Upload failed, unable to find the data library " + libraryName;
+			log.error(msg);
+			throw new GalaxyDataException(msg);
+		}
+
+		// Galaxy accepts multiple paths separated by new line in one filesystem paths upload request,
+		// and returns a dataset for each path, in the same order as the paths
+		final FilesystemPathsLibraryUpload upload = new FilesystemPathsLibraryUpload();
+		upload.setContent(StringUtils.join(filePaths, "\n"));
+		upload.setLinkData(true);
+		upload.setFolderId(getRootFolder(matchingLibrary.getId()).getId());
+		
+		try {
+			ClientResponse response = getLibrariesClient().uploadFilesystemPathsRequest(matchingLibrary.getId(), upload);
+			String body = response.getEntity(String.class);
+			if (response.getStatus() != 200) {
+				throw new GalaxyDataException("Galaxy responded with status " + response.getStatus() + ": " + body);
+			}
+			
+			List<Map<String, Object>> datasets = new ObjectMapper().readValue(body, new TypeReference<List<Map<String, Object>>>() {});
+			for (Map<String, Object> dataset : datasets) {
+				GalaxyObject go = new GalaxyObject();
+				go.setId((String)dataset.get("id"));
+				go.setUrl((String)dataset.get("url"));
+				uploadData.add(go);
+			}
+		}
+		catch (Exception e) {
+			msg = "Upload of " + filePaths.size() + " files failed. " + e.getMessage();
+			log.error(msg);
+			throw new GalaxyDataException(msg, e);
+		}
+		
+		if (uploadData.size() != filePaths.size()) {
+			msg = "Upload of " + filePaths.size() + " files returned " + uploadData.size() + " datasets from Galaxy.";
+			log.error(msg);
+			throw new GalaxyDataException(msg);
+		}
+		
+		log.info("Upload of " + filePaths.size() + " files completed.");
+		return uploadData;
+	}		
+	
+	/**
+	 * @see edu.indiana.dlib.amppd.service.GalaxyDataService.uploadFilesToGalaxy(List<String>)
+	 */
+	public List<GalaxyObject> uploadFilesToGalaxy(List<String> filePaths) {
+		return uploadFilesToGalaxy(filePaths, SHARED_LIBARY_NAME);
+	}
+	
 }
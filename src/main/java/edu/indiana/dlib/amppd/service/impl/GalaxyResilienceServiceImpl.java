@@ -0,0 +1,272 @@
+package edu.indiana.dlib.amppd.service.impl;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.backoff.ExponentialRandomBackOffPolicy;
+import org.springframework.retry.policy.SimpleRetryPolicy;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.stereotype.Service;
+
+import edu.indiana.dlib.amppd.config.AmppdPropertyConfig;
+import edu.indiana.dlib.amppd.exception.GalaxyUnavailableException;
+import edu.indiana.dlib.amppd.service.GalaxyResilienceService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Implementation of GalaxyResilienceService.
+ * Only connection failures, i.e. failure to connect, connect/read timeout or unknown host anywhere in the cause chain,
+ * possibly wrapped in Jersey ClientHandlerException, count towards the circuit breaker and trigger retries;
+ * errors returned by Galaxy itself, including responses that can't be parsed, are passed through to the caller as is.
+ * @author yingfeng
+ */
+@Service
+@Slf4j
+public class GalaxyResilienceServiceImpl implements GalaxyResilienceService {
+	public static final String[] READ_PREFIXES = {"get", "show", "index", "search", "download"};
+	
+	// exceptions indicating that Galaxy can't be reached or didn't respond in time
+	public static final List<Class<? extends Throwable>> CONNECTION_FAILURES = List.of(ConnectException.class, SocketTimeoutException.class, UnknownHostException.class, ConnectTimeoutException.class);
+
+	@Autowired
+	private AmppdPropertyConfig amppdPropertyConfig;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	// retry templates by max attempts, shared by operations with the same policy
+	private Map<Integer, RetryTemplate> retryTemplates = new ConcurrentHashMap<Integer, RetryTemplate>();
+
+	// circuit breaker status, guarded by this
+	private CircuitState circuitState = CircuitState.CLOSED;
+	private int consecutiveFailures = 0;
+	private long openedAt = 0;
+	private boolean trialInProgress = false;
+
+	/**
+	 * Wrapper for checked exceptions thrown by wrapped client calls, so they can pass through the retry template.
+	 */
+	private static class CallFailure extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+		private CallFailure(Throwable cause) {
+			super(cause);
+		}
+	}
+
+	/**
+	 * Initialize the GalaxyResilienceServiceImpl bean.
+	 */
+	@PostConstruct
+	public void init() {
+		Gauge.builder("amppd.galaxy.circuit.open", this, s -> s.getCircuitState() == CircuitState.OPEN ? 1 : 0).register(meterRegistry);
+		Gauge.builder("amppd.galaxy.circuit.failures", this, GalaxyResilienceServiceImpl::getConsecutiveFailures).register(meterRegistry);
+	}
+
+	/**
+	 * @see edu.indiana.dlib.amppd.service.GalaxyResilienceService.execute(String, boolean, Supplier)
+	 */
+	@Override
+	public <T> T execute(String operation, boolean idempotent, Supplier<T> call) {
+		int maxAttempts = idempotent ? amppdPropertyConfig.getGalaxyRetryAttempts().getOrDefault(operation, amppdPropertyConfig.getGalaxyRetryMaxAttempts()) : 1;
+		RetryTemplate retryTemplate = retryTemplates.computeIfAbsent(Math.max(1, maxAttempts), this::createRetryTemplate);
+
+		return retryTemplate.execute(context -> {
+			if (context.getRetryCount() > 0) {
+				log.warn("Retrying Galaxy call " + operation + ", attempt " + (context.getRetryCount() + 1) + " of " + maxAttempts);
+			}
+			return attempt(operation, call);
+		});
+	}
+
+	/**
+	 * Make a single attempt of the given call through the circuit breaker.
+	 */
+	protected <T> T attempt(String operation, Supplier<T> call) {
+		acquirePermission(operation);
+		try {
+			T result = call.get();
+			recordSuccess();
+			return result;
+		}
+		catch (RuntimeException e) {
+			if (isConnectionFailure(e)) {
+				recordFailure(operation, e);
+			}
+			else {
+				// Galaxy responded, so it's up even though the call failed
+				recordSuccess();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * @see edu.indiana.dlib.amppd.service.GalaxyResilienceService.wrapClient(T, Class<T>)
+	 */
+	@Override
+	public <T> T wrapClient(T client, Class<T> type) {
+		Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (p, method, args) -> {
+			if (method.getDeclaringClass() == Object.class) {
+				return method.invoke(client, args);
+			}
+
+			try {
+				return execute(type.getSimpleName() + "." + method.getName(), isRead(method.getName()), () -> {
+					try {
+						return method.invoke(client, args);
+					}
+					catch (InvocationTargetException e) {
+						throw e.getCause() instanceof RuntimeException ? (RuntimeException)e.getCause() : new CallFailure(e.getCause());
+					}
+					catch (IllegalAccessException e) {
+						throw new CallFailure(e);
+					}
+				});
+			}
+			catch (CallFailure e) {
+				throw e.getCause();
+			}
+		});
+		return type.cast(proxy);
+	}
+
+	/**
+	 * @see edu.indiana.dlib.amppd.service.GalaxyResilienceService.isAvailable()
+	 */
+	@Override
+	public synchronized boolean isAvailable() {
+		// once the reset timeout has passed, Galaxy is considered available for a trial call
+		return circuitState != CircuitState.OPEN || System.currentTimeMillis() - openedAt >= amppdPropertyConfig.getGalaxyCircuitResetTimeout();
+	}
+
+	/**
+	 * @see edu.indiana.dlib.amppd.service.GalaxyResilienceService.getCircuitState()
+	 */
+	@Override
+	public synchronized CircuitState getCircuitState() {
+		return circuitState;
+	}
+
+	/**
+	 * @see edu.indiana.dlib.amppd.service.GalaxyResilienceService.getConsecutiveFailures()
+	 */
+	@Override
+	public synchronized int getConsecutiveFailures() {
+		return consecutiveFailures;
+	}
+
+	/**
+	 * Check whether a call is allowed by the circuit breaker: all calls are allowed when closed, none when open,
+	 * and a single trial call when half open, i.e. the reset timeout has passed since the circuit opened.
+	 * @throws GalaxyUnavailableException if the call is not allowed
+	 */
+	protected synchronized void acquirePermission(String operation) {
+		if (circuitState == CircuitState.OPEN && System.currentTimeMillis() - openedAt >= amppdPropertyConfig.getGalaxyCircuitResetTimeout()) {
+			circuitState = CircuitState.HALF_OPEN;
+			trialInProgress = false;
+			log.info("Galaxy circuit breaker is half open, letting a trial call through.");
+		}
+
+		if (circuitState == CircuitState.OPEN || (circuitState == CircuitState.HALF_OPEN && trialInProgress)) {
+			throw new GalaxyUnavailableException("Galaxy is unavailable after " + consecutiveFailures + " consecutive connection failures, call " + operation + " is rejected.");
+		}
+
+		if (circuitState == CircuitState.HALF_OPEN) {
+			trialInProgress = true;
+		}
+	}
+
+	/**
+	 * Record a call that reached Galaxy, which closes the circuit.
+	 */
+	protected synchronized void recordSuccess() {
+		if (circuitState != CircuitState.CLOSED) {
+			log.info("Galaxy is available again, closing circuit breaker.");
+		}
+		circuitState = CircuitState.CLOSED;
+		consecutiveFailures = 0;
+		trialInProgress = false;
+	}
+
+	/**
+	 * Record a call that failed to reach Galaxy, which opens the circuit if the trial call failed or the failure threshold is reached.
+	 */
+	protected synchronized void recordFailure(String operation, Exception e) {
+		consecutiveFailures++;
+		trialInProgress = false;
+		log.warn("Failed to connect to Galaxy for call " + operation + ", consecutive failures: " + consecutiveFailures + ", error: " + e.getMessage());
+
+		if (circuitState == CircuitState.HALF_OPEN || (circuitState == CircuitState.CLOSED && consecutiveFailures >= amppdPropertyConfig.getGalaxyCircuitFailureThreshold())) {
+			circuitState = CircuitState.OPEN;
+			openedAt = System.currentTimeMillis();
+			log.error("Galaxy circuit breaker is open after " + consecutiveFailures + " consecutive connection failures, failing all calls for " + amppdPropertyConfig.getGalaxyCircuitResetTimeout() + "ms.");
+		}
+	}
+
+	/**
+	 * Check whether the given exception is caused by failure to connect to Galaxy.
+	 */
+	protected boolean isConnectionFailure(Throwable e) {
+		// other IOExceptions, such as a parse error on a Galaxy error page wrapped in ClientHandlerException, mean Galaxy did respond
+		for (Class<? extends Throwable> type : CONNECTION_FAILURES) {
+			if (ExceptionUtils.indexOfType(e, type) >= 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Check whether the client method with the given name is an idempotent read.
+	 */
+	protected boolean isRead(String methodName) {
+		for (String prefix : READ_PREFIXES) {
+			if (methodName.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Create a retry template with the given max attempts, which retries upon connection failures only,
+	 * with exponential backoff and random jitter in between.
+	 */
+	protected RetryTemplate createRetryTemplate(int maxAttempts) {
+		// retry upon connection failures only, never when the circuit is open
+		SimpleRetryPolicy retryPolicy = new SimpleRetryPolicy(maxAttempts) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			public boolean canRetry(RetryContext context) {
+				Throwable e = context.getLastThrowable();
+				return super.canRetry(context) && (e == null || (!(e instanceof GalaxyUnavailableException) && isConnectionFailure(e)));
+			}
+		};
+
+		ExponentialRandomBackOffPolicy backOffPolicy = new ExponentialRandomBackOffPolicy();
+		backOffPolicy.setInitialInterval(amppdPropertyConfig.getGalaxyRetryInitialInterval());
+		backOffPolicy.setMultiplier(amppdPropertyConfig.getGalaxyRetryMultiplier());
+		backOffPolicy.setMaxInterval(amppdPropertyConfig.getGalaxyRetryMaxInterval());
+
+		RetryTemplate retryTemplate = new RetryTemplate();
+		retryTemplate.setRetryPolicy(retryPolicy);
+		retryTemplate.setBackOffPolicy(backOffPolicy);
+		return retryTemplate;
+	}
+
+}
@@ -0,0 +1,178 @@
+package edu.indiana.dlib.amppd.service.impl;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.github.jmchilton.blend4j.galaxy.beans.History;
+
+import edu.indiana.dlib.amppd.config.AmppdPropertyConfig;
+import edu.indiana.dlib.amppd.exception.GalaxyDataException;
+import edu.indiana.dlib.amppd.exception.GalaxyNotFoundException;
+import edu.indiana.dlib.amppd.model.PooledHistory;
+import edu.indiana.dlib.amppd.model.Primaryfile;
+import edu.indiana.dlib.amppd.repository.PooledHistoryRepository;
+import edu.indiana.dlib.amppd.service.GalaxyDataService;
+import edu.indiana.dlib.amppd.service.HistoryPoolService;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Implementation of HistoryPoolService.
+ * @author yingfeng
+ */
+@Service
+@Slf4j
+public class HistoryPoolServiceImpl implements HistoryPoolService {
+	public static final String POOLED_HISTORY_NAME = "Amppd Pooled History";
+	
+	@Autowired
+	private AmppdPropertyConfig amppdPropertyConfig;
+
+	@Autowired
+	private PooledHistoryRepository pooledHistoryRepository;
+
+	@Autowired
+	private GalaxyDataService galaxyDataService;
+	
+	// single background thread refilling the pool, so that refills never run concurrently
+	private ExecutorService executor = Executors.newSingleThreadExecutor();
+	
+	// whether a refill has been queued or is running 
+	private AtomicBoolean refilling = new AtomicBoolean(false);
+	
+	// the highest demand requested since the last refill started
+	private AtomicInteger demand = new AtomicInteger(0);
+	
+	/**
+	 * Shut down the background refill thread.
+	 */
+	@PreDestroy
+	public void destroy() {
+		executor.shutdownNow();
+	}
+	
+	/**
+	 * @see edu.indiana.dlib.amppd.service.HistoryPoolService.claimHistory(Primaryfile)
+	 */
+	@Override
+	public String claimHistory(Primaryfile primaryfile) {
+		String historyId = null;
+		String name = primaryfile.getId() + ": " + primaryfile.getName();
+		
+		boolean failed = false;
+		
+		while (historyId == null && !failed) {
+			List<PooledHistory> candidates = pooledHistoryRepository.findTop10ByPrimaryfileIdNullOrderById();
+			if (candidates.isEmpty()) {
+				log.warn("The Galaxy history pool is empty, no history can be claimed for primaryfile " + primaryfile.getId());
+				break;
+			}
+			
+			for (PooledHistory candidate : candidates) {
+				// another thread might have claimed the candidate after it's retrieved, in which case move on to the next one 
+				if (pooledHistoryRepository.claim(candidate.getId(), primaryfile.getId(), new Date()) == 0) {
+					continue;
+				}
+				
+				// the history might have been deleted in Galaxy since it's pooled, in which case discard it and move on to the next one 
+				try {
+					galaxyDataService.renameHistory(candidate.getHistoryId(), name);
+					historyId = candidate.getHistoryId();
+					break;
+				}
+				catch (GalaxyNotFoundException e) {
+					pooledHistoryRepository.deleteById(candidate.getId());
+					log.warn("Discarded invalid pooled Galaxy history " + candidate.getHistoryId() + " claimed by primaryfile " + primaryfile.getId());
+				}
+				catch (GalaxyDataException e) {
+					// any other failure, such as a timeout or Galaxy being down, says nothing about the history, so keep it in the pool, 
+					// and leave it to the caller to create a new history, which fails too if Galaxy is unavailable
+					pooledHistoryRepository.release(candidate.getId(), primaryfile.getId());
+					log.warn("Released pooled Galaxy history " + candidate.getHistoryId() + " claimed by primaryfile " + primaryfile.getId() + " after failing to rename it: " + e.getMessage());
+					failed = true;
+					break;
+				}
+			}
+		}
+
+		// replenish the pool in background if it's running low
+		if (pooledHistoryRepository.countByPrimaryfileIdNull() < amppdPropertyConfig.getHistoryPoolLowWaterMark()) {
+			requestRefill(0);
+		}
+		
+		if (historyId != null) {
+			log.info("Claimed pooled Galaxy history " + historyId + " for primaryfile " + primaryfile.getId());
+		}
+		return historyId;
+	}
+
+	/**
+	 * @see edu.indiana.dlib.amppd.service.HistoryPoolService.requestRefill(int)
+	 */
+	@Override
+	public void requestRefill(int demand) {
+		this.demand.accumulateAndGet(demand, Math::max);
+		
+		// if a refill is already queued, it will pick up the updated demand; if it's running, it will refill again once done
+		if (!refilling.compareAndSet(false, true)) {
+			return;
+		}
+		
+		executor.execute(() -> {
+			try {
+				refillPool(this.demand.getAndSet(0));
+			}
+			catch (Exception e) {
+				log.error("Failed to refill the Galaxy history pool", e);
+			}
+			finally {
+				refilling.set(false);
+			}
+			
+			// the demand raised while the refill was running wasn't included in it, refill again for that
+			if (this.demand.get() > 0) {
+				requestRefill(0);
+			}
+		});
+	}
+
+	/**
+	 * @see edu.indiana.dlib.amppd.service.HistoryPoolService.refillPool(int)
+	 */
+	@Override
+	public int refillPool(int demand) {
+		int target = amppdPropertyConfig.getHistoryPoolLowWaterMark() + demand;
+		int available = pooledHistoryRepository.countByPrimaryfileIdNull();
+		int count = 0;
+		
+		for (int i = available; i < target; i++) {
+			History history = new History(POOLED_HISTORY_NAME);
+			try {
+				history = galaxyDataService.getHistoriesClient().create(history);
+			}
+			catch (Exception e) {
+				throw new GalaxyDataException("Cannot create Galaxy history for the history pool", e);
+			}
+			
+			PooledHistory pooledHistory = new PooledHistory();
+			pooledHistory.setHistoryId(history.getId());
+			pooledHistory.setDateCreated(new Date());
+			pooledHistoryRepository.save(pooledHistory);
+			count++;
+		}
+		
+		if (count > 0) {
+			log.info("Refilled the Galaxy history pool with " + count + " new histories, " + (available + count) + " unassigned histories available.");
+		}
+		return count;
+	}
+	
+}
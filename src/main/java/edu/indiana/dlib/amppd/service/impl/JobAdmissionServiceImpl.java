@@ -0,0 +1,127 @@
+package edu.indiana.dlib.amppd.service.impl;
+
+import java.util.List;
+
+import javax.ws.rs.core.MediaType;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.sun.jersey.api.client.ClientResponse;
+
+import edu.indiana.dlib.amppd.config.AmppdPropertyConfig;
+import edu.indiana.dlib.amppd.repository.JobSubmissionItemRepository;
+import edu.indiana.dlib.amppd.repository.WorkflowResultRepository;
+import edu.indiana.dlib.amppd.service.GalaxyApiService;
+import edu.indiana.dlib.amppd.service.GalaxyResilienceService;
+import edu.indiana.dlib.amppd.service.JobAdmissionService;
+import edu.indiana.dlib.amppd.util.CacheHelper;
+import edu.indiana.dlib.amppd.web.GalaxyJobState;
+import edu.indiana.dlib.amppd.web.JobAdmissionResponse;
+import edu.indiana.dlib.amppd.web.JobSubmissionState;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Implementation of JobAdmissionService.
+ * @author yingfeng
+ */
+@Service
+@Slf4j
+public class JobAdmissionServiceImpl implements JobAdmissionService {
+	public static final List<GalaxyJobState> IN_FLIGHT_STATES = List.of(GalaxyJobState.SCHEDULED, GalaxyJobState.IN_PROGRESS);
+	public static final String GALAXY_QUEUED_JOBS = "galaxyQueuedJobs";
+	public static final long GALAXY_QUEUE_CACHE_SECONDS = 30;
+	
+	@Autowired
+	private AmppdPropertyConfig amppdPropertyConfig;
+
+	@Autowired
+	private WorkflowResultRepository workflowResultRepository;
+
+	@Autowired
+	private JobSubmissionItemRepository jobSubmissionItemRepository;
+
+	@Autowired
+	private GalaxyApiService galaxyApiService;
+	
+	@Autowired
+	private GalaxyResilienceService galaxyResilienceService;
+	
+	// Galaxy queue depth is cached briefly to avoid querying Galaxy on every dispatch
+	private CacheHelper<Integer> galaxyQueueCache = new CacheHelper<Integer>("galaxyQueue", GALAXY_QUEUE_CACHE_SECONDS, 1);
+	
+	/**
+	 * Get the number of invocations with any output scheduled or in progress in Galaxy, 
+	 * as of the last refresh of the WorkflowResults status.
+	 */
+	protected int getInFlightInvocations() {
+		return workflowResultRepository.countInvocationsByStatusIn(IN_FLIGHT_STATES);
+	}
+	
+	/**
+	 * Get the number of jobs queued in Galaxy, if counting Galaxy queue is enabled; otherwise return 0.
+	 * If Galaxy can't be reached, the queue is considered empty, so that admission relies on the WorkflowResults alone.
+	 */
+	protected int getGalaxyQueuedJobs() {
+		if (!amppdPropertyConfig.getAdmissionCountGalaxyQueue()) {
+			return 0;
+		}
+		
+		return galaxyQueueCache.get(GALAXY_QUEUED_JOBS, key -> {
+			try {
+				// JobsClient doesn't support filtering jobs by state, so we call Galaxy jobs API directly
+				ClientResponse response = galaxyResilienceService.execute("JobsClient.getJobs", true, 
+						() -> galaxyApiService.getGalaxyInstance().getWebResource().path("jobs")
+						.queryParam("state", "new").queryParam("state", "queued")
+						.accept(MediaType.APPLICATION_JSON).get(ClientResponse.class));
+				String body = response.getEntity(String.class);
+				if (response.getStatus() != 200) {
+					log.error("Failed to retrieve queued jobs from Galaxy, status: " + response.getStatus() + ", response: " + body);
+					return 0;
+				}
+				return new ObjectMapper().readValue(body, List.class).size();
+			}
+			catch (Exception e) {
+				log.error("Failed to retrieve queued jobs from Galaxy.", e);
+				return 0;
+			}
+		});
+	}
+	
+	/**
+	 * @see edu.indiana.dlib.amppd.service.JobAdmissionService.getInFlightJobs()
+	 */
+	@Override
+	public int getInFlightJobs() {
+		return getInFlightInvocations() + getGalaxyQueuedJobs();
+	}
+	
+	/**
+	 * @see edu.indiana.dlib.amppd.service.JobAdmissionService.getAvailableCapacity()
+	 */
+	@Override
+	public int getAvailableCapacity() {
+		int max = amppdPropertyConfig.getMaxInFlightJobs();
+		if (max <= 0) {
+			return Integer.MAX_VALUE;
+		}
+		return Math.max(0, max - getInFlightJobs());
+	}
+
+	/**
+	 * @see edu.indiana.dlib.amppd.service.JobAdmissionService.getAdmissionStatus()
+	 */
+	@Override
+	public JobAdmissionResponse getAdmissionStatus() {
+		JobAdmissionResponse response = new JobAdmissionResponse();
+		int max = amppdPropertyConfig.getMaxInFlightJobs();
+		response.setMaxInFlightJobs(Math.max(0, max));
+		response.setInFlightInvocations(getInFlightInvocations());
+		response.setGalaxyQueuedJobs(getGalaxyQueuedJobs());
+		response.setAvailableCapacity(max <= 0 ? Integer.MAX_VALUE : Math.max(0, max - response.getInFlightInvocations() - response.getGalaxyQueuedJobs()));
+		response.setHeldJobs(jobSubmissionItemRepository.countByStatus(JobSubmissionState.PENDING));
+		return response;
+	}
+
+}
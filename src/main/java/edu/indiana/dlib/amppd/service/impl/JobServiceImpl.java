@@ -1,17 +1,23 @@
 package edu.indiana.dlib.amppd.service.impl;
 
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
-import javax.annotation.PostConstruct;
-
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -33,25 +39,34 @@ import com.github.jmchilton.blend4j.galaxy.beans.WorkflowOutputs;
 import com.opencsv.CSVReader;
 import com.opencsv.CSVReaderBuilder;
 
+import edu.indiana.dlib.amppd.config.AmppdPropertyConfig;
 import edu.indiana.dlib.amppd.exception.GalaxyDataException;
 import edu.indiana.dlib.amppd.exception.GalaxyWorkflowException;
 import edu.indiana.dlib.amppd.exception.ParserException;
 import edu.indiana.dlib.amppd.exception.StorageException;
 import edu.indiana.dlib.amppd.model.Bundle;
+import edu.indiana.dlib.amppd.model.JobInvocation;
 import edu.indiana.dlib.amppd.model.Primaryfile;
+import edu.indiana.dlib.amppd.model.StoredContent;
 import edu.indiana.dlib.amppd.model.Supplement;
 import edu.indiana.dlib.amppd.model.WorkflowResult;
 import edu.indiana.dlib.amppd.repository.BundleRepository;
+import edu.indiana.dlib.amppd.repository.JobInvocationRepository;
 import edu.indiana.dlib.amppd.repository.PrimaryfileRepository;
+import edu.indiana.dlib.amppd.repository.StoredContentRepository;
 import edu.indiana.dlib.amppd.repository.WorkflowResultRepository;
 import edu.indiana.dlib.amppd.service.AmpUserService;
 import edu.indiana.dlib.amppd.service.FileStorageService;
 import edu.indiana.dlib.amppd.service.GalaxyApiService;
 import edu.indiana.dlib.amppd.service.GalaxyDataService;
+import edu.indiana.dlib.amppd.service.HistoryPoolService;
 import edu.indiana.dlib.amppd.service.JobService;
 import edu.indiana.dlib.amppd.service.MediaService;
 import edu.indiana.dlib.amppd.service.WorkflowResultService;
+import edu.indiana.dlib.amppd.service.WorkflowService;
 import edu.indiana.dlib.amppd.web.CreateJobResponse;
+import edu.indiana.dlib.amppd.web.GalaxyJobState;
+import edu.indiana.dlib.amppd.web.InputCsvRow;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
@@ -69,6 +84,9 @@ public class JobServiceImpl implements JobService {
 	public static final String SUPPLEMENT_TYPE_PARAMETER = "supplement_type";
 	public static final String SUPPLEMENT_PATH_PARAMETER = "supplement_path";
 
+	// states of WorkflowResults indicating that the invocation has failed
+	public static final List<GalaxyJobState> FAILED_STATES = List.of(GalaxyJobState.ERROR, GalaxyJobState.DELETED);
+	
 	public static final List<String> MGM_TOOL_IDS = new ArrayList<String>() {
         {
             add("applause_detection_to_avalon_xml");
@@ -76,6 +94,9 @@ public class JobServiceImpl implements JobService {
         }
     };
 
+	@Autowired
+	private AmppdPropertyConfig amppdPropertyConfig;
+	
 	@Autowired
     private BundleRepository bundleRepository;
 
@@ -85,6 +106,12 @@ public class JobServiceImpl implements JobService {
 	@Autowired
     private WorkflowResultRepository workflowResultRepository;
 
+	@Autowired
+    private JobInvocationRepository jobInvocationRepository;
+
+	@Autowired
+    private StoredContentRepository storedContentRepository;
+
 	@Autowired
     private FileStorageService fileStorageService;	
 
@@ -94,6 +121,9 @@ public class JobServiceImpl implements JobService {
 	@Autowired
 	private GalaxyDataService galaxyDataService;
 	
+	@Autowired
+	private HistoryPoolService historyPoolService;
+	
 	@Autowired
 	private AmpUserService ampUserService;
 	
@@ -103,26 +133,25 @@ public class JobServiceImpl implements JobService {
 	@Autowired
     private WorkflowResultService workflowResultService;	
 	
-	@Getter
-	private WorkflowsClient workflowsClient;
-		
-	@Getter
-	private HistoriesClient historiesClient;
+	@Autowired
+    private WorkflowService workflowService;	
+	
+	// pending creation of jobs by idempotency key, so that concurrent duplicates of a job wait for its outcome
+	private Map<String, CompletableFuture<WorkflowOutputs>> jobsInFlight = new ConcurrentHashMap<String, CompletableFuture<WorkflowOutputs>>();
+	
+	// Galaxy clients are obtained on first use, so that startup doesn't depend on Galaxy being available
+	@Getter(lazy = true)
+	private final WorkflowsClient workflowsClient = galaxyApiService.getGalaxyInstance().getWorkflowsClient();
 		
-	/**
-	 * Initialize the JobServiceImpl bean.
-	 */
-	@PostConstruct
-	public void init() {
-		workflowsClient = galaxyApiService.getGalaxyInstance().getWorkflowsClient();
-		historiesClient = galaxyApiService.getGalaxyInstance().getHistoriesClient();
-	}	
+	@Getter(lazy = true)
+	private final HistoriesClient historiesClient = galaxyApiService.getGalaxyInstance().getHistoriesClient();
 	
 	/**
 	 * Prepare the given primaryfile for AMP jobs, i.e. to run on a workflow in Galaxy: 
 	 * if this is the first time it's ever run on any workflow, 
 	 * - upload its media file to Galaxy using the symbolic link option and save the dataset ID into the primaryfile;
-	 * - create a history for all workflow outputs associated with it and save the history ID into the primaryfile; 
+	 * - claim a pre-created history from the history pool, or create one if the pool is empty, for all workflow outputs associated with it, 
+	 *   and save the history ID into the primaryfile; 
 	 * @param primaryfile the given primaryfile
 	 * @return true if the primaryfile has been updated; false otherwise.
 	 */
@@ -143,16 +172,34 @@ public class JobServiceImpl implements JobService {
 	    		throw new StorageException("Primaryfile " + primaryfile.getId() + " hasn't been uploaded to AMPPD file system");
 	    	}
 	    	
-	    	// upload the primaryfile into Galaxy data library, the returned result is a GalaxyObject containing the ID and URL of the dataset uploaded
-	    	String pathname = fileStorageService.absolutePathName(primaryfile.getPathname());
-	    	GalaxyObject go = galaxyDataService.uploadFileToGalaxy(pathname);	
+	    	// upload the primaryfile into Galaxy data library, or reuse the dataset shared by primaryfiles with identical media
+	    	StoredContent content = fileStorageService.getStoredContent(primaryfile);
+	    	if (content != null) {
+		    	primaryfile.setDatasetId(getContentDatasetId(content));
+	    	}
+	    	else {
+		    	// the returned result is a GalaxyObject containing the ID and URL of the dataset uploaded
+		    	String pathname = fileStorageService.absolutePathName(primaryfile.getPathname());
+		    	GalaxyObject go = galaxyDataService.uploadFileToGalaxy(pathname);	
+		    	primaryfile.setDatasetId(go.getId());
+	    	}
 	    	
 	    	// set flag to save the dataset ID in primaryfile for future reuse
-	    	primaryfile.setDatasetId(go.getId());
 	    	save = true;
 		}
 		
-		// if the output history hasn't been created for this primaryfile, i.e. it's the first time any workflow is run against it, create a new history for it
+		// if the output history hasn't been created for this primaryfile, i.e. it's the first time any workflow is run against it, 
+		// claim a history from the pool, which saves a Galaxy round trip to create the history; 
+		if (primaryfile.getHistoryId() == null) {   
+			String historyId = historyPoolService.claimHistory(primaryfile);
+			if (historyId != null) {
+		    	primaryfile.setHistoryId(historyId);		
+		    	save = true;
+				log.info("Assigned the pooled Galaxy output history " + historyId + " to primaryfile " + primaryfile.getId());				
+			}
+		}
+		
+		// if the pool is empty, create a new history for it
 		if (primaryfile.getHistoryId() == null) {   
 			// since we use primaryfile ID in the output history name, we can assume that the name is unique, 
 			// thus, if the historyId is null, it means the output history for this primaryfile doesn't exist in Galaxy yet, and vice versa
@@ -179,6 +226,119 @@ public class JobServiceImpl implements JobService {
 		return false;
 	}
 	
+	/**
+	 * @see edu.indiana.dlib.amppd.service.JobService.uploadPrimaryfilesToGalaxy(List<Primaryfile>)
+	 */
+	@Override
+	public int uploadPrimaryfilesToGalaxy(List<Primaryfile> primaryfiles) {
+		// only primaryfiles with media file ingested but not registered in Galaxy yet need upload
+		List<Primaryfile> pfiles = new ArrayList<Primaryfile>();
+		int total = 0;
+		int count = 0;
+		for (Primaryfile primaryfile : primaryfiles) {
+			if (primaryfile.getDatasetId() == null && StringUtils.isNotEmpty(primaryfile.getPathname())) {
+				total++;
+				// primaryfiles with identical media share the dataset uploaded for the stored content 
+				StoredContent content = fileStorageService.getStoredContent(primaryfile);
+				if (content == null) {
+					pfiles.add(primaryfile);
+					continue;
+				}
+				try {
+					primaryfile.setDatasetId(getContentDatasetId(content));
+					primaryfileRepository.save(primaryfile);
+					count++;
+				}
+				catch (Exception e) {
+					log.error("Failed to register primaryfile " + primaryfile.getId() + " in Galaxy, it will be registered upon job submission.", e);
+				}
+			}
+		}
+		
+		int batchSize = amppdPropertyConfig.getGalaxyUploadBatchSize();
+		for (int i = 0; i < pfiles.size(); i += batchSize) {
+			List<Primaryfile> batch = pfiles.subList(i, Math.min(i + batchSize, pfiles.size()));
+			List<String> pathnames = new ArrayList<String>();
+			for (Primaryfile primaryfile : batch) {
+				pathnames.add(fileStorageService.absolutePathName(primaryfile.getPathname()));
+			}
+			
+			try {
+				List<GalaxyObject> gos = galaxyDataService.uploadFilesToGalaxy(pathnames);
+				for (int j = 0; j < batch.size(); j++) {
+					batch.get(j).setDatasetId(gos.get(j).getId());
+				}
+				primaryfileRepository.saveAll(batch);
+				count += batch.size();
+			}
+			catch (Exception e) {
+				log.error("Failed to register a batch of " + batch.size() + " primaryfiles in Galaxy, they will be registered upon job submission.", e);
+			}
+		}
+		
+		if (total > 0) {
+			log.info("Successfully registered " + count + " out of " + total + " primaryfiles in Galaxy.");
+		}
+		return count;
+	}
+	
+	/**
+	 * Get the ID of the Galaxy dataset shared by all primaryfiles with the given stored content; 
+	 * upload the content file to Galaxy if this is the first time any of them is registered in Galaxy.
+	 * @param content the given stored content
+	 * @return the dataset ID
+	 */
+	protected String getContentDatasetId(StoredContent content) {
+		if (content.getDatasetId() != null) {
+			log.info("Reusing Galaxy dataset " + content.getDatasetId() + " of stored content " + content.getPathname());
+			return content.getDatasetId();
+		}
+		
+		// upload from the content file instead of the asset's file, so that the dataset stays valid when any of the assets is deleted
+		String pathname = fileStorageService.absolutePathName(content.getPathname());
+		GalaxyObject go = galaxyDataService.uploadFileToGalaxy(pathname);
+		
+		// if another thread has uploaded the content meanwhile, use its dataset so that all primaryfiles share the same one
+		if (storedContentRepository.updateDatasetId(content.getId(), go.getId()) == 0) {
+			String datasetId = storedContentRepository.findById(content.getId()).map(StoredContent::getDatasetId).orElse(null);
+			if (datasetId != null) {
+				log.warn("Stored content " + content.getPathname() + " has been uploaded to Galaxy concurrently, dataset " + go.getId() + " is left unused");
+				return datasetId;
+			}
+		}
+		content.setDatasetId(go.getId());
+		return go.getId();
+	}
+	
+	/**
+	 * Retrieve the workflow results with the given IDs in one query.
+	 * @param resultIds the given workflow result IDs
+	 * @return map of the existing workflow results by ID
+	 */
+	protected Map<Long, WorkflowResult> findWorkflowResults(Collection<Long> resultIds) {
+		Map<Long, WorkflowResult> results = new HashMap<Long, WorkflowResult>();
+		workflowResultRepository.findAllById(resultIds).forEach(result -> results.put(result.getId(), result));
+		return results;
+	}
+	
+	/**
+	 * Retrieve the primaryfiles shared by the given workflow results in one query.
+	 * @param results the given workflow results
+	 * @return map of the existing primaryfiles by ID
+	 */
+	protected Map<Long, Primaryfile> findSharedPrimaryfiles(Collection<WorkflowResult> results) {
+		Set<Long> primaryfileIds = new HashSet<Long>();
+		for (WorkflowResult result : results) {
+			if (result.getPrimaryfileId() != null) {
+				primaryfileIds.add(result.getPrimaryfileId());
+			}
+		}
+		
+		Map<Long, Primaryfile> primaryfiles = new HashMap<Long, Primaryfile>();
+		primaryfileRepository.findAllById(primaryfileIds).forEach(primaryfile -> primaryfiles.put(primaryfile.getId(), primaryfile));
+		return primaryfiles;
+	}
+	
 	/**
 	 * Check whether the given workflow results outputs are valid to be used as workflow inputs, i.e. they all exist
 	 * and share the same primaryfileId and historyId, and share those with the provided primaryfile if not null; 
@@ -189,12 +349,27 @@ public class JobServiceImpl implements JobService {
 	 * @param outputIds list of the outputIds of the given workflow results. assumed to be initialized to empty list
 	 */
 	protected Primaryfile retrieveSharedPrimaryfileValidateOutputs(Primaryfile primaryfile, Long[] resultIds, List<String> outputIds) {
+		return retrieveSharedPrimaryfileValidateOutputs(primaryfile, resultIds, outputIds, null, null);
+	}
+	
+	/**
+	 * Same as retrieveSharedPrimaryfileValidateOutputs(Primaryfile, Long[], List<String>), except that the workflow results 
+	 * and their shared primaryfiles are looked up from the given maps preloaded for multiple jobs, if provided; 
+	 * otherwise the results are retrieved in one query and the shared primaryfile by its ID.
+	 * @param results map of the preloaded workflow results by ID, could be null
+	 * @param primaryfiles map of the preloaded primaryfiles by ID, could be null
+	 */
+	protected Primaryfile retrieveSharedPrimaryfileValidateOutputs(Primaryfile primaryfile, Long[] resultIds, List<String> outputIds, Map<Long, WorkflowResult> results, Map<Long, Primaryfile> primaryfiles) {
 		Long primaryfileId = primaryfile == null ? null : primaryfile.getId();
 		String historyId = primaryfile == null ? null : primaryfile.getHistoryId();
+		Map<Long, WorkflowResult> resultMap = results == null ? findWorkflowResults(Arrays.asList(resultIds)) : results;
  
 		for (Long resultId : resultIds) {
 			// retrieve WorkflowResult by ID and make sure the outputId is populated
-			WorkflowResult result = workflowResultRepository.findById(resultId).orElseThrow(() -> new StorageException("WorkflowResult <" + resultId + "> does not exist!"));
+			WorkflowResult result = resultMap.get(resultId);
+			if (result == null) {
+				throw new StorageException("WorkflowResult <" + resultId + "> does not exist!");
+			}
 			String outputId = result.getOutputId();
 			if (StringUtils.isEmpty(outputId)) {
 				throw new StorageException("WorkflowResult " + resultId + " has empty outputId!");
@@ -236,7 +411,10 @@ public class JobServiceImpl implements JobService {
 		// to make sure it actually exists and has the same historyId as shared by the results
 		if (primaryfile == null) {
 			Long id = primaryfileId; // Java compiler disallows using non-final local variable such as primaryfileId in below line
-			primaryfile = primaryfileRepository.findById(id).orElseThrow(() -> new StorageException("Primaryfile <" + id + "> does not exist!"));
+			primaryfile = primaryfiles == null ? primaryfileRepository.findById(id).orElse(null) : primaryfiles.get(id);
+			if (primaryfile == null) {
+				throw new StorageException("Primaryfile <" + id + "> does not exist!");
+			}
 			if (!primaryfile.getHistoryId().equals(historyId)) {
 				throw new GalaxyWorkflowException("Primaryfile " + id + " shared by the results has a different historyId " + primaryfile.getHistoryId() + " than the shared " + historyId);				
 			}
@@ -246,6 +424,136 @@ public class JobServiceImpl implements JobService {
 		return primaryfile;
 	}
 	
+	/**
+	 * Derive the idempotency key for the AMP job with the given workflow, inputs and parameters, 
+	 * so that submissions of the same job produce the same key regardless of the parameters' order.
+	 * @param workflowId ID of the given workflow
+	 * @param primaryfileId ID of the primaryfile shared by the inputs
+	 * @param resultIds IDs of the WorkflowResults used as inputs, null if the job runs on primaryfile only
+	 * @param includePrimaryfile whether the primaryfile is included as input
+	 * @param parameters the given normalized parameters
+	 * @return the SHA-256 hex of the job signature
+	 */
+	protected String getIdempotencyKey(String workflowId, Long primaryfileId, Long[] resultIds, Boolean includePrimaryfile, String parameters) {
+		String signature = workflowId + "|" + primaryfileId + "|" + (resultIds == null ? "" : StringUtils.join(resultIds, ",")) + "|" + includePrimaryfile + "|" + parameters;
+		return DigestUtils.sha256Hex(signature);
+	}
+	
+	/**
+	 * Normalize the given parameters into a string with the steps and parameters sorted by their IDs and names.
+	 * @param parameters the dynamic parameters as a map {stepId: {paramName; paramValue}}
+	 * @return the normalized parameters
+	 */
+	protected String normalizeParameters(Map<String, Map<String, String>> parameters) {
+		Map<String, Map<String, String>> sorted = new TreeMap<String, Map<String, String>>();
+		if (parameters != null) {
+			parameters.forEach((stepId, params) -> sorted.put(stepId, params == null ? new TreeMap<String, String>() : new TreeMap<String, String>(params)));
+		}
+		return sorted.toString();
+	}
+	
+	/**
+	 * Find the existing invocation for the AMP job with the given idempotency key which can be returned instead of creating a new one:
+	 * either one created within the configured idempotency window without any failed result, or, if skipping completed jobs is enabled, 
+	 * one whose workflow results are all complete.
+	 * @param idempotencyKey the given idempotency key
+	 * @return the existing invocation, or null if none found
+	 */
+	protected JobInvocation findReusableInvocation(String idempotencyKey) {
+		int minutes = amppdPropertyConfig.getJobIdempotencyMinutes();
+		if (minutes > 0) {
+			// a failed invocation is not returned, so that the user can retry the job right away 
+			Date dateCreated = new Date(System.currentTimeMillis() - minutes * 60000l);
+			for (JobInvocation invocation : jobInvocationRepository.findByIdempotencyKeyAndDateCreatedAfterOrderByDateCreatedDesc(idempotencyKey, dateCreated)) {
+				if (workflowResultRepository.countByInvocationIdAndStatusIn(invocation.getInvocationId(), FAILED_STATES) == 0) {
+					return invocation;
+				}
+			}
+		}
+		
+		if (amppdPropertyConfig.getJobSkipCompleted()) {
+			for (JobInvocation invocation : jobInvocationRepository.findByIdempotencyKeyOrderByDateCreatedDesc(idempotencyKey)) {
+				String invocationId = invocation.getInvocationId();
+				if (workflowResultRepository.countByInvocationId(invocationId) > 0 && 
+					workflowResultRepository.countByInvocationIdAndStatusNot(invocationId, GalaxyJobState.COMPLETE) == 0) {
+					return invocation;
+				}
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Get the content key for the AMP job running the given workflow on the given primaryfile only, with the given normalized parameters.
+	 * Unlike the idempotency key, it is derived from the primaryfile's content hash instead of its ID,
+	 * so that jobs with the same workflow and parameters on primaryfiles with byte-identical media produce the same key.
+	 * @param workflowId ID of the given workflow
+	 * @param primaryfile the given primaryfile
+	 * @param parameters the given normalized parameters
+	 * @return the SHA-256 hex of the job content signature, or null if the primaryfile's content hash is unknown
+	 */
+	protected String getContentKey(String workflowId, Primaryfile primaryfile, String parameters) {
+		if (primaryfile.getSha256() == null) {
+			return null;
+		}
+		String signature = workflowId + "|" + primaryfile.getSha256() + "|" + parameters;
+		return DigestUtils.sha256Hex(signature);
+	}
+	
+	/**
+	 * Reuse for the given primaryfile the outputs of the latest completed invocation with the given content key on another primaryfile,
+	 * by copying them into the given primaryfile's history; or return the copies if they have already been made for the primaryfile. 
+	 * Invocations with results not all complete are passed over, as their outputs might still change or fail.
+	 * @param contentKey the given content key
+	 * @param primaryfile the given primaryfile
+	 * @return WorkflowOutputs referring to the reused invocation and the copied outputs, or null if none can be reused
+	 */
+	protected WorkflowOutputs reuseWorkflowResults(String contentKey, Primaryfile primaryfile) {
+		List<JobInvocation> invocations = jobInvocationRepository.findByContentKeyOrderByDateCreatedDesc(contentKey);
+		invocations.removeIf(invocation -> primaryfile.getId().equals(invocation.getPrimaryfileId()));
+		
+		// return the existing copies, if any, so that outputs aren't copied to the primaryfile more than once 
+		for (JobInvocation invocation : invocations) {
+			List<WorkflowResult> copies = workflowResultRepository.findByInvocationIdAndPrimaryfileId(invocation.getInvocationId(), primaryfile.getId());
+			if (!copies.isEmpty()) {
+				return getReusedOutputs(invocation.getInvocationId(), primaryfile, copies);
+			}
+		}
+		
+		for (JobInvocation invocation : invocations) {
+			String invocationId = invocation.getInvocationId();
+			List<WorkflowResult> sources = workflowResultRepository.findByInvocationIdAndPrimaryfileId(invocationId, invocation.getPrimaryfileId());
+			if (sources.isEmpty() || sources.stream().anyMatch(result -> result.getStatus() != GalaxyJobState.COMPLETE)) {
+				continue;
+			}
+			
+			try {
+				List<WorkflowResult> copies = workflowResultService.copyWorkflowResults(sources, primaryfile);
+				return getReusedOutputs(invocationId, primaryfile, copies);
+			}
+			catch (Exception e) {
+				// fall back to invoking the workflow, as reuse is only an optimization
+				log.warn("Failed to reuse outputs of invocation " + invocationId + " from primaryfile " + invocation.getPrimaryfileId() + " for primaryfile " + primaryfile.getId(), e);
+				return null;
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Get the WorkflowOutputs referring to the given reused invocation and the given copied results in the given primaryfile's history.
+	 */
+	protected WorkflowOutputs getReusedOutputs(String invocationId, Primaryfile primaryfile, List<WorkflowResult> copies) {
+		WorkflowOutputs woutputs = new WorkflowOutputs();
+		woutputs.setId(invocationId);
+		woutputs.setHistoryId(primaryfile.getHistoryId());
+		woutputs.setOutputIds(new ArrayList<String>());
+		copies.forEach(copy -> woutputs.getOutputIds().add(copy.getOutputId()));
+		return woutputs;
+	}
+	
 	/**
 	 * Build the inputs for the given workflow in Galaxy, by feeding them with the given primaryfile's dataset,
 	 * and the outputs of the given workflow results, with the given user-defined parameters, in the given history.
@@ -460,6 +768,16 @@ public class JobServiceImpl implements JobService {
 	 * @return CreateJobResponse containing detailed information for the job submitted
 	 */
 	protected CreateJobResponse createJob(WorkflowDetails workflowDetails, Long primaryfileId, Long[] resultIds, Map<String, Map<String, String>> parameters, Boolean includePrimaryfile) {
+		return createJob(workflowDetails, primaryfileId, resultIds, parameters, includePrimaryfile, null, null);
+	}
+	
+	/**
+	 * Same as createJob(WorkflowDetails, Long, Long[], Map<String, Map<String, String>>, Boolean), except that the workflow results
+	 * and their shared primaryfiles are looked up from the given maps preloaded for multiple jobs, if provided.
+	 * @param results map of the preloaded workflow results by ID, could be null
+	 * @param primaryfiles map of the preloaded primaryfiles by ID, could be null
+	 */
+	protected CreateJobResponse createJob(WorkflowDetails workflowDetails, Long primaryfileId, Long[] resultIds, Map<String, Map<String, String>> parameters, Boolean includePrimaryfile, Map<Long, WorkflowResult> results, Map<Long, Primaryfile> primaryfiles) {
 		String primaryfileMsg = primaryfileId == null ? "" : ", primaryfileId: " + primaryfileId;
 		String resultsMsg = "";
 		if (resultIds != null) {
@@ -497,7 +815,7 @@ public class JobServiceImpl implements JobService {
     		List<String> outputIds = new ArrayList<String>();
     		if (resultIds != null) {
     			// make sure that all results have valid outputs and share the same primaryfile and history
-    			primaryfile = retrieveSharedPrimaryfileValidateOutputs(primaryfile, resultIds, outputIds);
+    			primaryfile = retrieveSharedPrimaryfileValidateOutputs(primaryfile, resultIds, outputIds, results, primaryfiles);
         		
     			// if not done yet, initialize job creation response with primaryfile info
         		if (response == null) {
@@ -520,21 +838,88 @@ public class JobServiceImpl implements JobService {
     		 * This might need some hard-coded mapping on AMP side, as the input/output name is not necessarily 1:1 mapping. 
     		 */
 
-    		// build inputs and invoke the workflow 
     		// when resultIds is not provided, includePrimaryfile will be ignored, and primaryfile will be the only input 
-			String datasetId = resultIds == null || includePrimaryfile ? primaryfile.getDatasetId() : null; 
-			WorkflowInputs winputs = buildWorkflowInputs(workflowDetails, datasetId, outputIds, primaryfile.getHistoryId(), parameters);
-    		populateMgmParameters(workflowDetails, primaryfile, winputs.getParameters());
-    		msg_param = ", parameters (system updated): " + winputs.getParameters();
-    		WorkflowOutputs woutputs = workflowsClient.runWorkflow(winputs);    		
+    		Boolean withPrimaryfile = resultIds == null || includePrimaryfile;
+    		String parametersNormalized = normalizeParameters(parameters);
+    		String idempotencyKey = getIdempotencyKey(workflowId, primaryfile.getId(), resultIds, withPrimaryfile, parametersNormalized);
     		
-    		// add workflow results to the table for the newly created invocation
-    		workflowResultService.addWorkflowResults(woutputs, workflowDetails, primaryfile);
+    		// only one submission of the same job proceeds at a time; concurrent duplicates wait for its outcome instead of holding a lock, 
+    		// so that the Galaxy calls below don't block submissions of other jobs; if it fails, the next waiting duplicate proceeds on its own
+    		CompletableFuture<WorkflowOutputs> created = new CompletableFuture<WorkflowOutputs>();
+    		CompletableFuture<WorkflowOutputs> pending;
+    		while ((pending = jobsInFlight.putIfAbsent(idempotencyKey, created)) != null) {
+    			WorkflowOutputs woutputs = pending.join();
+    			if (woutputs != null) {
+    				response.setStatus(true, "", woutputs);
+    				log.info("Skipped creating duplicate " + msg + msg_param + ", returning invocation " + woutputs.getId() + " created concurrently");
+    				return response;
+    			}
+    		}
     		
-    		// update response with success job creation status
-    		response.setStatus(true, "", woutputs);
-    		log.info("Successfully created " + msg + msg_param);
-        	log.info("Galaxy workflow outputs: " + woutputs.getOutputIds());
+    		try {
+    			// return the existing invocation for duplicate submission of the same job instead of invoking the workflow again
+    			JobInvocation existing = findReusableInvocation(idempotencyKey);
+    			if (existing != null) {
+    				WorkflowOutputs woutputs = new WorkflowOutputs();
+    				woutputs.setId(existing.getInvocationId());
+    				woutputs.setHistoryId(existing.getHistoryId());
+    				woutputs.setOutputIds(new ArrayList<String>());
+    				workflowResultRepository.findByInvocationIdAndPrimaryfileId(existing.getInvocationId(), existing.getPrimaryfileId()).forEach(result -> woutputs.getOutputIds().add(result.getOutputId()));
+    				response.setStatus(true, "", woutputs);
+    				created.complete(woutputs);
+    				log.info("Skipped creating duplicate " + msg + msg_param + ", returning existing invocation " + existing.getInvocationId() + " created at " + existing.getDateCreated());
+    				return response;
+    			}
+    			
+    			// reuse the completed outputs of the same job on a primaryfile with identical media instead of invoking the workflow again
+    			String contentKey = resultIds == null ? getContentKey(workflowId, primaryfile, parametersNormalized) : null;
+    			if (contentKey != null && amppdPropertyConfig.getJobReuseResults()) {
+    				WorkflowOutputs woutputs = reuseWorkflowResults(contentKey, primaryfile);
+    				if (woutputs != null) {
+    					response.setStatus(true, "", woutputs);
+    					created.complete(woutputs);
+    					log.info("Skipped invoking workflow for " + msg + msg_param + ", reusing outputs of invocation " + woutputs.getId() + " on identical media: " + woutputs.getOutputIds());
+    					return response;
+    				}
+    			}
+    			
+	    		// build inputs and invoke the workflow 
+				String datasetId = withPrimaryfile ? primaryfile.getDatasetId() : null; 
+				WorkflowInputs winputs = buildWorkflowInputs(workflowDetails, datasetId, outputIds, primaryfile.getHistoryId(), parameters);
+	    		populateMgmParameters(workflowDetails, primaryfile, winputs.getParameters());
+	    		msg_param = ", parameters (system updated): " + winputs.getParameters();
+	    		WorkflowOutputs woutputs = getWorkflowsClient().runWorkflow(winputs);    		
+	    		
+	    		// record the invocation with its idempotency key for detecting duplicate submissions later on, and content key for reusing its outputs
+	    		JobInvocation invocation = new JobInvocation();
+	    		invocation.setIdempotencyKey(idempotencyKey);
+	    		invocation.setContentKey(contentKey);
+	    		invocation.setInvocationId(woutputs.getId());
+	    		invocation.setHistoryId(woutputs.getHistoryId());
+	    		invocation.setWorkflowId(workflowId);
+	    		invocation.setPrimaryfileId(primaryfile.getId());
+	    		invocation.setResultIds(resultIds == null ? null : StringUtils.join(resultIds, ","));
+	    		invocation.setParameters(parametersNormalized);
+	    		invocation.setSubmitter(ampUserService.getCurrentUsername());
+	    		invocation.setDateCreated(new Date());
+	    		jobInvocationRepository.save(invocation);
+	    		
+	    		// the invocation is recorded, so duplicates from now on find it, no need to hold them till its results are added
+	    		created.complete(woutputs);
+	    		
+	    		// add workflow results to the table for the newly created invocation
+	    		workflowResultService.addWorkflowResults(woutputs, workflowDetails, primaryfile);
+	    		
+	    		// update response with success job creation status
+	    		response.setStatus(true, "", woutputs);
+	    		log.info("Successfully created " + msg + msg_param);
+	        	log.info("Galaxy workflow outputs: " + woutputs.getOutputIds());
+    		}
+    		finally {
+    			// release waiting duplicates, which proceed on their own if no invocation has been created 
+    			jobsInFlight.remove(idempotencyKey, created);
+    			created.complete(null);
+    		}
     	}
     	catch (Exception e) {  
     		String error = "";
@@ -577,7 +962,7 @@ public class JobServiceImpl implements JobService {
 		int nSuccess = 0;
 
 		// retrieve the workflow 
-		WorkflowDetails workflowDetails = workflowsClient.showWorkflow(workflowId);
+		WorkflowDetails workflowDetails = workflowService.showWorkflow(workflowId, false, false);
 		if (workflowDetails == null) {
 			throw new GalaxyWorkflowException("Can't find workflow with ID " + workflowId);
 			// TODO find a good way to return error instead of exception
@@ -587,6 +972,18 @@ public class JobServiceImpl implements JobService {
 		Set<Long> pidset = primaryfileIds == null ? new HashSet<Long>() : new HashSet<Long>(Arrays.asList(primaryfileIds));
 		Long[] pids = pidset.toArray(primaryfileIds);		
 
+		// make sure the history pool has enough histories for the primaryfiles running AMP jobs for the first time
+		List<Long> pidlist = new ArrayList<Long>(pidset);
+		pidlist.remove(null);
+		if (!pidlist.isEmpty()) {
+			historyPoolService.requestRefill(primaryfileRepository.countByIdInAndHistoryIdNull(pidlist));
+		}
+		
+		// register the primaryfiles in Galaxy in batches rather than one by one upon each job creation
+		List<Primaryfile> pfiles = new ArrayList<Primaryfile>();
+		primaryfileRepository.findAllById(pidlist).forEach(pfiles::add);
+		uploadPrimaryfilesToGalaxy(pfiles);
+
 		// create AMP job for each primaryfile in the array
 		for (Long primaryfileId : pids) {
 			// skip null primaryfileId, which could result from redundant IDs passed from request parameter being changed to null
@@ -617,7 +1014,7 @@ public class JobServiceImpl implements JobService {
 		int nSuccess = 0;
 
 		// retrieve the workflow 
-		WorkflowDetails workflowDetails = workflowsClient.showWorkflow(workflowId);
+		WorkflowDetails workflowDetails = workflowService.showWorkflow(workflowId, false, false);
 		if (workflowDetails == null) {
 			throw new GalaxyWorkflowException("Can't find workflow with ID " + workflowId);
 			// TODO find a good way to return error instead of exception
@@ -630,8 +1027,14 @@ public class JobServiceImpl implements JobService {
 			return responses;
 		}
 
-		// create AMP job for each primaryfile in the bundle
+		// make sure the history pool has enough histories for the primaryfiles running AMP jobs for the first time
 		Set<Primaryfile> primaryfiles = bundle.getPrimaryfiles();
+		historyPoolService.requestRefill((int)primaryfiles.stream().filter(primaryfile -> primaryfile.getHistoryId() == null).count());
+		
+		// register the primaryfiles in Galaxy in batches rather than one by one upon each job creation
+		uploadPrimaryfilesToGalaxy(new ArrayList<Primaryfile>(primaryfiles));
+
+		// create AMP job for each primaryfile in the bundle
 		for (Primaryfile primaryfile : primaryfiles) {
 			// no need to catch exception as createJob catches all and always returns a response 
 			CreateJobResponse response = createJob(workflowDetails, primaryfile.getId(), parameters);
@@ -657,16 +1060,28 @@ public class JobServiceImpl implements JobService {
 		int nSuccess = 0;
 
 		// retrieve the workflow 
-		WorkflowDetails workflowDetails = workflowsClient.showWorkflow(workflowId);
+		WorkflowDetails workflowDetails = workflowService.showWorkflow(workflowId, false, false);
 		if (workflowDetails == null) {
 			throw new GalaxyWorkflowException("Can't find workflow with ID " + workflowId);
 			// TODO find a good way to return error instead of exception
 		}
+		
+		// retrieve all workflow results referenced in all rows, and the primaryfiles shared by them, in one query each,
+		// so that each job is validated in memory instead of querying per result
+		Set<Long> resultIdset = new HashSet<Long>();
+		for (Long[] resultIds : resultIdss) {
+			if (resultIds != null) {
+				resultIdset.addAll(Arrays.asList(resultIds));
+			}
+		}
+		resultIdset.remove(null);
+		Map<Long, WorkflowResult> results = findWorkflowResults(resultIdset);
+		Map<Long, Primaryfile> primaryfiles = findSharedPrimaryfiles(results.values());
 				
 		// create job for each row in the csv
 		for (int i=0; i < resultIdss.size(); i++) {
 			// no need to catch exception as createJob catches all and always returns a response 
-			CreateJobResponse response = createJob(workflowDetails, null, resultIdss.get(i), parameters, includePrimaryfile);			
+			CreateJobResponse response = createJob(workflowDetails, null, resultIdss.get(i), parameters, includePrimaryfile, results, primaryfiles);			
 			responses.add(response);						
 			if (response.getSuccess()) {
 				nSuccess++;
@@ -696,79 +1111,120 @@ public class JobServiceImpl implements JobService {
 	 * @see edu.indiana.dlib.amppd.service.JobService.parseInputCsv(MultipartFile)
 	 */
 	public List<Long[]> parseInputCsv(MultipartFile inputCsv) {		
+		List<Long[]> resultIdss = new ArrayList<Long[]>();	
+		StringBuilder errors = new StringBuilder();
+		
+		// collect the valid rows, append error message if any
+		parseInputCsv(inputCsv, amppdPropertyConfig.getInputCsvChunkSize(), rows -> {
+			for (InputCsvRow row : rows) {
+				if (row.getError() == null) {
+					resultIdss.add(row.getResultIds());
+				}
+				else {
+					errors.append("\n" + row.getError());
+				}
+			}
+		});
+
+		// throw parser exception if any error on the rows 
+		if (errors.length() > 0) {
+			String errmsgs = "Failed to parse the input CSV file " + inputCsv.getOriginalFilename() + " for workflow submission!" + errors.toString();
+			log.error(errmsgs);
+			throw new ParserException(errmsgs);
+		}					
+
+		return resultIdss;
+	}
+	
+	/**
+	 * @see edu.indiana.dlib.amppd.service.JobService.parseInputCsv(MultipartFile, int, Consumer<List<InputCsvRow>>)
+	 */
+	public int parseInputCsv(MultipartFile inputCsv, int chunkSize, Consumer<List<InputCsvRow>> consumer) {		
 		log.info("Parsing input CSV file " + inputCsv.getOriginalFilename() + " for workflow submission ...");
 		
-		List<String[]> rows = null;
 		int nrow = 0;
 		int ncol = 0;
+		int nerr = 0;
 		String errmsg = "Failed to parse the input CSV file " + inputCsv.getOriginalFilename() + " for workflow submission!";
 
-		// overall process
-		try {
-			// parse the CSV file into a list of string arrays
-			CSVReader reader = new CSVReaderBuilder(new BufferedReader(new InputStreamReader(inputCsv.getInputStream()))).build();
-			rows = reader.readAll();
-			
+		try (CSVReader reader = new CSVReaderBuilder(new BufferedReader(new InputStreamReader(inputCsv.getInputStream()))).build()) {
 			// there should be at least the header row
-			if (rows.isEmpty()) {
+			String[] header = reader.readNext();
+			if (header == null) {
 				throw new ParserException("The input CSV file has no row, at least the header row must be present!");				
 			}	
 
 			// record the number of columns in the CSV header
-			ncol = rows.get(0).length;
-			nrow = rows.size();
+			ncol = header.length;
 			
 			// there should be the primaryfileId plus at least one workflowResultId column
 			if (ncol < 2) {
 				throw new ParserException("The input CSV file has no column for WorkflowResult IDs, besides the primaryfileId column, at least one WorkflowResultId column must be present!");				
 			}				
+
+			// process each row after the header, and hand over the rows in chunks so that memory usage is bounded by the chunk size
+			List<InputCsvRow> rows = new ArrayList<InputCsvRow>(chunkSize);
+			String[] columns;
+			while ((columns = reader.readNext()) != null) {
+				InputCsvRow row = parseInputCsvRow(columns, ++nrow, ncol);
+				if (row.getError() != null) {
+					nerr++;
+				}
+				
+				rows.add(row);
+				if (rows.size() >= chunkSize) {
+					consumer.accept(rows);
+					rows = new ArrayList<InputCsvRow>(chunkSize);
+				}
+			}
+			
+			if (!rows.isEmpty()) {
+				consumer.accept(rows);
+			}
 		}
-		catch(Exception e) {
+		catch(IOException | ParserException e) {
 			log.error(errmsg, e);
 			throw new ParserException(errmsg + e.getMessage(), e);
 		}	
 
-		List<Long[]> resultIdss = new ArrayList<Long[]>();	
-		StringBuilder errors = new StringBuilder();
+		log.info("Parsed the input CSV file into " + nrow + " rows of " + (ncol-1) + " workflowResultIds, " + nerr + " rows are invalid");
+		return nrow;
+	}
+	
+	/**
+	 * Parse the given columns of a row in the input CSV file into WorkflowResult IDs; if invalid, record the error in the returned row.
+	 * @param columns the given columns
+	 * @param rowNum row number after the header
+	 * @param ncol number of columns in the header
+	 * @return the parsed row
+	 */
+	protected InputCsvRow parseInputCsvRow(String[] columns, int rowNum, int ncol) {
+		InputCsvRow row = new InputCsvRow();
+		row.setRowNum(rowNum);
 		
-		// process each row after the header, append error message if any
-		for (int i=1; i < rows.size(); i++) {
-			String[] columns = rows.get(i);
-			Long primaryfileId = null;
-			Long[] resultIds = new Long[ncol-1];
-			
-			try {
-				// each row should have the same number of columns as the header
-				if (columns.length != ncol) {
-					throw new ParserException("There are " + columns.length + " instead of the expected " + ncol + " columns!");
-				}
+		try {
+			// each row should have the same number of columns as the header
+			if (columns.length != ncol) {
+				throw new ParserException("There are " + columns.length + " instead of the expected " + ncol + " columns!");
+			}
 
-				// first column should be primaryfileId, we don't rely on its value but better validate its format
-				primaryfileId = Long.parseLong(columns[0].trim());  
+			// first column should be primaryfileId, we don't rely on its value but better validate its format
+			row.setPrimaryfileId(Long.parseLong(columns[0].trim()));  
 
-				// the rest of the columns should be resultIds in the order of workflow inputs
-				for (int j=1; j < columns.length; j++) {
-					resultIds[j-1] = Long.parseLong(columns[j].trim());  
-				}
-				
-				resultIdss.add(resultIds);
+			// the rest of the columns should be resultIds in the order of workflow inputs
+			Long[] resultIds = new Long[ncol-1];
+			for (int j=1; j < columns.length; j++) {
+				resultIds[j-1] = Long.parseLong(columns[j].trim());  
 			}
-			catch(Exception e) {
-				String err = "Error on row " + i + " for primaryfile " + primaryfileId + ": ";
-				errors.append( "\n" + err + e.toString());
-				log.error(err, e);
-			}				
+			row.setResultIds(resultIds);
 		}
-
-		// throw parser exception if any error on the rows 
-		if (errors.length() > 0) {
-			String errmsgs = errmsg + errors.toString();
-			log.error(errmsgs);
-			throw new ParserException(errmsgs);
-		}					
-
-		log.info("Successfully parsed the input CSV file into " + (nrow-1) + " rows of " + (ncol-1) + " workflowResultIds");
-		return resultIdss;
+		catch(Exception e) {
+			String err = "Error on row " + rowNum + " for primaryfile " + row.getPrimaryfileId() + ": ";
+			row.setError(err + e.toString());
+			log.error(err, e);
+		}				
+		
+		return row;
 	}
 	
 	/**
@@ -787,7 +1243,7 @@ public class JobServiceImpl implements JobService {
 		}
 
 		try {
-			invocations = workflowsClient.indexInvocations(workflowId, primaryfile.getHistoryId());
+			invocations = getWorkflowsClient().indexInvocations(workflowId, primaryfile.getHistoryId());
 		} 
 		catch(Exception e) {
 			String msg = "Unable to index invocations for: workflowId: " + workflowId + ", priamryfileId: " + primaryfileId;
@@ -807,8 +1263,8 @@ public class JobServiceImpl implements JobService {
 		Dataset dataset  = null;
 		
 		try {
-			Invocation invocation = workflowsClient.showInvocation(workflowId, invocationId, false);
-			dataset = historiesClient.showDataset(invocation.getHistoryId(), datasetId);
+			Invocation invocation = getWorkflowsClient().showInvocation(workflowId, invocationId, false);
+			dataset = getHistoriesClient().showDataset(invocation.getHistoryId(), datasetId);
 		}
 		catch (Exception e) {
 			String msg = "Could not find valid invocation for: workflowId: " + workflowId + ", invocationId: " + invocationId;
@@ -0,0 +1,667 @@
+package edu.indiana.dlib.amppd.service.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.jmchilton.blend4j.galaxy.beans.WorkflowDetails;
+
+import edu.indiana.dlib.amppd.config.AmppdPropertyConfig;
+import edu.indiana.dlib.amppd.exception.GalaxyWorkflowException;
+import edu.indiana.dlib.amppd.exception.StorageException;
+import edu.indiana.dlib.amppd.model.AmpUser;
+import edu.indiana.dlib.amppd.model.Bundle;
+import edu.indiana.dlib.amppd.model.JobSubmission;
+import edu.indiana.dlib.amppd.model.JobSubmissionItem;
+import edu.indiana.dlib.amppd.model.Primaryfile;
+import edu.indiana.dlib.amppd.repository.BundleRepository;
+import edu.indiana.dlib.amppd.repository.JobSubmissionItemRepository;
+import edu.indiana.dlib.amppd.repository.JobSubmissionRepository;
+import edu.indiana.dlib.amppd.repository.PrimaryfileRepository;
+import edu.indiana.dlib.amppd.repository.WorkflowResultRepository;
+import edu.indiana.dlib.amppd.service.AmpUserService;
+import edu.indiana.dlib.amppd.service.GalaxyResilienceService;
+import edu.indiana.dlib.amppd.service.HistoryPoolService;
+import edu.indiana.dlib.amppd.service.JobAdmissionService;
+import edu.indiana.dlib.amppd.service.JobSchedulingPolicy;
+import edu.indiana.dlib.amppd.service.JobService;
+import edu.indiana.dlib.amppd.service.JobSubmissionService;
+import edu.indiana.dlib.amppd.service.MediaService;
+import edu.indiana.dlib.amppd.service.WorkflowService;
+import edu.indiana.dlib.amppd.web.CreateJobResponse;
+import edu.indiana.dlib.amppd.web.InputCsvRow;
+import edu.indiana.dlib.amppd.web.JobSubmissionResponse;
+import edu.indiana.dlib.amppd.web.JobSubmissionState;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Implementation of JobSubmissionService.
+ * @author yingfeng
+ */
+@Service
+@Slf4j
+public class JobSubmissionServiceImpl implements JobSubmissionService {
+	public static final String INTERRUPTED_ERROR = "Job submission was interrupted by server restart, please check whether the job exists in Galaxy before resubmitting it.";
+	public static final String QUEUING_INTERRUPTED_ERROR = "Job was not submitted as queuing its input CSV was interrupted by server restart.";
+
+	@Autowired
+	private AmppdPropertyConfig amppdPropertyConfig;
+
+	@Autowired
+	private JobSubmissionRepository jobSubmissionRepository;
+
+	@Autowired
+	private JobSubmissionItemRepository jobSubmissionItemRepository;
+
+	@Autowired
+    private BundleRepository bundleRepository;
+
+	@Autowired
+    private PrimaryfileRepository primaryfileRepository;
+
+	@Autowired
+	private HistoryPoolService historyPoolService;
+
+	@Autowired
+	private JobAdmissionService jobAdmissionService;
+
+	@Autowired
+	private GalaxyResilienceService galaxyResilienceService;
+
+	@Autowired
+	private List<JobSchedulingPolicy> jobSchedulingPolicies;
+
+	@Autowired
+	private WorkflowResultRepository workflowResultRepository;
+
+	@Autowired
+	private MediaService mediaService;
+
+	@Autowired
+	private AmpUserService ampUserService;
+
+	@Autowired
+	private JobService jobService;
+
+	@Autowired
+	private WorkflowService workflowService;
+
+	private ObjectMapper objectMapper = new ObjectMapper();
+
+	// pool of workers submitting jobs to Galaxy
+	private ThreadPoolTaskExecutor executor;
+
+	// number of jobs currently being processed by the workers
+	private AtomicInteger activeJobs = new AtomicInteger(0);
+
+	// policy deciding the order in which pending jobs are dispatched
+	private JobSchedulingPolicy jobSchedulingPolicy;
+
+	// IDs of the pending submissions by submitter and idempotency key, so that concurrent retries of a request wait for its outcome
+	private Map<String, CompletableFuture<Long>> submissionsInFlight = new ConcurrentHashMap<String, CompletableFuture<Long>>();
+
+	// IDs of the submissions whose jobs are still being queued from their input CSV
+	private Set<Long> parsingSubmissions = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Initialize the JobSubmissionServiceImpl bean:
+	 * start the job submission workers, and clean up the jobs interrupted by previous server shutdown.
+	 */
+	@PostConstruct
+	public void init() {
+		executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(amppdPropertyConfig.getJobSubmissionThreads());
+		executor.setMaxPoolSize(amppdPropertyConfig.getJobSubmissionThreads());
+		executor.setThreadNamePrefix("job-submission-");
+		executor.initialize();
+
+		// use the configured scheduling policy, fall back to FIFO if it doesn't exist
+		String policy = amppdPropertyConfig.getJobSchedulingPolicy();
+		jobSchedulingPolicy = jobSchedulingPolicies.stream().filter(p -> p.getName().equals(policy)).findFirst().orElse(null);
+		if (jobSchedulingPolicy == null) {
+			log.warn("Invalid job scheduling policy " + policy + ", using " + FifoJobSchedulingPolicy.NAME + " instead.");
+			jobSchedulingPolicy = jobSchedulingPolicies.stream().filter(p -> p.getName().equals(FifoJobSchedulingPolicy.NAME)).findFirst().get();
+		}
+
+		// jobs still in process when server shut down might or might not have been created in Galaxy,
+		// to avoid duplicate invocations, mark them as failed instead of resubmitting them;
+		// while pending jobs remain in the queue and will be picked up by the next dispatch
+		int count = jobSubmissionItemRepository.updateStatus(JobSubmissionState.PROCESSING, JobSubmissionState.FAILED, INTERRUPTED_ERROR);
+		if (count > 0) {
+			log.warn("Marked " + count + " jobs interrupted by previous server shutdown as failed.");
+		}
+
+		// jobs still being queued from an input CSV never started, but the rest of the CSV is lost, so they are failed as well
+		count = jobSubmissionItemRepository.updateStatus(JobSubmissionState.QUEUING, JobSubmissionState.FAILED, QUEUING_INTERRUPTED_ERROR);
+		if (count > 0) {
+			log.warn("Marked " + count + " jobs whose input CSV was being queued at previous server shutdown as failed.");
+		}
+
+		// close submissions which have no more jobs left to process
+		List<JobSubmission> submissions = jobSubmissionRepository.findByStatusIn(List.of(JobSubmissionState.PENDING, JobSubmissionState.PROCESSING));
+		for (JobSubmission submission : submissions) {
+			completeSubmission(submission.getId());
+		}
+
+		log.info("Initialized job submission workers with pool size " + amppdPropertyConfig.getJobSubmissionThreads() + " and scheduling policy " + jobSchedulingPolicy.getName() + ", " + submissions.size() + " unfinished submissions found in queue.");
+	}
+
+	/**
+	 * Shut down the job submission workers; jobs not yet handed to the workers remain pending in the queue.
+	 */
+	@PreDestroy
+	public void destroy() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Retrieve the given workflow from cache or Galaxy, throw exception if it doesn't exist.
+	 * @param workflowId ID of the given workflow
+	 * @return details of the workflow
+	 */
+	protected WorkflowDetails getWorkflowDetails(String workflowId) {
+		WorkflowDetails workflowDetails = null;
+		try {
+			workflowDetails = workflowService.showWorkflow(workflowId, false, false);
+		}
+		catch (Exception e) {
+			throw new GalaxyWorkflowException("Can't find workflow with ID " + workflowId, e);
+		}
+		if (workflowDetails == null) {
+			throw new GalaxyWorkflowException("Can't find workflow with ID " + workflowId);
+		}
+		return workflowDetails;
+	}
+
+	/**
+	 * Create a new job submission with the given workflow and parameters, and persist it in pending status.
+	 * @param workflowId ID of the given workflow
+	 * @param parameters the dynamic parameters to use for the steps in the workflow
+	 * @param includePrimaryfile indicator on whether or not to include primaryfile as workflow input
+	 * @return the created job submission
+	 */
+	protected JobSubmission createSubmission(String workflowId, Map<String, Map<String, String>> parameters, Boolean includePrimaryfile) {
+		// validate the workflow upfront, so that requests with invalid workflow fail without being queued
+		getWorkflowDetails(workflowId);
+
+		JobSubmission submission = new JobSubmission();
+		submission.setWorkflowId(workflowId);
+		submission.setIncludePrimaryfile(includePrimaryfile);
+		submission.setSubmitter(ampUserService.getCurrentUsername());
+		submission.setDateSubmitted(new Date());
+		submission.setStatus(JobSubmissionState.PENDING);
+
+		try {
+			submission.setParameters(objectMapper.writeValueAsString(parameters));
+		}
+		catch (Exception e) {
+			throw new GalaxyWorkflowException("Failed to serialize parameters " + parameters + " for workflow " + workflowId, e);
+		}
+
+		return submission;
+	}
+
+	/**
+	 * Create a pending job within the given submission, with the given primaryfile or results as inputs.
+	 * @param submission the given job submission
+	 * @param rowNum order of the job within the submission
+	 * @param primaryfileId ID of the primaryfile, null if results are provided
+	 * @param resultIds IDs of the WorkflowResults, null if primaryfile is provided
+	 * @return the created job
+	 */
+	protected JobSubmissionItem createSubmissionItem(JobSubmission submission, int rowNum, Long primaryfileId, Long[] resultIds) {
+		JobSubmissionItem item = new JobSubmissionItem();
+		item.setSubmission(submission);
+		item.setRowNum(rowNum);
+		item.setPrimaryfileId(primaryfileId);
+		item.setResultIds(resultIds == null ? null : StringUtils.join(resultIds, ","));
+		item.setStatus(JobSubmissionState.PENDING);
+		return item;
+	}
+
+	/**
+	 * Populate the unit and media duration of the primaryfile for each of the given jobs, which are used by the scheduling policy;
+	 * for jobs on previous results, the primaryfile is the one associated with the first result.
+	 * @param items the given jobs
+	 */
+	protected void populateSchedulingInfo(List<JobSubmissionItem> items) {
+		// find the WorkflowResults of the jobs on previous results, to get their primaryfile
+		Set<Long> resultIds = new HashSet<Long>();
+		for (JobSubmissionItem item : items) {
+			if (item.getResultIds() != null) {
+				resultIds.add(parseResultIds(item.getResultIds())[0]);
+			}
+		}
+		Map<Long, Long> resultPrimaryfileIds = new HashMap<Long, Long>();
+		workflowResultRepository.findAllById(resultIds).forEach(result -> resultPrimaryfileIds.put(result.getId(), result.getPrimaryfileId()));
+		
+		// retrieve all primaryfiles at once
+		List<Long> itemPrimaryfileIds = new ArrayList<Long>();
+		for (JobSubmissionItem item : items) {
+			itemPrimaryfileIds.add(item.getResultIds() == null ? item.getPrimaryfileId() : resultPrimaryfileIds.get(parseResultIds(item.getResultIds())[0]));
+		}
+		Set<Long> primaryfileIds = new HashSet<Long>(itemPrimaryfileIds);
+		primaryfileIds.remove(null);
+		Map<Long, Primaryfile> primaryfiles = new HashMap<Long, Primaryfile>();
+		primaryfileRepository.findAllById(primaryfileIds).forEach(primaryfile -> primaryfiles.put(primaryfile.getId(), primaryfile));
+		
+		for (int i = 0; i < items.size(); i++) {
+			Primaryfile primaryfile = primaryfiles.get(itemPrimaryfileIds.get(i));
+			if (primaryfile != null) {
+				items.get(i).setUnitId(primaryfile.getItem().getCollection().getUnit().getId());
+				items.get(i).setMediaDuration(mediaService.getMediaDuration(primaryfile));
+			}
+		}
+	}
+
+	/**
+	 * Persist the given submission along with its jobs into the queue, and dispatch the jobs to available workers.
+	 * @param submission the given submission
+	 * @param items jobs within the submission
+	 * @return JobSubmissionResponse for the queued submission
+	 */
+	protected JobSubmissionResponse queueSubmission(JobSubmission submission, List<JobSubmissionItem> items) {
+		// a submission without any job is complete right away
+		if (items.isEmpty()) {
+			submission.setStatus(JobSubmissionState.COMPLETE);
+			submission.setDateCompleted(new Date());
+		}
+
+		populateSchedulingInfo(items);
+		jobSubmissionRepository.save(submission);
+		jobSubmissionItemRepository.saveAll(items);
+		log.info("Successfully queued job submission " + submission.getId() + " with " + items.size() + " jobs for workflow " + submission.getWorkflowId());
+
+		dispatchJobs();
+		return getJobSubmission(submission.getId());
+	}
+
+	/**
+	 * @see edu.indiana.dlib.amppd.service.JobSubmissionService.submitJobs(String, Long[], Map<String, Map<String, String>>)
+	 */
+	@Override
+	public JobSubmissionResponse submitJobs(String workflowId, Long[] primaryfileIds, Map<String, Map<String, String>> parameters) {
+		log.info("Queuing AMP jobs for: workflowId: " + workflowId + ", primaryfileIds: " + primaryfileIds + ", parameters: " + parameters);
+		JobSubmission submission = createSubmission(workflowId, parameters, true);
+		List<JobSubmissionItem> items = new ArrayList<JobSubmissionItem>();
+
+		// remove redundant primaryfile IDs while keeping the original order
+		Set<Long> pids = primaryfileIds == null ? new LinkedHashSet<Long>() : new LinkedHashSet<Long>(Arrays.asList(primaryfileIds));
+		// skip null primaryfileId, which could result from redundant IDs passed from request parameter being changed to null
+		pids.remove(null);
+		for (Long primaryfileId : pids) {
+			items.add(createSubmissionItem(submission, items.size(), primaryfileId, null));
+		}
+
+		// make sure the history pool has enough histories for the primaryfiles running AMP jobs for the first time
+		if (!pids.isEmpty()) {
+			historyPoolService.requestRefill(primaryfileRepository.countByIdInAndHistoryIdNull(new ArrayList<Long>(pids)));
+		}
+		return queueSubmission(submission, items);
+	}
+
+	/**
+	 * @see edu.indiana.dlib.amppd.service.JobSubmissionService.submitJobBundle(String, Long, Map<String, Map<String, String>>)
+	 */
+	@Override
+	public JobSubmissionResponse submitJobBundle(String workflowId, Long bundleId, Map<String, Map<String, String>> parameters) {
+		log.info("Queuing a bundle of AMP jobs for: workflowId: " + workflowId + ", bundleId: " + bundleId + ", parameters: " + parameters);
+		Bundle bundle = bundleRepository.findById(bundleId).orElseThrow(() -> new StorageException("Bundle <" + bundleId + "> does not exist!"));
+		JobSubmission submission = createSubmission(workflowId, parameters, true);
+		submission.setBundleId(bundleId);
+		List<JobSubmissionItem> items = new ArrayList<JobSubmissionItem>();
+
+		// the jobs are determined by the primaryfiles in the bundle at the time of submission
+		if (bundle.getPrimaryfiles() == null || bundle.getPrimaryfiles().isEmpty()) {
+			log.warn("Bundle <" + bundleId + "> does not contain any primaryfile, so no jobs will be created.");
+		}
+		else {
+			int demand = 0;
+			for (Primaryfile primaryfile : bundle.getPrimaryfiles()) {
+				items.add(createSubmissionItem(submission, items.size(), primaryfile.getId(), null));
+				if (primaryfile.getHistoryId() == null) {
+					demand++;
+				}
+			}
+			historyPoolService.requestRefill(demand);
+		}
+
+		return queueSubmission(submission, items);
+	}
+
+	/**
+	 * @see edu.indiana.dlib.amppd.service.JobSubmissionService.submitJobs(String, List<Long[]>, Map<String, Map<String, String>>, Boolean)
+	 */
+	@Override
+	public JobSubmissionResponse submitJobs(String workflowId, List<Long[]> resultIdss, Map<String, Map<String, String>> parameters, Boolean includePrimaryfile) {
+		log.info("Queuing AMP jobs for: workflowId: " + workflowId + ", resultIdss: " + resultIdss + ", parameters: " + parameters + ", includePrimaryfile: " + includePrimaryfile);
+		JobSubmission submission = createSubmission(workflowId, parameters, includePrimaryfile);
+		List<JobSubmissionItem> items = new ArrayList<JobSubmissionItem>();
+
+		for (Long[] resultIds : resultIdss) {
+			items.add(createSubmissionItem(submission, items.size(), null, resultIds));
+		}
+
+		return queueSubmission(submission, items);
+	}
+
+	/**
+	 * @see edu.indiana.dlib.amppd.service.JobSubmissionService.submitJobs(String, MultipartFile, Map<String, Map<String, String>>, Boolean)
+	 */
+	@Override
+	public JobSubmissionResponse submitJobs(String workflowId, MultipartFile inputCsv, Map<String, Map<String, String>> parameters, Boolean includePrimaryfile) {
+		log.info("Queuing AMP jobs for: workflowId: " + workflowId + ", inputCsv: " + inputCsv.getOriginalFilename() + ", parameters: " + parameters + ", includePrimaryfile: " + includePrimaryfile);
+
+		JobSubmission submission = createSubmission(workflowId, parameters, includePrimaryfile);
+		submission.setInputCsvFilename(inputCsv.getOriginalFilename());
+		jobSubmissionRepository.save(submission);
+		
+		// stream the input CSV into the queue chunk by chunk, rows start after the header; invalid rows are queued as failed jobs
+		// with their parsing errors, so they are reported through the submission progress rather than failing the whole submission;
+		// meanwhile, valid rows are held as QUEUING, so that none is dispatched before all rows are queued successfully
+		parsingSubmissions.add(submission.getId());
+		int count = 0;
+		try {
+			count = jobService.parseInputCsv(inputCsv, amppdPropertyConfig.getInputCsvChunkSize(), rows -> {
+				List<JobSubmissionItem> items = new ArrayList<JobSubmissionItem>();
+				for (InputCsvRow row : rows) {
+					JobSubmissionItem item = createSubmissionItem(submission, row.getRowNum(), row.getPrimaryfileId(), row.getResultIds());
+					if (row.getError() != null) {
+						item.setStatus(JobSubmissionState.FAILED);
+						item.setError(row.getError());
+						item.setDateCompleted(new Date());
+					}
+					else {
+						item.setStatus(JobSubmissionState.QUEUING);
+					}
+					items.add(item);
+				}
+				populateSchedulingInfo(items);
+				jobSubmissionItemRepository.saveAll(items);
+			});
+			
+			// all rows are queued, release them for dispatch
+			jobSubmissionItemRepository.updateSubmissionStatus(submission.getId(), JobSubmissionState.QUEUING, JobSubmissionState.PENDING, null);
+		}
+		catch (Exception e) {
+			// the submission can't be processed if the CSV itself is invalid; none of its jobs has been dispatched,
+			// fail them all with the parsing error and close the submission, so it remains on record as failed
+			int failed = jobSubmissionItemRepository.updateSubmissionStatus(submission.getId(), JobSubmissionState.QUEUING, JobSubmissionState.FAILED, "Failed to queue input CSV: " + e.getMessage());
+			submission.setStatus(JobSubmissionState.FAILED);
+			submission.setDateCompleted(new Date());
+			jobSubmissionRepository.save(submission);
+			log.error("Failed to queue job submission " + submission.getId() + " from input CSV " + inputCsv.getOriginalFilename() + ", marked " + failed + " queued jobs as failed.");
+			throw e;
+		}
+		finally {
+			parsingSubmissions.remove(submission.getId());
+		}
+		log.info("Successfully queued job submission " + submission.getId() + " with " + count + " jobs for workflow " + workflowId);
+
+		// close the submission right away if all rows are invalid or there is no row
+		completeSubmission(submission.getId());
+		dispatchJobs();
+		return getJobSubmission(submission.getId());
+	}
+
+	/**
+	 * @see edu.indiana.dlib.amppd.service.JobSubmissionService.submitIdempotent(String, Supplier<JobSubmissionResponse>)
+	 */
+	@Override
+	public JobSubmissionResponse submitIdempotent(String idempotencyKey, Supplier<JobSubmissionResponse> submit) {
+		int minutes = amppdPropertyConfig.getJobIdempotencyMinutes();
+		if (StringUtils.isEmpty(idempotencyKey) || minutes <= 0) {
+			return submit.get();
+		}
+		
+		// only one submission with the same key proceeds at a time; concurrent retries wait for its outcome instead of holding a lock,
+		// so that submissions with other keys aren't blocked while it's being processed; if it fails, the next waiting retry proceeds on its own
+		String submitter = ampUserService.getCurrentUsername();
+		String key = submitter + "|" + idempotencyKey;
+		CompletableFuture<Long> submitted = new CompletableFuture<Long>();
+		CompletableFuture<Long> pending;
+		while ((pending = submissionsInFlight.putIfAbsent(key, submitted)) != null) {
+			Long submissionId = pending.join();
+			if (submissionId != null) {
+				log.info("Skipped duplicate job submission with idempotency key " + idempotencyKey + ", returning job submission " + submissionId + " made concurrently");
+				return getJobSubmission(submissionId);
+			}
+		}
+		
+		try {
+			Date dateSubmitted = new Date(System.currentTimeMillis() - minutes * 60000l);
+			JobSubmission existing = jobSubmissionRepository.findFirstByIdempotencyKeyAndSubmitterAndDateSubmittedAfterOrderByDateSubmittedDesc(idempotencyKey, submitter, dateSubmitted);
+			if (existing != null) {
+				log.info("Skipped duplicate job submission with idempotency key " + idempotencyKey + ", returning existing job submission " + existing.getId());
+				submitted.complete(existing.getId());
+				return getJobSubmission(existing.getId());
+			}
+			
+			JobSubmissionResponse response = submit.get();
+			JobSubmission submission = jobSubmissionRepository.findById(response.getSubmissionId()).orElseThrow(() -> new StorageException("JobSubmission <" + response.getSubmissionId() + "> does not exist!"));
+			submission.setIdempotencyKey(idempotencyKey);
+			jobSubmissionRepository.save(submission);
+			submitted.complete(submission.getId());
+			return response;
+		}
+		finally {
+			// release waiting retries, which proceed on their own if no submission has been made
+			submissionsInFlight.remove(key, submitted);
+			submitted.complete(null);
+		}
+	}
+
+	/**
+	 * @see edu.indiana.dlib.amppd.service.JobSubmissionService.getJobSubmission(Long)
+	 */
+	@Override
+	public JobSubmissionResponse getJobSubmission(Long submissionId) {
+		JobSubmission submission = jobSubmissionRepository.findById(submissionId).orElseThrow(() -> new StorageException("JobSubmission <" + submissionId + "> does not exist!"));
+		List<JobSubmissionItem> items = jobSubmissionItemRepository.findBySubmissionIdOrderByRowNum(submissionId);
+
+		JobSubmissionResponse response = new JobSubmissionResponse();
+		response.setSubmissionId(submissionId);
+		response.setWorkflowId(submission.getWorkflowId());
+		response.setStatus(submission.getStatus());
+		response.setDateSubmitted(submission.getDateSubmitted());
+		response.setDateCompleted(submission.getDateCompleted());
+		response.setTotal(items.size());
+
+		for (JobSubmissionItem item : items) {
+			CreateJobResponse jobResponse = new CreateJobResponse(item.getPrimaryfileId());
+			jobResponse.setCollectionName(StringUtils.defaultString(item.getCollectionName()));
+			jobResponse.setItemName(StringUtils.defaultString(item.getItemName()));
+			jobResponse.setPrimaryfileName(StringUtils.defaultString(item.getPrimaryfileName()));
+			jobResponse.setInvocationId(item.getInvocationId());
+			jobResponse.setError(item.getError());
+
+			switch (item.getStatus()) {
+			case QUEUING:
+			case PENDING:
+				response.setPending(response.getPending() + 1);
+				break;
+			case PROCESSING:
+				response.setProcessing(response.getProcessing() + 1);
+				break;
+			case COMPLETE:
+				response.setSucceeded(response.getSucceeded() + 1);
+				jobResponse.setSuccess(true);
+				break;
+			case FAILED:
+				response.setFailed(response.getFailed() + 1);
+				jobResponse.setSuccess(false);
+				break;
+			}
+
+			response.getResponses().add(jobResponse);
+		}
+
+		log.debug("Job submission " + submissionId + " status: " + response.getStatus() + ", pending: " + response.getPending() + ", processing: " + response.getProcessing() + ", succeeded: " + response.getSucceeded() + ", failed: " + response.getFailed());
+		return response;
+	}
+
+	/**
+	 * @see edu.indiana.dlib.amppd.service.JobSubmissionService.dispatchJobs()
+	 */
+	@Override
+	public synchronized int dispatchJobs() {
+		int capacity = amppdPropertyConfig.getJobSubmissionThreads() - activeJobs.get();
+		if (capacity <= 0) {
+			return 0;
+		}
+		
+		// keep pending jobs in the queue while Galaxy is down, instead of failing them one by one
+		if (!galaxyResilienceService.isAvailable()) {
+			log.debug("Galaxy is unavailable, pending jobs are held in queue.");
+			return 0;
+		}
+		
+		// hold pending jobs in the queue if Galaxy is at its in-flight ceiling; jobs being submitted by the workers
+		// are not yet reflected in the in-flight count, so they are taken off the available capacity as well
+		int admissible = jobAdmissionService.getAvailableCapacity();
+		if (admissible < Integer.MAX_VALUE) {
+			admissible -= activeJobs.get();
+			if (admissible < capacity) {
+				log.debug("Admission control limits dispatch to " + Math.max(0, admissible) + " jobs, the rest of the pending jobs are held in queue.");
+				capacity = admissible;
+			}
+			if (capacity <= 0) {
+				return 0;
+			}
+		}
+
+		List<JobSubmissionItem> items = jobSchedulingPolicy.selectPendingJobs(capacity);
+		for (JobSubmissionItem item : items) {
+			// claim the job before handing it to a worker, so it won't be picked up again by the next dispatch
+			item.setStatus(JobSubmissionState.PROCESSING);
+			item.setDateStarted(new Date());
+			jobSubmissionItemRepository.save(item);
+
+			JobSubmission submission = item.getSubmission();
+			if (submission.getStatus() == JobSubmissionState.PENDING) {
+				submission.setStatus(JobSubmissionState.PROCESSING);
+				jobSubmissionRepository.save(submission);
+			}
+
+			activeJobs.incrementAndGet();
+			executor.execute(() -> processJob(item));
+		}
+
+		if (!items.isEmpty()) {
+			log.info("Dispatched " + items.size() + " pending jobs to job submission workers.");
+		}
+		return items.size();
+	}
+
+	/**
+	 * Submit the given job to Galaxy on behalf of its submitter, and record the job creation response.
+	 * @param item the given job
+	 */
+	protected void processJob(JobSubmissionItem item) {
+		JobSubmission submission = item.getSubmission();
+
+		try {
+			// run the job as its submitter, who is recorded in the job context and the results
+			AmpUser user = ampUserService.getUser(submission.getSubmitter());
+			if (user != null) {
+				SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(user, null, null));
+			}
+
+			WorkflowDetails workflowDetails = getWorkflowDetails(submission.getWorkflowId());
+			Map<String, Map<String, String>> parameters = StringUtils.isEmpty(submission.getParameters()) ?
+					new HashMap<String, Map<String, String>>() :
+					objectMapper.readValue(submission.getParameters(), new TypeReference<Map<String, Map<String, String>>>() {});
+
+			// no need to catch exception as createJob catches all and always returns a response;
+			// each row's results are loaded in one query, rows aren't batched as they are dispatched a few at a time across submissions,
+			// and the results must be validated as they are when the job is submitted, not when it was queued
+			CreateJobResponse response = item.getResultIds() == null ?
+					jobService.createJob(workflowDetails, item.getPrimaryfileId(), parameters) :
+					jobService.createJob(workflowDetails, parseResultIds(item.getResultIds()), parameters, submission.getIncludePrimaryfile());
+
+			item.setStatus(response.getSuccess() ? JobSubmissionState.COMPLETE : JobSubmissionState.FAILED);
+			item.setError(response.getError());
+			item.setPrimaryfileId(response.getPrimaryfileId());
+			item.setCollectionName(response.getCollectionName());
+			item.setItemName(response.getItemName());
+			item.setPrimaryfileName(response.getPrimaryfileName());
+			if (response.getOutputs() != null) {
+				item.setInvocationId(response.getOutputs().getId());
+				item.setHistoryId(response.getOutputs().getHistoryId());
+			}
+		}
+		catch (Exception e) {
+			item.setStatus(JobSubmissionState.FAILED);
+			item.setError(e.toString());
+			log.error("Failed to process job " + item.getId() + " in job submission " + submission.getId(), e);
+		}
+		finally {
+			item.setDateCompleted(new Date());
+			jobSubmissionItemRepository.save(item);
+			SecurityContextHolder.clearContext();
+			activeJobs.decrementAndGet();
+		}
+
+		// close the submission if this is the last job, and keep the workers busy with the next pending jobs
+		completeSubmission(submission.getId());
+		dispatchJobs();
+	}
+
+	/**
+	 * Mark the given submission as complete if none of its jobs is pending or being processed, and all of its jobs have been queued.
+	 * @param submissionId ID of the given submission
+	 */
+	protected synchronized void completeSubmission(Long submissionId) {
+		if (parsingSubmissions.contains(submissionId) ||
+			jobSubmissionItemRepository.countBySubmissionIdAndStatus(submissionId, JobSubmissionState.PENDING) > 0 ||
+			jobSubmissionItemRepository.countBySubmissionIdAndStatus(submissionId, JobSubmissionState.PROCESSING) > 0) {
+			return;
+		}
+
+		JobSubmission submission = jobSubmissionRepository.findById(submissionId).orElseThrow(() -> new StorageException("JobSubmission <" + submissionId + "> does not exist!"));
+		if (submission.getStatus() != JobSubmissionState.COMPLETE) {
+			submission.setStatus(JobSubmissionState.COMPLETE);
+			submission.setDateCompleted(new Date());
+			jobSubmissionRepository.save(submission);
+			log.info("Completed job submission " + submissionId + " for workflow " + submission.getWorkflowId());
+		}
+	}
+
+	/**
+	 * Parse the given comma separated WorkflowResult IDs into an array.
+	 * @param resultIds the given comma separated IDs
+	 * @return array of the IDs
+	 */
+	protected Long[] parseResultIds(String resultIds) {
+		String[] ids = StringUtils.split(resultIds, ",");
+		Long[] rids = new Long[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			rids[i] = Long.valueOf(ids[i].trim());
+		}
+		return rids;
+	}
+
+}
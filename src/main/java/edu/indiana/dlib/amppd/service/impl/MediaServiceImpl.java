@@ -452,6 +452,32 @@ public class MediaServiceImpl implements MediaService {
 		return response;
 	}
 	
+	/**
+	 * @see edu.indiana.dlib.amppd.service.MediaService.getMediaDuration(Asset)
+	 */
+	@Override
+	public Double getMediaDuration(Asset asset) {
+		if (StringUtils.isEmpty(asset.getMediaInfo())) {
+			return null;
+		}
+		
+		try {
+			// duration is usually in the container info, but fall back to the top level in case it's not there 
+			JSONObject jsonObject = new JSONObject(asset.getMediaInfo());
+			JSONObject container = jsonObject.optJSONObject("container");
+			if (container != null && container.has("duration")) {
+				return container.getDouble("duration");
+			}
+			if (jsonObject.has("duration")) {
+				return jsonObject.getDouble("duration");
+			}
+		} 
+		catch (JSONException e) {
+			log.warn("Failed to parse media duration from mediaInfo of asset " + asset.getId() + ": " + e.getMessage());
+		}
+		return null;
+	}
+	
 	protected String getMediaTypeFromJson(Primaryfile p) {
 		String mime_type = new String();
 		String media_type = p.getMediaInfo();
@@ -4,6 +4,7 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.Date;
 import java.util.Map;
 
 import org.apache.commons.io.FilenameUtils;
@@ -99,6 +100,11 @@ public class PreprocessServiceImpl implements PreprocessService {
 			String originalFilename = FilenameUtils.getBaseName(asset.getOriginalFilename()) + ".wav";
 			asset.setOriginalFilename(originalFilename);
 			asset.setPathname(targetFilePath);
+			
+			// the SHA-256 of the stored media must be that of the converted wav file instead of the original flac file
+			asset.setSha256(fileStorageService.hashFile(fileStorageService.resolve(targetFilePath)));
+			asset.setFixityChecked(new Date());
+			asset.setFixityFailed(false);
 			log.info("Updated media file path after flac->wav conversion for asset: " + asset.getId());		
 		}
 		else {
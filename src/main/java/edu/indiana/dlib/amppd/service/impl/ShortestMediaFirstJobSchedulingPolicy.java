@@ -0,0 +1,43 @@
+package edu.indiana.dlib.amppd.service.impl;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import edu.indiana.dlib.amppd.model.JobSubmissionItem;
+import edu.indiana.dlib.amppd.repository.JobSubmissionItemRepository;
+import edu.indiana.dlib.amppd.service.JobSchedulingPolicy;
+import edu.indiana.dlib.amppd.web.JobSubmissionState;
+
+/**
+ * JobSchedulingPolicy dispatching jobs on primaryfiles with shorter media first, which minimizes the mean turnaround time 
+ * across the queue; jobs with the same media duration are dispatched in the order of submission. 
+ * Note that under constant load jobs on long media could wait for a long time.
+ * @author yingfeng
+ */
+@Service
+public class ShortestMediaFirstJobSchedulingPolicy implements JobSchedulingPolicy {
+	public static final String NAME = "shortestMediaFirst";
+
+	@Autowired
+	private JobSubmissionItemRepository jobSubmissionItemRepository;
+
+	/**
+	 * @see edu.indiana.dlib.amppd.service.JobSchedulingPolicy.getName()
+	 */
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	/**
+	 * @see edu.indiana.dlib.amppd.service.JobSchedulingPolicy.selectPendingJobs(int)
+	 */
+	@Override
+	public List<JobSubmissionItem> selectPendingJobs(int count) {
+		return jobSubmissionItemRepository.findByStatusOrderByMediaDurationAscSubmissionIdAscRowNumAsc(JobSubmissionState.PENDING, PageRequest.of(0, count));
+	}
+
+}
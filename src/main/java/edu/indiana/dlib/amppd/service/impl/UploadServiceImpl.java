@@ -0,0 +1,220 @@
+package edu.indiana.dlib.amppd.service.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import edu.indiana.dlib.amppd.config.AmppdPropertyConfig;
+import edu.indiana.dlib.amppd.exception.StorageException;
+import edu.indiana.dlib.amppd.model.Asset;
+import edu.indiana.dlib.amppd.model.Supplement.SupplementType;
+import edu.indiana.dlib.amppd.model.UploadSession;
+import edu.indiana.dlib.amppd.repository.UploadSessionRepository;
+import edu.indiana.dlib.amppd.service.DataentityService;
+import edu.indiana.dlib.amppd.service.FileStorageService;
+import edu.indiana.dlib.amppd.service.UploadService;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Implementation of UploadService.
+ * Uploaded files are kept under a directory in the storage root until finalized, so that they can be renamed into place 
+ * for the asset without copying.
+ * @author yingfeng
+ */
+@Service
+@Slf4j
+public class UploadServiceImpl implements UploadService {
+	
+	// directory relative to the storage root for the files being uploaded
+	public static final String UPLOAD_DIR = ".uploads";
+	
+	@Autowired
+	private AmppdPropertyConfig amppdPropertyConfig;
+
+	@Autowired
+	private UploadSessionRepository uploadSessionRepository;
+
+	@Autowired
+	private DataentityService dataentityService;
+
+	@Autowired
+	private FileStorageService fileStorageService;
+	
+	/**
+	 * @see edu.indiana.dlib.amppd.service.UploadService.createSession(Long, SupplementType, String, Long)
+	 */
+	@Override
+	public UploadSession createSession(Long assetId, SupplementType assetType, String originalFilename, Long size) {
+		// make sure the asset exists before any bytes are uploaded for it
+		dataentityService.findAsset(assetId, assetType);
+
+		String filename = StringUtils.cleanPath(originalFilename);
+		if (filename.startsWith("..")) {
+			// This is a security check
+			throw new StorageException("Cannot upload file " + originalFilename + " with relative path outside current directory for asset " + assetId);
+		}
+		if (size == null || size <= 0) {
+			throw new StorageException("Cannot upload empty file " + originalFilename + " for asset " + assetId);
+		}
+		
+		Date date = new Date();
+		UploadSession session = new UploadSession();
+		session.setAssetId(assetId);
+		session.setAssetType(assetType);
+		session.setOriginalFilename(filename);
+		session.setSize(size);
+		session.setReceived(0L);
+		session.setDateCreated(date);
+		session.setDateUpdated(date);
+		session = uploadSessionRepository.save(session);
+		
+		// the temporary file is named after the session ID, which is only available once the session is saved
+		session.setPathname(UPLOAD_DIR + "/" + session.getId());
+		try {
+			Path path = fileStorageService.resolve(session.getPathname());
+			Files.createDirectories(path.getParent());
+			Files.deleteIfExists(path);
+			Files.createFile(path);
+		}
+		catch (IOException e) {
+			uploadSessionRepository.delete(session);
+			throw new StorageException("Failed to create upload file " + session.getPathname() + " for asset " + assetId, e);
+		}
+		session = uploadSessionRepository.save(session);
+		
+		log.info("Created upload session " + session.getId() + " for asset " + assetId + " media file " + filename + " of " + size + " bytes");
+		return session;
+	}
+	
+	/**
+	 * @see edu.indiana.dlib.amppd.service.UploadService.getSession(Long)
+	 */
+	@Override
+	public UploadSession getSession(Long id) {
+		return uploadSessionRepository.findById(id).orElseThrow(() -> new StorageException("UploadSession <" + id + "> does not exist!"));
+	}
+
+	/**
+	 * @see edu.indiana.dlib.amppd.service.UploadService.writeChunk(Long, Long, Long, InputStream)
+	 */
+	@Override
+	public UploadSession writeChunk(Long id, Long start, Long length, InputStream content) {
+		UploadSession session = getSession(id);
+		if (start < 0 || length <= 0 || start + length > session.getSize()) {
+			throw new StorageException("Chunk [" + start + ", " + (start + length) + ") is out of the range of upload session " + id + " with size " + session.getSize());
+		}
+		if (start > session.getReceived()) {
+			throw new StorageException("Chunk starting at " + start + " would leave a gap after the " + session.getReceived() + " bytes received by upload session " + id);
+		}
+		
+		// write the chunk in place at its position, so that chunks resent after a disconnect simply overwrite the same bytes
+		long written = 0;
+		IOException error = null;
+		Path path = fileStorageService.resolve(session.getPathname());
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE);
+				ReadableByteChannel source = Channels.newChannel(content)) {
+			try {
+				while (written < length) {
+					long transferred = channel.transferFrom(source, start + written, length - written);
+					if (transferred <= 0) {
+						break;
+					}
+					written += transferred;
+				}
+			}
+			catch (IOException e) {
+				error = e;
+			}
+			
+			// the bytes must be on disk before they are counted as received, otherwise a resumed upload could skip lost bytes
+			if (written > 0) {
+				channel.force(false);
+			}
+		}
+		catch (IOException e) {
+			throw new StorageException("Failed to write chunk at " + start + " to upload file " + session.getPathname() + " for upload session " + id, e);
+		}
+		
+		// count the bytes written even if the chunk is incomplete, so that the client can resume from there
+		if (written > 0) {
+			uploadSessionRepository.updateReceived(id, start, start + written, new Date());
+		}
+		if (error != null) {
+			throw new StorageException("Interrupted writing chunk at " + start + " after " + written + " of " + length + " bytes for upload session " + id, error);
+		}
+		if (written < length) {
+			throw new StorageException("Chunk at " + start + " ended after " + written + " of " + length + " bytes for upload session " + id);
+		}
+		
+		log.debug("Wrote chunk [" + start + ", " + (start + length) + ") for upload session " + id);
+		return getSession(id);
+	}
+	
+	/**
+	 * @see edu.indiana.dlib.amppd.service.UploadService.finalizeSession(Long)
+	 */
+	@Override
+	public Asset finalizeSession(Long id) {
+		UploadSession session = getSession(id);
+		if (session.getReceived() < session.getSize()) {
+			throw new StorageException("Cannot finalize upload session " + id + " with only " + session.getReceived() + " of " + session.getSize() + " bytes received");
+		}
+		
+		Asset asset = dataentityService.findAsset(session.getAssetId(), session.getAssetType());
+		Path path = fileStorageService.resolve(session.getPathname());
+		asset = fileStorageService.uploadAsset(asset, path, session.getOriginalFilename());
+		uploadSessionRepository.delete(session);
+		
+		log.info("Finalized upload session " + id + " for asset " + asset.getId());
+		return asset;
+	}
+	
+	/**
+	 * @see edu.indiana.dlib.amppd.service.UploadService.deleteSession(Long)
+	 */
+	@Override
+	public void deleteSession(Long id) {
+		UploadSession session = getSession(id);
+		fileStorageService.delete(session.getPathname());
+		uploadSessionRepository.delete(session);
+		log.info("Deleted upload session " + id + " for asset " + session.getAssetId());
+	}
+	
+	/**
+	 * @see edu.indiana.dlib.amppd.service.UploadService.cleanupSessions()
+	 */
+	@Override
+	public int cleanupSessions() {
+		Date expiration = new Date(System.currentTimeMillis() - amppdPropertyConfig.getUploadSessionHours() * 3600000L);
+		List<UploadSession> sessions = uploadSessionRepository.findByDateUpdatedBefore(expiration);
+		
+		int count = 0;
+		for (UploadSession session : sessions) {
+			try {
+				fileStorageService.delete(session.getPathname());
+				uploadSessionRepository.delete(session);
+				count++;
+			}
+			catch (Exception e) {
+				log.error("Failed to delete expired upload session " + session.getId(), e);
+			}
+		}
+		
+		if (count > 0) {
+			log.info("Deleted " + count + " expired upload sessions not updated since " + expiration);
+		}
+		return count;
+	}
+	
+}
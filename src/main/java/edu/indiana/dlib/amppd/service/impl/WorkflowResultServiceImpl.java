@@ -13,7 +13,9 @@ import java.util.Set;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.commons.lang3.time.DateUtils;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -33,6 +35,7 @@ import com.github.jmchilton.blend4j.galaxy.beans.Workflow;
 
 import edu.indiana.dlib.amppd.config.AmppdPropertyConfig;
 import edu.indiana.dlib.amppd.config.GalaxyPropertyConfig;
+import edu.indiana.dlib.amppd.exception.GalaxyUnavailableException;
 import edu.indiana.dlib.amppd.exception.GalaxyWorkflowException;
 import edu.indiana.dlib.amppd.exception.StorageException;
 import edu.indiana.dlib.amppd.model.Collection;
@@ -44,6 +47,7 @@ import edu.indiana.dlib.amppd.model.WorkflowResult;
 import edu.indiana.dlib.amppd.repository.MgmToolRepository;
 import edu.indiana.dlib.amppd.repository.PrimaryfileRepository;
 import edu.indiana.dlib.amppd.repository.WorkflowResultRepository;
+import edu.indiana.dlib.amppd.service.GalaxyDataService;
 import edu.indiana.dlib.amppd.service.JobService;
 import edu.indiana.dlib.amppd.service.MediaService;
 import edu.indiana.dlib.amppd.service.WorkflowResultService;
@@ -197,6 +201,9 @@ public class WorkflowResultServiceImpl implements WorkflowResultService {
 	@Autowired
 	private WorkflowResultRepository workflowResultRepository;
 
+	@Autowired
+	private GalaxyDataService galaxyDataService;
+
 	@Autowired
 	private JobService jobService;
 	
@@ -257,6 +264,48 @@ public class WorkflowResultServiceImpl implements WorkflowResultService {
 		return results;
 	}
 	
+	/**
+	 * @see edu.indiana.dlib.amppd.service.WorkflowResultService.copyWorkflowResults(List<WorkflowResult>, Primaryfile)
+	 */
+	@Override
+	public List<WorkflowResult> copyWorkflowResults(List<WorkflowResult> sources, Primaryfile primaryfile) {
+		List<WorkflowResult> results = new ArrayList<WorkflowResult>();
+		Item item = primaryfile.getItem();
+		Collection collection = item.getCollection();
+		Unit unit = collection.getUnit();
+		Date dateRefreshed = new Date();
+		
+		// copy all outputs to Galaxy before adding any result, so that a failed copy doesn't leave a partial set of results 
+		for (WorkflowResult source : sources) {
+			// the output file, as well as the invocation, step and job timestamps, are shared with the source result;
+			// while the output link, label and final status are specific to each result, thus are not copied
+			WorkflowResult result = new WorkflowResult();
+			BeanUtils.copyProperties(source, result, "id", "outputLink", "outputLabel", "isFinal");
+			result.setIsFinal(false);
+			result.setSourceResultId(source.getId());
+			
+			result.setPrimaryfileId(primaryfile.getId());
+			result.setPrimaryfileName(primaryfile.getName());
+			result.setItemId(item.getId());
+			result.setItemName(item.getName());
+			result.setExternalSource(item.getExternalSource());
+			result.setExternalId(item.getExternalId());
+			result.setCollectionId(collection.getId());
+			result.setCollectionName(collection.getName());
+			result.setUnitId(unit.getId());
+			result.setUnitName(unit.getName());
+			
+			result.setOutputId(galaxyDataService.copyDatasetToHistory(source.getOutputId(), primaryfile.getHistoryId()));
+			result.setHistoryId(primaryfile.getHistoryId());
+			result.setDateRefreshed(dateRefreshed);
+			results.add(result);
+		}
+		
+		workflowResultRepository.saveAll(results);
+		log.info("Successfully copied " + results.size() + " WorkflowResults from primaryfile " + sources.get(0).getPrimaryfileId() + " to primaryfile " + primaryfile.getId() + " for invocation " + sources.get(0).getInvocationId());
+		return results;
+	}
+	
 	/**
 	 * @see edu.indiana.dlib.amppd.service.WorkflowResultService.deleteInactiveWorkflowResults(Collection)
 	 */
@@ -364,19 +413,33 @@ public class WorkflowResultServiceImpl implements WorkflowResultService {
 			
 	/**
 	 * Refresh status of the specified WorkflowResults by retrieving corresponding output status from Galaxy.
+	 * WorkflowResults failed to refresh are returned with their previous status; once Galaxy becomes unavailable,
+	 * the remaining WorkflowResults are left as is, to be refreshed next time.
 	 */
 	protected List<WorkflowResult> refreshResultsStatus(List<WorkflowResult> WorkflowResults) {
 		List<WorkflowResult> refreshedResults = new ArrayList<WorkflowResult>();
+		int failed = 0;
 		
-		for(WorkflowResult result : WorkflowResults) {
+		for(int i = 0; i < WorkflowResults.size(); i++) {
+			WorkflowResult result = WorkflowResults.get(i);
 			try {
 				refreshedResults.add(refreshResultStatus(result));
 			}
 			catch(Exception e) {
-				throw new RuntimeException("Failed to refresh the status from Galaxy for WorkflowResult " + result.getId(), e);
+				if (ExceptionUtils.indexOfType(e, GalaxyUnavailableException.class) >= 0) {
+					log.error("Galaxy is unavailable, skipped refreshing status for the remaining " + (WorkflowResults.size() - i) + " WorkflowResults.");
+					refreshedResults.addAll(WorkflowResults.subList(i, WorkflowResults.size()));
+					break;
+				}
+				failed++;
+				refreshedResults.add(result);
+				log.error("Failed to refresh the status from Galaxy for WorkflowResult " + result.getId(), e);
 			}			
 		}
 		
+		if (failed > 0) {
+			log.warn("Failed to refresh status for " + failed + " out of " + WorkflowResults.size() + " WorkflowResults.");
+		}
 		return refreshedResults;
 	}
 	
@@ -450,6 +513,8 @@ public class WorkflowResultServiceImpl implements WorkflowResultService {
 						allResults.addAll(results);
 					}
 				}
+				// results copied from the outputs of identical primaryfiles are not among the invocations above, keep them as refreshed
+				workflowResultRepository.updateDateRefreshedOfCopies(primaryfile.getId(), new Date());
 								
 				log.info("Successfully refreshed results for primaryfile " + primaryfile.getId() + ", total of " + allResults.size() + " results refreshed so far ...");				
 			}
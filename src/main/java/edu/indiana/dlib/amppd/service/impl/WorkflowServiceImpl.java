@@ -2,9 +2,7 @@ package edu.indiana.dlib.amppd.service.impl;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import javax.annotation.PostConstruct;
 
@@ -20,8 +18,12 @@ import com.github.jmchilton.blend4j.galaxy.beans.WorkflowDetails;
 import com.github.jmchilton.blend4j.galaxy.beans.WorkflowStepDefinition;
 import com.sun.jersey.api.client.UniformInterfaceException;
 
+import edu.indiana.dlib.amppd.config.AmppdPropertyConfig;
 import edu.indiana.dlib.amppd.service.GalaxyApiService;
 import edu.indiana.dlib.amppd.service.WorkflowService;
+import edu.indiana.dlib.amppd.util.CacheHelper;
+import edu.indiana.dlib.amppd.util.CacheHelper.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
@@ -39,24 +41,65 @@ public class WorkflowServiceImpl implements WorkflowService {
 	@Autowired
 	private GalaxyApiService galaxyApiService;
 	
-	@Getter
-	private WorkflowsClient workflowsClient;
+	@Autowired
+	private AmppdPropertyConfig amppdPropertyConfig;
+	
+	@Autowired
+	private MeterRegistry meterRegistry;
+	
+	// Galaxy clients are obtained on first use, so that startup doesn't depend on Galaxy being available
+	@Getter(lazy = true)
+	private final WorkflowsClient workflowsClient = galaxyApiService.getGalaxyInstance().getWorkflowsClient();
+	
+	@Getter(lazy = true)
+	private final ToolsClient toolsClient = galaxyApiService.getGalaxyInstance().getToolsClient();
 	
-	@Getter
-	private ToolsClient toolsClient;
+	// cache workflow names to avoid frequent query request to Galaxy in cases such as refreshing workflow results
+	private CacheHelper<String> workflowNames;
 	
-	// use hashmap to cache workflow names to avoid frequent query request to Galaxy in cases such as refreshing workflow results
-	private Map<String, String> workflowNames = new HashMap<String, String>();
+	// cache workflow details by workflow ID and instance flag, to avoid querying Galaxy on each job submission
+	private CacheHelper<WorkflowDetails> workflowDetails;
+	
+	// cache workflow lists by query criteria, to avoid listing all workflows in Galaxy on each request
+	private CacheHelper<List<Workflow>> workflowLists;
+	
+	// cache tool names by tool ID, to avoid querying Galaxy for each step when showing a workflow
+	private CacheHelper<String> toolNames;
 			
 	/**
 	 * Initialize the WorkflowServiceImpl bean.
 	 */
 	@PostConstruct
 	public void init() {
-		workflowsClient = galaxyApiService.getGalaxyInstance().getWorkflowsClient();
-		toolsClient = galaxyApiService.getGalaxyInstance().getToolsClient();
+		int maxItems = amppdPropertyConfig.getWorkflowCacheMaxItems();
+		workflowNames = new CacheHelper<String>("workflowNames", amppdPropertyConfig.getWorkflowCacheSeconds(), maxItems);
+		workflowDetails = new CacheHelper<WorkflowDetails>("workflowDetails", amppdPropertyConfig.getWorkflowCacheSeconds(), maxItems);
+		workflowLists = new CacheHelper<List<Workflow>>("workflowLists", amppdPropertyConfig.getWorkflowListCacheSeconds(), maxItems);
+		toolNames = new CacheHelper<String>("toolNames", amppdPropertyConfig.getToolCacheSeconds(), maxItems);
+		
+		for (CacheHelper<?> cache : List.of(workflowNames, workflowDetails, workflowLists, toolNames)) {
+			cache.registerMetrics(meterRegistry);
+		}
 	}	
 	
+	/**
+	 * List all workflows matching the given hidden/deleted flags in Galaxy, from cache if available.
+	 */
+	protected List<Workflow> getWorkflows(Boolean showHidden, Boolean showDeleted) {
+		String key = showHidden + ":" + showDeleted;
+		return workflowLists.get(key, k -> getWorkflowsClient().getWorkflows(null, showHidden, showDeleted, null));
+	}
+	
+	/**
+	 * Get the name of the given tool, from cache if available; use the tool ID if the tool doesn't exist or has no name.
+	 */
+	protected String getToolName(String toolId) {
+		return toolNames.get(toolId, k -> {
+			Tool tool = getToolsClient().showTool(toolId);
+			return tool == null || StringUtils.isEmpty(tool.getName()) ? toolId : tool.getName();
+		});		
+	}
+	
 	/**
 	 * @see edu.indiana.dlib.amppd.service.WorkflowService.hasWorkflowTag(Workflow, String)
 	 */
@@ -88,7 +131,7 @@ public class WorkflowServiceImpl implements WorkflowService {
 		// We can replace it with the commented code at the end of the method once the Galaxy bug is fixed;
 		// provided that special care is taken to handle the case when the published tag is used.
 			
-		List <Workflow> workflows = workflowsClient.getWorkflows(null, showHidden, showDeleted, null);
+		List <Workflow> workflows = getWorkflows(showHidden, showDeleted);
 		List <Workflow> filterWorkflows = new ArrayList <Workflow>();
 
 		// if showPublished not specified, include both published and unpublished workflows
@@ -127,14 +170,10 @@ public class WorkflowServiceImpl implements WorkflowService {
 			instance = false;
 		}
 		
-		// retrieve workflow details by workflow ID from galaxy
-		WorkflowDetails workflowDetails = null;
-		if (instance) {
-			workflowDetails = workflowsClient.showWorkflowInstance(workflowId);
-		}
-		else {
-			workflowDetails = workflowsClient.showWorkflow(workflowId);
-		}
+		// retrieve workflow details by workflow ID from cache, or from galaxy if not cached
+		Boolean isInstance = instance;
+		WorkflowDetails workflowDetails = this.workflowDetails.get(workflowId + ":" + instance, k -> 
+			isInstance ? getWorkflowsClient().showWorkflowInstance(workflowId) : getWorkflowsClient().showWorkflow(workflowId));
 		
 		// by default, include tool name
 		if (includeToolName == null) {
@@ -146,18 +185,9 @@ public class WorkflowServiceImpl implements WorkflowService {
 			Collection<WorkflowStepDefinition> steps = workflowDetails.getSteps().values();
 			for (WorkflowStepDefinition step : steps) {
 				String toolId = step.getToolId();
+				// use tool name if not empty, otherwise use tool ID as name
 				if (!StringUtils.isEmpty(toolId)) {
-					Tool tool = toolsClient.showTool(toolId);					
-					if (tool != null) {
-						String toolName = tool.getName();
-						// use tool name if not empty, otherwise use tool ID as name
-						if (!StringUtils.isEmpty(toolName)) {
-							step.setToolName(toolName);
-						}
-						else {
-							step.setToolName(toolId);
-						}					
-					}
+					step.setToolName(getToolName(toolId));
 				}
 			}
 		}
@@ -173,7 +203,7 @@ public class WorkflowServiceImpl implements WorkflowService {
 	 */	
 	@Override
 	public Workflow getWorkflow(String workflowName) {
-		for (Workflow workflow : workflowsClient.getWorkflows()) {
+		for (Workflow workflow : getWorkflows(null, null)) {
 			if (workflow.getName().equalsIgnoreCase(workflowName)) {
 				return workflow;			
 			}
@@ -200,7 +230,7 @@ public class WorkflowServiceImpl implements WorkflowService {
 			 */
 //			WorkflowDetails workflow = workflowsClient.showWorkflowInstance(workflowId);
 			
-			WorkflowDetails workflow = workflowsClient.showWorkflow(workflowId);
+			WorkflowDetails workflow = getWorkflowsClient().showWorkflow(workflowId);
 			if (workflow != null) {
 				workflowName = workflow.getName();
 			}
@@ -237,4 +267,35 @@ public class WorkflowServiceImpl implements WorkflowService {
 		return workflowNames.size();
 	}
 	
+	/**
+	 * @see edu.indiana.dlib.amppd.service.WorkflowService.invalidateWorkflowCaches(String)
+	 */
+	public void invalidateWorkflowCaches(String workflowId) {
+		if (workflowId == null) {
+			workflowNames.clear();
+			workflowDetails.clear();
+			toolNames.clear();
+		}
+		else {
+			workflowNames.remove(workflowId);
+			workflowDetails.remove(workflowId + ":" + true);
+			workflowDetails.remove(workflowId + ":" + false);
+		}
+		
+		// workflow lists could include the workflow, so always clear them
+		workflowLists.clear();
+		log.info("Workflow caches have been invalidated for " + (workflowId == null ? "all workflows." : "workflow " + workflowId));
+	}
+	
+	/**
+	 * @see edu.indiana.dlib.amppd.service.WorkflowService.getWorkflowCacheStats()
+	 */
+	public List<CacheStats> getWorkflowCacheStats() {
+		List<CacheStats> stats = new ArrayList<CacheStats>();
+		for (CacheHelper<?> cache : List.of(workflowNames, workflowDetails, workflowLists, toolNames)) {
+			stats.add(cache.getStats());
+		}
+		return stats;
+	}
+	
 }
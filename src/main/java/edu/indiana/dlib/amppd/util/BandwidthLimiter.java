@@ -0,0 +1,53 @@
+package edu.indiana.dlib.amppd.util;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limiter of the I/O bandwidth shared by multiple threads: each thread acquires the number of bytes it reads, 
+ * and is held back as needed so that the total rate doesn't exceed the given bytes per second, 
+ * allowing bursts of up to one second after the limiter has been idle.
+ * @author yingfeng
+ */
+public class BandwidthLimiter {
+
+	private static final long NANOS_PER_SECOND = 1000000000L;
+	
+	// max bytes per second, 0 or negative for unlimited
+	private long bytesPerSecond;
+	
+	// time in nanos when all bytes acquired so far will have been allowed
+	private long nextFree = System.nanoTime();
+	
+	public BandwidthLimiter(long bytesPerSecond) {
+		this.bytesPerSecond = bytesPerSecond;
+	}
+
+	/**
+	 * Acquire the given number of bytes, waiting as long as needed to keep within the bandwidth limit.
+	 */
+	public void acquire(long bytes) throws InterruptedIOException {
+		if (bytesPerSecond <= 0 || bytes <= 0) {
+			return;
+		}
+		
+		long wait;
+		synchronized (this) {
+			long now = System.nanoTime();
+			nextFree = Math.max(nextFree, now - NANOS_PER_SECOND);
+			wait = nextFree - now;
+			nextFree += bytes * NANOS_PER_SECOND / bytesPerSecond;
+		}
+		
+		if (wait > 0) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(wait);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted waiting for I/O bandwidth");
+			}
+		}
+	}
+	
+}
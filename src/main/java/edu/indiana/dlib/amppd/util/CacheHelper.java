@@ -1,16 +1,54 @@
 package edu.indiana.dlib.amppd.util;
 
 import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
 import org.apache.commons.collections4.MapIterator;
 import org.apache.commons.collections4.map.LRUMap;
-import org.springframework.stereotype.Service;
-
-@Service
-public class CacheHelper {
- 
-    private LRUMap cacheMap;
- 
-    protected class CacheObject<T> {
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A thread-safe in-memory cache bounded by the max number of items, with the least recently used items evicted first
+ * when the cache is full, and items expired after their time to live. The cache also keeps track of hits and misses.
+ * @param <T> type of the cached values
+ * @author yingfeng
+ */
+@Slf4j
+public class CacheHelper<T> {
+
+	// shared by all caches to purge expired items periodically
+	private static final ScheduledExecutorService cleaner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "cache-cleaner");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	@Getter
+	private String name;
+
+	@Getter
+	private int maxItems;
+
+	// default time to live in seconds
+	@Getter
+	private long timeToLive;
+
+    private LRUMap<String, CacheObject<T>> cacheMap;
+
+    private AtomicLong hits = new AtomicLong(0);
+    private AtomicLong misses = new AtomicLong(0);
+
+    protected static class CacheObject<T> {
         public long lastAccessed = System.currentTimeMillis();
         public T value;
         public long timeToLive;
@@ -18,95 +56,173 @@ public class CacheHelper {
             this.value = value;
             this.timeToLive = timeToLive * 1000;
         }
+        protected boolean isExpired(long now) {
+        	return now > timeToLive + lastAccessed;
+        }
     }
- 
-    public CacheHelper() {
-    	init(100);
-    }
-    public CacheHelper(long timeToLive, final long timerInterval, int maxItems) {
-        init(maxItems);
-    }	
-    public void init(int maxItems) {
-        cacheMap = new LRUMap(maxItems);
-
-        Thread t = new Thread(new Runnable() {
-            public void run() {
-                while (true) {
-                    try {
-                        Thread.sleep(30 * 1000);
-                    } catch (InterruptedException ex) {
-                    }
-                    cleanup();
-                }
-            }
-        });
 
-        t.setDaemon(true);
-        t.start();
+    /**
+     * Statistics of a cache.
+     */
+    @Data
+    public static class CacheStats {
+    	private String name;
+    	private int size;
+    	private int maxItems;
+    	private long timeToLive;
+    	private long hits;
+    	private long misses;
+    	private double hitRate;
     }
-    public void put(String key, Object value, long timeToLive) {
+
+    public CacheHelper(String name, long timeToLive, int maxItems) {
+    	this.name = name;
+    	this.timeToLive = timeToLive;
+    	this.maxItems = maxItems;
+        cacheMap = new LRUMap<String, CacheObject<T>>(maxItems);
+        cleaner.scheduleWithFixedDelay(this::cleanup, 30, 30, TimeUnit.SECONDS);
+    }
+
+    public void put(String key, T value) {
+    	put(key, value, timeToLive);
+    }
+
+    public void put(String key, T value, long timeToLive) {
         synchronized (cacheMap) {
-        	cacheMap.put(key, new CacheObject(value, timeToLive));
+        	cacheMap.put(key, new CacheObject<T>(value, timeToLive));
         }
     }
- 
-    @SuppressWarnings("unchecked")
-    public Object get(String key, boolean refresh) {
+
+    public T get(String key) {
+    	return get(key, false);
+    }
+
+    /**
+     * Get the cached value for the given key, or null if it's not cached or has expired.
+     * @param key the given key
+     * @param refresh if true, restart the time to live of the item
+     * @return the cached value
+     */
+    public T get(String key, boolean refresh) {
         synchronized (cacheMap) {
-        	CacheObject c = (CacheObject) cacheMap.get(key);
- 
-            if (c == null)
+        	CacheObject<T> c = cacheMap.get(key);
+        	long now = System.currentTimeMillis();
+
+            if (c == null || c.isExpired(now)) {
+            	if (c != null) {
+            		cacheMap.remove(key);
+            	}
+            	misses.incrementAndGet();
                 return null;
-            else {
-                if(refresh) c.lastAccessed = System.currentTimeMillis();
-                return c.value;
             }
+
+            if (refresh) c.lastAccessed = now;
+            hits.incrementAndGet();
+            return c.value;
         }
     }
- 
+
+    /**
+     * Get the cached value for the given key; if not cached, load it with the given loader and cache it unless it's null.
+     * Note that the loader is called outside of the lock, so concurrent misses on the same key might load it more than once.
+     * @param key the given key
+     * @param loader function to load the value for the key
+     * @return the cached or loaded value
+     */
+    public T get(String key, Function<String, T> loader) {
+    	T value = get(key);
+    	if (value == null) {
+    		value = loader.apply(key);
+    		if (value != null) {
+    			put(key, value);
+    		}
+    	}
+    	return value;
+    }
+
     public void remove(String key) {
         synchronized (cacheMap) {
-        	System.out.println("Removing " + key + " from cache");
         	cacheMap.remove(key);
         }
+        log.debug("Removed " + key + " from cache " + name);
+    }
+
+    public void clear() {
+        synchronized (cacheMap) {
+        	cacheMap.clear();
+        }
+        log.info("Cleared cache " + name);
     }
- 
+
     public int size() {
         synchronized (cacheMap) {
             return cacheMap.size();
         }
     }
- 
-    @SuppressWarnings("unchecked")
+
+    public long getHits() {
+    	return hits.get();
+    }
+
+    public long getMisses() {
+    	return misses.get();
+    }
+
+    public double getHitRate() {
+    	long total = hits.get() + misses.get();
+    	return total == 0 ? 0 : (double)hits.get() / total;
+    }
+
+    public CacheStats getStats() {
+    	CacheStats stats = new CacheStats();
+    	stats.setName(name);
+    	stats.setSize(size());
+    	stats.setMaxItems(maxItems);
+    	stats.setTimeToLive(timeToLive);
+    	stats.setHits(getHits());
+    	stats.setMisses(getMisses());
+    	stats.setHitRate(getHitRate());
+    	return stats;
+    }
+
+    /**
+     * Register the size, hits, misses and hit rate of the cache as metrics in the given registry, tagged by the cache name.
+     * @param registry the given meter registry
+     */
+    public void registerMetrics(MeterRegistry registry) {
+    	Gauge.builder("amppd.cache.size", this, CacheHelper::size).tag("cache", name).register(registry);
+    	Gauge.builder("amppd.cache.hitRate", this, CacheHelper::getHitRate).tag("cache", name).register(registry);
+    	FunctionCounter.builder("amppd.cache.hits", this, CacheHelper::getHits).tag("cache", name).register(registry);
+    	FunctionCounter.builder("amppd.cache.misses", this, CacheHelper::getMisses).tag("cache", name).register(registry);
+    }
+
+    /**
+     * Purge all expired items from the cache.
+     */
     public void cleanup() {
- 
         long now = System.currentTimeMillis();
         ArrayList<String> deleteKey = null;
- 
+
         synchronized (cacheMap) {
-            MapIterator itr = cacheMap.mapIterator();
- 
+            MapIterator<String, CacheObject<T>> itr = cacheMap.mapIterator();
+
             deleteKey = new ArrayList<String>((cacheMap.size() / 2) + 1);
-            String key = null;
-            CacheObject c = null;
- 
             while (itr.hasNext()) {
-                key = (String) itr.next();
-                c = (CacheObject) itr.getValue();
-            	System.out.println("now: " + now + " last: " + (c.timeToLive + c.lastAccessed));
-                if (c != null && (now > (c.timeToLive + c.lastAccessed))) {
-                	System.out.println("Expiring " + key + " from cache");
+            	String key = itr.next();
+            	CacheObject<T> c = itr.getValue();
+                if (c != null && c.isExpired(now)) {
                     deleteKey.add(key);
                 }
             }
-        }
- 
-        for (String key : deleteKey) {
-            synchronized (cacheMap) {
+
+            for (String key : deleteKey) {
             	cacheMap.remove(key);
             }
- 
-            Thread.yield();
+        }
+
+        if (!deleteKey.isEmpty()) {
+        	log.debug("Expired " + deleteKey.size() + " items from cache " + name);
         }
     }
-}
\ No newline at end of file
+
+}
@@ -0,0 +1,73 @@
+package edu.indiana.dlib.amppd.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Helper for computing SHA-256 hashes of file content, used to record and verify the fixity of stored assets.
+ * @author yingfeng
+ */
+public class ContentHash {
+
+	public static final String ALGORITHM = "SHA-256";
+	
+	// size of the buffer in which files are read for hashing
+	public static final int BUFFER_SIZE = 1048576;
+	
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	/**
+	 * Create a new SHA-256 message digest.
+	 */
+	public static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance(ALGORITHM);
+		}
+		catch (NoSuchAlgorithmException e) {
+			// every Java platform is required to support SHA-256
+			throw new IllegalStateException(ALGORITHM + " is not supported", e);
+		}
+	}
+	
+	/**
+	 * Return the hex string of the hash computed by the given digest.
+	 */
+	public static String toHex(MessageDigest digest) {
+		byte[] bytes = digest.digest();
+		char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+			chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xf];
+		}
+		return new String(chars);
+	}
+	
+	/**
+	 * Compute the SHA-256 hex string of the content of the given file, reading it sequentially through a direct buffer;
+	 * with the read bandwidth bounded by the given limiter, if not null.
+	 */
+	public static String sha256(Path path, BandwidthLimiter limiter) throws IOException {
+		MessageDigest digest = newDigest();
+		ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			int read;
+			while ((read = channel.read(buffer)) >= 0) {
+				if (limiter != null) {
+					limiter.acquire(read);
+				}
+				buffer.flip();
+				digest.update(buffer);
+				buffer.clear();
+			}
+		}
+		
+		return toHex(digest);
+	}
+	
+}
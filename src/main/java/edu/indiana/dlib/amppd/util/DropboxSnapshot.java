@@ -0,0 +1,68 @@
+package edu.indiana.dlib.amppd.util;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Map;
+
+import lombok.Getter;
+
+/**
+ * An immutable snapshot of the files under a dropbox sub-directory, listed in one pass, with their sizes keyed by
+ * their paths relative to the sub-directory; so that checking the files referred to by a batch manifest doesn't
+ * require a file system round trip per file.
+ * @author yingfeng
+ */
+public class DropboxSnapshot {
+
+	// the dropbox sub-directory listed
+	@Getter
+	private Path root;
+
+	// whether the sub-directory existed when listed
+	@Getter
+	private boolean present;
+
+	// time when the sub-directory was listed
+	@Getter
+	private long timestamp;
+
+	// sizes of the regular files by path relative to the sub-directory
+	private Map<String, Long> sizes;
+
+	public DropboxSnapshot(Path root, boolean present, Map<String, Long> sizes) {
+		this.root = root;
+		this.present = present;
+		this.sizes = Collections.unmodifiableMap(sizes);
+		this.timestamp = System.currentTimeMillis();
+	}
+
+	/**
+	 * Get the key for the given file pathname relative to the sub-directory.
+	 */
+	public static String getKey(String filename) {
+		return Paths.get(filename).normalize().toString();
+	}
+
+	/**
+	 * Check whether the given file relative to the sub-directory existed in the snapshot.
+	 */
+	public boolean exists(String filename) {
+		return sizes.containsKey(getKey(filename));
+	}
+
+	/**
+	 * Get the size in bytes of the given file relative to the sub-directory, or 0 if it didn't exist in the snapshot.
+	 */
+	public long getSize(String filename) {
+		return sizes.getOrDefault(getKey(filename), 0L);
+	}
+
+	/**
+	 * Get the number of files in the snapshot.
+	 */
+	public int getFileCount() {
+		return sizes.size();
+	}
+
+}
@@ -0,0 +1,88 @@
+package edu.indiana.dlib.amppd.util;
+
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+import com.github.jmchilton.blend4j.galaxy.WebResourceFactory;
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.WebResource;
+import com.sun.jersey.api.client.config.ClientConfig;
+import com.sun.jersey.api.json.JSONConfiguration;
+import com.sun.jersey.client.apache4.ApacheHttpClient4;
+import com.sun.jersey.client.apache4.config.ApacheHttpClient4Config;
+import com.sun.jersey.client.apache4.config.DefaultApacheHttpClient4Config;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Factory of the Jersey web resource through which blend4j Galaxy clients call Galaxy API. 
+ * Unlike blend4j's default factory, which creates a client over HttpURLConnection configured by JVM wide settings,
+ * it creates one client over its own pool of connections, with its own connect and read timeouts,
+ * so that the transport to Galaxy can be tuned and measured without affecting other HTTP connections in the JVM.
+ * @author yingfeng
+ */
+// jersey-apache-client4 only accepts HttpClient's legacy ClientConnectionManager, whose implementations are all deprecated
+@SuppressWarnings("deprecation")
+public class GalaxyWebResourceFactory implements WebResourceFactory {
+
+	@Getter
+	private String galaxyUrl;
+	
+	// API key of the Galaxy user, set once acquired and before any web resource is obtained
+	@Getter
+	@Setter
+	private volatile String apiKey;
+	
+	private PoolingClientConnectionManager connectionManager;
+	
+	private Client client;
+	
+	public GalaxyWebResourceFactory(String galaxyUrl, int maxConnections, int connectTimeout, int readTimeout) {
+		this.galaxyUrl = galaxyUrl;
+		
+		connectionManager = new PoolingClientConnectionManager();
+		connectionManager.setMaxTotal(maxConnections);
+		// all connections go to the same Galaxy host
+		connectionManager.setDefaultMaxPerRoute(maxConnections);
+		
+		// same JSON mapping as blend4j's default factory, which Galaxy clients rely on to (de)serialize their beans
+		DefaultApacheHttpClient4Config config = new DefaultApacheHttpClient4Config();
+		config.getFeatures().put(JSONConfiguration.FEATURE_POJO_MAPPING, Boolean.TRUE);
+		config.getProperties().put(ApacheHttpClient4Config.PROPERTY_CONNECTION_MANAGER, connectionManager);
+		config.getProperties().put(ClientConfig.PROPERTY_CONNECT_TIMEOUT, connectTimeout);
+		config.getProperties().put(ClientConfig.PROPERTY_READ_TIMEOUT, readTimeout);
+		client = ApacheHttpClient4.create(config);
+	}
+	
+	/**
+	 * @see com.github.jmchilton.blend4j.galaxy.WebResourceFactory.get()
+	 */
+	@Override
+	public WebResource get() {
+		return client.resource(galaxyUrl + "/api/").queryParam("key", apiKey);
+	}
+	
+	/**
+	 * Get the max number of connections in the pool.
+	 */
+	public int getMaxConnections() {
+		return connectionManager.getMaxTotal();
+	}
+	
+	/**
+	 * Get the current statistics of the connections in the pool, i.e. leased, available and pending.
+	 */
+	public PoolStats getPoolStats() {
+		return connectionManager.getTotalStats();
+	}
+	
+	/**
+	 * Close the client and all connections in the pool.
+	 */
+	public void shutdown() {
+		client.destroy();
+		connectionManager.shutdown();
+	}
+
+}
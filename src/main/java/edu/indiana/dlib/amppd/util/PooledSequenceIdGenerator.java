@@ -0,0 +1,105 @@
+package edu.indiana.dlib.amppd.util;
+
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Properties;
+
+import org.hibernate.MappingException;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.jdbc.env.spi.JdbcEnvironment;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.Configurable;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Identifier generator which allocates IDs from a DB sequence in pools, fetching a whole pool of values in one round trip,
+ * then handing them out from memory; so that bulk inserts don't need a sequence round trip per record.
+ * Unlike Hibernate's pooled optimizer, it doesn't require the sequence increment to match the pool size, thus can draw from
+ * the hibernate_sequence shared with entities using the default ID generation, without any change to the existing sequence or IDs.
+ * @author yingfeng
+ */
+@Slf4j
+public class PooledSequenceIdGenerator implements IdentifierGenerator, Configurable {
+
+	// name of the parameter for the sequence to allocate IDs from
+	public static final String SEQUENCE = "sequence_name";
+
+	// name of the parameter for the number of IDs allocated in one round trip
+	public static final String POOL_SIZE = "pool_size";
+
+	public static final String DEFAULT_SEQUENCE = "hibernate_sequence";
+	public static final int DEFAULT_POOL_SIZE = 100;
+
+	private String sequence;
+	private int poolSize;
+	private Dialect dialect;
+
+	// IDs allocated but not handed out yet
+	private Deque<Long> pool = new ArrayDeque<Long>();
+
+	/**
+	 * @see org.hibernate.id.Configurable.configure(Type, Properties, ServiceRegistry)
+	 */
+	@Override
+	public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+		sequence = ConfigurationHelper.getString(SEQUENCE, params, DEFAULT_SEQUENCE);
+		poolSize = ConfigurationHelper.getInt(POOL_SIZE, params, DEFAULT_POOL_SIZE);
+		dialect = serviceRegistry.getService(JdbcEnvironment.class).getDialect();
+	}
+
+	/**
+	 * @see org.hibernate.id.IdentifierGenerator.generate(SharedSessionContractImplementor, Object)
+	 */
+	@Override
+	public synchronized Serializable generate(SharedSessionContractImplementor session, Object object) {
+		if (pool.isEmpty()) {
+			allocate(session);
+		}
+		return pool.poll();
+	}
+
+	/**
+	 * Allocate a pool of IDs from the sequence. On PostgreSQL the whole pool is fetched in one query;
+	 * on other DBs, which have no portable way to do so, only one ID is fetched at a time.
+	 */
+	protected void allocate(SharedSessionContractImplementor session) {
+		String sql = dialect instanceof PostgreSQL81Dialect ?
+				"select nextval('" + sequence + "') from generate_series(1, " + poolSize + ")" :
+				dialect.getSequenceNextValString(sequence);
+
+		try {
+			PreparedStatement st = session.getJdbcCoordinator().getStatementPreparer().prepareStatement(sql);
+			try {
+				ResultSet rs = session.getJdbcCoordinator().getResultSetReturn().extract(st);
+				try {
+					while (rs.next()) {
+						pool.add(rs.getLong(1));
+					}
+				}
+				finally {
+					session.getJdbcCoordinator().getResourceRegistry().release(rs, st);
+				}
+			}
+			finally {
+				session.getJdbcCoordinator().getResourceRegistry().release(st);
+				session.getJdbcCoordinator().afterStatementExecution();
+			}
+		}
+		catch (SQLException e) {
+			throw session.getJdbcServices().getSqlExceptionHelper().convert(e, "Failed to allocate IDs from sequence " + sequence, sql);
+		}
+
+		log.debug("Allocated " + pool.size() + " IDs from sequence " + sequence);
+	}
+
+}
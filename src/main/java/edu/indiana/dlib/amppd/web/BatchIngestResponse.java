@@ -0,0 +1,47 @@
+package edu.indiana.dlib.amppd.web;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * Response for an asynchronous batch ingest, containing the overall progress of the batch as well as the errors so far;
+ * the status is FAILED if the batch manifest failed validation, in which case no row is processed. 
+ * @author yingfeng
+ */
+@Data
+public class BatchIngestResponse {
+	private Long batchId;
+	private String manifestFilename;
+	private BatchIngestState status;
+	private Date dateSubmitted;
+	private Date dateCompleted;
+	private int total = 0;
+	private int processed = 0;
+	private int succeeded = 0;
+	private int failed = 0;
+	private List<String> validationErrors = new ArrayList<String>();
+	private List<String> processingErrors = new ArrayList<String>();
+	
+	/**
+	 * Create a copy of this response, so that it can be serialized while the batch is still being processed.
+	 */
+	public BatchIngestResponse copy() {
+		BatchIngestResponse response = new BatchIngestResponse();
+		response.setBatchId(batchId);
+		response.setManifestFilename(manifestFilename);
+		response.setStatus(status);
+		response.setDateSubmitted(dateSubmitted);
+		response.setDateCompleted(dateCompleted);
+		response.setTotal(total);
+		response.setProcessed(processed);
+		response.setSucceeded(succeeded);
+		response.setFailed(failed);
+		response.setValidationErrors(new ArrayList<String>(validationErrors));
+		response.setProcessingErrors(new ArrayList<String>(processingErrors));
+		return response;
+	}
+	
+}
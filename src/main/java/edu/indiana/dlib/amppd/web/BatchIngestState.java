@@ -0,0 +1,8 @@
+package edu.indiana.dlib.amppd.web;
+
+public enum BatchIngestState {
+	PENDING,
+	PROCESSING,
+	COMPLETE,
+	FAILED
+}
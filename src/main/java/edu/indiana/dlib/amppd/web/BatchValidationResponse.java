@@ -12,6 +12,8 @@ public class BatchValidationResponse {
 	private Batch batch;	
 	private List<String> validationErrors;	
 	private List<String> processingErrors;
+	private long totalBytes;	// total size of the dropbox files referred to by the batch
+	private long estimatedIngestSeconds;	// ingest time estimated from the total size
 	
 	public BatchValidationResponse() {
 		validationErrors = new ArrayList<String>();
@@ -15,6 +15,7 @@ public class CreateJobResponse {
 	private String collectionName = "";
 	private String itemName = "";
 	private String primaryfileName = "";
+	private String invocationId;
 	private WorkflowOutputs outputs;
 	
 	public CreateJobResponse() {
@@ -46,6 +47,7 @@ public class CreateJobResponse {
 		this.success = success;
 		this.error = error;
 		this.outputs = outputs;
+		this.invocationId = outputs == null ? null : outputs.getId();
 	}
 		
 }
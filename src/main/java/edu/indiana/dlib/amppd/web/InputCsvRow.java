@@ -0,0 +1,17 @@
+package edu.indiana.dlib.amppd.web;
+
+import lombok.Data;
+
+/**
+ * A row parsed from a job submission input CSV file, containing the WorkflowResult IDs for one job,
+ * or the error message if the row is invalid.
+ * @author yingfeng
+ */
+@Data
+public class InputCsvRow {
+	private int rowNum;			// row number in the CSV, starting from 1 after the header
+	private Long primaryfileId;
+	private Long[] resultIds;
+	private String error;		// null if the row is valid
+	
+}
@@ -0,0 +1,17 @@
+package edu.indiana.dlib.amppd.web;
+
+import lombok.Data;
+
+/**
+ * Response containing the current status of AMP job admission control.
+ * @author yingfeng
+ */
+@Data
+public class JobAdmissionResponse {
+	private int maxInFlightJobs;		// 0 if admission control is disabled
+	private int inFlightInvocations;	// invocations with outputs scheduled or in progress
+	private int galaxyQueuedJobs;		// jobs queued in Galaxy, 0 if not counted
+	private int availableCapacity;
+	private int heldJobs;				// pending jobs held in the job submission queue
+	
+}
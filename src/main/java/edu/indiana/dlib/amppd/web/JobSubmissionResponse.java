@@ -0,0 +1,29 @@
+package edu.indiana.dlib.amppd.web;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * Response for an asynchronous job submission, containing the overall progress of the submission,
+ * as well as the CreateJobResponse for each job within it; the success field of a CreateJobResponse
+ * is null if the job hasn't been submitted to Galaxy yet.
+ * @author yingfeng
+ */
+@Data
+public class JobSubmissionResponse {
+	private Long submissionId;
+	private String workflowId;
+	private JobSubmissionState status;
+	private Date dateSubmitted;
+	private Date dateCompleted;
+	private int total = 0;
+	private int pending = 0;
+	private int processing = 0;
+	private int succeeded = 0;
+	private int failed = 0;
+	private List<CreateJobResponse> responses = new ArrayList<CreateJobResponse>();
+	
+}
@@ -0,0 +1,9 @@
+package edu.indiana.dlib.amppd.web;
+
+public enum JobSubmissionState {
+	PENDING,
+	PROCESSING,
+	COMPLETE,
+	FAILED,
+	QUEUING	// being queued from an input CSV, not to be dispatched until all rows are queued
+}
@@ -28,6 +28,7 @@ import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 
 import edu.indiana.dlib.amppd.config.AmppdPropertyConfig;
+import edu.indiana.dlib.amppd.exception.StorageException;
 import edu.indiana.dlib.amppd.model.AmpUser;
 import edu.indiana.dlib.amppd.repository.AmpUserRepository;
 import edu.indiana.dlib.amppd.repository.BatchFileRepository;
@@ -41,6 +42,8 @@ import edu.indiana.dlib.amppd.repository.PrimaryfileRepository;
 import edu.indiana.dlib.amppd.repository.PrimaryfileSupplementRepository;
 import edu.indiana.dlib.amppd.repository.UnitRepository;
 import edu.indiana.dlib.amppd.util.TestHelper;
+import edu.indiana.dlib.amppd.web.BatchIngestResponse;
+import edu.indiana.dlib.amppd.web.BatchIngestState;
 import edu.indiana.dlib.amppd.web.BatchValidationResponse;
 
 @Ignore
@@ -207,6 +210,69 @@ public class BatchServiceTests {
         
 	}
 	
+	// TODO remove ignore once we have ffmpeg and MediaProbe installed on Bamboo
+	@Ignore
+	@Test
+	public void shouldProcessBatchAsync() throws Exception {
+		String fileName = "batch_manifest_for_testing.csv";
+		ClassLoader classLoader = ClassLoader.getSystemClassLoader();
+        File file = new File(classLoader.getResource(fileName).getFile());
+        String content = new String(Files.readAllBytes(file.toPath()));
+        
+        Optional<AmpUser> users = ampUserRepository.findByUsername(ampUsername);
+        BatchValidationResponse response = manifestService.validate("Test Unit", "Test File", users.get(), content);
+        Assert.assertFalse(response.hasErrors());
+        
+        BatchIngestResponse progress = batchService.processBatchAsync(response, ampUsername);
+        Assert.assertEquals(response.getBatch().getId(), progress.getBatchId());
+        Assert.assertEquals(response.getBatch().getBatchFiles().size(), progress.getTotal());
+        
+        // wait for the batch to complete in the background
+        for (int i = 0; i < 600 && progress.getStatus() != BatchIngestState.COMPLETE; i++) {
+        	Thread.sleep(100);
+        	progress = batchService.getBatchProgress(progress.getBatchId());
+        }
+        
+        Assert.assertEquals(BatchIngestState.COMPLETE, progress.getStatus());
+        Assert.assertEquals(progress.getTotal(), progress.getProcessed());
+        Assert.assertEquals(0, progress.getFailed());
+        
+        // the completed progress is evicted once it expires
+        int progressMinutes = propertyConfig.getBatchProgressMinutes();
+        propertyConfig.setBatchProgressMinutes(0);
+        try {
+        	Thread.sleep(10);
+        	batchService.getBatchProgress(progress.getBatchId());
+        	Assert.fail();
+        }
+        catch (StorageException e) {
+        }
+        finally {
+        	propertyConfig.setBatchProgressMinutes(progressMinutes);
+        }
+	}
+	
+	// TODO remove ignore once we have ffmpeg and MediaProbe installed on Bamboo
+	@Ignore
+	@Test
+	public void shouldResumeBatchWithoutReprocessingCommittedRows() throws Exception {
+		String fileName = "batch_manifest_for_testing.csv";
+		ClassLoader classLoader = ClassLoader.getSystemClassLoader();
+        File file = new File(classLoader.getResource(fileName).getFile());
+        String content = new String(Files.readAllBytes(file.toPath()));
+        
+        Optional<AmpUser> users = ampUserRepository.findByUsername(ampUsername);
+        BatchValidationResponse response = manifestService.validate("Test Unit", "Test File", users.get(), content);
+        Assert.assertFalse(response.hasErrors());
+        response = batchService.processBatch(response, ampUsername);
+        Assert.assertFalse(response.hasProcessingErrors());
+        
+        // all rows have been committed, so there is nothing left to resume
+        BatchIngestResponse progress = batchService.resumeBatch(response.getBatch().getId(), ampUsername);
+        Assert.assertEquals(0, progress.getTotal());
+        Assert.assertEquals(BatchIngestState.COMPLETE, progress.getStatus());
+	}
+	
 	@Test
 	public void shouldBeValidManifest() throws Exception {
 		String fileName = "batch_manifest_for_testing.csv";
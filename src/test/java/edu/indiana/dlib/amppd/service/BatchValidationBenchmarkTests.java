@@ -0,0 +1,164 @@
+package edu.indiana.dlib.amppd.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.indiana.dlib.amppd.model.AmpUser;
+import edu.indiana.dlib.amppd.model.Batch;
+import edu.indiana.dlib.amppd.model.BatchFile;
+import edu.indiana.dlib.amppd.model.BatchSupplementFile;
+import edu.indiana.dlib.amppd.model.Collection;
+import edu.indiana.dlib.amppd.repository.BatchFileRepository;
+import edu.indiana.dlib.amppd.repository.BatchRepository;
+import edu.indiana.dlib.amppd.repository.BatchSupplementFileRepository;
+import edu.indiana.dlib.amppd.util.TestHelper;
+import edu.indiana.dlib.amppd.web.BatchValidationResponse;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Benchmarks of batch manifest validation throughput on a large manifest, and of persisting the batch records.
+ * These are skipped unless run with -Damppd.benchmark=true; the number of manifest rows can be tuned with amppd.benchmark.manifestRows.
+ * @author yingfeng
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Slf4j
+public class BatchValidationBenchmarkTests {
+	public static final String BENCHMARK_UNIT = "Unit for Benchmark";
+	public static final String BENCHMARK_COLLECTION = "Collection for Manifest Benchmark";
+	public static final int ROWS_PER_ITEM = 10;
+
+	@Autowired
+	private BatchValidationService batchValidationService;
+
+	@Autowired
+	private BatchRepository batchRepository;
+
+	@Autowired
+	private BatchFileRepository batchFileRepository;
+
+	@Autowired
+	private BatchSupplementFileRepository batchSupplementFileRepository;
+
+	@Autowired
+	private DropboxService dropboxService;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private TestHelper testHelper;
+
+	@BeforeClass
+	public static void checkBenchmark() {
+		Assume.assumeTrue("Benchmarks are skipped unless -D" + GalaxyBenchmarkTests.BENCHMARK + "=true", Boolean.getBoolean(GalaxyBenchmarkTests.BENCHMARK));
+	}
+
+	@Test
+	public void benchmarkValidateManifest() throws IOException {
+		int count = Integer.getInteger(GalaxyBenchmarkTests.BENCHMARK + ".manifestRows", 50000);
+		AmpUser user = testHelper.createTestUser();
+		Collection collection = testHelper.ensureCollection(BENCHMARK_UNIT, BENCHMARK_COLLECTION);
+		Path dropbox = dropboxService.getSubDirPath(collection);
+		Files.createDirectories(dropbox);
+
+		// a manifest of primaryfile rows, each with its own empty media file in the dropbox, grouped into items
+		StringBuilder manifest = new StringBuilder("Collection Name,Source Name,Source ID,Item Title,Item Description,Primary File Name,Primary File Label,Primary File Description\n");
+		for (int i = 0; i < count; i++) {
+			String filename = "benchmark" + i + ".mp3";
+			Files.createFile(dropbox.resolve(filename));
+			manifest.append(String.format("%s,,,Item %d,item for benchmark,%s,Primaryfile %d,primaryfile for benchmark\n", BENCHMARK_COLLECTION, i / ROWS_PER_ITEM, filename, i));
+		}
+
+		try {
+			// the manifest is streamed from the upload as in the batch ingest endpoint
+			MockMultipartFile file = new MockMultipartFile("file", "benchmark.csv", "text/csv", manifest.toString().getBytes(StandardCharsets.UTF_8));
+			manifest = null;
+			Runtime runtime = Runtime.getRuntime();
+			runtime.gc();
+			long heap = runtime.totalMemory() - runtime.freeMemory();
+			long start = System.currentTimeMillis();
+			BatchValidationResponse response = batchValidationService.validateBatch(BENCHMARK_UNIT, user, file);
+			long millis = System.currentTimeMillis() - start;
+			long heapGrowth = runtime.totalMemory() - runtime.freeMemory() - heap;
+
+			String msg = String.format("Benchmark validate manifest: %d rows in %d ms, %.1f rows/sec, heap growth %d KB", count, millis, count * 1000.0 / Math.max(1, millis), heapGrowth / 1024);
+			log.info(msg);
+			System.out.println(msg);
+			Assert.assertTrue(response.getValidationErrors().toString(), response.isSuccess());
+			
+			// rows of large manifests are not kept in the batch, but saved in chunks
+			batchFileRepository.deleteAll(batchFileRepository.findByBatchIdFetchSupplements(response.getBatch().getId()));
+			batchRepository.deleteById(response.getBatch().getId());
+		}
+		finally {
+			FileUtils.deleteDirectory(dropbox.toFile());
+		}
+	}
+
+	@Test
+	public void benchmarkSaveBatchRecords() {
+		int count = Integer.getInteger(GalaxyBenchmarkTests.BENCHMARK + ".manifestRows", 50000);
+		AmpUser user = testHelper.createTestUser();
+		Batch batch = new Batch();
+		batch.setManifestFilename("benchmark.csv");
+		batch.setSubmitUser(user);
+		batch.setSubmitTime(new Date());
+		
+		// one primaryfile supplement per row, as in a typical manifest
+		List<BatchFile> batchFiles = new ArrayList<BatchFile>();
+		List<BatchSupplementFile> supplements = new ArrayList<BatchSupplementFile>();
+		for (int i = 0; i < count; i++) {
+			BatchFile batchFile = new BatchFile();
+			batchFile.setBatch(batch);
+			batchFile.setRowNum(i + 1);
+			batchFile.setPrimaryfileFilename("benchmark" + i + ".mp3");
+			batchFile.setPrimaryfileName("Primaryfile " + i);
+			BatchSupplementFile supplement = new BatchSupplementFile();
+			supplement.setBatchFile(batchFile);
+			supplement.setSupplementNum(1);
+			supplement.setSupplementFilename("benchmark" + i + ".txt");
+			supplement.setSupplementName("Supplement " + i);
+			batchFile.addSupplement(supplement);
+			batchFiles.add(batchFile);
+			supplements.add(supplement);
+		}
+		
+		long start = System.currentTimeMillis();
+		new TransactionTemplate(transactionManager).execute(status -> {
+			batchRepository.save(batch);
+			batchFileRepository.saveAll(batchFiles);
+			batchSupplementFileRepository.saveAll(supplements);
+			return null;
+		});
+		long millis = System.currentTimeMillis() - start;
+		
+		String msg = String.format("Benchmark save batch records: %d rows in %d ms, %.1f rows/sec", count, millis, count * 1000.0 / Math.max(1, millis));
+		log.info(msg);
+		System.out.println(msg);
+		Assert.assertEquals(count, batchFileRepository.findByBatchIdFetchSupplements(batch.getId()).size());
+		
+		batchSupplementFileRepository.deleteAll(supplements);
+		batchFileRepository.deleteAll(batchFiles);
+		batchRepository.deleteById(batch.getId());
+	}
+
+}
@@ -1,8 +1,10 @@
 package edu.indiana.dlib.amppd.service;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
@@ -15,6 +17,7 @@ import org.springframework.test.context.junit4.SpringRunner;
 
 import edu.indiana.dlib.amppd.model.Collection;
 import edu.indiana.dlib.amppd.model.Unit;
+import edu.indiana.dlib.amppd.util.DropboxSnapshot;
 import edu.indiana.dlib.amppd.util.TestHelper;
 
 //@Ignore
@@ -115,5 +118,44 @@ public class DropboxServiceTests {
     	assertFalse(Files.exists(path));    	   	
     }
     
+    @Test
+    public void shouldSnapshotSubdirForCollection() throws IOException {
+    	Collection collection = testHelper.ensureCollection("Test Unit", "Test Collection");
+    	Path path = dropboxService.createSubdir(collection);
+    	Files.write(path.resolve("snapshot.txt"), new byte[] {1, 2, 3});
+    	Files.createDirectories(path.resolve("snapshot"));
+    	Files.write(path.resolve("snapshot/nested.txt"), new byte[] {1});
+    	
+    	DropboxSnapshot snapshot = dropboxService.getSnapshot("Test Unit", "Test Collection");
+    	assertTrue(snapshot.isPresent());
+    	assertTrue(snapshot.exists("snapshot.txt"));
+    	assertTrue(snapshot.exists("./snapshot/nested.txt"));
+    	assertFalse(snapshot.exists("snapshot"));
+    	assertEquals(3, snapshot.getSize("snapshot.txt"));
+    	assertEquals(0, snapshot.getSize("missing.txt"));
+    	
+    	dropboxService.deleteSubdir(collection);
+    	assertFalse(dropboxService.getSnapshot("Test Unit", "Test Collection").isPresent());
+    }
+    
+    @Test
+    public void shouldSnapshotSymlinkedFilesAndSubdirs() throws IOException {
+    	Collection collection = testHelper.ensureCollection("Test Unit", "Test Collection");
+    	Path path = dropboxService.createSubdir(collection);
+    	Path target = Files.createTempDirectory("dropbox");
+    	Files.write(target.resolve("linked.txt"), new byte[] {1, 2});
+    	Files.createSymbolicLink(path.resolve("linked.txt"), target.resolve("linked.txt"));
+    	Files.createSymbolicLink(path.resolve("linked"), target);
+    	
+    	// symlinked files and sub-directories exist in the snapshot as they do in the file system
+    	DropboxSnapshot snapshot = dropboxService.getSnapshot("Test Unit", "Test Collection");
+    	assertTrue(snapshot.exists("linked.txt"));
+    	assertEquals(2, snapshot.getSize("linked.txt"));
+    	assertTrue(snapshot.exists("linked/linked.txt"));
+    	
+    	dropboxService.deleteSubdir(collection);
+    	Files.delete(target.resolve("linked.txt"));
+    	Files.delete(target);
+    }
     
 }
@@ -16,9 +16,18 @@
 package edu.indiana.dlib.amppd.service;
 
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Random;
 
 import org.junit.After;
 import org.junit.Test;
@@ -29,6 +38,7 @@ import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import edu.indiana.dlib.amppd.config.AmppdPropertyConfig;
 import edu.indiana.dlib.amppd.exception.StorageException;
 import edu.indiana.dlib.amppd.model.Collection;
 import edu.indiana.dlib.amppd.model.CollectionSupplement;
@@ -36,7 +46,10 @@ import edu.indiana.dlib.amppd.model.Item;
 import edu.indiana.dlib.amppd.model.ItemSupplement;
 import edu.indiana.dlib.amppd.model.Primaryfile;
 import edu.indiana.dlib.amppd.model.PrimaryfileSupplement;
+import edu.indiana.dlib.amppd.model.StoredContent;
 import edu.indiana.dlib.amppd.model.Unit;
+import edu.indiana.dlib.amppd.repository.StoredContentRepository;
+import edu.indiana.dlib.amppd.util.ContentHash;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest
@@ -47,6 +60,12 @@ public class FileStorageServiceTests {
 	@Autowired
     private FileStorageService fileStorageService;
 
+	@Autowired
+    private StoredContentRepository storedContentRepository;
+
+	@Autowired
+    private AmppdPropertyConfig amppdPropertyConfig;
+
     @After
     public void cleanup() {
     	// clean up unit test directory after unit tests done
@@ -70,6 +89,138 @@ public class FileStorageServiceTests {
         assertTrue(Files.exists(fileStorageService.resolve(TEST_DIR_NAME + "/test1.txt")));
     }
     
+    @Test
+    public void shouldLinkFile() throws IOException {
+    	Path source = fileStorageService.resolve(TEST_DIR_NAME + "/source.txt");
+    	Path target = fileStorageService.resolve(TEST_DIR_NAME + "/target.txt");
+    	Files.createDirectories(source.getParent());
+    	Files.write(source, "Test File Link".getBytes());
+    	
+    	fileStorageService.linkFile(source, target);
+    	assertFalse(Files.exists(source));
+    	assertArrayEquals("Test File Link".getBytes(), Files.readAllBytes(target));
+    }
+    
+    @Test
+    public void shouldHashFileAsItIsLinked() throws IOException {
+    	Path source = fileStorageService.resolve(TEST_DIR_NAME + "/source.txt");
+    	Path target = fileStorageService.resolve(TEST_DIR_NAME + "/target.txt");
+    	Files.createDirectories(source.getParent());
+    	Files.write(source, "abc".getBytes());
+    	
+    	MessageDigest digest = ContentHash.newDigest();
+    	fileStorageService.linkFile(source, target, digest);
+    	assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", ContentHash.toHex(digest));
+    }
+    
+    @Test
+    public void shouldCopyFile() throws IOException {
+    	// large enough for the verification blocks not to overlap
+    	byte[] content = new byte[1000000];
+    	new Random().nextBytes(content);
+    	Path source = fileStorageService.resolve(TEST_DIR_NAME + "/source.bin");
+    	Path target = fileStorageService.resolve(TEST_DIR_NAME + "/target.bin");
+    	Files.createDirectories(source.getParent());
+    	Files.write(source, content);
+    	
+    	fileStorageService.copyFile(source, target);
+    	assertTrue(Files.exists(source));
+    	assertFalse(Files.exists(target.resolveSibling("target.bin.part")));
+    	assertArrayEquals(content, Files.readAllBytes(target));
+    }
+    
+    @Test
+    public void shouldHashFile() throws IOException {
+    	Path path = fileStorageService.resolve(TEST_DIR_NAME + "/hash.txt");
+    	Files.createDirectories(path.getParent());
+    	Files.write(path, "abc".getBytes());
+    	assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", fileStorageService.hashFile(path));
+    }
+    
+    @Test
+    public void shouldDedupIdenticalContent() throws IOException {
+    	byte[] content = new byte[100000];
+    	new Random().nextBytes(content);
+    	Primaryfile primaryfile1 = new Primaryfile();
+    	primaryfile1.setId(1l);
+    	primaryfile1.setPathname(TEST_DIR_NAME + "/dedup1.mp4");
+    	Primaryfile primaryfile2 = new Primaryfile();
+    	primaryfile2.setId(2l);
+    	primaryfile2.setPathname(TEST_DIR_NAME + "/dedup2.mp4");
+    	
+    	Path path1 = fileStorageService.resolve(primaryfile1.getPathname());
+    	Path path2 = fileStorageService.resolve(primaryfile2.getPathname());
+    	Files.createDirectories(path1.getParent());
+    	Files.write(path1, content);
+    	Files.write(path2, content);
+    	primaryfile1.setSha256(fileStorageService.hashFile(path1));
+    	primaryfile2.setSha256(fileStorageService.hashFile(path2));
+
+    	// deduplication is opt-in
+    	assertNull(fileStorageService.linkContent(primaryfile1));
+    	
+    	amppdPropertyConfig.setDedupContent(true);
+    	StoredContent stored = null;
+    	try {
+    		stored = fileStorageService.linkContent(primaryfile1);
+    		assertEquals(stored.getId(), fileStorageService.linkContent(primaryfile2).getId());
+    		assertTrue(Files.isSameFile(path1, path2));
+    		assertTrue(Files.isSameFile(path1, fileStorageService.resolve(stored.getPathname())));
+    		assertArrayEquals(content, Files.readAllBytes(path2));
+    		
+    		// deleting one asset's file keeps the content for the other
+    		Files.delete(path1);
+    		assertArrayEquals(content, Files.readAllBytes(path2));
+    	}
+    	finally {
+    		amppdPropertyConfig.setDedupContent(false);
+    		if (stored != null) {
+    			fileStorageService.delete(stored.getPathname());
+    			storedContentRepository.delete(stored);
+    		}
+    	}
+    }
+    
+    @Test
+    public void shouldAdoptContentStoredWithoutRecord() throws IOException {
+    	byte[] content = new byte[100000];
+    	new Random().nextBytes(content);
+    	Primaryfile primaryfile1 = new Primaryfile();
+    	primaryfile1.setId(1l);
+    	primaryfile1.setPathname(TEST_DIR_NAME + "/adopt1.mp4");
+    	Primaryfile primaryfile2 = new Primaryfile();
+    	primaryfile2.setId(2l);
+    	primaryfile2.setPathname(TEST_DIR_NAME + "/adopt2.mp4");
+    	
+    	Path path1 = fileStorageService.resolve(primaryfile1.getPathname());
+    	Path path2 = fileStorageService.resolve(primaryfile2.getPathname());
+    	Files.createDirectories(path1.getParent());
+    	Files.write(path1, content);
+    	Files.write(path2, content);
+    	primaryfile1.setSha256(fileStorageService.hashFile(path1));
+    	primaryfile2.setSha256(fileStorageService.hashFile(path2));
+
+    	amppdPropertyConfig.setDedupContent(true);
+    	StoredContent stored = null;
+    	try {
+    		// simulate a rolled back transaction, which leaves the content file without its record
+    		storedContentRepository.delete(fileStorageService.linkContent(primaryfile1));
+    		
+    		// the leftover content file shall be adopted rather than blocking deduplication
+    		stored = fileStorageService.linkContent(primaryfile2);
+    		assertNotNull(stored);
+    		assertTrue(Files.isSameFile(path1, path2));
+    		assertTrue(Files.isSameFile(path2, fileStorageService.resolve(stored.getPathname())));
+    	}
+    	finally {
+    		amppdPropertyConfig.setDedupContent(false);
+    		if (stored != null) {
+    			fileStorageService.delete(stored.getPathname());
+    			storedContentRepository.delete(stored);
+    		}
+    	}
+    }
+    
     @Test
     public void shouldGetPrimaryfilePathname() {
     	Unit unit = new Unit();
@@ -0,0 +1,110 @@
+package edu.indiana.dlib.amppd.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import edu.indiana.dlib.amppd.model.Primaryfile;
+import edu.indiana.dlib.amppd.repository.PrimaryfileRepository;
+import edu.indiana.dlib.amppd.util.TestHelper;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class FixityServiceTests {
+
+	public static final String TEST_DIR_NAME = "test";
+	
+	@Autowired
+	private FixityService fixityService;
+	
+	@Autowired
+	private FileStorageService fileStorageService;
+	
+	@Autowired
+	private PrimaryfileRepository primaryfileRepository;
+	
+	@Autowired
+	private TestHelper testHelper;
+	
+	@After
+	public void cleanup() {
+		fileStorageService.delete(TEST_DIR_NAME);
+	}
+	
+	private Primaryfile ensurePrimaryfile(String name, byte[] content) throws IOException {
+		Primaryfile primaryfile = testHelper.ensurePrimaryfile("Unit for Fixity", "Collection for Fixity", "Item for Fixity", name);
+		primaryfile.setPathname(TEST_DIR_NAME + "/" + name + ".mp3");
+		primaryfile.setSha256(null);
+		primaryfile.setFixityChecked(null);
+		primaryfile.setFixityFailed(null);
+		
+		Path path = fileStorageService.resolve(primaryfile.getPathname());
+		Files.createDirectories(path.getParent());
+		Files.write(path, content);
+		return primaryfileRepository.save(primaryfile);
+	}
+	
+	@Test
+	public void shouldRecordBaselineAndVerifyFixity() throws IOException {
+		Primaryfile primaryfile = ensurePrimaryfile("Primaryfile for Fixity", "Test Fixity".getBytes());
+		
+		// the first check of an asset without SHA-256 records the baseline
+		assertTrue(fixityService.verifyFixity(primaryfile));
+		primaryfile = primaryfileRepository.findById(primaryfile.getId()).get();
+		assertEquals(fileStorageService.hashFile(fileStorageService.resolve(primaryfile.getPathname())), primaryfile.getSha256());
+		assertNotNull(primaryfile.getFixityChecked());
+
+		// the following checks verify the file against the baseline
+		Date checked = primaryfile.getFixityChecked();
+		assertTrue(fixityService.verifyFixity(primaryfile));
+		primaryfile = primaryfileRepository.findById(primaryfile.getId()).get();
+		assertFalse(primaryfile.getFixityFailed());
+		assertFalse(primaryfile.getFixityChecked().before(checked));
+	}
+	
+	@Test
+	public void shouldDetectCorruptedAndMissingFiles() throws IOException {
+		Primaryfile primaryfile = ensurePrimaryfile("Primaryfile for Fixity Failure", "Test Fixity".getBytes());
+		fixityService.verifyFixity(primaryfile);
+		primaryfile = primaryfileRepository.findById(primaryfile.getId()).get();
+		
+		// a truncated file fails the check
+		Path path = fileStorageService.resolve(primaryfile.getPathname());
+		Files.write(path, "Test".getBytes());
+		assertFalse(fixityService.verifyFixity(primaryfile));
+		assertTrue(primaryfileRepository.findById(primaryfile.getId()).get().getFixityFailed());
+		
+		// so does a missing file
+		Files.delete(path);
+		assertFalse(fixityService.verifyFixity(primaryfile));
+		assertTrue(primaryfileRepository.findById(primaryfile.getId()).get().getFixityFailed());
+	}
+	
+	@Test
+	public void shouldRecordMissingFileWithoutBaseline() throws IOException {
+		Primaryfile primaryfile = ensurePrimaryfile("Primaryfile for Fixity Missing", "Test Fixity".getBytes());
+		Files.delete(fileStorageService.resolve(primaryfile.getPathname()));
+		
+		// a missing file without baseline is recorded as failed, so that it's not picked ahead of never checked assets again
+		assertFalse(fixityService.verifyFixity(primaryfile));
+		primaryfile = primaryfileRepository.findById(primaryfile.getId()).get();
+		assertNull(primaryfile.getSha256());
+		assertNotNull(primaryfile.getFixityChecked());
+		assertTrue(primaryfile.getFixityFailed());
+	}
+	
+}
@@ -44,6 +44,14 @@ public class GalaxyApiServiceTests {
     	Assert.assertEquals(instance.getGalaxyUrl(), config.getBaseUrl());
     }
 
+    @Test
+    public void shouldReuseInstanceAcrossCalls() {
+    	GalaxyInstance instance = galaxyApiService.getGalaxyInstance();
+    	Assert.assertSame(instance, galaxyApiService.getGalaxyInstance());
+    	Assert.assertSame(galaxyApiService.getCurrentUser(), galaxyApiService.getCurrentUser());
+    	Assert.assertEquals(config.getMaxConnections().intValue(), galaxyApiService.getWebResourceFactory().getMaxConnections());
+    }
+
 //    @Test(expected = RuntimeException.class)
 //    public void shouldThrowExceptionForInvalidUser() {
 //    	Mockito.when(galaxyApiService.getCurrentUser()).thenReturn(new GalaxyUser("foo", "bar"));
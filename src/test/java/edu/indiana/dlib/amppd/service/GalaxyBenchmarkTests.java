@@ -0,0 +1,121 @@
+package edu.indiana.dlib.amppd.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import edu.indiana.dlib.amppd.model.Item;
+import edu.indiana.dlib.amppd.model.Primaryfile;
+import edu.indiana.dlib.amppd.model.WorkflowResult;
+import edu.indiana.dlib.amppd.repository.PrimaryfileRepository;
+import edu.indiana.dlib.amppd.util.GalaxySimulator;
+import edu.indiana.dlib.amppd.util.TestHelper;
+import edu.indiana.dlib.amppd.web.CreateJobResponse;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Benchmarks of job submission and WorkflowResults refresh throughput against the in-process Galaxy simulator.
+ * These are skipped unless run with -Damppd.benchmark=true; the data volume and simulated Galaxy behavior can be tuned with
+ * amppd.benchmark.primaryfiles, amppd.benchmark.latency, amppd.benchmark.errorRate and amppd.benchmark.galaxyThreads.
+ * @author yingfeng
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"galaxy.host=localhost", "galaxy.port=" + GalaxySimulator.DEFAULT_PORT, "amppd.historyPoolLowWaterMark=0"})
+@Slf4j
+public class GalaxyBenchmarkTests {
+	public static final String BENCHMARK = "amppd.benchmark";
+	public static final String BENCHMARK_UNIT = "Unit for Benchmark";
+
+	private static GalaxySimulator simulator;
+	private static String workflowId;
+
+	@Autowired
+	private JobService jobService;
+
+	@Autowired
+	private WorkflowResultService workflowResultService;
+
+	@Autowired
+	private PrimaryfileRepository primaryfileRepository;
+
+	@Autowired
+	private TestHelper testHelper;
+
+	@BeforeClass
+	public static void startSimulator() throws IOException {
+		// the Galaxy simulator must be up before the application context connects to Galaxy
+		Assume.assumeTrue("Benchmarks are skipped unless -D" + BENCHMARK + "=true", Boolean.getBoolean(BENCHMARK));
+		simulator = new GalaxySimulator();
+		simulator.setLatency(Long.getLong(BENCHMARK + ".latency", 5));
+		simulator.setErrorRate(Double.parseDouble(System.getProperty(BENCHMARK + ".errorRate", "0")));
+		simulator.start(Integer.getInteger(BENCHMARK + ".galaxyThreads", 16));
+		workflowId = simulator.addWorkflow("Benchmark Workflow", "benchmark_tool_a", "benchmark_tool_b");
+	}
+
+	@AfterClass
+	public static void stopSimulator() {
+		if (simulator != null) {
+			simulator.stop();
+		}
+	}
+
+	/**
+	 * Create the given number of primaryfiles already registered in Galaxy, so the benchmark measures job submission only.
+	 */
+	private Long[] createPrimaryfiles(int count) {
+		Item item = testHelper.ensureItem(BENCHMARK_UNIT, "Collection for Benchmark", "Item for Benchmark");
+		List<Primaryfile> primaryfiles = new ArrayList<Primaryfile>();
+		for (int i = 0; i < count; i++) {
+			Primaryfile primaryfile = new Primaryfile();
+			primaryfile.setItem(item);
+			primaryfile.setName("Benchmark Primaryfile " + i);
+			primaryfile.setDescription("primaryfile for benchmark");
+			primaryfile.setOriginalFilename("benchmark" + i + ".mp3");
+			primaryfile.setPathname("benchmark/benchmark" + i + ".mp3");
+			primaryfile.setDatasetId(String.format("b%015x", i));
+			primaryfiles.add(primaryfile);
+		}
+
+		List<Long> ids = new ArrayList<Long>();
+		primaryfileRepository.saveAll(primaryfiles).forEach(primaryfile -> ids.add(primaryfile.getId()));
+		return ids.toArray(new Long[0]);
+	}
+
+	private void report(String name, int count, long millis, String unit) {
+		String msg = String.format("Benchmark %s: %d %s in %d ms, %.1f %s/sec, %d Galaxy requests so far", name, count, unit, millis, count * 1000.0 / Math.max(1, millis), unit, simulator.getRequests());
+		log.info(msg);
+		System.out.println(msg);
+	}
+
+	@Test
+	public void benchmarkCreateJobsAndRefreshResults() {
+		// primaryfiles left from previous runs refer to histories unknown to this simulator instance
+		testHelper.cleanupPrimaryfiles();
+		int count = Integer.getInteger(BENCHMARK + ".primaryfiles", 10000);
+		Long[] primaryfileIds = createPrimaryfiles(count);
+		Map<String, Map<String, String>> parameters = new HashMap<String, Map<String, String>>();
+
+		long start = System.currentTimeMillis();
+		List<CreateJobResponse> responses = jobService.createJobs(workflowId, primaryfileIds, parameters);
+		report("createJobs", responses.size(), System.currentTimeMillis() - start, "jobs");
+		Assert.assertEquals(count, responses.size());
+
+		start = System.currentTimeMillis();
+		List<WorkflowResult> results = workflowResultService.refreshWorkflowResultsIterative();
+		report("refreshWorkflowResultsIterative", results.size(), System.currentTimeMillis() - start, "results");
+		Assert.assertTrue(results.size() > 0);
+	}
+
+}
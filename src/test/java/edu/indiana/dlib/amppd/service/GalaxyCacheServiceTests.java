@@ -0,0 +1,143 @@
+package edu.indiana.dlib.amppd.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.github.jmchilton.blend4j.galaxy.HistoriesClient;
+import com.github.jmchilton.blend4j.galaxy.beans.Dataset;
+
+import edu.indiana.dlib.amppd.config.AmppdPropertyConfig;
+import edu.indiana.dlib.amppd.service.impl.GalaxyCacheServiceImpl;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class GalaxyCacheServiceTests {
+
+	@Autowired
+	private GalaxyCacheService galaxyCacheService;   
+	
+	@Autowired
+	private AmppdPropertyConfig amppdPropertyConfig;   
+	
+	// number of calls made to the stub client
+	private AtomicInteger calls = new AtomicInteger(0);
+	
+	@After
+	public void cleanup() {
+		galaxyCacheService.clear();
+	}
+
+	/**
+	 * Create a stub HistoriesClient which returns a dataset in the given state for showDataset.
+	 */
+	private HistoriesClient createClient(String state) {
+		return (HistoriesClient)Proxy.newProxyInstance(HistoriesClient.class.getClassLoader(), new Class<?>[] {HistoriesClient.class}, (proxy, method, args) -> {
+			calls.incrementAndGet();
+			if (method.getName().equals("showDataset")) {
+				Dataset dataset = new Dataset();
+				dataset.setId((String)args[1]);
+				dataset.setState(state);
+				return dataset;
+			}
+			return null;
+		});
+	}
+	
+	@Test
+	public void shouldCacheTerminalDataset() {
+		HistoriesClient client = galaxyCacheService.wrapClient(createClient("ok"), HistoriesClient.class);
+		
+		Dataset dataset = client.showDataset("history1", "dataset1");
+		Dataset cached = client.showDataset("history1", "dataset1");
+		Assert.assertEquals(1, calls.get());
+		Assert.assertEquals("dataset1", cached.getId());
+		Assert.assertEquals("ok", cached.getState());
+		Assert.assertNotSame(dataset, cached);
+	}
+
+	@Test
+	public void shouldNotCacheRunningDataset() {
+		HistoriesClient client = galaxyCacheService.wrapClient(createClient("running"), HistoriesClient.class);
+		
+		client.showDataset("history1", "dataset2");
+		client.showDataset("history1", "dataset2");
+		Assert.assertEquals(2, calls.get());
+	}
+
+	@Test
+	public void shouldEvictUpdatedDataset() {
+		HistoriesClient client = galaxyCacheService.wrapClient(createClient("ok"), HistoriesClient.class);
+		
+		Dataset dataset = client.showDataset("history1", "dataset3");
+		client.updateDataset("history1", dataset);
+		client.showDataset("history1", "dataset3");
+		Assert.assertEquals(3, calls.get());
+	}
+
+	@Test
+	public void shouldPruneLeastRecentlyUsedEntriesOnDisk() throws IOException {
+		File dir = Files.createTempDirectory("galaxy-cache").toFile();
+		String cacheDir = amppdPropertyConfig.getGalaxyCacheDir();
+		Long maxDiskBytes = amppdPropertyConfig.getGalaxyCacheMaxDiskBytes();
+		amppdPropertyConfig.setGalaxyCacheDir(dir.getPath());
+		amppdPropertyConfig.setGalaxyCacheMaxDiskBytes(4096L);
+		
+		try {
+			HistoriesClient client = galaxyCacheService.wrapClient(createClient("ok"), HistoriesClient.class);
+			for (int i = 0; i < 100; i++) {
+				client.showDataset("history1", "dataset-disk-" + i);
+			}
+			
+			// the disk is kept within its max size, while the entries still cached are served without calling Galaxy
+			Assert.assertTrue(FileUtils.sizeOfDirectory(dir) <= 4096L);
+			Assert.assertTrue(dir.list().length > 0);
+			client.showDataset("history1", "dataset-disk-99");
+			Assert.assertEquals(100, calls.get());
+		}
+		finally {
+			galaxyCacheService.clear();
+			amppdPropertyConfig.setGalaxyCacheDir(cacheDir);
+			amppdPropertyConfig.setGalaxyCacheMaxDiskBytes(maxDiskBytes);
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void shouldDropCachedEntryOfUnexpectedType() throws IOException {
+		File dir = Files.createTempDirectory("galaxy-cache").toFile();
+		String cacheDir = amppdPropertyConfig.getGalaxyCacheDir();
+		amppdPropertyConfig.setGalaxyCacheDir(dir.getPath());
+		
+		try {
+			// an entry planted in the cache directory with a class other than the cached Galaxy beans
+			File file = new File(dir, DigestUtils.sha1Hex(GalaxyCacheServiceImpl.DATASET_KEY + "dataset-planted") + GalaxyCacheServiceImpl.ENTRY_EXTENSION);
+			FileUtils.writeStringToFile(file, "java.util.ArrayList\n[]", StandardCharsets.UTF_8);
+			
+			HistoriesClient client = galaxyCacheService.wrapClient(createClient("ok"), HistoriesClient.class);
+			Dataset dataset = client.showDataset("history1", "dataset-planted");
+			Assert.assertEquals(1, calls.get());
+			Assert.assertEquals("dataset-planted", dataset.getId());
+			Assert.assertEquals(Dataset.class.getName(), FileUtils.readLines(file, StandardCharsets.UTF_8).get(0));
+		}
+		finally {
+			galaxyCacheService.clear();
+			amppdPropertyConfig.setGalaxyCacheDir(cacheDir);
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+}
@@ -3,6 +3,7 @@ package edu.indiana.dlib.amppd.service;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -19,6 +20,7 @@ import com.github.jmchilton.blend4j.galaxy.beans.History;
 import com.github.jmchilton.blend4j.galaxy.beans.Library;
 
 import edu.indiana.dlib.amppd.exception.GalaxyDataException;
+import edu.indiana.dlib.amppd.repository.SharedGalaxyObjectRepository;
 import edu.indiana.dlib.amppd.service.impl.GalaxyDataServiceImpl;
 import edu.indiana.dlib.amppd.util.TestHelper;
 
@@ -39,6 +41,9 @@ public class GalaxyDataServiceTests {
 	@Autowired
 	private GalaxyDataService galaxyDataService;   
 	
+	@Autowired
+	private SharedGalaxyObjectRepository sharedGalaxyObjectRepository;   
+	
 	private String testFile;
 
 	/* Notes:
@@ -77,6 +82,12 @@ public class GalaxyDataServiceTests {
     	Assert.assertEquals(galaxyDataService.getSharedHistory().getName(), GalaxyDataServiceImpl.SHARED_HISTORY_NAME);
     }
 
+    @Test
+    public void shouldPersistSharedObjectIds() {
+    	Assert.assertEquals(galaxyDataService.getSharedLibrary().getId(), sharedGalaxyObjectRepository.findFirstByName(GalaxyDataServiceImpl.SHARED_LIBARY_NAME).getGalaxyId());
+    	Assert.assertEquals(galaxyDataService.getSharedHistory().getId(), sharedGalaxyObjectRepository.findFirstByName(GalaxyDataServiceImpl.SHARED_HISTORY_NAME).getGalaxyId());
+    }
+
     @Test
     public void shouldReturnTestLibrary() {
     	Library lbirary = galaxyDataService.getLibrary(TEST_LIBRARY_NAME);
@@ -110,6 +121,22 @@ public class GalaxyDataServiceTests {
     	galaxyDataService.uploadFileToGalaxy(testFile, "bar");
     }
     
+    // TODO remove ignore once we have Galaxy Bootstrap working on Bamboo
+    @Ignore
+    @Test
+    public void shouldUploadFilesToExistingLibraryInBatch() {
+    	List<GalaxyObject> datasets = galaxyDataService.uploadFilesToGalaxy(List.of(testFile, testFile), TEST_LIBRARY_NAME);
+    	Assert.assertEquals(2, datasets.size());
+    	Assert.assertNotNull(datasets.get(0).getId());
+    	Assert.assertNotNull(datasets.get(1).getId());
+    	Assert.assertNotEquals(datasets.get(0).getId(), datasets.get(1).getId());
+    }
+    
+    @Test(expected = GalaxyDataException.class)
+    public void shouldThrowExceptionBatchUploadingToNonExistingLibrary() {
+    	galaxyDataService.uploadFilesToGalaxy(List.of(testFile), "bar");
+    }
+    
     /**
      * Create a temporary empty file under amppd file system root for unit tests and return the absolute pathname.
      */
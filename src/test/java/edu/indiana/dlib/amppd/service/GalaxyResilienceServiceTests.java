@@ -0,0 +1,140 @@
+package edu.indiana.dlib.amppd.service;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.sun.jersey.api.client.ClientHandlerException;
+
+import edu.indiana.dlib.amppd.config.AmppdPropertyConfig;
+import edu.indiana.dlib.amppd.exception.GalaxyUnavailableException;
+import edu.indiana.dlib.amppd.service.GalaxyResilienceService.CircuitState;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class GalaxyResilienceServiceTests {
+
+	@Autowired
+	private GalaxyResilienceService galaxyResilienceService;   
+
+	@Autowired
+	private AmppdPropertyConfig amppdPropertyConfig;   
+	
+	private Long resetTimeout;
+	private Integer failureThreshold;
+	
+	@Before
+	public void setup() {
+		resetTimeout = amppdPropertyConfig.getGalaxyCircuitResetTimeout();
+		failureThreshold = amppdPropertyConfig.getGalaxyCircuitFailureThreshold();
+		amppdPropertyConfig.setGalaxyCircuitResetTimeout(60000L);
+		amppdPropertyConfig.setGalaxyCircuitFailureThreshold(3);
+	}
+	
+	@After
+	public void cleanup() {
+		// let a trial call through to close the circuit
+		amppdPropertyConfig.setGalaxyCircuitResetTimeout(0L);
+		galaxyResilienceService.execute("test", false, () -> true);
+		
+		amppdPropertyConfig.setGalaxyCircuitResetTimeout(resetTimeout);
+		amppdPropertyConfig.setGalaxyCircuitFailureThreshold(failureThreshold);
+	}
+	
+	@Test
+	public void shouldRetryIdempotentCallOnConnectionFailure() {
+		AtomicInteger attempts = new AtomicInteger(0);
+		String result = galaxyResilienceService.execute("test", true, () -> {
+			if (attempts.incrementAndGet() < 2) {
+				throw new ClientHandlerException(new ConnectException("Connection refused"));
+			}
+			return "ok";
+		});
+		
+		Assert.assertEquals("ok", result);
+		Assert.assertEquals(2, attempts.get());
+		Assert.assertEquals(CircuitState.CLOSED, galaxyResilienceService.getCircuitState());
+	}
+	
+	@Test
+	public void shouldNotRetryNonIdempotentOrFailedCall() {
+		AtomicInteger attempts = new AtomicInteger(0);
+		try {
+			galaxyResilienceService.execute("test", false, () -> {
+				attempts.incrementAndGet();
+				throw new ClientHandlerException(new ConnectException("Connection refused"));
+			});
+			Assert.fail();
+		}
+		catch (ClientHandlerException e) {
+			Assert.assertEquals(1, attempts.get());
+		}
+		
+		// errors returned by Galaxy are not retried either
+		try {
+			galaxyResilienceService.execute("test", true, () -> {
+				attempts.incrementAndGet();
+				throw new RuntimeException("Not found");
+			});
+			Assert.fail();
+		}
+		catch (RuntimeException e) {
+			Assert.assertEquals(2, attempts.get());
+		}
+	}
+	
+	@Test
+	public void shouldNotCountUnparsableResponseAsConnectionFailure() {
+		AtomicInteger attempts = new AtomicInteger(0);
+		for (int i = 0; i < 3; i++) {
+			try {
+				galaxyResilienceService.execute("test", true, () -> {
+					attempts.incrementAndGet();
+					throw new ClientHandlerException(new IOException("Unexpected character ('<' (code 60))"));
+				});
+				Assert.fail();
+			}
+			catch (ClientHandlerException e) {
+			}
+		}
+		
+		// Galaxy did respond, so neither retries nor circuit breaking should happen
+		Assert.assertEquals(3, attempts.get());
+		Assert.assertEquals(CircuitState.CLOSED, galaxyResilienceService.getCircuitState());
+	}
+	
+	@Test
+	public void shouldFailFastOnceCircuitOpens() {
+		for (int i = 0; i < 3; i++) {
+			try {
+				galaxyResilienceService.execute("test", false, () -> {
+					throw new ClientHandlerException(new ConnectException("Connection refused"));
+				});
+			}
+			catch (ClientHandlerException e) {
+			}
+		}
+		
+		Assert.assertEquals(CircuitState.OPEN, galaxyResilienceService.getCircuitState());
+		Assert.assertFalse(galaxyResilienceService.isAvailable());
+		
+		AtomicInteger attempts = new AtomicInteger(0);
+		try {
+			galaxyResilienceService.execute("test", true, () -> attempts.incrementAndGet());
+			Assert.fail();
+		}
+		catch (GalaxyUnavailableException e) {
+			Assert.assertEquals(0, attempts.get());
+		}
+	}
+	
+}
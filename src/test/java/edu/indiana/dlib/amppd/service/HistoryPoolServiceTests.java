@@ -0,0 +1,73 @@
+package edu.indiana.dlib.amppd.service;
+
+import java.util.Date;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import edu.indiana.dlib.amppd.model.PooledHistory;
+import edu.indiana.dlib.amppd.model.Primaryfile;
+import edu.indiana.dlib.amppd.repository.PooledHistoryRepository;
+import edu.indiana.dlib.amppd.util.TestHelper;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class HistoryPoolServiceTests {
+
+	@Autowired
+	private HistoryPoolService historyPoolService;   
+
+	@Autowired
+	private PooledHistoryRepository pooledHistoryRepository;   
+	
+	@Autowired
+	private GalaxyDataService galaxyDataService;   
+
+	@Autowired
+	private TestHelper testHelper;   
+	
+	private Primaryfile primaryfile;
+	
+	@Before
+	public void setup() {
+		primaryfile = testHelper.ensureTestAudio();
+	}
+	
+	@Test
+	public void shouldRefillPoolToDemand() {
+		historyPoolService.refillPool(2);
+		Assert.assertTrue(pooledHistoryRepository.countByPrimaryfileIdNull() >= 2);
+	}
+	
+	@Test
+	public void shouldClaimAndRenamePooledHistory() {
+		historyPoolService.refillPool(1);
+		int available = pooledHistoryRepository.countByPrimaryfileIdNull();
+		
+		String historyId = historyPoolService.claimHistory(primaryfile);
+		Assert.assertNotNull(historyId);
+		Assert.assertEquals(primaryfile.getId() + ": " + primaryfile.getName(), galaxyDataService.getHistoriesClient().showHistory(historyId).getName());
+		Assert.assertTrue(pooledHistoryRepository.countByPrimaryfileIdNull() < available);
+	}
+	
+	@Test
+	public void shouldDiscardPooledHistoryNotFoundInGalaxy() {
+		PooledHistory invalid = new PooledHistory();
+		invalid.setHistoryId("0000000000000000");
+		invalid.setDateCreated(new Date());
+		invalid = pooledHistoryRepository.save(invalid);
+		
+		// claim as many histories as available, so that the invalid one, pooled last, is reached and discarded, while valid ones are claimed instead
+		int available = pooledHistoryRepository.countByPrimaryfileIdNull();
+		for (int i = 0; i < available; i++) {
+			Assert.assertNotEquals(invalid.getHistoryId(), historyPoolService.claimHistory(primaryfile));
+		}
+		Assert.assertFalse(pooledHistoryRepository.existsById(invalid.getId()));
+	}
+	
+}
@@ -0,0 +1,50 @@
+package edu.indiana.dlib.amppd.service;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import edu.indiana.dlib.amppd.config.AmppdPropertyConfig;
+import edu.indiana.dlib.amppd.web.JobAdmissionResponse;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class JobAdmissionServiceTests {
+
+	@Autowired
+	private JobAdmissionService jobAdmissionService;   
+
+	@Autowired
+	private AmppdPropertyConfig amppdPropertyConfig;   
+	
+	private int maxInFlightJobs;
+	
+	@After
+	public void cleanup() {
+		amppdPropertyConfig.setMaxInFlightJobs(maxInFlightJobs);
+	}
+	
+	@Test
+	public void shouldAdmitAllWhenDisabled() {
+		maxInFlightJobs = amppdPropertyConfig.getMaxInFlightJobs();
+		amppdPropertyConfig.setMaxInFlightJobs(0);
+		Assert.assertEquals(Integer.MAX_VALUE, jobAdmissionService.getAvailableCapacity());
+	}
+	
+	@Test
+	public void shouldLimitCapacityByCeiling() {
+		maxInFlightJobs = amppdPropertyConfig.getMaxInFlightJobs();
+		int ceiling = jobAdmissionService.getInFlightJobs() + 2;
+		amppdPropertyConfig.setMaxInFlightJobs(ceiling);
+		Assert.assertEquals(2, jobAdmissionService.getAvailableCapacity());
+		
+		JobAdmissionResponse response = jobAdmissionService.getAdmissionStatus();
+		Assert.assertEquals(ceiling, response.getMaxInFlightJobs());
+		Assert.assertEquals(2, response.getAvailableCapacity());
+	}
+	
+}
@@ -1,5 +1,6 @@
 package edu.indiana.dlib.amppd.service;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -18,6 +19,7 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import com.github.jmchilton.blend4j.galaxy.beans.Dataset;
@@ -26,14 +28,20 @@ import com.github.jmchilton.blend4j.galaxy.beans.InvocationDetails;
 import com.github.jmchilton.blend4j.galaxy.beans.WorkflowDetails;
 import com.github.jmchilton.blend4j.galaxy.beans.WorkflowOutputs;
 
+import edu.indiana.dlib.amppd.config.AmppdPropertyConfig;
 import edu.indiana.dlib.amppd.exception.GalaxyWorkflowException;
+import edu.indiana.dlib.amppd.exception.ParserException;
 import edu.indiana.dlib.amppd.exception.StorageException;
 import edu.indiana.dlib.amppd.model.Bundle;
 import edu.indiana.dlib.amppd.model.Primaryfile;
+import edu.indiana.dlib.amppd.model.WorkflowResult;
 import edu.indiana.dlib.amppd.repository.BundleRepository;
 import edu.indiana.dlib.amppd.repository.PrimaryfileRepository;
+import edu.indiana.dlib.amppd.repository.WorkflowResultRepository;
 import edu.indiana.dlib.amppd.util.TestHelper;
 import edu.indiana.dlib.amppd.web.CreateJobResponse;
+import edu.indiana.dlib.amppd.web.GalaxyJobState;
+import edu.indiana.dlib.amppd.web.InputCsvRow;
 
 // TODO remove ignore once we have Galaxy Bootstrap working on Bamboo
 @Ignore
@@ -49,6 +57,12 @@ public class JobServiceTests {
 	@Autowired
     private PrimaryfileRepository primaryfileRepository;
 
+	@Autowired
+    private WorkflowResultRepository workflowResultRepository;
+
+	@Autowired
+    private AmppdPropertyConfig amppdPropertyConfig;
+
 	@Autowired
 	private JobService jobService;   
 		
@@ -180,6 +194,70 @@ public class JobServiceTests {
     	Assert.assertEquals(pf1.getHistoryId(), pf.getHistoryId());
     }
     
+    @Test
+    public void shouldReturnExistingInvocationForDuplicateJob() {    	              
+    	CreateJobResponse result = jobService.createJob(workflowDetails, primaryfile.getId(), new HashMap<String, Map<String, String>>());
+    	CreateJobResponse duplicate = jobService.createJob(workflowDetails, primaryfile.getId(), new HashMap<String, Map<String, String>>());
+
+    	// resubmitting the same job within the idempotency window shall return the same invocation
+    	Assert.assertTrue(result.getSuccess());
+    	Assert.assertTrue(duplicate.getSuccess());
+    	Assert.assertEquals(result.getInvocationId(), duplicate.getInvocationId());
+    	Assert.assertEquals(result.getOutputs().getHistoryId(), duplicate.getOutputs().getHistoryId());
+    }
+    
+    @Test
+    public void shouldNotReturnFailedInvocationForDuplicateJob() {    	              
+    	CreateJobResponse result = jobService.createJob(workflowDetails, primaryfile.getId(), new HashMap<String, Map<String, String>>());
+    	List<WorkflowResult> results = workflowResultRepository.findByInvocationIdAndPrimaryfileId(result.getInvocationId(), primaryfile.getId());
+    	results.forEach(r -> r.setStatus(GalaxyJobState.ERROR));
+    	workflowResultRepository.saveAll(results);
+
+    	// retrying a failed job within the idempotency window shall invoke the workflow again
+    	CreateJobResponse retry = jobService.createJob(workflowDetails, primaryfile.getId(), new HashMap<String, Map<String, String>>());
+    	Assert.assertTrue(retry.getSuccess());
+    	Assert.assertNotEquals(result.getInvocationId(), retry.getInvocationId());
+    }
+    
+    @Test
+    public void shouldReuseResultsOnIdenticalPrimaryfile() {
+    	amppdPropertyConfig.setJobReuseResults(true);
+    	try {
+	    	// outputs are only reused once they are all complete, which is simulated here rather than waiting for Galaxy
+	    	CreateJobResponse result = jobService.createJob(workflowDetails, primaryfile.getId(), new HashMap<String, Map<String, String>>());
+			Primaryfile pf = primaryfileRepository.findById(primaryfile.getId()).orElseThrow(() -> new StorageException("Primaryfile <" + primaryfile.getId() + "> does not exist!"));
+	    	List<WorkflowResult> sources = workflowResultRepository.findByInvocationIdAndPrimaryfileId(result.getInvocationId(), pf.getId());
+	    	sources.forEach(source -> source.setStatus(GalaxyJobState.COMPLETE));
+	    	workflowResultRepository.saveAll(sources);
+	    	
+	    	// a primaryfile with byte-identical media shares the content hash and Galaxy dataset with the original one
+	    	Primaryfile identical = testHelper.ensurePrimaryfile(pf.getItem().getCollection().getUnit().getName(), pf.getItem().getCollection().getName(), pf.getItem().getName(), "TestAudio Identical");
+	    	identical.setOriginalFilename(pf.getOriginalFilename());
+	    	identical.setSha256(pf.getSha256());
+	    	identical.setDatasetId(pf.getDatasetId());
+	    	primaryfileRepository.save(identical);
+	    	
+	    	// the job on the identical primaryfile shall reuse the invocation with its outputs copied into the primaryfile's history
+	    	CreateJobResponse reused = jobService.createJob(workflowDetails, identical.getId(), new HashMap<String, Map<String, String>>());
+	    	Assert.assertTrue(reused.getSuccess());
+	    	Assert.assertEquals(result.getInvocationId(), reused.getInvocationId());
+	    	List<WorkflowResult> copies = workflowResultRepository.findByInvocationIdAndPrimaryfileId(result.getInvocationId(), identical.getId());
+	    	Assert.assertEquals(sources.size(), copies.size());
+	    	for (WorkflowResult copy : copies) {
+	    		Assert.assertNotNull(copy.getSourceResultId());
+	    		Assert.assertEquals(reused.getOutputs().getHistoryId(), copy.getHistoryId());
+	    		Assert.assertEquals(GalaxyJobState.COMPLETE, copy.getStatus());
+	    	}
+	    	
+	    	// resubmitting the job shall return the existing copies instead of copying the outputs again
+	    	jobService.createJob(workflowDetails, identical.getId(), new HashMap<String, Map<String, String>>());
+	    	Assert.assertEquals(copies.size(), workflowResultRepository.findByInvocationIdAndPrimaryfileId(result.getInvocationId(), identical.getId()).size());
+    	}
+    	finally {
+    		amppdPropertyConfig.setJobReuseResults(false);
+    	}
+    }
+    
     @Test
     public void shouldCreateJobOnValidHmgmInputs() {    	              
         
@@ -300,5 +378,69 @@ public class JobServiceTests {
     public void shouldThrowExceptionShowNonExistingDataset() {
     	jobService.showJobStepOutput(workflowDetails.getId(), "foo", "bar", "foobar");
     }
+    
+    @Test
+    public void shouldFailJobsWithMissingOrMismatchedResults() {
+    	// results are validated against the workflow results and primaryfiles preloaded for all rows, so create them directly without running Galaxy jobs
+    	Primaryfile video = testHelper.ensureTestVideo();
+    	WorkflowResult audioResult = createTestResult(primaryfile.getId(), "audio-history");
+    	WorkflowResult videoResult = createTestResult(video.getId(), "video-history");
+    	WorkflowResult orphanResult = createTestResult(0l, "orphan-history");
+    	
+    	try {
+    		List<Long[]> resultIdss = new ArrayList<Long[]>();
+    		resultIdss.add(new Long[] {0l});
+    		resultIdss.add(new Long[] {audioResult.getId(), videoResult.getId()});
+    		resultIdss.add(new Long[] {orphanResult.getId()});
+    		List<CreateJobResponse> responses = jobService.createJobs(workflowDetails.getId(), resultIdss, new HashMap<String, Map<String, String>>(), false);
+
+    		// each row fails on its own without affecting the others, with the same errors as when validated one by one
+    		Assert.assertEquals(3, responses.size());
+    		responses.forEach(response -> Assert.assertFalse(response.getSuccess()));
+    		Assert.assertTrue(responses.get(0).getError().contains("WorkflowResult <0> does not exist!"));
+    		Assert.assertTrue(responses.get(1).getError().contains("has a different primaryfileId " + video.getId()));
+    		Assert.assertTrue(responses.get(2).getError().contains("Primaryfile <0> does not exist!"));
+    	}
+    	finally {
+    		workflowResultRepository.deleteAll(List.of(audioResult, videoResult, orphanResult));
+    	}
+    }
+    
+    /**
+     * Create a dummy workflow result for the given primaryfile and history.
+     */
+    private WorkflowResult createTestResult(Long primaryfileId, String historyId) {
+    	WorkflowResult result = new WorkflowResult();
+    	result.setPrimaryfileId(primaryfileId);
+    	result.setHistoryId(historyId);
+    	result.setOutputId(historyId + "-output");
+    	result.setStatus(GalaxyJobState.COMPLETE);
+    	return workflowResultRepository.save(result);
+    }
+    
+    @Test
+    public void shouldParseInputCsvInChunks() {
+    	MockMultipartFile inputCsv = new MockMultipartFile("inputCsv", "input.csv", "text/csv", "primaryfileId,resultId1,resultId2\n1,2,3\n1,4,x\n1,5\n1,6,7\n".getBytes());
+    	List<List<InputCsvRow>> chunks = new ArrayList<List<InputCsvRow>>();
+    	
+    	int nrow = jobService.parseInputCsv(inputCsv, 3, chunks::add);
+    	
+    	Assert.assertEquals(4, nrow);
+    	Assert.assertEquals(2, chunks.size());
+    	Assert.assertEquals(3, chunks.get(0).size());
+    	Assert.assertEquals(1, chunks.get(1).size());
+    	Assert.assertArrayEquals(new Long[] {2l, 3l}, chunks.get(0).get(0).getResultIds());
+    	Assert.assertNull(chunks.get(0).get(0).getError());
+    	Assert.assertNotNull(chunks.get(0).get(1).getError());
+    	Assert.assertNotNull(chunks.get(0).get(2).getError());
+    	Assert.assertEquals(4, chunks.get(1).get(0).getRowNum());
+    	Assert.assertArrayEquals(new Long[] {6l, 7l}, chunks.get(1).get(0).getResultIds());
+    }
+    
+    @Test(expected = ParserException.class)
+    public void shouldThrowExceptionParsingInputCsvWithInvalidRows() {
+    	MockMultipartFile inputCsv = new MockMultipartFile("inputCsv", "input.csv", "text/csv", "primaryfileId,resultId1\n1,2\n1,x\n".getBytes());
+    	jobService.parseInputCsv(inputCsv);
+    }
            
 }
@@ -0,0 +1,82 @@
+package edu.indiana.dlib.amppd.service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.github.jmchilton.blend4j.galaxy.beans.WorkflowDetails;
+
+import edu.indiana.dlib.amppd.exception.GalaxyWorkflowException;
+import edu.indiana.dlib.amppd.exception.StorageException;
+import edu.indiana.dlib.amppd.model.Primaryfile;
+import edu.indiana.dlib.amppd.util.TestHelper;
+import edu.indiana.dlib.amppd.web.JobSubmissionResponse;
+import edu.indiana.dlib.amppd.web.JobSubmissionState;
+
+// TODO remove ignore once we have Galaxy Bootstrap working on Bamboo
+@Ignore
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class JobSubmissionServiceTests {
+
+	@Autowired
+	private JobSubmissionService jobSubmissionService;   
+		
+	@Autowired
+	private TestHelper testHelper;   
+	
+	private Primaryfile primaryfile;
+	private WorkflowDetails workflowDetails;
+	
+	@Before
+	public void setup() {
+    	primaryfile = testHelper.ensureTestAudio();
+    	workflowDetails = testHelper.ensureTestWorkflowDetails();
+	}
+
+	@Test
+	public void shouldQueueAndProcessJobs() throws InterruptedException {
+		Long[] primaryfileIds = {primaryfile.getId()};
+		JobSubmissionResponse response = jobSubmissionService.submitJobs(workflowDetails.getId(), primaryfileIds, new HashMap<String, Map<String, String>>());
+		Assert.assertNotNull(response.getSubmissionId());
+		Assert.assertEquals(1, response.getTotal());
+
+		// wait for the workers to submit the job to Galaxy
+		for (int i = 0; i < 60 && response.getStatus() != JobSubmissionState.COMPLETE; i++) {
+			Thread.sleep(1000);
+			response = jobSubmissionService.getJobSubmission(response.getSubmissionId());
+		}
+		
+		Assert.assertEquals(JobSubmissionState.COMPLETE, response.getStatus());
+		Assert.assertEquals(1, response.getSucceeded());
+		Assert.assertTrue(response.getResponses().get(0).getSuccess());
+		Assert.assertNotNull(response.getResponses().get(0).getInvocationId());
+	}
+
+	@Test
+	public void shouldCompleteEmptySubmission() {
+		JobSubmissionResponse response = jobSubmissionService.submitJobs(workflowDetails.getId(), new Long[0], new HashMap<String, Map<String, String>>());
+		Assert.assertEquals(JobSubmissionState.COMPLETE, response.getStatus());
+		Assert.assertEquals(0, response.getTotal());
+	}
+
+	@Test(expected = GalaxyWorkflowException.class)
+	public void shouldThrowExceptionQueueingNonExistingWorkflow() {
+		Long[] primaryfileIds = {primaryfile.getId()};
+		jobSubmissionService.submitJobs("foobar", primaryfileIds, new HashMap<String, Map<String, String>>());
+	}
+
+	@Test(expected = StorageException.class)
+	public void shouldThrowExceptionShowingNonExistingSubmission() {
+		jobSubmissionService.getJobSubmission(0l);
+	}
+	
+}
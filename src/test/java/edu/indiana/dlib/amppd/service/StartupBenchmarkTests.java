@@ -0,0 +1,104 @@
+package edu.indiana.dlib.amppd.service;
+
+import java.io.IOException;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import edu.indiana.dlib.amppd.AmppdApplication;
+import edu.indiana.dlib.amppd.repository.SharedGalaxyObjectRepository;
+import edu.indiana.dlib.amppd.util.GalaxySimulator;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Benchmarks of AMPPD time-to-ready, with the default startup and with the faststart profile, against the in-process Galaxy simulator.
+ * These are skipped unless run with -Damppd.benchmark=true; the faststart profile requires the DB schema to be up to date,
+ * which is the case once the application or the other tests have run against the same DB with the default profile.
+ * The simulated Galaxy latency and number of histories to be listed at startup can be tuned with amppd.benchmark.latency and amppd.benchmark.histories.
+ * @author yingfeng
+ */
+@Slf4j
+public class StartupBenchmarkTests {
+	public static final String FASTSTART = "faststart";
+	public static final String UNREACHABLE_PORT = "1";
+
+	private static GalaxySimulator simulator;
+	private static long benchmarkStart;
+
+	@BeforeClass
+	public static void startSimulator() throws IOException {
+		Assume.assumeTrue("Benchmarks are skipped unless -D" + GalaxyBenchmarkTests.BENCHMARK + "=true", Boolean.getBoolean(GalaxyBenchmarkTests.BENCHMARK));
+		benchmarkStart = System.currentTimeMillis();
+		simulator = new GalaxySimulator();
+		simulator.setLatency(Long.getLong(GalaxyBenchmarkTests.BENCHMARK + ".latency", 50));
+		simulator.start(4);
+		String workflowId = simulator.addWorkflow("Startup Benchmark Workflow", "benchmark_tool_a");
+		simulator.addHistoriesWithInvocations(workflowId, Integer.getInteger(GalaxyBenchmarkTests.BENCHMARK + ".histories", 1000));
+	}
+
+	@AfterClass
+	public static void stopSimulator() {
+		if (simulator != null) {
+			simulator.stop();
+		}
+	}
+
+	/**
+	 * Start AMPPD with the given profiles and Galaxy port, and return its time-to-ready in milliseconds.
+	 */
+	private long startup(String name, String galaxyPort, String... profiles) {
+		long requests = simulator.getRequests();
+		long start = System.currentTimeMillis();
+		ConfigurableApplicationContext context = new SpringApplicationBuilder(AmppdApplication.class)
+				.profiles(profiles)
+				.properties("server.port=0", "galaxy.host=localhost", "galaxy.port=" + galaxyPort, "amppd.historyPoolLowWaterMark=0")
+				.run();
+		long millis = System.currentTimeMillis() - start;
+		
+		// shared library and history IDs persisted during the benchmark refer to the simulator, remove them so they don't affect other tests
+		SharedGalaxyObjectRepository sharedGalaxyObjectRepository = context.getBean(SharedGalaxyObjectRepository.class);
+		sharedGalaxyObjectRepository.findAll().forEach(shared -> {
+			if (shared.getDateCreated().getTime() >= benchmarkStart) {
+				sharedGalaxyObjectRepository.delete(shared);
+			}
+		});
+		context.close();
+
+		String msg = String.format("Benchmark startup %s: ready in %d ms with %d Galaxy requests", name, millis, simulator.getRequests() - requests);
+		log.info(msg);
+		System.out.println(msg);
+		return millis;
+	}
+
+	@Test
+	public void benchmarkStartup() {
+		// the first startup brings the schema up to date for faststart, and warms up the JVM so that neither measured startup benefits from it
+		String galaxyPort = String.valueOf(GalaxySimulator.DEFAULT_PORT);
+		startup("warmup", galaxyPort);
+		
+		// the default startup resolves the shared library and history by listing them in Galaxy
+		long defaultStart = startup("default", galaxyPort);
+		long requests = simulator.getRequests();
+		long faststart = startup(FASTSTART, galaxyPort, FASTSTART);
+		
+		String msg = String.format("Benchmark startup: default %d ms, %s %d ms, speedup %.2fx", defaultStart, FASTSTART, faststart, (double)defaultStart / faststart);
+		log.info(msg);
+		System.out.println(msg);
+		
+		// faststart doesn't contact Galaxy at all during startup, nor update the schema, so it must be faster than the default
+		Assert.assertEquals(requests, simulator.getRequests());
+		Assert.assertTrue(msg, faststart < defaultStart);
+	}
+
+	@Test
+	public void shouldStartWithGalaxyDown() {
+		// with faststart, Galaxy isn't contacted during startup, so an unreachable Galaxy must not prevent AMPPD from starting
+		Assert.assertTrue(startup(FASTSTART + " with Galaxy down", UNREACHABLE_PORT, FASTSTART) > 0);
+	}
+
+}
@@ -0,0 +1,148 @@
+package edu.indiana.dlib.amppd.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import edu.indiana.dlib.amppd.exception.StorageException;
+import edu.indiana.dlib.amppd.model.Asset;
+import edu.indiana.dlib.amppd.model.Primaryfile;
+import edu.indiana.dlib.amppd.model.Supplement.SupplementType;
+import edu.indiana.dlib.amppd.model.UploadSession;
+import edu.indiana.dlib.amppd.util.TestHelper;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class UploadServiceTests {
+
+	@Autowired
+	private UploadService uploadService;
+	
+	@Autowired
+	private FileStorageService fileStorageService;
+	
+	@Autowired
+	private TestHelper testHelper;
+	
+	private byte[] createContent(int size) {
+		byte[] content = new byte[size];
+		new Random().nextBytes(content);
+		return content;
+	}
+	
+	private UploadSession createSession(byte[] content) {
+		Primaryfile primaryfile = testHelper.ensurePrimaryfile("Unit for Upload", "Collection for Upload", "Item for Upload", "Primaryfile for Upload");
+		return uploadService.createSession(primaryfile.getId(), SupplementType.PFILE, "upload.mp3", (long)content.length);
+	}
+	
+	@Test
+	public void shouldWriteChunksInPlace() throws IOException {
+		byte[] content = createContent(100000);
+		UploadSession session = createSession(content);
+		
+		// chunks can overlap with bytes already received, i.e. when a chunk is resent
+		session = uploadService.writeChunk(session.getId(), 0L, 40000L, new ByteArrayInputStream(content, 0, 40000));
+		assertEquals(40000L, session.getReceived().longValue());
+		session = uploadService.writeChunk(session.getId(), 30000L, 70000L, new ByteArrayInputStream(content, 30000, 70000));
+		assertEquals(100000L, session.getReceived().longValue());
+		
+		Path path = fileStorageService.resolve(session.getPathname());
+		assertArrayEquals(content, Files.readAllBytes(path));
+		uploadService.deleteSession(session.getId());
+		assertFalse(Files.exists(path));
+	}
+	
+	@Test
+	public void shouldResumeInterruptedChunk() throws IOException {
+		byte[] content = createContent(100000);
+		UploadSession session = createSession(content);
+		
+		// the client disconnects after sending 25000 bytes of the first chunk
+		InputStream interrupted = new ByteArrayInputStream(content, 0, 25000);
+		try {
+			uploadService.writeChunk(session.getId(), 0L, 50000L, interrupted);
+			fail("An incomplete chunk should fail");
+		}
+		catch (StorageException e) {
+		}
+		
+		// the bytes written before the disconnect are kept, so the client resumes from there
+		session = uploadService.getSession(session.getId());
+		assertEquals(25000L, session.getReceived().longValue());
+		int start = session.getReceived().intValue();
+		session = uploadService.writeChunk(session.getId(), (long)start, (long)(content.length - start), new ByteArrayInputStream(content, start, content.length - start));
+		assertEquals(100000L, session.getReceived().longValue());
+		assertArrayEquals(content, Files.readAllBytes(fileStorageService.resolve(session.getPathname())));
+		uploadService.deleteSession(session.getId());
+	}
+	
+	@Test
+	public void shouldRejectInvalidRanges() {
+		byte[] content = createContent(1000);
+		UploadSession session = createSession(content);
+		
+		try {
+			// chunk leaving a gap after the received bytes
+			uploadService.writeChunk(session.getId(), 500L, 500L, new ByteArrayInputStream(content, 500, 500));
+			fail("A chunk leaving a gap should be rejected");
+		}
+		catch (StorageException e) {
+		}
+		
+		try {
+			// chunk beyond the file size
+			uploadService.writeChunk(session.getId(), 0L, 2000L, new ByteArrayInputStream(createContent(2000)));
+			fail("A chunk beyond the file size should be rejected");
+		}
+		catch (StorageException e) {
+		}
+		
+		try {
+			// finalize before all bytes are received
+			uploadService.finalizeSession(session.getId());
+			fail("An incomplete upload should not be finalized");
+		}
+		catch (StorageException e) {
+		}
+		
+		assertEquals(0L, uploadService.getSession(session.getId()).getReceived().longValue());
+		uploadService.deleteSession(session.getId());
+	}
+	
+	// TODO remove ignore once we have ffmpeg and MediaProbe installed on Bamboo
+	@Ignore
+	@Test
+	public void shouldFinalizeSession() throws IOException {
+		Primaryfile primaryfile = testHelper.ensureTestAudio();
+		byte[] content = Files.readAllBytes(fileStorageService.resolve(primaryfile.getPathname()));
+		Primaryfile target = testHelper.ensurePrimaryfile("Unit for Upload", "Collection for Upload", "Item for Upload", "Primaryfile for Upload Finalize");
+		UploadSession session = uploadService.createSession(target.getId(), SupplementType.PFILE, "upload.mp3", (long)content.length);
+		
+		int half = content.length / 2;
+		uploadService.writeChunk(session.getId(), 0L, (long)half, new ByteArrayInputStream(Arrays.copyOfRange(content, 0, half)));
+		uploadService.writeChunk(session.getId(), (long)half, (long)(content.length - half), new ByteArrayInputStream(content, half, content.length - half));
+		Asset asset = uploadService.finalizeSession(session.getId());
+		
+		assertEquals("upload.mp3", asset.getOriginalFilename());
+		assertEquals(fileStorageService.getFilePathname(asset), asset.getPathname());
+		assertArrayEquals(content, Files.readAllBytes(fileStorageService.resolve(asset.getPathname())));
+		assertFalse(Files.exists(fileStorageService.resolve(session.getPathname())));
+	}
+	
+}
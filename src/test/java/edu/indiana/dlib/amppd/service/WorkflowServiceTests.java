@@ -11,7 +11,9 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import com.github.jmchilton.blend4j.galaxy.beans.Workflow;
+import com.github.jmchilton.blend4j.galaxy.beans.WorkflowDetails;
 
+import edu.indiana.dlib.amppd.util.CacheHelper.CacheStats;
 import edu.indiana.dlib.amppd.util.TestHelper;
 
 
@@ -121,4 +123,35 @@ public class WorkflowServiceTests {
     	Assert.assertEquals(workflowService.workflowNamesCacheSize(), (Integer)1);
     }
     
+    @Test
+    public void shouldHitCacheOnRepeatedWorkflowDetailsRequest() {
+    	workflowService.invalidateWorkflowCaches(workflow.getId());
+    	WorkflowDetails details1 = workflowService.showWorkflow(workflow.getId(), false, true);
+    	long hits = getCacheStats("workflowDetails").getHits();
+    	
+    	// second call for the same workflow is served from cache
+    	WorkflowDetails details2 = workflowService.showWorkflow(workflow.getId(), false, true);
+    	Assert.assertSame(details1, details2);
+    	Assert.assertEquals(hits + 1, getCacheStats("workflowDetails").getHits());
+    }
+    
+    @Test
+    public void shouldInvalidateWorkflowCaches() {
+    	workflowService.getWorkflowName(workflow.getId());
+    	workflowService.listWorkflows(null, null, null);
+    	
+    	workflowService.invalidateWorkflowCaches(null);
+    	Assert.assertEquals(workflowService.workflowNamesCacheSize(), (Integer)0);
+    	Assert.assertEquals(0, getCacheStats("workflowLists").getSize());
+    }
+    
+    private CacheStats getCacheStats(String name) {
+    	for (CacheStats stats : workflowService.getWorkflowCacheStats()) {
+    		if (stats.getName().equals(name)) {
+    			return stats;
+    		}
+    	}
+    	return null;
+    }
+    
 }
@@ -0,0 +1,420 @@
+package edu.indiana.dlib.amppd.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * An in-process HTTP simulator of the Galaxy REST API endpoints used by blend4j, i.e. workflows, invocations, histories, datasets,
+ * libraries and tools, for running tests and benchmarks without a real Galaxy. Objects are kept in memory; output datasets of
+ * invocations are queued at creation and become ok (or error) once the simulated job duration has passed.
+ * Response latency, error responses and dropped connections can be injected at configurable rates.
+ * @author yingfeng
+ */
+@Slf4j
+public class GalaxySimulator {
+	public static final int DEFAULT_PORT = 18300;
+	public static final String API_KEY = "simulator-api-key";
+	public static final String SIMULATED_ERROR = "Simulated Galaxy error";
+
+	@Getter
+	private int port;
+
+	// latency in milliseconds added to each response, plus a random jitter up to latencyJitter
+	@Getter @Setter
+	private long latency = 0;
+	@Getter @Setter
+	private long latencyJitter = 0;
+
+	// rate of requests failed with HTTP 500, and rate of requests with connection dropped without response
+	@Getter @Setter
+	private double errorRate = 0;
+	@Getter @Setter
+	private double dropRate = 0;
+
+	// time in milliseconds for simulated jobs to finish, and rate of jobs ending in error
+	@Getter @Setter
+	private long jobDuration = 0;
+	@Getter @Setter
+	private double jobErrorRate = 0;
+
+	private HttpServer server;
+	private ExecutorService executor;
+	private ObjectMapper objectMapper = new ObjectMapper();
+	private DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS");
+	private AtomicLong idSequence = new AtomicLong(0x1000);
+	private AtomicLong requests = new AtomicLong(0);
+
+	private Map<String, Map<String, Object>> workflows = new ConcurrentHashMap<String, Map<String, Object>>();
+	private Map<String, Map<String, Object>> invocations = new ConcurrentHashMap<String, Map<String, Object>>();
+	private Map<String, Map<String, Object>> histories = new ConcurrentHashMap<String, Map<String, Object>>();
+	private Map<String, Map<String, Object>> datasets = new ConcurrentHashMap<String, Map<String, Object>>();
+	private Map<String, Map<String, Object>> libraries = new ConcurrentHashMap<String, Map<String, Object>>();
+	private Map<String, Long> datasetCreated = new ConcurrentHashMap<String, Long>();
+
+	public GalaxySimulator() {
+		this(DEFAULT_PORT);
+	}
+
+	public GalaxySimulator(int port) {
+		this.port = port;
+	}
+
+	/**
+	 * Start the simulator with the given number of threads serving requests.
+	 */
+	public void start(int threads) throws IOException {
+		executor = Executors.newFixedThreadPool(threads);
+		server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+		server.createContext("/api", this::handle);
+		server.setExecutor(executor);
+		server.start();
+		log.info("Started Galaxy simulator on port " + port + " with " + threads + " threads");
+	}
+
+	/**
+	 * Stop the simulator.
+	 */
+	public void stop() {
+		if (server != null) {
+			server.stop(0);
+			executor.shutdownNow();
+			log.info("Stopped Galaxy simulator after serving " + requests.get() + " requests");
+		}
+	}
+
+	/**
+	 * Get the total number of requests received.
+	 */
+	public long getRequests() {
+		return requests.get();
+	}
+
+	/**
+	 * Add a workflow with an input step followed by a step for each of the given tools, each producing one output.
+	 * @return ID of the added workflow
+	 */
+	public String addWorkflow(String name, String... toolIds) {
+		String id = nextId();
+		Map<String, Object> steps = new LinkedHashMap<String, Object>();
+		steps.put("0", map("id", 0, "type", "data_input", "tool_id", null, "input_steps", map()));
+		for (int i = 0; i < toolIds.length; i++) {
+			steps.put(String.valueOf(i + 1), map("id", i + 1, "type", "tool", "tool_id", toolIds[i], "input_steps", map("input1", map("source_step", i, "step_output", "output"))));
+		}
+		workflows.put(id, map("id", id, "name", name, "model_class", "StoredWorkflow", "published", false, "deleted", false,
+				"inputs", map("0", map("label", "input", "value", "")), "steps", steps));
+		return id;
+	}
+
+	/**
+	 * Add the given number of histories, each with an invocation of the given workflow, to simulate existing data volume.
+	 * @return IDs of the added histories
+	 */
+	public List<String> addHistoriesWithInvocations(String workflowId, int count) {
+		List<String> historyIds = new ArrayList<String>();
+		for (int i = 0; i < count; i++) {
+			String historyId = createHistory("History " + i);
+			createInvocation(workflowId, historyId);
+			historyIds.add(historyId);
+		}
+		return historyIds;
+	}
+
+	/**
+	 * Handle a request to the Galaxy API, injecting latency and errors as configured.
+	 */
+	protected void handle(HttpExchange exchange) throws IOException {
+		requests.incrementAndGet();
+		try {
+			if (latency > 0 || latencyJitter > 0) {
+				Thread.sleep(latency + (latencyJitter > 0 ? ThreadLocalRandom.current().nextLong(latencyJitter) : 0));
+			}
+			if (dropRate > 0 && ThreadLocalRandom.current().nextDouble() < dropRate) {
+				return;
+			}
+			if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+				respond(exchange, 500, map("err_msg", SIMULATED_ERROR));
+				return;
+			}
+
+			String method = exchange.getRequestMethod();
+			String[] path = StringUtils.split(exchange.getRequestURI().getPath().substring("/api".length()), '/');
+			Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+			Map<String, Object> body = parseBody(exchange.getRequestBody());
+			Object response = route(method, path, query, body);
+			if (response == null) {
+				respond(exchange, 404, map("err_msg", "Object not found: " + exchange.getRequestURI().getPath()));
+			}
+			else {
+				respond(exchange, 200, response);
+			}
+		}
+		catch (Exception e) {
+			log.error("Galaxy simulator failed to handle " + exchange.getRequestURI(), e);
+			respond(exchange, 500, map("err_msg", e.toString()));
+		}
+		finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Route the given request to its handler, and return the response object, or null if not found.
+	 */
+	protected Object route(String method, String[] path, Map<String, String> query, Map<String, Object> body) {
+		String resource = path.length > 0 ? path[0] : "";
+		int depth = path.length;
+
+		switch (resource) {
+		case "authenticate":
+			return map("api_key", API_KEY);
+		case "workflows":
+			if (depth == 1 && method.equals("GET")) return listWorkflows();
+			if (depth == 1 && method.equals("POST")) return invoke((String)body.get("workflow_id"), body);
+			if (depth == 2) return workflows.get(path[1]);
+			if (depth == 3 && path[2].equals("invocations") && method.equals("POST")) return invoke(path[1], body);
+			if (depth == 3 && path[2].equals("invocations")) return listInvocations(path[1], query.get("history_id"));
+			if (depth == 4 && path[2].equals("invocations")) return invocations.get(path[3]);
+			return null;
+		case "invocations":
+			if (depth == 1) return listInvocations(query.get("workflow_id"), query.get("history_id"));
+			return invocations.get(path[1]);
+		case "histories":
+			if (depth == 1 && method.equals("POST")) return histories.get(createHistory((String)body.get("name")));
+			if (depth == 1) return new ArrayList<Map<String, Object>>(histories.values());
+			if (depth == 2 && method.equals("PUT")) return update(histories.get(path[1]), body);
+			if (depth == 2 && method.equals("DELETE")) return histories.remove(path[1]);
+			if (depth == 2) return histories.get(path[1]);
+			if (depth == 3) return listDatasets(path[1]);
+			if (depth == 4 && method.equals("PUT")) return update(getDataset(path[3]), body);
+			return getDataset(path[3]);
+		case "libraries":
+			if (depth == 1 && method.equals("POST")) return createLibrary((String)body.get("name"));
+			if (depth == 1) return new ArrayList<Map<String, Object>>(libraries.values());
+			if (depth == 2) return libraries.get(path[1]);
+			if (depth == 3 && method.equals("POST")) return uploadLibraryDatasets(path[1], body);
+			if (depth == 3) return libraries.containsKey(path[1]) ? List.of(map("id", "F" + path[1], "name", "/", "type", "folder")) : null;
+			return null;
+		case "tools":
+			return depth == 2 ? map("id", path[1], "name", path[1], "version", "1.0.0") : new ArrayList<Object>();
+		case "jobs":
+			return new ArrayList<Object>();
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Invoke the given workflow on the history specified in the given request body.
+	 */
+	protected Map<String, Object> invoke(String workflowId, Map<String, Object> body) {
+		if (!workflows.containsKey(workflowId)) {
+			return null;
+		}
+
+		// blend4j specifies an existing history as hist_id=<ID> in the history field, while the invocations API uses history_id
+		String historyId = (String)body.get("history_id");
+		if (historyId == null && body.get("history") != null) {
+			historyId = StringUtils.removeStart((String)body.get("history"), "hist_id=");
+		}
+		if (historyId == null || !histories.containsKey(historyId)) {
+			historyId = createHistory("Unnamed history");
+		}
+		return createInvocation(workflowId, historyId);
+	}
+
+	/**
+	 * Create an invocation of the given workflow in the given history, with a queued output dataset for each tool step.
+	 */
+	@SuppressWarnings("unchecked")
+	protected Map<String, Object> createInvocation(String workflowId, String historyId) {
+		String id = nextId();
+		String now = LocalDateTime.now().format(dateFormat);
+		List<Object> steps = new ArrayList<Object>();
+		List<Object> outputs = new ArrayList<Object>();
+
+		Map<String, Object> workflowSteps = (Map<String, Object>)workflows.get(workflowId).get("steps");
+		for (Object value : workflowSteps.values()) {
+			Map<String, Object> workflowStep = (Map<String, Object>)value;
+			String toolId = (String)workflowStep.get("tool_id");
+			List<Object> jobs = new ArrayList<Object>();
+			Map<String, Object> stepOutputs = new LinkedHashMap<String, Object>();
+			if (toolId != null) {
+				String datasetId = createDataset(historyId, toolId + " output");
+				jobs.add(map("id", nextId(), "tool_id", toolId, "state", "ok", "create_time", now, "update_time", now));
+				stepOutputs.put("output", map("id", datasetId, "src", "hda"));
+				outputs.add(datasetId);
+			}
+			steps.add(map("id", nextId(), "order_index", workflowStep.get("id"), "workflow_step_id", String.valueOf(workflowStep.get("id")),
+					"state", "scheduled", "update_time", now, "jobs", jobs, "outputs", stepOutputs));
+		}
+
+		Map<String, Object> invocation = map("id", id, "workflow_id", workflowId, "history_id", historyId, "history", historyId,
+				"state", "scheduled", "update_time", now, "steps", steps, "outputs", outputs);
+		invocations.put(id, invocation);
+		return invocation;
+	}
+
+	protected String createHistory(String name) {
+		String id = nextId();
+		histories.put(id, map("id", id, "name", name, "deleted", false, "model_class", "History"));
+		return id;
+	}
+
+	protected String createDataset(String historyId, String name) {
+		String id = nextId();
+		String now = LocalDateTime.now().format(dateFormat);
+		datasetCreated.put(id, System.currentTimeMillis());
+		datasets.put(id, map("id", id, "history_id", historyId, "name", name, "state", "queued", "visible", true, "deleted", false,
+				"file_ext", "json", "file_name", "/galaxy/files/" + id + ".dat", "create_time", now, "update_time", now,
+				"model_class", "HistoryDatasetAssociation"));
+		return id;
+	}
+
+	/**
+	 * Get the given dataset, advancing its state if its simulated job has finished.
+	 */
+	protected Map<String, Object> getDataset(String id) {
+		Map<String, Object> dataset = datasets.get(id);
+		if (dataset != null && "queued".equals(dataset.get("state")) && System.currentTimeMillis() - datasetCreated.get(id) >= jobDuration) {
+			dataset.put("state", jobErrorRate > 0 && ThreadLocalRandom.current().nextDouble() < jobErrorRate ? "error" : "ok");
+			dataset.put("update_time", LocalDateTime.now().format(dateFormat));
+		}
+		return dataset;
+	}
+
+	protected Map<String, Object> createLibrary(String name) {
+		String id = nextId();
+		Map<String, Object> library = map("id", id, "name", name, "deleted", false, "root_folder_id", "F" + id);
+		libraries.put(id, library);
+		return library;
+	}
+
+	/**
+	 * Register the files with paths in the given request body as datasets in the given library.
+	 */
+	protected List<Object> uploadLibraryDatasets(String libraryId, Map<String, Object> body) {
+		if (!libraries.containsKey(libraryId)) {
+			return null;
+		}
+
+		List<Object> uploaded = new ArrayList<Object>();
+		String paths = (String)body.getOrDefault("filesystem_paths", "");
+		for (String path : StringUtils.split(paths, '\n')) {
+			String id = nextId();
+			uploaded.add(map("id", id, "name", StringUtils.substringAfterLast(path, "/"), "url", "/api/libraries/" + libraryId + "/contents/" + id));
+		}
+		return uploaded;
+	}
+
+	protected List<Object> listWorkflows() {
+		List<Object> list = new ArrayList<Object>();
+		for (Map<String, Object> workflow : workflows.values()) {
+			list.add(map("id", workflow.get("id"), "name", workflow.get("name"), "model_class", "StoredWorkflow", "published", false, "deleted", false));
+		}
+		return list;
+	}
+
+	protected List<Object> listInvocations(String workflowId, String historyId) {
+		List<Object> list = new ArrayList<Object>();
+		for (Map<String, Object> invocation : invocations.values()) {
+			if ((workflowId == null || workflowId.equals(invocation.get("workflow_id"))) && (historyId == null || historyId.equals(invocation.get("history_id")))) {
+				list.add(invocation);
+			}
+		}
+		return list;
+	}
+
+	protected List<Object> listDatasets(String historyId) {
+		if (!histories.containsKey(historyId)) {
+			return null;
+		}
+
+		List<Object> list = new ArrayList<Object>();
+		for (Map<String, Object> dataset : datasets.values()) {
+			if (historyId.equals(dataset.get("history_id"))) {
+				list.add(getDataset((String)dataset.get("id")));
+			}
+		}
+		return list;
+	}
+
+	protected Map<String, Object> update(Map<String, Object> object, Map<String, Object> body) {
+		if (object != null) {
+			body.remove("id");
+			object.putAll(body);
+		}
+		return object;
+	}
+
+	protected String nextId() {
+		return String.format("%016x", idSequence.incrementAndGet());
+	}
+
+	protected Map<String, String> parseQuery(String query) {
+		Map<String, String> params = new HashMap<String, String>();
+		if (query != null) {
+			for (String param : query.split("&")) {
+				String[] pair = param.split("=", 2);
+				params.put(URLDecoder.decode(pair[0], StandardCharsets.UTF_8), pair.length > 1 ? URLDecoder.decode(pair[1], StandardCharsets.UTF_8) : "");
+			}
+		}
+		return params;
+	}
+
+	@SuppressWarnings("unchecked")
+	protected Map<String, Object> parseBody(InputStream input) throws IOException {
+		String body = IOUtils.toString(input, StandardCharsets.UTF_8);
+		if (StringUtils.isBlank(body) || !body.trim().startsWith("{")) {
+			return new HashMap<String, Object>();
+		}
+		return objectMapper.readValue(body, Map.class);
+	}
+
+	protected void respond(HttpExchange exchange, int status, Object response) throws IOException {
+		byte[] bytes = objectMapper.writeValueAsBytes(response);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream output = exchange.getResponseBody()) {
+			output.write(bytes);
+		}
+	}
+
+	/**
+	 * Build a map from the given alternating keys and values, preserving the order.
+	 */
+	protected static Map<String, Object> map(Object... keyValues) {
+		Map<String, Object> map = new LinkedHashMap<String, Object>();
+		for (int i = 0; i < keyValues.length; i += 2) {
+			map.put((String)keyValues[i], keyValues[i + 1]);
+		}
+		return map;
+	}
+
+}
@@ -644,6 +644,8 @@ public class TestHelper {
 			throw new RuntimeException("Unable to upload workflow " + workflowName + " from resource " + filename + " into Galaxy.", e);
 		}
 
+		// the cached workflow lists don't include the newly imported workflow yet
+		workflowService.invalidateWorkflowCaches(null);
 		log.info("Successfully uploaded workflow " + workflow.getId() + " from " + filename + " into Galaxy.");
 		return workflow;
 	}	
@@ -740,6 +742,7 @@ public class TestHelper {
 				log.info("Workflow is deleted: ID: " + workflow.getId() + ", Name: " + workflow.getName());
 			}
 		}
+		workflowService.invalidateWorkflowCaches(null);
 	}
 	
 	/*